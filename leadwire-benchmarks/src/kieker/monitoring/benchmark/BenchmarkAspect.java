@@ -0,0 +1,44 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import org.aspectj.lang.Signature;
+
+import kieker.monitoring.probe.aspectj.operationExecution.OperationExecutionAspectFull;
+
+/**
+ * The operation execution aspect, with access to its signature conversion.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class BenchmarkAspect extends OperationExecutionAspectFull {
+
+	public BenchmarkAspect() {
+		super();
+	}
+
+	/**
+	 * @param signature
+	 *            an AspectJ signature
+	 * @return the signature as used by the probes
+	 */
+	public String toLongString(final Signature signature) {
+		return this.signatureToLongString(signature);
+	}
+}
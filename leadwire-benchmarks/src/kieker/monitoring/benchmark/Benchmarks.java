@@ -0,0 +1,66 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.lang.reflect.Modifier;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+
+/**
+ * Settings and join points shared by the benchmarks.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class Benchmarks {
+
+	/** discards the records, so that only the agent itself is measured. */
+	static final String DUMP_WRITER = "-Dkieker.monitoring.writer=kieker.monitoring.writer.dump.DumpWriter";
+	/** the agent jar shades JCTools, the benchmarks use the original package. */
+	static final String UNSHADED_QUEUE = "-Dkieker.monitoring.core.controller.WriterController.RecordQueueFQN=org.jctools.queues.MpscArrayQueue";
+
+	private static final Factory FACTORY = new Factory("Benchmarks.java", Benchmarks.class);
+
+	private Benchmarks() {
+		// utility class
+	}
+
+	/**
+	 * @return the static part of the execution of {@link #monitoredOperation(String, int)}, as created by the weaver
+	 */
+	static JoinPoint.StaticPart newMethodExecution() {
+		return FACTORY.makeSJP(JoinPoint.METHOD_EXECUTION, FACTORY.makeMethodSig(Modifier.PUBLIC | Modifier.STATIC, "monitoredOperation",
+				Benchmarks.class, new Class<?>[] { String.class, int.class }, new String[] { "name", "count" }, new Class<?>[0], long.class), 1);
+	}
+
+	/**
+	 * @return the static part of the execution of the constructor of {@link StringBuilder}, as created by the weaver
+	 */
+	static JoinPoint.StaticPart newConstructorExecution() {
+		return FACTORY.makeSJP(JoinPoint.CONSTRUCTOR_EXECUTION, FACTORY.makeConstructorSig(Modifier.PUBLIC, StringBuilder.class,
+				new Class<?>[] { String.class }, new String[] { "str" }, new Class<?>[0]), 1);
+	}
+
+	/**
+	 * The operation the join points refer to; never called.
+	 */
+	public static long monitoredOperation(final String name, final int count) {
+		return name.length() + count;
+	}
+}
@@ -0,0 +1,111 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kieker.monitoring.core.registry.ControlFlowRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+
+/**
+ * The trace bookkeeping the probes do per execution.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE })
+public class ControlFlowRegistryBenchmark {
+
+	private static final ControlFlowRegistry CFREGISTRY = ControlFlowRegistry.INSTANCE;
+	private static final String ENDPOINT = "public void kieker.monitoring.benchmark.Endpoint.handle()";
+
+	public ControlFlowRegistryBenchmark() {
+		super();
+	}
+
+	@Benchmark
+	public TraceContext threadLocalTraceContext() {
+		return CFREGISTRY.getThreadLocalTraceContext();
+	}
+
+	@Benchmark
+	public long uniqueTraceId() {
+		return CFREGISTRY.getUniqueTraceId();
+	}
+
+	/**
+	 * An entry point: starts a trace, including the sampling decision, and ends it.
+	 */
+	@Benchmark
+	public long beginAndEndTrace() {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		final long traceId = CFREGISTRY.beginTrace(traceContext, ENDPOINT);
+		traceContext.reset();
+		return traceId;
+	}
+
+	/**
+	 * A nested execution within an active trace.
+	 */
+	@Benchmark
+	public int nestedExecution(final ActiveTrace trace) {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		final int eoi = traceContext.incrementAndGetEoi();
+		final int ess = traceContext.getAndIncrementEss();
+		traceContext.setEss(ess);
+		return eoi + ess;
+	}
+
+	/**
+	 * A trace of the benchmark thread, restarted per iteration so that the eoi cannot overflow.
+	 */
+	@State(Scope.Thread)
+	public static class ActiveTrace {
+
+		public ActiveTrace() {
+			super();
+		}
+
+		@Setup(Level.Iteration)
+		public void beginTrace() {
+			CFREGISTRY.beginTrace(CFREGISTRY.getThreadLocalTraceContext(), ENDPOINT);
+		}
+
+		@TearDown(Level.Iteration)
+		public void endTrace() {
+			CFREGISTRY.getThreadLocalTraceContext().reset();
+		}
+	}
+}
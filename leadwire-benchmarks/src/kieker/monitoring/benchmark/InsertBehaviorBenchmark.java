@@ -0,0 +1,121 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jctools.queues.MpscArrayQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.monitoring.queue.BlockingQueueDecorator;
+import kieker.monitoring.queue.RingBuffer;
+import kieker.monitoring.queue.behavior.BlockOnFailedInsertBehavior;
+import kieker.monitoring.queue.behavior.CountOnFailedInsertBehavior;
+import kieker.monitoring.queue.behavior.InsertBehavior;
+import kieker.monitoring.queue.behavior.LaneRoutingInsertBehavior;
+import kieker.monitoring.queue.behavior.RingBufferInsertBehavior;
+import kieker.monitoring.queue.putstrategy.SPBlockingPutStrategy;
+import kieker.monitoring.queue.takestrategy.SCBlockingTakeStrategy;
+import kieker.monitoring.queue.waitstrategy.ParkingWaitStrategy;
+
+/**
+ * Inserting a record into the writer queue with each insert behavior, including taking it out again, so that the
+ * queues never fill up. Measures the uncontended hand-over of a single application thread.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InsertBehaviorBenchmark {
+
+	private static final int CAPACITY = 1024;
+	private static final int LANES = 4;
+
+	private final IMonitoringRecord record = new OperationExecutionRecord("public void com.example.Service.handle()", "session", 4711L,
+			1500000000000L, 1500000000042L, "host", 0, 0);
+
+	/** the default queue: a JCTools queue decorated with blocking strategies. */
+	private final BlockingQueue<IMonitoringRecord> mpscQueue = new BlockingQueueDecorator<IMonitoringRecord>(
+			new MpscArrayQueue<IMonitoringRecord>(CAPACITY), new SPBlockingPutStrategy(), new SCBlockingTakeStrategy());
+	private final InsertBehavior<IMonitoringRecord> countOnFailed = new CountOnFailedInsertBehavior<IMonitoringRecord>(this.mpscQueue);
+
+	private final BlockingQueue<IMonitoringRecord> arrayQueue = new ArrayBlockingQueue<IMonitoringRecord>(CAPACITY);
+	private final InsertBehavior<IMonitoringRecord> blockOnFailed = new BlockOnFailedInsertBehavior<IMonitoringRecord>(this.arrayQueue);
+
+	private final RingBuffer<IMonitoringRecord> ringBuffer = new RingBuffer<IMonitoringRecord>(CAPACITY, new ParkingWaitStrategy());
+	private final InsertBehavior<IMonitoringRecord> ringBufferInsert = new RingBufferInsertBehavior<IMonitoringRecord>(this.ringBuffer);
+	private final IMonitoringRecord[] ringBufferBatch = new IMonitoringRecord[1];
+
+	private final List<BlockingQueue<IMonitoringRecord>> laneQueues = new ArrayList<BlockingQueue<IMonitoringRecord>>(LANES);
+	private final InsertBehavior<IMonitoringRecord> laneRouting;
+
+	public InsertBehaviorBenchmark() {
+		final List<InsertBehavior<IMonitoringRecord>> laneInsertBehaviors = new ArrayList<InsertBehavior<IMonitoringRecord>>(LANES);
+		for (int lane = 0; lane < LANES; lane++) {
+			final BlockingQueue<IMonitoringRecord> queue = new BlockingQueueDecorator<IMonitoringRecord>(
+					new MpscArrayQueue<IMonitoringRecord>(CAPACITY / LANES), new SPBlockingPutStrategy(), new SCBlockingTakeStrategy());
+			this.laneQueues.add(queue);
+			laneInsertBehaviors.add(new CountOnFailedInsertBehavior<IMonitoringRecord>(queue));
+		}
+		this.laneRouting = new LaneRoutingInsertBehavior(laneInsertBehaviors);
+	}
+
+	@Benchmark
+	public Object countOnFailed() {
+		this.countOnFailed.insert(this.record);
+		return this.mpscQueue.poll();
+	}
+
+	@Benchmark
+	public Object blockOnFailed() {
+		this.blockOnFailed.insert(this.record);
+		return this.arrayQueue.poll();
+	}
+
+	@Benchmark
+	public Object ringBuffer() {
+		this.ringBufferInsert.insert(this.record);
+		this.ringBuffer.poll(this.ringBufferBatch);
+		return this.ringBufferBatch[0];
+	}
+
+	@Benchmark
+	public Object laneRouting() {
+		this.laneRouting.insert(this.record);
+		return this.laneQueues.get(LaneRoutingInsertBehavior.laneOf(this.record, LANES)).poll();
+	}
+}
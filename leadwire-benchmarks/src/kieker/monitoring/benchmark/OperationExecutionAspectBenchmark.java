@@ -0,0 +1,142 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.controller.MonitoringController;
+
+/**
+ * The complete around advice of the operation execution aspect for an empty operation, in each of the ways it can
+ * return. The controller is a singleton configured on start-up, so each case runs in a JVM of its own.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OperationExecutionAspectBenchmark {
+
+	/** a threshold no empty operation exceeds (in milliseconds, the unit of the default timer). */
+	private static final String HIGH_THRESHOLD = "-Dkieker.monitoring.methodThreshold=60000";
+	/** every execution exceeds this threshold. */
+	private static final String NO_THRESHOLD = "-Dkieker.monitoring.methodThreshold=-1";
+
+	public OperationExecutionAspectBenchmark() {
+		super();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE })
+	public Object monitoringDisabled(final MonitoringDisabled advice) throws Throwable { // NOCS (Throwable)
+		return advice.execute();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE })
+	public Object probeDeactivated(final ProbeDeactivated advice) throws Throwable { // NOCS (Throwable)
+		return advice.execute();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE, HIGH_THRESHOLD })
+	public Object belowThreshold(final Advice advice) throws Throwable { // NOCS (Throwable)
+		return advice.execute();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE, NO_THRESHOLD })
+	public Object recorded(final Advice advice) throws Throwable { // NOCS (Throwable)
+		return advice.execute();
+	}
+
+	/**
+	 * The aspect and the join point of the monitored operation.
+	 */
+	@State(Scope.Thread)
+	public static class Advice {
+		final IMonitoringController controller = MonitoringController.getInstance(); // NOCS (package visible)
+		final BenchmarkAspect aspect = new BenchmarkAspect(); // NOCS (package visible)
+		final JoinPoint.StaticPart staticPart = Benchmarks.newMethodExecution(); // NOCS (package visible)
+
+		public Advice() {
+			super();
+		}
+
+		/**
+		 * Executes the advice. Like the woven code, it creates a join point per execution; proceeding returns
+		 * immediately.
+		 */
+		Object execute() throws Throwable { // NOCS (Throwable)
+			return this.aspect.operation((ProceedingJoinPoint) Factory.makeJP(this.staticPart, this, this));
+		}
+	}
+
+	/**
+	 * The advice with monitoring disabled.
+	 */
+	@State(Scope.Thread)
+	public static class MonitoringDisabled extends Advice {
+
+		public MonitoringDisabled() {
+			super();
+		}
+
+		@Setup
+		public void setUp() {
+			this.controller.disableMonitoring();
+		}
+	}
+
+	/**
+	 * The advice with the probe of the monitored operation deactivated.
+	 */
+	@State(Scope.Thread)
+	public static class ProbeDeactivated extends Advice {
+
+		public ProbeDeactivated() {
+			super();
+		}
+
+		@Setup
+		public void setUp() {
+			final String signature = this.aspect.toLongString(this.staticPart.getSignature());
+			this.controller.deactivateProbe(signature);
+			if (this.controller.isProbeActivated(signature)) {
+				throw new IllegalStateException("Cannot deactivate the probe of " + signature);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.controller.MonitoringController;
+
+/**
+ * The activation check of the probes, by signature and by the signature id cached in the probe handles.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE })
+@State(Scope.Benchmark)
+public class ProbeControllerBenchmark {
+
+	private static final String ACTIVE_SIGNATURE = "public long kieker.monitoring.benchmark.Active.operation(java.lang.String, int)";
+	private static final String INACTIVE_SIGNATURE = "public long kieker.monitoring.benchmark.Inactive.operation(java.lang.String, int)";
+
+	private final IMonitoringController controller = MonitoringController.getInstance();
+	private int activeSignatureId;
+	private int inactiveSignatureId;
+
+	public ProbeControllerBenchmark() {
+		super();
+	}
+
+	@Setup
+	public void setUp() {
+		this.controller.deactivateProbe(INACTIVE_SIGNATURE);
+		this.activeSignatureId = this.controller.getSignatureId(ACTIVE_SIGNATURE);
+		this.inactiveSignatureId = this.controller.getSignatureId(INACTIVE_SIGNATURE);
+	}
+
+	@Benchmark
+	public boolean activeBySignature() {
+		return this.controller.isProbeActivated(ACTIVE_SIGNATURE);
+	}
+
+	@Benchmark
+	public boolean activeById() {
+		return this.controller.isProbeActivated(this.activeSignatureId, ACTIVE_SIGNATURE);
+	}
+
+	@Benchmark
+	public boolean inactiveById() {
+		return this.controller.isProbeActivated(this.inactiveSignatureId, INACTIVE_SIGNATURE);
+	}
+}
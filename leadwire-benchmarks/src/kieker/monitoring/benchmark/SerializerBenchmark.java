@@ -0,0 +1,103 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.io.DefaultValueSerializer;
+import kieker.common.record.io.TextValueSerializer;
+import kieker.common.util.registry.Registry;
+import kieker.monitoring.writer.serializer.BinarySerializer;
+
+/**
+ * The serialization of operation execution records: single records with the binary and the text value serializer, and
+ * a batch with the binary container format.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+	private static final int BATCH_SIZE = 64;
+
+	private final IMonitoringRecord record = newRecord(1);
+	private final List<IMonitoringRecord> batch = new ArrayList<IMonitoringRecord>(BATCH_SIZE);
+
+	private final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(64 * 1024);
+	private final CharBuffer charBuffer = CharBuffer.allocate(4096);
+	private final DefaultValueSerializer defaultValueSerializer = DefaultValueSerializer.create(this.byteBuffer, new Registry<String>());
+	private final TextValueSerializer textValueSerializer = TextValueSerializer.create(this.charBuffer);
+	private final BinarySerializer binarySerializer = new BinarySerializer(new Configuration());
+
+	public SerializerBenchmark() {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.batch.add(newRecord(i));
+		}
+	}
+
+	@Benchmark
+	public int defaultValueSerializer() {
+		this.byteBuffer.clear();
+		this.record.serialize(this.defaultValueSerializer);
+		return this.byteBuffer.position();
+	}
+
+	@Benchmark
+	public int textValueSerializer() {
+		this.charBuffer.clear();
+		this.record.serialize(this.textValueSerializer);
+		return this.charBuffer.position();
+	}
+
+	/**
+	 * A batch of records, including the string table of the container format.
+	 */
+	@Benchmark
+	public int binarySerializerBatch() {
+		this.byteBuffer.clear();
+		return this.binarySerializer.serializeRecords(this.batch, this.byteBuffer);
+	}
+
+	private static IMonitoringRecord newRecord(final int eoi) {
+		return new OperationExecutionRecord("public java.lang.String com.example.shop.OrderService.placeOrder(java.lang.String, int)",
+				"2A4F0C1E9B7D3E5F", 4711L, 1500000000000L, 1500000000042L, "host-1", eoi, 1);
+	}
+}
@@ -0,0 +1,70 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.Signature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The conversion of AspectJ signatures into the signatures used by the probes. The probes convert each signature once
+ * and cache it; the uncached cases also include creating the caches of a new probe.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { Benchmarks.DUMP_WRITER, Benchmarks.UNSHADED_QUEUE })
+@State(Scope.Thread)
+public class SignatureBenchmark {
+
+	private final BenchmarkAspect aspect = new BenchmarkAspect();
+	private final Signature methodSignature = Benchmarks.newMethodExecution().getSignature();
+	private final Signature constructorSignature = Benchmarks.newConstructorExecution().getSignature();
+
+	public SignatureBenchmark() {
+		super();
+	}
+
+	@Benchmark
+	public String cachedMethod() {
+		return this.aspect.toLongString(this.methodSignature);
+	}
+
+	@Benchmark
+	public String uncachedMethod() {
+		return new BenchmarkAspect().toLongString(this.methodSignature);
+	}
+
+	@Benchmark
+	public String uncachedConstructor() {
+		return new BenchmarkAspect().toLongString(this.constructorSignature);
+	}
+}
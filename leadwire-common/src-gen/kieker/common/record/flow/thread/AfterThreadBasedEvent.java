@@ -17,8 +17,6 @@ package kieker.common.record.flow.thread;
 
 import java.nio.BufferOverflowException;
 
-import com.google.gson.Gson;
-
 import kieker.common.record.flow.thread.AbstractThreadBasedEvent;
 import kieker.common.record.io.IValueDeserializer;
 import kieker.common.record.io.IValueSerializer;
@@ -208,12 +206,5 @@ public class AfterThreadBasedEvent extends AbstractThreadBasedEvent  {
 		return true;
 	}
 
-	@Override
-	public String toJson()   {
-
-		Gson gson = new Gson();
-		return gson.toJson(this);  
-
-	}
 	
 }
@@ -17,8 +17,6 @@ package kieker.common.record.flow.trace.concurrency;
 
 import java.nio.BufferOverflowException;
 
-import com.google.gson.Gson;
-
 import kieker.common.record.flow.trace.AbstractTraceEvent;
 import kieker.common.record.io.IValueDeserializer;
 import kieker.common.record.io.IValueSerializer;
@@ -190,12 +188,5 @@ public class SplitEvent extends AbstractTraceEvent  {
 		return true;
 	}
 
-	@Override
-	public String toJson()   {
-
-		Gson gson = new Gson();
-		return gson.toJson(this);  
-
-	}
 	
 }
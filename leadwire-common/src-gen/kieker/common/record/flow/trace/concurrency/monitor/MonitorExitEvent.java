@@ -17,8 +17,6 @@ package kieker.common.record.flow.trace.concurrency.monitor;
 
 import java.nio.BufferOverflowException;
 
-import com.google.gson.Gson;
-
 import kieker.common.record.flow.trace.concurrency.monitor.AbstractMonitorEvent;
 import kieker.common.record.io.IValueDeserializer;
 import kieker.common.record.io.IValueSerializer;
@@ -198,12 +196,5 @@ public class MonitorExitEvent extends AbstractMonitorEvent  {
 		return true;
 	}
 
-	@Override
-	public String toJson()   {
-
-		Gson gson = new Gson();
-		return gson.toJson(this);  
-
-	}
 	
 }
@@ -234,6 +234,7 @@ public class JdbcOperationExecutionRecord extends AbstractMonitoringRecord imple
 		serializer.putString(this.getHostname());
 		serializer.putInt(this.getEoi());
 		serializer.putInt(this.getEss());
+		serializer.putString(this.getrecordType());
 	}
 
 	/**
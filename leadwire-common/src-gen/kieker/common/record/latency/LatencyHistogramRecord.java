@@ -0,0 +1,378 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.common.record.latency;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+
+import kieker.common.record.AbstractMonitoringRecord;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.io.IValueDeserializer;
+import kieker.common.record.io.IValueSerializer;
+import kieker.common.util.registry.IRegistry;
+
+/**
+ * The executions of an operation during one export interval: their number, their total duration, and their latency
+ * distribution summarized by its percentiles. The durations are given in the unit of the time source; the percentiles
+ * are accurate to about 12.5%.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class LatencyHistogramRecord extends AbstractMonitoringRecord implements IMonitoringRecord.Factory, IMonitoringRecord.BinaryFactory {
+	private static final long serialVersionUID = 4127853076823144385L;
+
+	/** Descriptive definition of the serialization size of the record. */
+	public static final int SIZE = TYPE_SIZE_LONG // LatencyHistogramRecord.timestamp
+			+ TYPE_SIZE_STRING // LatencyHistogramRecord.hostname
+			+ TYPE_SIZE_STRING // LatencyHistogramRecord.kind
+			+ TYPE_SIZE_STRING // LatencyHistogramRecord.operation
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.count
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.totalDuration
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.p50
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.p90
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.p99
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.max
+			+ TYPE_SIZE_LONG // LatencyHistogramRecord.threshold
+			+ TYPE_SIZE_STRING // LatencyHistogramRecord.recordType
+	;
+
+	public static final Class<?>[] TYPES = {
+		long.class, // LatencyHistogramRecord.timestamp
+		String.class, // LatencyHistogramRecord.hostname
+		String.class, // LatencyHistogramRecord.kind
+		String.class, // LatencyHistogramRecord.operation
+		long.class, // LatencyHistogramRecord.count
+		long.class, // LatencyHistogramRecord.totalDuration
+		long.class, // LatencyHistogramRecord.p50
+		long.class, // LatencyHistogramRecord.p90
+		long.class, // LatencyHistogramRecord.p99
+		long.class, // LatencyHistogramRecord.max
+		long.class, // LatencyHistogramRecord.threshold
+		String.class, // LatencyHistogramRecord.recordType
+	};
+
+	/** user-defined constants. */
+	public static final String KIND_METHOD = "method";
+	public static final String KIND_SQL = "sql";
+
+	/** property name array. */
+	private static final String[] PROPERTY_NAMES = {
+		"timestamp",
+		"hostname",
+		"kind",
+		"operation",
+		"count",
+		"totalDuration",
+		"p50",
+		"p90",
+		"p99",
+		"max",
+		"threshold",
+		"recordType",
+	};
+
+	/** property declarations. */
+	private final long timestamp;
+	private final String hostname;
+	private final String kind;
+	private final String operation;
+	private final long count;
+	private final long totalDuration;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long max;
+	private final long threshold;
+	private final String recordType = "latencyhist";
+
+	/**
+	 * Creates a new instance of this class using the given parameters.
+	 *
+	 * @param timestamp
+	 *            the end of the interval
+	 * @param hostname
+	 *            hostname
+	 * @param kind
+	 *            {@link #KIND_METHOD} or {@link #KIND_SQL}
+	 * @param operation
+	 *            the operation signature or the normalized SQL
+	 * @param count
+	 *            the number of executions during the interval
+	 * @param totalDuration
+	 *            the sum of the durations of these executions
+	 * @param p50
+	 *            the median duration
+	 * @param p90
+	 *            the 90th percentile of the durations
+	 * @param p99
+	 *            the 99th percentile of the durations
+	 * @param max
+	 *            the maximum duration
+	 * @param threshold
+	 *            the duration above which executions are recorded individually
+	 */
+	public LatencyHistogramRecord(final long timestamp, final String hostname, final String kind, final String operation, final long count,
+			final long totalDuration, final long p50, final long p90, final long p99, final long max, final long threshold) {
+		this.timestamp = timestamp;
+		this.hostname = hostname;
+		this.kind = kind;
+		this.operation = operation;
+		this.count = count;
+		this.totalDuration = totalDuration;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 * It is recommended to use the array which is the result of a call to {@link #toArray()}.
+	 *
+	 * @param values
+	 *            The values for the record.
+	 */
+	public LatencyHistogramRecord(final Object[] values) { // NOPMD (direct store of values)
+		AbstractMonitoringRecord.checkArray(values, TYPES);
+		this.timestamp = (Long) values[0];
+		this.hostname = (String) values[1];
+		this.kind = (String) values[2];
+		this.operation = (String) values[3];
+		this.count = (Long) values[4];
+		this.totalDuration = (Long) values[5];
+		this.p50 = (Long) values[6];
+		this.p90 = (Long) values[7];
+		this.p99 = (Long) values[8];
+		this.max = (Long) values[9];
+		this.threshold = (Long) values[10];
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 *
+	 * @param deserializer
+	 *            The deserializer to use
+	 *
+	 * @throws BufferUnderflowException
+	 *             if buffer not sufficient
+	 */
+	public LatencyHistogramRecord(final IValueDeserializer deserializer) throws BufferUnderflowException {
+		this.timestamp = deserializer.getLong();
+		this.hostname = deserializer.getString();
+		this.kind = deserializer.getString();
+		this.operation = deserializer.getString();
+		this.count = deserializer.getLong();
+		this.totalDuration = deserializer.getLong();
+		this.p50 = deserializer.getLong();
+		this.p90 = deserializer.getLong();
+		this.p99 = deserializer.getLong();
+		this.max = deserializer.getLong();
+		this.threshold = deserializer.getLong();
+		deserializer.getString(); // recordType
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object[] toArray() {
+		return new Object[] {
+			this.getTimestamp(),
+			this.getHostname(),
+			this.getKind(),
+			this.getOperation(),
+			this.getCount(),
+			this.getTotalDuration(),
+			this.getP50(),
+			this.getP90(),
+			this.getP99(),
+			this.getMax(),
+			this.getThreshold(),
+			this.getrecordType(),
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerStrings(final IRegistry<String> stringRegistry) { // NOPMD (generated code)
+		stringRegistry.get(this.getHostname());
+		stringRegistry.get(this.getKind());
+		stringRegistry.get(this.getOperation());
+		stringRegistry.get(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void serialize(final IValueSerializer serializer) throws BufferOverflowException {
+		serializer.putLong(this.getTimestamp());
+		serializer.putString(this.getHostname());
+		serializer.putString(this.getKind());
+		serializer.putString(this.getOperation());
+		serializer.putLong(this.getCount());
+		serializer.putLong(this.getTotalDuration());
+		serializer.putLong(this.getP50());
+		serializer.putLong(this.getP90());
+		serializer.putLong(this.getP99());
+		serializer.putLong(this.getMax());
+		serializer.putLong(this.getThreshold());
+		serializer.putString(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Class<?>[] getValueTypes() {
+		return TYPES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] getValueNames() {
+		return PROPERTY_NAMES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSize() {
+		return SIZE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @deprecated This record uses the {@link kieker.common.record.IMonitoringRecord.Factory} mechanism. Hence, this method is not implemented.
+	 */
+	@Override
+	@Deprecated
+	public void initFromArray(final Object[] values) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (obj == this) {
+			return true;
+		}
+		if (obj.getClass() != this.getClass()) {
+			return false;
+		}
+
+		final LatencyHistogramRecord castedRecord = (LatencyHistogramRecord) obj;
+		if (this.getLoggingTimestamp() != castedRecord.getLoggingTimestamp()) {
+			return false;
+		}
+		if (this.getTimestamp() != castedRecord.getTimestamp()) {
+			return false;
+		}
+		if (!this.getHostname().equals(castedRecord.getHostname())) {
+			return false;
+		}
+		if (!this.getKind().equals(castedRecord.getKind())) {
+			return false;
+		}
+		if (!this.getOperation().equals(castedRecord.getOperation())) {
+			return false;
+		}
+		if (this.getCount() != castedRecord.getCount()) {
+			return false;
+		}
+		if (this.getTotalDuration() != castedRecord.getTotalDuration()) {
+			return false;
+		}
+		if (this.getP50() != castedRecord.getP50()) {
+			return false;
+		}
+		if (this.getP90() != castedRecord.getP90()) {
+			return false;
+		}
+		if (this.getP99() != castedRecord.getP99()) {
+			return false;
+		}
+		if (this.getMax() != castedRecord.getMax()) {
+			return false;
+		}
+		if (this.getThreshold() != castedRecord.getThreshold()) {
+			return false;
+		}
+		return true;
+	}
+
+	public final long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public final String getHostname() {
+		return this.hostname;
+	}
+
+	public final String getKind() {
+		return this.kind;
+	}
+
+	public final String getOperation() {
+		return this.operation;
+	}
+
+	public final long getCount() {
+		return this.count;
+	}
+
+	public final long getTotalDuration() {
+		return this.totalDuration;
+	}
+
+	public final long getP50() {
+		return this.p50;
+	}
+
+	public final long getP90() {
+		return this.p90;
+	}
+
+	public final long getP99() {
+		return this.p99;
+	}
+
+	public final long getMax() {
+		return this.max;
+	}
+
+	public final long getThreshold() {
+		return this.threshold;
+	}
+
+	public String getrecordType() {
+		return this.recordType;
+	}
+}
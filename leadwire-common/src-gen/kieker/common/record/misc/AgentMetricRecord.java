@@ -0,0 +1,319 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.common.record.misc;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+
+import kieker.common.record.AbstractMonitoringRecord;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.io.IValueDeserializer;
+import kieker.common.record.io.IValueSerializer;
+import kieker.common.util.registry.IRegistry;
+
+/**
+ * A self-monitoring metric of the agent for one interval, e.g., the invocations of a probe and the time spent in it, or
+ * the records and bytes written. For timers, the amounts are durations in nanoseconds and the percentiles are the upper
+ * bounds of power-of-two buckets; counters have no percentiles; gauges report their current value as total.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class AgentMetricRecord extends AbstractMonitoringRecord implements IMonitoringRecord.Factory, IMonitoringRecord.BinaryFactory {
+	private static final long serialVersionUID = 6190874313870924621L;
+
+	/** Descriptive definition of the serialization size of the record. */
+	public static final int SIZE = TYPE_SIZE_LONG // AgentMetricRecord.timestamp
+			+ TYPE_SIZE_STRING // AgentMetricRecord.hostname
+			+ TYPE_SIZE_STRING // AgentMetricRecord.metric
+			+ TYPE_SIZE_LONG // AgentMetricRecord.count
+			+ TYPE_SIZE_LONG // AgentMetricRecord.total
+			+ TYPE_SIZE_LONG // AgentMetricRecord.p50
+			+ TYPE_SIZE_LONG // AgentMetricRecord.p99
+			+ TYPE_SIZE_LONG // AgentMetricRecord.max
+			+ TYPE_SIZE_STRING // AgentMetricRecord.recordType
+	;
+
+	public static final Class<?>[] TYPES = {
+		long.class, // AgentMetricRecord.timestamp
+		String.class, // AgentMetricRecord.hostname
+		String.class, // AgentMetricRecord.metric
+		long.class, // AgentMetricRecord.count
+		long.class, // AgentMetricRecord.total
+		long.class, // AgentMetricRecord.p50
+		long.class, // AgentMetricRecord.p99
+		long.class, // AgentMetricRecord.max
+		String.class, // AgentMetricRecord.recordType
+	};
+
+	/** property name array. */
+	private static final String[] PROPERTY_NAMES = {
+		"timestamp",
+		"hostname",
+		"metric",
+		"count",
+		"total",
+		"p50",
+		"p99",
+		"max",
+		"recordType",
+	};
+
+	/** property declarations. */
+	private final long timestamp;
+	private final String hostname;
+	private final String metric;
+	private final long count;
+	private final long total;
+	private final long p50;
+	private final long p99;
+	private final long max;
+	private final String recordType = "agentmetric";
+
+	/**
+	 * Creates a new instance of this class using the given parameters.
+	 *
+	 * @param timestamp
+	 *            the end of the interval
+	 * @param hostname
+	 *            hostname
+	 * @param metric
+	 *            the name of the metric, e.g., <code>probe.operationExecution</code>
+	 * @param count
+	 *            the number of events in the interval (1 for gauges)
+	 * @param total
+	 *            the sum of the amounts of the events, or the current value of a gauge
+	 * @param p50
+	 *            the median amount, 0 if not measured
+	 * @param p99
+	 *            the 99th percentile of the amounts, 0 if not measured
+	 * @param max
+	 *            the maximal amount, 0 if not measured
+	 */
+	public AgentMetricRecord(final long timestamp, final String hostname, final String metric, final long count, final long total, final long p50,
+			final long p99, final long max) {
+		this.timestamp = timestamp;
+		this.hostname = hostname;
+		this.metric = metric;
+		this.count = count;
+		this.total = total;
+		this.p50 = p50;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 * It is recommended to use the array which is the result of a call to {@link #toArray()}.
+	 *
+	 * @param values
+	 *            The values for the record.
+	 */
+	public AgentMetricRecord(final Object[] values) { // NOPMD (direct store of values)
+		AbstractMonitoringRecord.checkArray(values, TYPES);
+		this.timestamp = (Long) values[0];
+		this.hostname = (String) values[1];
+		this.metric = (String) values[2];
+		this.count = (Long) values[3];
+		this.total = (Long) values[4];
+		this.p50 = (Long) values[5];
+		this.p99 = (Long) values[6];
+		this.max = (Long) values[7];
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 *
+	 * @param deserializer
+	 *            The deserializer to use
+	 *
+	 * @throws BufferUnderflowException
+	 *             if buffer not sufficient
+	 */
+	public AgentMetricRecord(final IValueDeserializer deserializer) throws BufferUnderflowException {
+		this.timestamp = deserializer.getLong();
+		this.hostname = deserializer.getString();
+		this.metric = deserializer.getString();
+		this.count = deserializer.getLong();
+		this.total = deserializer.getLong();
+		this.p50 = deserializer.getLong();
+		this.p99 = deserializer.getLong();
+		this.max = deserializer.getLong();
+		deserializer.getString(); // recordType
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object[] toArray() {
+		return new Object[] {
+			this.getTimestamp(),
+			this.getHostname(),
+			this.getMetric(),
+			this.getCount(),
+			this.getTotal(),
+			this.getP50(),
+			this.getP99(),
+			this.getMax(),
+			this.getrecordType(),
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerStrings(final IRegistry<String> stringRegistry) { // NOPMD (generated code)
+		stringRegistry.get(this.getHostname());
+		stringRegistry.get(this.getMetric());
+		stringRegistry.get(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void serialize(final IValueSerializer serializer) throws BufferOverflowException {
+		serializer.putLong(this.getTimestamp());
+		serializer.putString(this.getHostname());
+		serializer.putString(this.getMetric());
+		serializer.putLong(this.getCount());
+		serializer.putLong(this.getTotal());
+		serializer.putLong(this.getP50());
+		serializer.putLong(this.getP99());
+		serializer.putLong(this.getMax());
+		serializer.putString(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Class<?>[] getValueTypes() {
+		return TYPES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] getValueNames() {
+		return PROPERTY_NAMES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSize() {
+		return SIZE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @deprecated This record uses the {@link kieker.common.record.IMonitoringRecord.Factory} mechanism. Hence, this method is not implemented.
+	 */
+	@Override
+	@Deprecated
+	public void initFromArray(final Object[] values) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (obj == this) {
+			return true;
+		}
+		if (obj.getClass() != this.getClass()) {
+			return false;
+		}
+
+		final AgentMetricRecord castedRecord = (AgentMetricRecord) obj;
+		if (this.getLoggingTimestamp() != castedRecord.getLoggingTimestamp()) {
+			return false;
+		}
+		if (this.getTimestamp() != castedRecord.getTimestamp()) {
+			return false;
+		}
+		if (!this.getHostname().equals(castedRecord.getHostname())) {
+			return false;
+		}
+		if (!this.getMetric().equals(castedRecord.getMetric())) {
+			return false;
+		}
+		if (this.getCount() != castedRecord.getCount()) {
+			return false;
+		}
+		if (this.getTotal() != castedRecord.getTotal()) {
+			return false;
+		}
+		if (this.getP50() != castedRecord.getP50()) {
+			return false;
+		}
+		if (this.getP99() != castedRecord.getP99()) {
+			return false;
+		}
+		if (this.getMax() != castedRecord.getMax()) {
+			return false;
+		}
+		return true;
+	}
+
+	public final long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public final String getHostname() {
+		return this.hostname;
+	}
+
+	public final String getMetric() {
+		return this.metric;
+	}
+
+	public final long getCount() {
+		return this.count;
+	}
+
+	public final long getTotal() {
+		return this.total;
+	}
+
+	public final long getP50() {
+		return this.p50;
+	}
+
+	public final long getP99() {
+		return this.p99;
+	}
+
+	public final long getMax() {
+		return this.max;
+	}
+
+	public String getrecordType() {
+		return this.recordType;
+	}
+}
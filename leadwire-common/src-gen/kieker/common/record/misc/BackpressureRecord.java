@@ -0,0 +1,244 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.common.record.misc;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+
+import kieker.common.record.AbstractMonitoringRecord;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.io.IValueDeserializer;
+import kieker.common.record.io.IValueSerializer;
+import kieker.common.util.registry.IRegistry;
+
+/**
+ * A change of the degradation level of the monitoring, caused by the fill level of the writer queues: the higher the
+ * level, the more load the probes shed.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class BackpressureRecord extends AbstractMonitoringRecord implements IMonitoringRecord.Factory, IMonitoringRecord.BinaryFactory {
+	private static final long serialVersionUID = -2316785390447921867L;
+
+	/** Descriptive definition of the serialization size of the record. */
+	public static final int SIZE = TYPE_SIZE_LONG // BackpressureRecord.timestamp
+			+ TYPE_SIZE_STRING // BackpressureRecord.hostname
+			+ TYPE_SIZE_INT // BackpressureRecord.level
+			+ TYPE_SIZE_DOUBLE // BackpressureRecord.queueFillLevel
+			+ TYPE_SIZE_STRING // BackpressureRecord.recordType
+	;
+
+	public static final Class<?>[] TYPES = {
+		long.class, // BackpressureRecord.timestamp
+		String.class, // BackpressureRecord.hostname
+		int.class, // BackpressureRecord.level
+		double.class, // BackpressureRecord.queueFillLevel
+		String.class, // BackpressureRecord.recordType
+	};
+
+	/** property name array. */
+	private static final String[] PROPERTY_NAMES = {
+		"timestamp",
+		"hostname",
+		"level",
+		"queueFillLevel",
+		"recordType",
+	};
+
+	/** property declarations. */
+	private final long timestamp;
+	private final String hostname;
+	private final int level;
+	private final double queueFillLevel;
+	private final String recordType = "backpressure";
+
+	/**
+	 * Creates a new instance of this class using the given parameters.
+	 *
+	 * @param timestamp
+	 *            the time of the change
+	 * @param hostname
+	 *            hostname
+	 * @param level
+	 *            the new degradation level, 0 for none
+	 * @param queueFillLevel
+	 *            the fill level of the fullest writer queue, between 0.0 and 1.0
+	 */
+	public BackpressureRecord(final long timestamp, final String hostname, final int level, final double queueFillLevel) {
+		this.timestamp = timestamp;
+		this.hostname = hostname;
+		this.level = level;
+		this.queueFillLevel = queueFillLevel;
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 * It is recommended to use the array which is the result of a call to {@link #toArray()}.
+	 *
+	 * @param values
+	 *            The values for the record.
+	 */
+	public BackpressureRecord(final Object[] values) { // NOPMD (direct store of values)
+		AbstractMonitoringRecord.checkArray(values, TYPES);
+		this.timestamp = (Long) values[0];
+		this.hostname = (String) values[1];
+		this.level = (Integer) values[2];
+		this.queueFillLevel = (Double) values[3];
+	}
+
+	/**
+	 * This constructor converts the given array into a record.
+	 *
+	 * @param deserializer
+	 *            The deserializer to use
+	 *
+	 * @throws BufferUnderflowException
+	 *             if buffer not sufficient
+	 */
+	public BackpressureRecord(final IValueDeserializer deserializer) throws BufferUnderflowException {
+		this.timestamp = deserializer.getLong();
+		this.hostname = deserializer.getString();
+		this.level = deserializer.getInt();
+		this.queueFillLevel = deserializer.getDouble();
+		deserializer.getString(); // recordType
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object[] toArray() {
+		return new Object[] {
+			this.getTimestamp(),
+			this.getHostname(),
+			this.getLevel(),
+			this.getQueueFillLevel(),
+			this.getrecordType(),
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerStrings(final IRegistry<String> stringRegistry) { // NOPMD (generated code)
+		stringRegistry.get(this.getHostname());
+		stringRegistry.get(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void serialize(final IValueSerializer serializer) throws BufferOverflowException {
+		serializer.putLong(this.getTimestamp());
+		serializer.putString(this.getHostname());
+		serializer.putInt(this.getLevel());
+		serializer.putDouble(this.getQueueFillLevel());
+		serializer.putString(this.getrecordType());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Class<?>[] getValueTypes() {
+		return TYPES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] getValueNames() {
+		return PROPERTY_NAMES; // NOPMD
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSize() {
+		return SIZE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @deprecated This record uses the {@link kieker.common.record.IMonitoringRecord.Factory} mechanism. Hence, this method is not implemented.
+	 */
+	@Override
+	@Deprecated
+	public void initFromArray(final Object[] values) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (obj == this) {
+			return true;
+		}
+		if (obj.getClass() != this.getClass()) {
+			return false;
+		}
+
+		final BackpressureRecord castedRecord = (BackpressureRecord) obj;
+		if (this.getLoggingTimestamp() != castedRecord.getLoggingTimestamp()) {
+			return false;
+		}
+		if (this.getTimestamp() != castedRecord.getTimestamp()) {
+			return false;
+		}
+		if (!this.getHostname().equals(castedRecord.getHostname())) {
+			return false;
+		}
+		if (this.getLevel() != castedRecord.getLevel()) {
+			return false;
+		}
+		if (isNotEqual(this.getQueueFillLevel(), castedRecord.getQueueFillLevel())) {
+			return false;
+		}
+		return true;
+	}
+
+	public final long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public final String getHostname() {
+		return this.hostname;
+	}
+
+	public final int getLevel() {
+		return this.level;
+	}
+
+	public final double getQueueFillLevel() {
+		return this.queueFillLevel;
+	}
+
+	public String getrecordType() {
+		return this.recordType;
+	}
+}
@@ -24,10 +24,9 @@ import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-import com.google.gson.Gson;
-
 import kieker.common.exception.MonitoringRecordException;
 import kieker.common.record.io.IValueDeserializer;
+import kieker.common.record.io.JsonValueSerializer;
 
 /**
  * @author Andre van Hoorn, Jan Waller, Nils Christian Ehmke
@@ -531,11 +530,14 @@ public abstract class AbstractMonitoringRecord implements IMonitoringRecord {
 		}
 	}
 
-	public String toJson()   {
-
-		Gson gson = new Gson();
-		return gson.toJson(this);  
-
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The record is written by a {@link JsonValueSerializer} using the record's value names.
+	 */
+	@Override
+	public String toJson() {
+		return JsonValueSerializer.toJson(this);
 	}
 
 
@@ -0,0 +1,364 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.common.record.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import kieker.common.record.IMonitoringRecord;
+
+/**
+ * JSON value serializer implementation. Writes a record as a flat JSON object directly into a
+ * {@link ByteBuffer} using UTF-8, taking the property names from {@link IMonitoringRecord#getValueNames()}
+ * and the values from {@link IMonitoringRecord#serialize(IValueSerializer)}. No reflection is used and,
+ * apart from non-integral floating point values, no objects are allocated per record.
+ *
+ * The output mirrors the former Gson based {@code toJson()}: {@code null} strings are omitted and the
+ * logging timestamp is appended as last property. Non-finite floating point values are written as
+ * {@code null}.
+ *
+ * @author Lead Wire
+ * @since 1.14
+ */
+public class JsonValueSerializer implements IValueSerializer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int INITIAL_TO_JSON_BUFFER_SIZE = 1024;
+	private static final int MAX_TO_JSON_BUFFER_SIZE = 1 << 24;
+
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final byte[] MIN_LONG = { '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8' };
+	private static final String LOGGING_TIMESTAMP = "loggingTimestamp";
+
+	private static final ThreadLocal<JsonValueSerializer> TO_JSON_SERIALIZER = new ThreadLocal<JsonValueSerializer>() {
+		@Override
+		protected JsonValueSerializer initialValue() {
+			return new JsonValueSerializer(ByteBuffer.allocate(INITIAL_TO_JSON_BUFFER_SIZE));
+		}
+	};
+
+	private ByteBuffer buffer;
+
+	private String[] names;
+	private int index;
+	private boolean firstProperty;
+	private final byte[] digits = new byte[20];
+
+	protected JsonValueSerializer(final ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public static JsonValueSerializer create(final ByteBuffer buffer) {
+		return new JsonValueSerializer(buffer);
+	}
+
+	/**
+	 * Returns the JSON representation of the given record. Uses a per-thread buffer, so the only
+	 * allocation is the resulting string.
+	 *
+	 * @param record
+	 *            the record to serialize
+	 * @return the JSON object as string
+	 */
+	public static String toJson(final IMonitoringRecord record) {
+		final JsonValueSerializer serializer = TO_JSON_SERIALIZER.get();
+		while (true) {
+			final ByteBuffer target = serializer.buffer;
+			target.clear();
+			try {
+				serializer.serializeRecord(record);
+				return new String(target.array(), target.arrayOffset(), target.position(), UTF8);
+			} catch (final BufferOverflowException e) {
+				if (target.capacity() >= MAX_TO_JSON_BUFFER_SIZE) {
+					throw e;
+				}
+				serializer.buffer = ByteBuffer.allocate(target.capacity() * 2);
+			}
+		}
+	}
+
+	/**
+	 * Writes the given record as one JSON object at the current position of the buffer.
+	 * If the buffer overflows, its position is undefined; callers should reset it to a previously
+	 * taken mark.
+	 *
+	 * @param record
+	 *            the record to serialize
+	 * @throws BufferOverflowException
+	 *             if the record does not fit into the remaining buffer
+	 */
+	public void serializeRecord(final IMonitoringRecord record) throws BufferOverflowException {
+		this.buffer.put((byte) '{');
+		this.names = record.getValueNames();
+		this.index = 0;
+		this.firstProperty = true;
+		record.serialize(this);
+		this.writeName(LOGGING_TIMESTAMP);
+		this.writeLong(record.getLoggingTimestamp());
+		this.buffer.put((byte) '}');
+		this.names = null; // NOPMD (release reference)
+	}
+
+	/**
+	 * Writes the given record as one line of newline-delimited JSON (NDJSON).
+	 *
+	 * @param record
+	 *            the record to serialize
+	 * @throws BufferOverflowException
+	 *             if the record does not fit into the remaining buffer
+	 */
+	public void serializeRecordLine(final IMonitoringRecord record) throws BufferOverflowException {
+		this.serializeRecord(record);
+		this.buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes the given records as NDJSON lines.
+	 *
+	 * @param records
+	 *            the records to serialize
+	 * @param count
+	 *            the number of records to serialize, starting at index 0
+	 * @throws BufferOverflowException
+	 *             if the records do not fit into the remaining buffer
+	 */
+	public void serializeRecordLines(final IMonitoringRecord[] records, final int count) throws BufferOverflowException {
+		for (int i = 0; i < count; i++) {
+			this.serializeRecordLine(records[i]);
+		}
+	}
+
+	@Override
+	public void putBoolean(final boolean value) {
+		this.writeNextName();
+		this.buffer.put(value ? TRUE : FALSE);
+	}
+
+	@Override
+	public void putByte(final byte value) {
+		this.writeNextName();
+		this.writeLong(value);
+	}
+
+	@Override
+	public void putChar(final char value) {
+		this.writeNextName();
+		this.buffer.put((byte) '"');
+		this.writeEscaped(value);
+		this.buffer.put((byte) '"');
+	}
+
+	@Override
+	public void putShort(final short value) { // NOPMD
+		this.writeNextName();
+		this.writeLong(value);
+	}
+
+	@Override
+	public void putInt(final int value) {
+		this.writeNextName();
+		this.writeLong(value);
+	}
+
+	@Override
+	public void putLong(final long value) {
+		this.writeNextName();
+		this.writeLong(value);
+	}
+
+	@Override
+	public void putFloat(final float value) {
+		this.writeNextName();
+		if (!this.writeIntegralOrNull(value)) {
+			this.writeAscii(Float.toString(value));
+		}
+	}
+
+	@Override
+	public void putDouble(final double value) {
+		this.writeNextName();
+		if (!this.writeIntegralOrNull(value)) {
+			this.writeAscii(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Writes non-finite values as {@code null} and integral values without allocation.
+	 *
+	 * @return false if the value has a fractional part and has not been written
+	 */
+	private boolean writeIntegralOrNull(final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			this.buffer.put(NULL);
+			return true;
+		}
+		if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+			if ((value == 0.0d) && ((1.0d / value) < 0)) {
+				this.buffer.put((byte) '-');
+			}
+			this.writeLong((long) value);
+			this.buffer.put((byte) '.');
+			this.buffer.put((byte) '0');
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void putBytes(final byte[] value) {
+		if (value == null) {
+			this.index++;
+			return;
+		}
+		this.writeNextName();
+		this.buffer.put((byte) '[');
+		for (int i = 0; i < value.length; i++) {
+			if (i > 0) {
+				this.buffer.put((byte) ',');
+			}
+			this.writeLong(value[i]);
+		}
+		this.buffer.put((byte) ']');
+	}
+
+	@Override
+	public void putString(final String value) {
+		if (value == null) {
+			// like Gson, null values are omitted
+			this.index++;
+			return;
+		}
+		this.writeNextName();
+		this.writeString(value);
+	}
+
+	private void writeNextName() {
+		final String[] valueNames = this.names;
+		final int i = this.index++;
+		if ((valueNames != null) && (i < valueNames.length)) {
+			this.writeName(valueNames[i]);
+		} else {
+			this.writeName("value" + i);
+		}
+	}
+
+	private void writeName(final String name) {
+		if (this.firstProperty) {
+			this.firstProperty = false;
+		} else {
+			this.buffer.put((byte) ',');
+		}
+		this.writeString(name);
+		this.buffer.put((byte) ':');
+	}
+
+	private void writeString(final String value) {
+		final ByteBuffer target = this.buffer;
+		target.put((byte) '"');
+		final int length = value.length();
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			if ((c >= 0x20) && (c < 0x80) && (c != '"') && (c != '\\')) {
+				target.put((byte) c);
+			} else if (Character.isHighSurrogate(c) && ((i + 1) < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				target.put((byte) (0xF0 | (codePoint >> 18)));
+				target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				target.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				this.writeEscaped(c);
+			}
+		}
+		target.put((byte) '"');
+	}
+
+	/**
+	 * Writes a single UTF-16 code unit, escaped where required by JSON. Unpaired surrogates are
+	 * replaced by their {@code \\u} escape.
+	 */
+	private void writeEscaped(final char c) {
+		final ByteBuffer target = this.buffer;
+		switch (c) {
+		case '"':
+			target.put((byte) '\\').put((byte) '"');
+			break;
+		case '\\':
+			target.put((byte) '\\').put((byte) '\\');
+			break;
+		case '\n':
+			target.put((byte) '\\').put((byte) 'n');
+			break;
+		case '\r':
+			target.put((byte) '\\').put((byte) 'r');
+			break;
+		case '\t':
+			target.put((byte) '\\').put((byte) 't');
+			break;
+		case '\b':
+			target.put((byte) '\\').put((byte) 'b');
+			break;
+		case '\f':
+			target.put((byte) '\\').put((byte) 'f');
+			break;
+		default:
+			if ((c < 0x20) || Character.isSurrogate(c)) {
+				target.put((byte) '\\').put((byte) 'u');
+				target.put(HEX[(c >> 12) & 0xF]).put(HEX[(c >> 8) & 0xF]);
+				target.put(HEX[(c >> 4) & 0xF]).put(HEX[c & 0xF]);
+			} else if (c < 0x80) {
+				target.put((byte) c);
+			} else if (c < 0x800) {
+				target.put((byte) (0xC0 | (c >> 6)));
+				target.put((byte) (0x80 | (c & 0x3F)));
+			} else {
+				target.put((byte) (0xE0 | (c >> 12)));
+				target.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				target.put((byte) (0x80 | (c & 0x3F)));
+			}
+			break;
+		}
+	}
+
+	private void writeLong(final long value) {
+		if (value == Long.MIN_VALUE) {
+			this.buffer.put(MIN_LONG);
+			return;
+		}
+		long remainder = value;
+		if (remainder < 0) {
+			this.buffer.put((byte) '-');
+			remainder = -remainder;
+		}
+		int pos = this.digits.length;
+		do {
+			this.digits[--pos] = (byte) ('0' + (remainder % 10));
+			remainder /= 10;
+		} while (remainder != 0);
+		this.buffer.put(this.digits, pos, this.digits.length - pos);
+	}
+
+	private void writeAscii(final String value) {
+		final int length = value.length();
+		for (int i = 0; i < length; i++) {
+			this.buffer.put((byte) value.charAt(i));
+		}
+	}
+}
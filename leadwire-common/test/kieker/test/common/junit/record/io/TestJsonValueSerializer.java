@@ -0,0 +1,120 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.test.common.junit.record.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.io.JsonValueSerializer;
+import kieker.common.record.jdbc.JdbcOperationExecutionRecord;
+import kieker.common.record.system.CPUUtilizationRecord;
+
+import kieker.test.common.junit.AbstractKiekerTest;
+
+/**
+ * Compares the output of the {@link JsonValueSerializer} with the reflective Gson representation.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class TestJsonValueSerializer extends AbstractKiekerTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final JsonParser parser = new JsonParser();
+
+	public TestJsonValueSerializer() {
+		// empty default constructor
+	}
+
+	@Test
+	public void testOperationExecutionRecordMatchesGson() {
+		final OperationExecutionRecord record = new OperationExecutionRecord("public void a.B.c(int)", "session", 42L, 1L, 2L, "host", 0, 1);
+		record.setLoggingTimestamp(1234567890123L);
+		this.assertSameAsGson(record);
+	}
+
+	@Test
+	public void testEscapedStringsMatchGson() {
+		final JdbcOperationExecutionRecord record = new JdbcOperationExecutionRecord("SELECT \"a\"\n\tFROM b WHERE c = 'é€😀\\'", "s",
+				Long.MIN_VALUE, -1L, Long.MAX_VALUE, "h\u0001", Integer.MIN_VALUE, Integer.MAX_VALUE);
+		this.assertSameAsGson(record);
+	}
+
+	@Test
+	public void testDoublesMatchGson() {
+		final CPUUtilizationRecord record = new CPUUtilizationRecord(1L, "host", "cpu0", 0.25, 1.0, 0.0, 1e-7, 123456.789, 3.0e20, -0.5);
+		this.assertSameAsGson(record);
+	}
+
+	@Test
+	public void testNonFiniteDoublesAreNull() {
+		final CPUUtilizationRecord record = new CPUUtilizationRecord(1L, "host", "cpu0", Double.NaN, Double.POSITIVE_INFINITY, 0, 0, 0, 0, 0);
+		final JsonObject json = this.parser.parse(record.toJson()).getAsJsonObject();
+		Assert.assertTrue(json.get("user").isJsonNull());
+		Assert.assertTrue(json.get("system").isJsonNull());
+	}
+
+	@Test
+	public void testNdjsonLines() {
+		final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		final JsonValueSerializer serializer = JsonValueSerializer.create(buffer);
+		final IMonitoringRecord[] records = {
+			new OperationExecutionRecord("a", "s", 1L, 1L, 2L, "h", 0, 1),
+			new OperationExecutionRecord("b", "s", 1L, 2L, 3L, "h", 1, 2),
+		};
+		serializer.serializeRecordLines(records, records.length);
+
+		final String[] lines = new String(buffer.array(), 0, buffer.position(), UTF8).split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertEquals("a", this.parser.parse(lines[0]).getAsJsonObject().get("operationSignature").getAsString());
+		Assert.assertEquals("b", this.parser.parse(lines[1]).getAsJsonObject().get("operationSignature").getAsString());
+	}
+
+	@Test(expected = BufferOverflowException.class)
+	public void testOverflow() {
+		final JsonValueSerializer serializer = JsonValueSerializer.create(ByteBuffer.allocate(16));
+		serializer.serializeRecord(new OperationExecutionRecord("a", "s", 1L, 1L, 2L, "h", 0, 1));
+	}
+
+	@Test
+	public void testToJsonGrowsBuffer() {
+		final StringBuilder sql = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			sql.append("SELECT 1;");
+		}
+		final JdbcOperationExecutionRecord record = new JdbcOperationExecutionRecord(sql.toString(), "s", 1L, 1L, 2L, "h", 0, 1);
+		this.assertSameAsGson(record);
+	}
+
+	private void assertSameAsGson(final IMonitoringRecord record) {
+		final JsonElement expected = this.parser.parse(new Gson().toJson(record));
+		final JsonElement actual = this.parser.parse(record.toJson());
+		Assert.assertEquals(expected, actual);
+	}
+}
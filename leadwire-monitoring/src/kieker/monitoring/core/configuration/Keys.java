@@ -52,6 +52,8 @@ interface Keys { // NOPMD NOCS (static list)
 	public static final String ACTIVATE_JMX_DOMAIN = PREFIX + "jmx.domain";
 	public static final String ACTIVATE_JMX_CONTROLLER = PREFIX + "jmx.MonitoringController";
 	public static final String ACTIVATE_JMX_CONTROLLER_NAME = PREFIX + "jmx.MonitoringController.name";
+	public static final String ACTIVATE_JMX_AGENT_METRICS = PREFIX + "jmx.AgentMetrics";
+	public static final String ACTIVATE_JMX_AGENT_METRICS_NAME = PREFIX + "jmx.AgentMetrics.name";
 	public static final String ACTIVATE_JMX_REMOTE = PREFIX + "jmx.remote";
 	public static final String ACTIVATE_JMX_REMOTE_PORT = PREFIX + "jmx.remote.port";
 	public static final String ACTIVATE_JMX_REMOTE_NAME = PREFIX + "jmx.remote.name";
@@ -79,6 +81,30 @@ interface Keys { // NOPMD NOCS (static list)
 	public static final String RUM_ENABLE = PREFIX + "rumEnable";
 	public static final String SQL_THRESHOLD = PREFIX + "sqlThreshold";
 	public static final String METHOD_THRESHOLD = PREFIX + "methodThreshold";
+	public static final String SQL_NORMALIZATION = PREFIX + "sqlNormalization";
+	public static final String SQL_FINGERPRINT_CACHE_SIZE = PREFIX + "sqlFingerprintCacheSize";
+	public static final String SQL_BACKSLASH_ESCAPES = PREFIX + "sqlBackslashEscapes";
+	public static final String ADAPTIVE_THRESHOLD_ENABLED = PREFIX + "adaptiveThreshold.enabled";
+	public static final String ADAPTIVE_THRESHOLD_METHOD_PERCENTILE = PREFIX + "adaptiveThreshold.methodPercentile";
+	public static final String ADAPTIVE_THRESHOLD_SQL_PERCENTILE = PREFIX + "adaptiveThreshold.sqlPercentile";
+	public static final String ADAPTIVE_THRESHOLD_MIN_SAMPLES = PREFIX + "adaptiveThreshold.minSamples";
+	public static final String ADAPTIVE_THRESHOLD_MAX_OPERATIONS = PREFIX + "adaptiveThreshold.maxOperations";
+	public static final String ADAPTIVE_THRESHOLD_EXPORT_INTERVAL = PREFIX + "adaptiveThreshold.exportInterval";
+	public static final String AGGREGATION_ENABLED = PREFIX + "aggregation.enabled";
+	public static final String AGGREGATION_STRIPES = PREFIX + "aggregation.stripes";
+	public static final String TRACE_SAMPLING_RATE = PREFIX + "traceSampling.rate";
+	public static final String TRACE_SAMPLING_ENDPOINT_QUOTA = PREFIX + "traceSampling.endpointQuota";
+	public static final String TRACE_SAMPLING_QUEUE_FILL_THRESHOLD = PREFIX + "traceSampling.queueFillThreshold";
+	public static final String TRACE_SAMPLING_TAIL_ENABLED = PREFIX + "traceSampling.tail.enabled";
+	public static final String TRACE_SAMPLING_TAIL_THRESHOLD = PREFIX + "traceSampling.tail.threshold";
+	public static final String TRACE_SAMPLING_TAIL_MAX_RECORDS = PREFIX + "traceSampling.tail.maxRecords";
+	public static final String BACKPRESSURE_ENABLED = PREFIX + "backpressure.enabled";
+	public static final String BACKPRESSURE_HIGH_WATERMARK = PREFIX + "backpressure.highWatermark";
+	public static final String BACKPRESSURE_LOW_WATERMARK = PREFIX + "backpressure.lowWatermark";
+	public static final String BACKPRESSURE_INTERVAL = PREFIX + "backpressure.interval";
+	public static final String BACKPRESSURE_SHED_PROBES = PREFIX + "backpressure.shedProbes";
+	public static final String SELF_MONITORING_ENABLED = PREFIX + "selfMonitoring.enabled";
+	public static final String SELF_MONITORING_INTERVAL = PREFIX + "selfMonitoring.interval";
 	public static final String JVM_SAMPL_ENABLE = PREFIX + "jvmSamplingEnable";
 	public static final String SYS_SAMPL_ENABLE = PREFIX + "sysSamplingEnable";
 	public static final String SAMPL_PERIOD = PREFIX + "samplingPeriod";
@@ -0,0 +1,146 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.controller;
+
+/**
+ * The backpressure signal of the {@link WriterController}: a degradation level derived from the fill level of the
+ * writer queues, which tells the probes how much load to shed before they pay for timing, string building and record
+ * allocation. Each level includes the measures of the levels below it:
+ *
+ * <ol>
+ * <li>{@link #RAISED_THRESHOLDS}: the recording thresholds are raised by a factor of 4 per level.</li>
+ * <li>{@link #REDUCED_SAMPLING}: the trace sampling rates are divided by 4 per level from this level on.</li>
+ * <li>{@link #SHEDDING_PROBES}: the low-value probes are deactivated.</li>
+ * </ol>
+ *
+ * <p>
+ * The level is updated periodically with hysteresis: it rises by one per update while the queue is filled at least
+ * to the high watermark, drops by one per update while the queue is filled below the low watermark, and stays as it
+ * is in between.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class Backpressure {
+
+	/** No load is shed. */
+	public static final int NORMAL = 0;
+	/** The recording thresholds are raised. */
+	public static final int RAISED_THRESHOLDS = 1;
+	/** Additionally, fewer traces are sampled. */
+	public static final int REDUCED_SAMPLING = 2;
+	/** Additionally, the low-value probes are deactivated. */
+	public static final int SHEDDING_PROBES = 3;
+
+	/** A signal which always stays {@link #NORMAL}, used if the backpressure is disabled. */
+	public static final Backpressure NONE = new Backpressure(1.0, 1.0);
+
+	private final double highWatermark;
+	private final double lowWatermark;
+
+	private volatile int level;
+	private volatile double queueFillLevel;
+
+	/**
+	 * @param highWatermark
+	 *            the fill level from which on the level rises
+	 * @param lowWatermark
+	 *            the fill level below which the level drops
+	 */
+	public Backpressure(final double highWatermark, final double lowWatermark) {
+		this.highWatermark = highWatermark;
+		this.lowWatermark = Math.min(lowWatermark, highWatermark);
+	}
+
+	/**
+	 * Adapts the level to the given fill level. Must only be called by a single thread.
+	 *
+	 * @param fillLevel
+	 *            the current fill level of the fullest writer queue
+	 * @return whether the level has changed
+	 */
+	public boolean update(final double fillLevel) {
+		this.queueFillLevel = fillLevel;
+		final int current = this.level;
+		if ((fillLevel >= this.highWatermark) && (current < SHEDDING_PROBES)) {
+			this.level = current + 1;
+			return true;
+		}
+		if ((fillLevel < this.lowWatermark) && (current > NORMAL)) {
+			this.level = current - 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the current degradation level, between {@link #NORMAL} and {@link #SHEDDING_PROBES}
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	/**
+	 * @return the fill level seen by the last update
+	 */
+	public double getQueueFillLevel() {
+		return this.queueFillLevel;
+	}
+
+	/**
+	 * @return the number of bits the durations are shifted right by before they are compared with a recording
+	 *         threshold, i.e., thresholds are raised by a factor of 4 per level
+	 */
+	public int getThresholdShift() {
+		return this.level << 1;
+	}
+
+	/**
+	 * @return the factor applied to the trace sampling rates
+	 */
+	public double getSamplingFactor() {
+		final int current = this.level;
+		if (current < REDUCED_SAMPLING) {
+			return 1.0;
+		}
+		return 1.0 / (1 << ((current - RAISED_THRESHOLDS) << 1));
+	}
+
+	/**
+	 * @return whether the low-value probes are deactivated
+	 */
+	public boolean isSheddingProbes() {
+		return this.level >= SHEDDING_PROBES;
+	}
+
+	@Override
+	public String toString() {
+		if (this == NONE) {
+			return "Backpressure disabled";
+		}
+		final StringBuilder builder = new StringBuilder()
+			.append("Backpressure level: ")
+			.append(this.level)
+			.append(" (watermarks: ")
+			.append(this.lowWatermark)
+			.append(" - ")
+			.append(this.highWatermark)
+			.append(')');
+		return builder.toString();
+	}
+}
@@ -18,6 +18,9 @@ package kieker.monitoring.core.controller;
 
 import java.util.Map;
 
+import kieker.monitoring.core.registry.TraceSampler;
+import kieker.monitoring.core.threshold.AdaptiveThresholds;
+
 /**
  * @author Jan Waller, Robert von Massow
  *
@@ -54,4 +57,25 @@ public interface IMonitoringController extends
 	public boolean sendMetadataAsRecord();
 
 	Map<Object, String> getStatementSqlMap();
+
+	/**
+	 * @return the recording thresholds of the monitored methods
+	 *
+	 * @since 1.14
+	 */
+	AdaptiveThresholds getMethodThresholds();
+
+	/**
+	 * @return the recording thresholds of the monitored SQL statements
+	 *
+	 * @since 1.14
+	 */
+	AdaptiveThresholds getSqlThresholds();
+
+	/**
+	 * @return the sampler deciding which traces are recorded
+	 *
+	 * @since 1.14
+	 */
+	TraceSampler getTraceSampler();
 }
@@ -25,6 +25,9 @@ import java.util.List;
  */
 public interface IProbeController {
 
+	/** Returned by {@link #getSignatureId(String)} if no id could be assigned to a signature. */
+	public static final int NO_SIGNATURE_ID = -1;
+
 	/**
 	 * Activates a probe.
 	 * 
@@ -63,6 +66,47 @@ public interface IProbeController {
 	 */
 	public boolean isProbeActivated(final String signature);
 
+	/**
+	 * Returns a stable id for the given signature, which can be passed to {@link #isProbeActivated(int, String)}.
+	 * Ids are never reused, even if the pattern list changes.
+	 * 
+	 * @param signature
+	 *            signature of the probe
+	 * @return
+	 *         a non-negative id, or {@link #NO_SIGNATURE_ID} if the configured cache size has been exceeded
+	 * 
+	 * @since 1.14
+	 */
+	public int getSignatureId(final String signature);
+
+	/**
+	 * Tests if a probe is active, caching the decision per signature id rather than per signature string.
+	 * 
+	 * This test is ignorant of the fact whether monitoring itself is enabled/disabled/terminated.
+	 * 
+	 * @param signatureId
+	 *            id of the signature as returned by {@link #getSignatureId(String)}
+	 * @param signature
+	 *            signature of the probe
+	 * @return
+	 *         true if the probe with this signature is active
+	 * 
+	 * @since 1.14
+	 */
+	public boolean isProbeActivated(final int signatureId, final String signature);
+
+	/**
+	 * Returns the generation of the probe pattern list. The generation changes whenever a changed pattern list
+	 * becomes effective, i.e., a decision of {@link #isProbeActivated(String)} remains valid as long as the
+	 * generation stays the same.
+	 * 
+	 * @return
+	 *         the current pattern generation
+	 * 
+	 * @since 1.14
+	 */
+	public int getProbePatternGeneration();
+
 	/**
 	 * Overwrites the current list of patterns with a new pattern list.
 	 * 
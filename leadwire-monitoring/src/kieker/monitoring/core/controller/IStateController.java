@@ -190,6 +190,28 @@ public interface IStateController {
 	 */
 	
 	long getMethodThreshold();
+
+	/**
+	 * returns whether the literals of the recorded sql statements are replaced by placeholders
+	 *
+	 * @since 1.14
+	 */
+	boolean isSqlNormalizationEnabled();
+
+	/**
+	 * returns the maximum number of sql statements whose normalized form is cached
+	 *
+	 * @since 1.14
+	 */
+	int getSqlFingerprintCacheSize();
+
+	/**
+	 * returns whether a backslash escapes the next character inside the string literals of sql statements (as in MySQL),
+	 * instead of being an ordinary character (as in standard sql)
+	 *
+	 * @since 1.14
+	 */
+	boolean isSqlBackslashEscapesEnabled();
 	
 	/**
 	 * returns the app uuid
@@ -46,6 +46,44 @@ public interface IWriterController extends IMonitoringRecordReceiver {
 	@Override
 	public abstract boolean newMonitoringRecord(IMonitoringRecord record);
 
+	/**
+	 * Hands the records staged by the calling thread over to the writer. Does nothing unless record staging is enabled
+	 * (see {@link WriterController#RECORD_STAGING_BUFFER_SIZE}). Probes should call this method when the calling thread
+	 * has finished a trace.
+	 *
+	 * @return true on success; false in case of an error.
+	 *
+	 * @since 1.14
+	 */
+	public abstract boolean flushStagedRecords();
+
+	/**
+	 * Returns the fill level of the fullest writer queue, e.g., to reduce the number of traces recorded while the writer
+	 * cannot keep up. The value is an approximation, since the queues are used concurrently.
+	 *
+	 * @return the fill level between 0.0 (empty) and 1.0 (full)
+	 *
+	 * @since 1.14
+	 */
+	public abstract double getQueueFillLevel();
+
+	/**
+	 * Returns the backpressure signal derived from the queue fill level, which probes use to shed load while the writer
+	 * cannot keep up.
+	 *
+	 * @return the backpressure signal, {@link Backpressure#NONE} if disabled
+	 *
+	 * @since 1.14
+	 */
+	public abstract Backpressure getBackpressure();
+
+	/**
+	 * @return the current degradation level (see {@link Backpressure}), 0 if none
+	 *
+	 * @since 1.14
+	 */
+	public abstract int getBackpressureLevel();
+
 	/**
 	 * Waits for the termination of the monitoring controller. The termination must be previously triggered by {@link MonitoringController#terminateMonitoring()}.
 	 *
@@ -35,6 +35,7 @@ import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
 
 /**
  * @author Jan Waller
@@ -47,6 +48,7 @@ public final class JMXController extends AbstractController implements IJMXContr
 	private final boolean jmxEnabled;
 	private final String domain;
 	private final ObjectName controllerObjectName;
+	private final ObjectName agentMetricsObjectName;
 	private final ObjectName serverObjectName;
 	private final JMXConnectorServer server;
 	private final ServerNotificationListener serverNotificationListener;
@@ -68,6 +70,7 @@ public final class JMXController extends AbstractController implements IJMXContr
 	protected JMXController(final Configuration configuration) {
 		super(configuration);
 		ObjectName controllerObjectNameTmp = null;
+		ObjectName agentMetricsObjectNameTmp = null;
 		ObjectName serverObjectNameTmp = null;
 		JMXConnectorServer serverTmp = null;
 		ServerNotificationListener serverNotificationListenerTmp = null;
@@ -115,11 +118,20 @@ public final class JMXController extends AbstractController implements IJMXContr
 					LOG.warn("Failed to initialize MonitoringController MBean", e);
 				}
 			}
+			if (configuration.getBooleanProperty(ConfigurationFactory.ACTIVATE_JMX_AGENT_METRICS)) {
+				try {
+					agentMetricsObjectNameTmp = new ObjectName(this.domain, "type",
+							configuration.getStringProperty(ConfigurationFactory.ACTIVATE_JMX_AGENT_METRICS_NAME, "AgentMetrics"));
+				} catch (final Exception e) { // NOPMD NOCS (IllegalCatchCheck)
+					LOG.warn("Failed to initialize AgentMetrics MBean", e);
+				}
+			}
 		}
 		this.usedJMXImplementation = usedJMXImplementationTmp;
 		this.port = portTmp;
 		this.server = serverTmp;
 		this.controllerObjectName = controllerObjectNameTmp;
+		this.agentMetricsObjectName = agentMetricsObjectNameTmp;
 		this.serverObjectName = serverObjectNameTmp;
 		this.serverNotificationListener = serverNotificationListenerTmp;
 	}
@@ -147,6 +159,13 @@ public final class JMXController extends AbstractController implements IJMXContr
 						LOG.warn("Unable to register Monitoring Controller MBean", e);
 					}
 				}
+				if (this.agentMetricsObjectName != null) {
+					try {
+						mbs.registerMBean(AgentMetrics.INSTANCE, this.agentMetricsObjectName);
+					} catch (final Exception e) { // NOPMD NOCS (IllegalCatchCheck)
+						LOG.warn("Unable to register AgentMetrics MBean", e);
+					}
+				}
 				if ((this.server != null) && this.server.isActive()) {
 					this.server.addNotificationListener(this.serverNotificationListener, null, null);
 				}
@@ -167,6 +186,13 @@ public final class JMXController extends AbstractController implements IJMXContr
 						LOG.error("Failed to terminate MBean", e);
 					}
 				}
+				if (this.agentMetricsObjectName != null) {
+					try {
+						mbs.unregisterMBean(this.agentMetricsObjectName);
+					} catch (final Exception e) { // NOPMD NOCS (IllegalCatchCheck)
+						LOG.error("Failed to terminate MBean", e);
+					}
+				}
 				if (this.serverObjectName != null) {
 					try {
 						mbs.unregisterMBean(this.serverObjectName);
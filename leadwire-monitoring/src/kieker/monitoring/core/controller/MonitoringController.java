@@ -29,11 +29,15 @@ import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.latency.LatencyHistogramRecord;
 import kieker.common.record.misc.KiekerMetadataRecord;
 import kieker.common.util.Version;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.core.sampler.ISampler;
 import kieker.monitoring.core.sampler.ScheduledSamplerJob;
+import kieker.monitoring.core.threshold.AdaptiveThresholds;
 import kieker.monitoring.sampler.mxbean.MemorySampler;
 import kieker.monitoring.sampler.mxbean.ThreadsStatusSampler;
 import kieker.monitoring.sampler.sigar.ISigarSamplerFactory;
@@ -58,6 +62,11 @@ public final class MonitoringController extends AbstractController implements IM
  * before all records (and particularly mapping enries) are written. #1634
  */
 private static final long SHUTDOWN_DELAY_MILLIS = 1000;
+private static final int DEFAULT_ADAPTIVE_THRESHOLD_EXPORT_INTERVAL = 60;
+/** the interval in seconds of the endpoint quotas of the trace sampling. */
+private static final long TRACE_SAMPLER_INTERVAL = 1;
+/** the default interval in seconds in which the self-monitoring metrics are exported. */
+private static final int DEFAULT_SELF_MONITORING_INTERVAL = 10;
 
 private final StateController stateController;
 private final SamplingController samplingController;
@@ -66,6 +75,9 @@ private final WriterController writerController;
 private final TimeSourceController timeSourceController;
 private final ProbeController probeController;
 private final Map<Object, String> statementSqlMap;
+private final AdaptiveThresholds methodThresholds;
+private final AdaptiveThresholds sqlThresholds;
+private final TraceSampler traceSampler;
 
 /** Whether or not the {@link IMonitoringRecord#setLoggingTimestamp(long)} is automatically set. */
 private final boolean autoSetLoggingTimestamp;
@@ -80,9 +92,16 @@ private MonitoringController(final Configuration configuration) {
 	this.stateController.setStateListener(this);
 	this.timeSourceController = new TimeSourceController(configuration);
 	this.probeController = new ProbeController(configuration);
+	final Backpressure backpressure = this.writerController.getBackpressure();
+	this.probeController.setBackpressure(backpressure);
 	this.autoSetLoggingTimestamp = configuration.getBooleanProperty(ConfigurationFactory.AUTO_SET_LOGGINGTSTAMP);
 	//this.statementSqlMap = Collections.synchronizedMap(new WeakHashMap<Object, String>());
 	this.statementSqlMap = new MapMaker().concurrencyLevel(16).weakKeys().makeMap();
+	this.methodThresholds = AdaptiveThresholds.create(configuration, LatencyHistogramRecord.KIND_METHOD,
+			ConfigurationFactory.ADAPTIVE_THRESHOLD_METHOD_PERCENTILE, this.stateController.getMethodThreshold(), backpressure);
+	this.sqlThresholds = AdaptiveThresholds.create(configuration, LatencyHistogramRecord.KIND_SQL,
+			ConfigurationFactory.ADAPTIVE_THRESHOLD_SQL_PERCENTILE, this.stateController.getSqlThreshold(), backpressure);
+	this.traceSampler = TraceSampler.create(configuration, backpressure);
 
 	 
 }
@@ -190,6 +209,25 @@ public static final MonitoringController createInstance(final Configuration conf
 	//monitoringController.schedulePeriodicSampler(jdbcSampler, samplingOffset, samplingPeriod, TimeUnit.SECONDS);
 
 	}	
+
+	final long exportInterval = configuration.getIntProperty(ConfigurationFactory.ADAPTIVE_THRESHOLD_EXPORT_INTERVAL, DEFAULT_ADAPTIVE_THRESHOLD_EXPORT_INTERVAL);
+	if (monitoringController.methodThresholds.isTracking() && (exportInterval > 0)) {
+		monitoringController.schedulePeriodicSampler(monitoringController.methodThresholds, exportInterval, exportInterval, TimeUnit.SECONDS);
+		monitoringController.schedulePeriodicSampler(monitoringController.sqlThresholds, exportInterval, exportInterval, TimeUnit.SECONDS);
+	}
+	if (monitoringController.traceSampler.isAdaptive()) {
+		monitoringController.schedulePeriodicSampler(monitoringController.traceSampler, TRACE_SAMPLER_INTERVAL, TRACE_SAMPLER_INTERVAL, TimeUnit.SECONDS);
+	}
+	if (configuration.getBooleanProperty(ConfigurationFactory.SELF_MONITORING_ENABLED, false)) {
+		final long selfMonitoringInterval = configuration.getIntProperty(ConfigurationFactory.SELF_MONITORING_INTERVAL, DEFAULT_SELF_MONITORING_INTERVAL);
+		if (selfMonitoringInterval > 0) {
+			AgentMetrics.INSTANCE.setEnabled(true);
+			monitoringController.schedulePeriodicSampler(AgentMetrics.INSTANCE, selfMonitoringInterval, selfMonitoringInterval, TimeUnit.SECONDS);
+		} else {
+			LOG.warn("Invalid value '" + selfMonitoringInterval + "' for " + ConfigurationFactory.SELF_MONITORING_INTERVAL
+					+ "; self-monitoring is disabled");
+		}
+	}
 		
 
 	 
@@ -279,6 +317,10 @@ public final String toString() {
 			.append(this.timeSourceController.toString())
 			.append(this.probeController.toString())
 			.append(this.writerController.toString())
+			.append("\n\t").append(this.methodThresholds.toString())
+			.append("\n\t").append(this.sqlThresholds.toString())
+			.append("\n\t").append(this.traceSampler.toString())
+			.append("\n\t").append(AgentMetrics.INSTANCE.toString())
 			.append("\n\tAutomatic assignment of logging timestamps: '")
 			.append(this.autoSetLoggingTimestamp)
 			.append("'\n")
@@ -397,6 +439,26 @@ public final boolean newMonitoringRecord(final IMonitoringRecord record) {
 	return this.writerController.newMonitoringRecord(record);
 }
 
+@Override
+public final boolean flushStagedRecords() {
+	return this.writerController.flushStagedRecords();
+}
+
+@Override
+public final double getQueueFillLevel() {
+	return this.writerController.getQueueFillLevel();
+}
+
+@Override
+public final Backpressure getBackpressure() {
+	return this.writerController.getBackpressure();
+}
+
+@Override
+public final int getBackpressureLevel() {
+	return this.writerController.getBackpressureLevel();
+}
+
 @Override
 public void waitForTermination(final long timeoutInMs) throws InterruptedException {
 	this.writerController.waitForTermination(timeoutInMs);
@@ -437,6 +499,21 @@ public boolean isProbeActivated(final String signature) {
 	return this.probeController.isProbeActivated(signature);
 }
 
+@Override
+public int getSignatureId(final String signature) {
+	return this.probeController.getSignatureId(signature);
+}
+
+@Override
+public boolean isProbeActivated(final int signatureId, final String signature) {
+	return this.probeController.isProbeActivated(signatureId, signature);
+}
+
+@Override
+public int getProbePatternGeneration() {
+	return this.probeController.getProbePatternGeneration();
+}
+
 @Override
 public void setProbePatternList(final List<String> patternList) {
 	this.probeController.setProbePatternList(patternList);
@@ -490,6 +567,21 @@ private static final class LazyHolder { // NOCS
 	public long getMethodThreshold() {
 		return this.stateController.getMethodThreshold();
 	}
+
+	@Override
+	public boolean isSqlNormalizationEnabled() {
+		return this.stateController.isSqlNormalizationEnabled();
+	}
+
+	@Override
+	public int getSqlFingerprintCacheSize() {
+		return this.stateController.getSqlFingerprintCacheSize();
+	}
+
+	@Override
+	public boolean isSqlBackslashEscapesEnabled() {
+		return this.stateController.isSqlBackslashEscapesEnabled();
+	}
 	
 	@Override
 	public String getAppUuid() {
@@ -500,6 +592,21 @@ private static final class LazyHolder { // NOCS
 	public Map<Object, String> getStatementSqlMap() {
 		return statementSqlMap;
 	}
+
+	@Override
+	public AdaptiveThresholds getMethodThresholds() {
+		return this.methodThresholds;
+	}
+
+	@Override
+	public AdaptiveThresholds getSqlThresholds() {
+		return this.sqlThresholds;
+	}
+
+	@Override
+	public TraceSampler getTraceSampler() {
+		return this.traceSampler;
+	}
 	
 	
 
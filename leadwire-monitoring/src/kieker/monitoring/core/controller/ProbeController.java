@@ -31,13 +31,13 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import kieker.common.configuration.Configuration;
@@ -46,6 +46,7 @@ import kieker.common.logging.LogFactory;
 import kieker.common.util.map.BoundedConcurrentHashMap;
 import kieker.common.util.map.BoundedConcurrentHashMap.BoundedCacheBehaviour;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.signaturePattern.CompiledPatternMatcher;
 import kieker.monitoring.core.signaturePattern.InvalidPatternException;
 import kieker.monitoring.core.signaturePattern.PatternEntry;
 import kieker.monitoring.core.signaturePattern.PatternParser;
@@ -68,8 +69,21 @@ public class ProbeController extends AbstractController implements IProbeControl
 	private final int boundedCacheBehaviour;
 	private final ConfigFileReader configFileReader;
 
-	private final ConcurrentMap<String, Boolean> signatureCache;
-	private final List<PatternEntry> patternList = new ArrayList<PatternEntry>(); // only accessed synchronized
+	private final BoundedConcurrentHashMap.BoundedCacheBehaviour overflowCacheBehaviour;
+	private final int maxSignatureIds;
+
+	// signature ids are never reassigned, so that probes may keep them across pattern changes
+	private final ConcurrentMap<String, Integer> signatureIds = new ConcurrentHashMap<String, Integer>();
+	private final AtomicInteger nextSignatureId = new AtomicInteger();
+
+	// copy-on-write: only modified synchronized, the compiled matcher is published via the volatile field below
+	private List<PatternEntry> patternList = new ArrayList<PatternEntry>();
+	private int patternGeneration;
+	private volatile MatcherHolder matcherHolder;
+
+	/** the probes deactivated while the writer sheds load. */
+	private final List<Pattern> shedPatterns;
+	private volatile Backpressure backpressure = Backpressure.NONE;
 
 	/**
 	 * Creates a new instance of this class using the given configuration to initialize the class.
@@ -123,11 +137,15 @@ public class ProbeController extends AbstractController implements IProbeControl
 					}
 					cacheSize = 100;
 				}
-				this.signatureCache = new BoundedConcurrentHashMap<String, Boolean>(behaviour, cacheSize);
+				// the first cacheSize signatures get ids, decisions for further signatures are cached by string
+				this.overflowCacheBehaviour = behaviour;
+				this.maxSignatureIds = cacheSize;
 			} else {
 				// Unbounded cache
-				this.signatureCache = new ConcurrentHashMap<String, Boolean>();
+				this.overflowCacheBehaviour = null; // NOPMD (null)
+				this.maxSignatureIds = Integer.MAX_VALUE;
 			}
+			this.matcherHolder = new MatcherHolder(new CompiledPatternMatcher(this.patternList, 0), this.newOverflowCache());
 			this.configFileReader = new ConfigFileReader(this.configFilePathname);
 			// run once to get the initial file contents
 			this.configFileReader.readFile(true);
@@ -138,8 +156,49 @@ public class ProbeController extends AbstractController implements IProbeControl
 			this.maxCacheSize = 0;
 			this.boundedCacheBehaviour = 0;
 			this.configFileReader = null; // NOPMD (null)
-			this.signatureCache = new ConcurrentHashMap<String, Boolean>();
+			this.overflowCacheBehaviour = null; // NOPMD (null)
+			this.maxSignatureIds = Integer.MAX_VALUE;
+			this.matcherHolder = new MatcherHolder(new CompiledPatternMatcher(this.patternList, 0), null);
+		}
+		this.shedPatterns = parseShedPatterns(configuration.getStringProperty(ConfigurationFactory.BACKPRESSURE_SHED_PROBES));
+	}
+
+	private static List<Pattern> parseShedPatterns(final String strPatterns) {
+		final List<Pattern> patterns = new ArrayList<Pattern>();
+		for (final String strPattern : strPatterns.split(";")) {
+			if (strPattern.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				patterns.add(PatternParser.parseToPattern(strPattern.trim()));
+			} catch (final InvalidPatternException ex) {
+				LOG.error("'" + strPattern + "' is not a valid pattern.", ex);
+			}
+		}
+		return patterns;
+	}
+
+	/**
+	 * Sets the backpressure signal of the writer. While it is shedding probes, the probes matching the patterns configured
+	 * in {@link ConfigurationFactory#BACKPRESSURE_SHED_PROBES} are deactivated.
+	 *
+	 * @param backpressure
+	 *            the backpressure signal
+	 */
+	void setBackpressure(final Backpressure backpressure) {
+		this.backpressure = backpressure;
+	}
+
+	private boolean isShed(final String signature) {
+		if (this.shedPatterns.isEmpty() || !this.backpressure.isSheddingProbes()) {
+			return false;
+		}
+		for (final Pattern pattern : this.shedPatterns) {
+			if (pattern.matcher(signature).matches()) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 	@Override
@@ -216,18 +275,70 @@ public class ProbeController extends AbstractController implements IProbeControl
 	 */
 	@Override
 	public boolean isProbeActivated(final String signature) {
-		if (this.enabled) {
-			final Boolean active = this.signatureCache.get(signature);
-			if (null == active) {
-				return this.matchesPattern(signature);
-			} else {
-				return active;
-			}
+		if (this.isShed(signature)) {
+			return false;
+		} else if (this.enabled) {
+			return this.isProbeActivated(this.getSignatureId(signature), signature);
 		} else {
 			return true;
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSignatureId(final String signature) {
+		final Integer id = this.signatureIds.get(signature);
+		if (id != null) {
+			return id;
+		}
+		if (this.signatureIds.size() >= this.maxSignatureIds) {
+			return NO_SIGNATURE_ID;
+		}
+		final Integer newId = this.nextSignatureId.getAndIncrement();
+		final Integer previousId = this.signatureIds.putIfAbsent(signature, newId);
+		return (previousId != null) ? previousId : newId; // NOCS (inline conditional)
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isProbeActivated(final int signatureId, final String signature) {
+		if (this.isShed(signature)) {
+			return false;
+		}
+		if (!this.enabled) {
+			return true;
+		}
+		final MatcherHolder holder = this.matcherHolder;
+		if (signatureId >= 0) {
+			return holder.matcher.isActivated(signatureId, signature);
+		}
+		// more signatures than ids allowed by the configured cache size
+		final Boolean active = holder.overflowCache.get(signature);
+		if (active != null) {
+			return active;
+		}
+		final boolean value = holder.matcher.matches(signature);
+		holder.overflowCache.put(signature, value);
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getProbePatternGeneration() {
+		// the generation also changes when the probes are shed or reactivated
+		final int generation = this.matcherHolder.matcher.getGeneration();
+		if (this.shedPatterns.isEmpty()) {
+			return generation;
+		}
+		return (generation << 1) | (this.backpressure.isSheddingProbes() ? 1 : 0); // NOCS (inline conditional)
+	}
+
 	/**
 	 * Sets the list of probe patterns.
 	 *
@@ -244,19 +355,23 @@ public class ProbeController extends AbstractController implements IProbeControl
 		}
 
 		synchronized (this) {
-			this.patternList.clear();
-			this.signatureCache.clear();
+			final List<PatternEntry> newPatternList = new ArrayList<PatternEntry>(strPatternList.size());
 			for (final String pattern : strPatternList) {
-				this.addToPatternEntryList(pattern);
+				ProbeController.addToPatternEntryList(newPatternList, pattern);
 			}
-			if (updateConfig && this.configFileUpdate) {
-				this.updatePatternFile();
+			// re-reading an unchanged config file keeps the current matcher and its cached decisions; neither is the file
+			// rewritten, which would trigger another reading
+			if (!ProbeController.samePatterns(this.patternList, newPatternList)) {
+				this.publishPatternList(newPatternList);
+				if (updateConfig && this.configFileUpdate) {
+					this.updatePatternFile();
+				}
 			}
 		}
 
 	}
 
-	private void addToPatternEntryList(final String pattern) {
+	private static void addToPatternEntryList(final List<PatternEntry> patternEntries, final String pattern) {
 		if (pattern.length() == 0) {
 			// ignore empty lines
 			return;
@@ -264,10 +379,10 @@ public class ProbeController extends AbstractController implements IProbeControl
 		try {
 			switch (pattern.charAt(0)) {
 			case '+':
-				this.patternList.add(new PatternEntry(pattern.substring(1).trim(), true));
+				patternEntries.add(new PatternEntry(pattern.substring(1).trim(), true));
 				break;
 			case '-':
-				this.patternList.add(new PatternEntry(pattern.substring(1).trim(), false));
+				patternEntries.add(new PatternEntry(pattern.substring(1).trim(), false));
 				break;
 			case '#':
 				// ignore comment
@@ -315,38 +430,12 @@ public class ProbeController extends AbstractController implements IProbeControl
 		}
 	}
 
-	/**
-	 * This method tests if the given signature matches a pattern and completes accordingly the signatureCache map.
-	 *
-	 * @param signature
-	 *            The signature to match.
-	 */
-	private boolean matchesPattern(final String signature) {
-		synchronized (this) {
-			final ListIterator<PatternEntry> patternListIterator = this.patternList.listIterator(this.patternList.size());
-			while (patternListIterator.hasPrevious()) {
-				final PatternEntry patternEntry = patternListIterator.previous();
-				if (patternEntry.getPattern().matcher(signature).matches()) {
-					final boolean value = patternEntry.isActivated();
-					this.signatureCache.put(signature, value);
-					return value;
-				}
-			}
-		}
-		// Do not forget to remember this default value
-		this.signatureCache.put(signature, true);
-
-		return true; // if nothing matches, the default is true!
-	}
-
 	private boolean addPattern(final String strPattern, final boolean activated) {
 		if (!this.enabled) {
 			LOG.warn("Adapative Monitoring is disabled!");
 			return false;
 		}
 		synchronized (this) {
-			// we must always clear the cache!
-			this.signatureCache.clear();
 			final Pattern pattern;
 			try {
 				pattern = PatternParser.parseToPattern(strPattern);
@@ -354,7 +443,10 @@ public class ProbeController extends AbstractController implements IProbeControl
 				LOG.error("'" + strPattern + "' is not a valid pattern.", ex);
 				return false;
 			}
-			this.patternList.add(new PatternEntry(strPattern, pattern, activated));
+			final List<PatternEntry> newPatternList = new ArrayList<PatternEntry>(this.patternList.size() + 1);
+			newPatternList.addAll(this.patternList);
+			newPatternList.add(new PatternEntry(strPattern, pattern, activated));
+			this.publishPatternList(newPatternList);
 			if (this.configFileUpdate) {
 				this.updatePatternFile();
 			}
@@ -362,6 +454,39 @@ public class ProbeController extends AbstractController implements IProbeControl
 		return true;
 	}
 
+	/**
+	 * Compiles the given pattern list and publishes the resulting matcher. Probes keep using the previous matcher
+	 * (and its cached decisions) until the new one is complete. Only called within synchronized.
+	 */
+	private void publishPatternList(final List<PatternEntry> newPatternList) {
+		final int generation = ++this.patternGeneration;
+		final CompiledPatternMatcher matcher = new CompiledPatternMatcher(newPatternList, generation);
+		this.patternList = newPatternList;
+		this.matcherHolder = new MatcherHolder(matcher, this.newOverflowCache());
+	}
+
+	private ConcurrentMap<String, Boolean> newOverflowCache() {
+		if (this.overflowCacheBehaviour == null) {
+			return null;
+		}
+		return new BoundedConcurrentHashMap<String, Boolean>(this.overflowCacheBehaviour, this.maxSignatureIds);
+	}
+
+	private static boolean samePatterns(final List<PatternEntry> oldList, final List<PatternEntry> newList) {
+		if (oldList.size() != newList.size()) {
+			return false;
+		}
+		for (int i = 0; i < oldList.size(); i++) {
+			final PatternEntry oldEntry = oldList.get(i);
+			final PatternEntry newEntry = newList.get(i);
+			// not PatternEntry.equals(), which compares the compiled patterns by identity and ignores the activated state
+			if (!oldEntry.getStrPattern().equals(newEntry.getStrPattern()) || (oldEntry.isActivated() != newEntry.isActivated())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void updatePatternFile() { // only called within synchronized
 		PrintWriter pw = null;
 		try {
@@ -388,6 +513,20 @@ public class ProbeController extends AbstractController implements IProbeControl
 		LOG.info("Updating Adaptive Monitoring config file succeeded.");
 	}
 
+	/**
+	 * A compiled matcher together with the string keyed cache used for signatures without id.
+	 * Both are replaced together, so that a decision of an old matcher never ends up in the cache of a new one.
+	 */
+	private static final class MatcherHolder {
+		final CompiledPatternMatcher matcher;
+		final ConcurrentMap<String, Boolean> overflowCache; // null if the number of signature ids is unbounded
+
+		MatcherHolder(final CompiledPatternMatcher matcher, final ConcurrentMap<String, Boolean> overflowCache) {
+			this.matcher = matcher;
+			this.overflowCache = overflowCache;
+		}
+	}
+
 	/**
 	 * @author Jan Waller
 	 */
@@ -0,0 +1,168 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.controller;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import kieker.common.record.IMonitoringRecord;
+
+/**
+ * Stages records in a small buffer per application thread and hands each buffer to the {@link WriterController} in
+ * bulk. A buffer is handed over when it is full, when its thread calls {@link #flushCurrentThread()} (e.g., when a
+ * trace ends), and when {@link #flushAll()} is called periodically or on termination. The latter also hands over the
+ * buffers of threads which have died in the meantime.
+ *
+ * <p>
+ * Each buffer is guarded by its own lock, which is virtually only taken by its thread, so that staging a record does
+ * not touch any cache line shared with other application threads.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class RecordStaging {
+
+	private final WriterController writerController;
+	private final int bufferSize;
+	/** all buffers created so far, including those of dead threads not yet flushed. */
+	private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Buffer> threadLocalBuffer = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			final Buffer buffer = new Buffer(Thread.currentThread(), RecordStaging.this.bufferSize);
+			RecordStaging.this.buffers.add(buffer);
+			return buffer;
+		}
+	};
+
+	private volatile boolean closed;
+
+	/**
+	 * @param writerController
+	 *            the controller the staged records are handed to
+	 * @param bufferSize
+	 *            the number of records staged per thread before the buffer is handed over
+	 */
+	RecordStaging(final WriterController writerController, final int bufferSize) {
+		this.writerController = writerController;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Stages the record in the buffer of the calling thread.
+	 *
+	 * @param record
+	 *            the record to stage
+	 * @return false if the buffer had to be handed over and the hand-over failed
+	 */
+	boolean stage(final IMonitoringRecord record) {
+		final Buffer buffer = this.threadLocalBuffer.get();
+		synchronized (buffer) {
+			buffer.records[buffer.count++] = record;
+			// after closing, nothing flushes this buffer anymore
+			if ((buffer.count == buffer.records.length) || this.closed) {
+				return this.flush(buffer);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hands the buffer of the calling thread over to the writer controller.
+	 *
+	 * @return false if the hand-over failed
+	 */
+	boolean flushCurrentThread() {
+		final Buffer buffer = this.threadLocalBuffer.get();
+		synchronized (buffer) {
+			return this.flush(buffer);
+		}
+	}
+
+	/**
+	 * Hands the buffers of all threads over to the writer controller and forgets the buffers of dead threads.
+	 */
+	void flushAll() {
+		final Iterator<Buffer> iterator = this.buffers.iterator();
+		while (iterator.hasNext()) {
+			final Buffer buffer = iterator.next();
+			synchronized (buffer) {
+				this.flush(buffer);
+				final Thread owner = buffer.owner.get();
+				if ((owner == null) || !owner.isAlive()) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands all buffers over to the writer controller. Records staged afterwards are handed over immediately.
+	 */
+	void close() {
+		this.closed = true;
+		this.flushAll();
+	}
+
+	private boolean flush(final Buffer buffer) {
+		final int count = buffer.count;
+		if (count == 0) {
+			return true;
+		}
+		// reset first, since a failed hand-over terminates the controller, which flushes all buffers again
+		buffer.count = 0;
+		final boolean handedOver = this.writerController.newMonitoringRecords(buffer.records, count);
+		Arrays.fill(buffer.records, 0, count, null);
+		return handedOver;
+	}
+
+	/**
+	 * @return the number of threads with a buffer
+	 */
+	int getNumberOfBuffers() {
+		return this.buffers.size();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append("Record staging buffer size: ")
+			.append(this.bufferSize)
+			.append(" (threads: ")
+			.append(this.buffers.size())
+			.append(')');
+		return builder.toString();
+	}
+
+	/**
+	 * The records staged by a single thread.
+	 */
+	private static final class Buffer {
+		final WeakReference<Thread> owner; // NOCS (package visible)
+		final IMonitoringRecord[] records; // NOCS (package visible)
+		int count; // NOCS (package visible)
+
+		Buffer(final Thread owner, final int size) {
+			this.owner = new WeakReference<>(owner);
+			this.records = new IMonitoringRecord[size];
+		}
+	}
+}
@@ -32,6 +32,8 @@ import kieker.monitoring.core.configuration.ConfigurationFactory;
 public final class StateController extends AbstractController implements IStateController {
 	private static final Log LOG = LogFactory.getLog(StateController.class);
 
+	private static final int DEFAULT_SQL_FINGERPRINT_CACHE_SIZE = 1000;
+
 	private volatile boolean monitoringEnabled;
 	private final String name;
 	private final String hostname;
@@ -42,6 +44,9 @@ public final class StateController extends AbstractController implements IStateC
 	private final String cdnServer;
 	private final long sqlThreshold;
 	private final long  methodThreshold;
+	private final boolean sqlNormalizationEnabled;
+	private final int sqlFingerprintCacheSize;
+	private final boolean sqlBackslashEscapesEnabled;
 	private boolean jvmSamplingEnabled;
 	private boolean systemSamplingEnabled;
 	private final long samplingPeriod;
@@ -71,6 +76,9 @@ public final class StateController extends AbstractController implements IStateC
 		this.rumEnable = configuration.getBooleanProperty(ConfigurationFactory.RUM_ENABLE);
 		this.sqlThreshold= configuration.getIntProperty(ConfigurationFactory.SQL_THRESHOLD);
 		this.methodThreshold= configuration.getIntProperty(ConfigurationFactory.METHOD_THRESHOLD);
+		this.sqlNormalizationEnabled = configuration.getBooleanProperty(ConfigurationFactory.SQL_NORMALIZATION, true);
+		this.sqlFingerprintCacheSize = configuration.getIntProperty(ConfigurationFactory.SQL_FINGERPRINT_CACHE_SIZE, DEFAULT_SQL_FINGERPRINT_CACHE_SIZE);
+		this.sqlBackslashEscapesEnabled = configuration.getBooleanProperty(ConfigurationFactory.SQL_BACKSLASH_ESCAPES, false);
 		this.jvmSamplingEnabled = configuration.getBooleanProperty(ConfigurationFactory.JVM_SAMPL_ENABLE);
 		this.systemSamplingEnabled = configuration.getBooleanProperty(ConfigurationFactory.SYS_SAMPL_ENABLE);
 		this.samplingPeriod = configuration.getIntProperty(ConfigurationFactory.SAMPL_PERIOD);
@@ -130,6 +138,8 @@ public final class StateController extends AbstractController implements IStateC
 		sb.append(this.sqlThreshold);
 		sb.append("'; method Threshold: '");
 		sb.append(this.methodThreshold);
+		sb.append("'; sql normalization: '");
+		sb.append(this.sqlNormalizationEnabled);
 		sb.append("'\n");
 		if ( this.isJVMSamplingEnabled()) {
 		sb.append("'; jvm Sampling enabled ;'");
@@ -275,6 +285,18 @@ public final class StateController extends AbstractController implements IStateC
 	public long getMethodThreshold() {
 		return methodThreshold;
 	}
+
+	public boolean isSqlNormalizationEnabled() {
+		return this.sqlNormalizationEnabled;
+	}
+
+	public int getSqlFingerprintCacheSize() {
+		return this.sqlFingerprintCacheSize;
+	}
+
+	public boolean isSqlBackslashEscapesEnabled() {
+		return this.sqlBackslashEscapesEnabled;
+	}
 	
 
 	public boolean isJVMSamplingEnabled() {
@@ -19,27 +19,44 @@ package kieker.monitoring.core.controller;
 import java.lang.Thread.State;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 
 import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.misc.BackpressureRecord;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Gauge;
 import kieker.monitoring.queue.BlockingQueueDecorator;
+import kieker.monitoring.queue.RingBuffer;
 import kieker.monitoring.queue.behavior.BlockOnFailedInsertBehavior;
 import kieker.monitoring.queue.behavior.BypassQueueBehavior;
 import kieker.monitoring.queue.behavior.CountOnFailedInsertBehavior;
 import kieker.monitoring.queue.behavior.DoNotInsertBehavior;
 import kieker.monitoring.queue.behavior.InsertBehavior;
+import kieker.monitoring.queue.behavior.LaneRoutingInsertBehavior;
+import kieker.monitoring.queue.behavior.RingBufferInsertBehavior;
 import kieker.monitoring.queue.behavior.TerminateOnFailedInsertBehavior;
 import kieker.monitoring.queue.putstrategy.PutStrategy;
 import kieker.monitoring.queue.putstrategy.SPBlockingPutStrategy;
 import kieker.monitoring.queue.takestrategy.SCBlockingTakeStrategy;
 import kieker.monitoring.queue.takestrategy.TakeStrategy;
+import kieker.monitoring.queue.waitstrategy.BusySpinWaitStrategy;
+import kieker.monitoring.queue.waitstrategy.ParkingWaitStrategy;
+import kieker.monitoring.queue.waitstrategy.WaitStrategy;
+import kieker.monitoring.queue.waitstrategy.YieldingWaitStrategy;
 import kieker.monitoring.writer.AbstractMonitoringWriter;
+import kieker.monitoring.writer.MergingWriterThread;
 import kieker.monitoring.writer.MonitoringWriterThread;
+import kieker.monitoring.writer.RingBufferWriterThread;
 
 /**
  * @author Andre van Hoorn, Matthias Rohr, Jan Waller, Robert von Massow
@@ -55,26 +72,59 @@ public final class WriterController extends AbstractController implements IWrite
 	public static final String RECORD_QUEUE_INSERT_BEHAVIOR = "RecordQueueInsertBehavior";
 	/** The fully qualified name of the queue to be used for the records. */
 	public static final String RECORD_QUEUE_FQN = "RecordQueueFQN";
+	/** The name of the configuration determining the maximal number of records the writer thread passes to the writer at once. */
+	public static final String WRITER_BATCH_SIZE = "WriterBatchSize";
+	/** The name of the configuration determining how the writer thread waits for records in the ring buffer (insert behavior 4). */
+	public static final String RING_BUFFER_WAIT_STRATEGY = "RingBufferWaitStrategy";
+
+	/** The name of the configuration determining the number of writer lanes, i.e., of queues and writer threads. */
+	public static final String WRITER_LANES = "WriterLanes";
+	/** The name of the configuration determining whether each lane has its own writer (instance) or all lanes feed one writer (merge). */
+	public static final String WRITER_LANE_MODE = "WriterLaneMode";
+
+	/** The name of the configuration determining the number of records each application thread stages before handing them over (0 disables staging). */
+	public static final String RECORD_STAGING_BUFFER_SIZE = "RecordStagingBufferSize";
+	/** The name of the configuration determining the interval in milliseconds in which all staged records are handed over. */
+	public static final String RECORD_STAGING_FLUSH_INTERVAL = "RecordStagingFlushInterval";
+
+	private static final int DEFAULT_RECORD_STAGING_FLUSH_INTERVAL = 100;
+	private static final double DEFAULT_BACKPRESSURE_HIGH_WATERMARK = 0.75;
+	private static final double DEFAULT_BACKPRESSURE_LOW_WATERMARK = 0.25;
+	private static final int DEFAULT_BACKPRESSURE_INTERVAL = 500;
 
 	private static final Log LOG = LogFactory.getLog(WriterController.class);
-	/** Monitoring Writer. */
+	/** Monitoring Writer (of the first lane). */
 	private AbstractMonitoringWriter monitoringWriter; // NOPMD (so far, cannot be made final due to the MonitoringController)
+	/** the monitoring writers of all lanes. */
+	private final List<AbstractMonitoringWriter> monitoringWriters = new ArrayList<>();
 	/** Whether or not to automatically log the metadata record. */
 	private final boolean logMetadataRecord;
 	/** the capacity of the queue. */
 	private final int queueCapacity;
-	/** the synchronized, blocking queue used for the communication between the monitored application's threads and the writer thread. */
-	private final BlockingQueue<IMonitoringRecord> writerQueue;
+	/** the number of lanes the records are distributed to. */
+	private final int numLanes;
+	/** the synchronized, blocking queues (one per lane) used for the communication between the monitored application's threads and the writer threads. */
+	private final List<BlockingQueue<IMonitoringRecord>> writerQueues = new ArrayList<>();
+	/** the ring buffers (one per lane) used instead of the {@link #writerQueues} with insert behavior 4. */
+	private final List<RingBuffer<IMonitoringRecord>> ringBuffers = new ArrayList<>();
 
-	private MonitoringWriterThread monitoringWriterThread; // NOPMD (so far, cannot be made final due to the MonitoringController)
+	private final List<MonitoringWriterThread> monitoringWriterThreads = new ArrayList<>();
 
 	private InsertBehavior<IMonitoringRecord> insertBehavior; // NOPMD (so far, cannot be made final due to the MonitoringController)
 
-	// private Disruptor<IMonitoringRecordEvent> disruptor;
+	/** the per-thread record buffers, null if staging is disabled. */
+	private final RecordStaging recordStaging;
+	/** the interval in milliseconds in which all staged records are handed over. */
+	private final int stagingFlushInterval;
+	/** periodically hands over all staged records, null if staging is disabled or not yet initialized. */
+	private volatile Timer stagingFlushTimer; // NOPMD (set on init)
 
-	// private RingBuffer<IMonitoringRecordEvent> ringBuffer;
-
-	// private int numInsertedRecords;
+	/** the degradation level derived from the queue fill level, {@link Backpressure#NONE} if disabled. */
+	private final Backpressure backpressure;
+	/** the interval in milliseconds in which the backpressure level is updated. */
+	private final int backpressureInterval;
+	/** periodically updates the backpressure level, null if disabled or not yet initialized. */
+	private volatile Timer backpressureTimer; // NOPMD (set on init)
 
 	/**
 	 * Creates a new instance of this class using the given parameters.
@@ -86,28 +136,36 @@ public final class WriterController extends AbstractController implements IWrite
 		super(configuration);
 		this.logMetadataRecord = configuration.getBooleanProperty(ConfigurationFactory.METADATA);
 
-		this.queueCapacity = configuration.getIntProperty(PREFIX + RECORD_QUEUE_SIZE);
-		final String queueFqn = configuration.getStringProperty(PREFIX + RECORD_QUEUE_FQN);
+		final int stagingBufferSize = configuration.getIntProperty(PREFIX + RECORD_STAGING_BUFFER_SIZE, 0);
+		this.recordStaging = (stagingBufferSize > 0) ? new RecordStaging(this, stagingBufferSize) : null; // NOCS (inline conditional)
+		int flushInterval = configuration.getIntProperty(PREFIX + RECORD_STAGING_FLUSH_INTERVAL, DEFAULT_RECORD_STAGING_FLUSH_INTERVAL);
+		if (flushInterval <= 0) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Invalid value '" + flushInterval + "' for " + PREFIX + RECORD_STAGING_FLUSH_INTERVAL + "; using default value "
+						+ DEFAULT_RECORD_STAGING_FLUSH_INTERVAL);
+			}
+			flushInterval = DEFAULT_RECORD_STAGING_FLUSH_INTERVAL;
+		}
+		this.stagingFlushInterval = flushInterval;
 
-		final Queue<IMonitoringRecord> queue = this.newQueue(queueFqn, this.queueCapacity);
-		if (queue instanceof BlockingQueue) {
-			this.writerQueue = (BlockingQueue<IMonitoringRecord>) queue;
+		if (configuration.getBooleanProperty(ConfigurationFactory.BACKPRESSURE_ENABLED, false)) {
+			this.backpressure = new Backpressure(
+					configuration.getDoubleProperty(ConfigurationFactory.BACKPRESSURE_HIGH_WATERMARK, DEFAULT_BACKPRESSURE_HIGH_WATERMARK),
+					configuration.getDoubleProperty(ConfigurationFactory.BACKPRESSURE_LOW_WATERMARK, DEFAULT_BACKPRESSURE_LOW_WATERMARK));
 		} else {
-			final PutStrategy putStrategy = new SPBlockingPutStrategy();
-			final TakeStrategy takeStrategy = new SCBlockingTakeStrategy();
-			this.writerQueue = new BlockingQueueDecorator<>(queue, putStrategy, takeStrategy);
+			this.backpressure = Backpressure.NONE;
 		}
-
-		final String writerClassName = configuration.getStringProperty(ConfigurationFactory.WRITER_CLASSNAME);
-		this.monitoringWriter = AbstractController.createAndInitialize(AbstractMonitoringWriter.class, writerClassName,
-				configuration);
-		if (this.monitoringWriter == null) {
-			this.terminate();
-			return; // TODO should throw an exception! and then monitoringWriter can be declared final
-			// throw new IllegalStateException("monitoringWriter may not be null");
+		int updateInterval = configuration.getIntProperty(ConfigurationFactory.BACKPRESSURE_INTERVAL, DEFAULT_BACKPRESSURE_INTERVAL);
+		if (updateInterval <= 0) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Invalid value '" + updateInterval + "' for " + ConfigurationFactory.BACKPRESSURE_INTERVAL + "; using default value "
+						+ DEFAULT_BACKPRESSURE_INTERVAL);
+			}
+			updateInterval = DEFAULT_BACKPRESSURE_INTERVAL;
 		}
+		this.backpressureInterval = updateInterval;
 
-		this.monitoringWriterThread = new MonitoringWriterThread(this.monitoringWriter, this.writerQueue);
+		this.queueCapacity = configuration.getIntProperty(PREFIX + RECORD_QUEUE_SIZE);
 
 		int recordQueueInsertBehavior = configuration.getIntProperty(PREFIX + RECORD_QUEUE_INSERT_BEHAVIOR);
 		if ((recordQueueInsertBehavior < 0) || (recordQueueInsertBehavior > 5)) {
@@ -118,58 +176,140 @@ public final class WriterController extends AbstractController implements IWrite
 			recordQueueInsertBehavior = 0;
 		}
 
+		final boolean mergeLanes = "merge".equalsIgnoreCase(configuration.getStringProperty(PREFIX + WRITER_LANE_MODE));
+		int lanes = configuration.getIntProperty(PREFIX + WRITER_LANES, 1);
+		if (lanes < 1) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Invalid value '" + lanes + "' for " + PREFIX + WRITER_LANES + "; using default value 1");
+			}
+			lanes = 1;
+		} else if ((lanes > 1) && ((recordQueueInsertBehavior == 3) || (recordQueueInsertBehavior == 5))) {
+			lanes = 1; // there is no queue to shard
+		} else if ((lanes > 1) && (recordQueueInsertBehavior == 4) && mergeLanes) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Merging writer lanes is not supported with " + PREFIX + RECORD_QUEUE_INSERT_BEHAVIOR + "=4; using a single lane");
+			}
+			lanes = 1;
+		}
+		this.numLanes = lanes;
+		// the configured capacity is shared by all lanes
+		final int laneCapacity = Math.max(1, this.queueCapacity / lanes);
+
+		final String waitStrategyName = configuration.getStringProperty(PREFIX + RING_BUFFER_WAIT_STRATEGY);
+		for (int lane = 0; lane < lanes; lane++) {
+			if (recordQueueInsertBehavior == 4) {
+				this.ringBuffers.add(new RingBuffer<IMonitoringRecord>(laneCapacity, this.newWaitStrategy(waitStrategyName)));
+			} else {
+				this.writerQueues.add(this.newBlockingQueue(configuration, laneCapacity));
+			}
+		}
+
+		final String writerClassName = configuration.getStringProperty(ConfigurationFactory.WRITER_CLASSNAME);
+		final int numWriters = mergeLanes ? 1 : lanes; // NOCS (inline conditional)
+		for (int i = 0; i < numWriters; i++) {
+			final AbstractMonitoringWriter writer = AbstractController.createAndInitialize(AbstractMonitoringWriter.class, writerClassName,
+					configuration);
+			if (writer == null) {
+				this.terminate();
+				return; // TODO should throw an exception! and then monitoringWriter can be declared final
+				// throw new IllegalStateException("monitoringWriter may not be null");
+			}
+			this.monitoringWriters.add(writer);
+		}
+		this.monitoringWriter = this.monitoringWriters.get(0);
+
+		int writerBatchSize = configuration.getIntProperty(PREFIX + WRITER_BATCH_SIZE, MonitoringWriterThread.DEFAULT_BATCH_SIZE);
+		if (writerBatchSize <= 0) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Invalid value '" + writerBatchSize + "' for " + PREFIX + WRITER_BATCH_SIZE + "; using default value "
+						+ MonitoringWriterThread.DEFAULT_BATCH_SIZE);
+			}
+			writerBatchSize = MonitoringWriterThread.DEFAULT_BATCH_SIZE;
+		}
+
+		if (mergeLanes && (lanes > 1)) {
+			this.monitoringWriterThreads.add(new MergingWriterThread(this.monitoringWriter, this.writerQueues,
+					this.newWaitStrategy(waitStrategyName), writerBatchSize));
+		} else {
+			for (int lane = 0; lane < lanes; lane++) {
+				final AbstractMonitoringWriter writer = this.monitoringWriters.get(lane);
+				if (recordQueueInsertBehavior == 4) {
+					this.monitoringWriterThreads.add(new RingBufferWriterThread(writer, this.ringBuffers.get(lane), writerBatchSize));
+				} else {
+					this.monitoringWriterThreads.add(new MonitoringWriterThread(writer, this.writerQueues.get(lane), writerBatchSize));
+				}
+			}
+		}
+
+		final List<InsertBehavior<IMonitoringRecord>> laneInsertBehaviors = new ArrayList<>(lanes);
+		for (int lane = 0; lane < lanes; lane++) {
+			laneInsertBehaviors.add(this.newInsertBehavior(recordQueueInsertBehavior, lane));
+		}
+		if (lanes == 1) {
+			this.insertBehavior = laneInsertBehaviors.get(0);
+		} else {
+			this.insertBehavior = new LaneRoutingInsertBehavior(laneInsertBehaviors);
+		}
+
+		AgentMetrics.INSTANCE.gauge("queue.depth", new Gauge() {
+			@Override
+			public long getValue() {
+				return WriterController.this.getQueueSize();
+			}
+		});
+	}
+
+	private InsertBehavior<IMonitoringRecord> newInsertBehavior(final int recordQueueInsertBehavior, final int lane) {
 		switch (recordQueueInsertBehavior) {
 		case 1:
-			this.insertBehavior = new BlockOnFailedInsertBehavior<>(this.writerQueue);
-			break;
+			return new BlockOnFailedInsertBehavior<>(this.writerQueues.get(lane));
 		case 2:
-			this.insertBehavior = new CountOnFailedInsertBehavior<>(this.writerQueue);
-			break;
+			return new CountOnFailedInsertBehavior<>(this.writerQueues.get(lane));
 		case 3:
-			this.insertBehavior = new DoNotInsertBehavior<>();
-			break;
+			return new DoNotInsertBehavior<>();
 		case 4:
-			// try {
-			// this.initDisruptor(configuration);
-			// } catch (final IOException e) {
-			// throw new IllegalStateException(e);
-			// }
-			// this.insertBehavior = new DisruptorInsertBehavior<IMonitoringRecord>(this.ringBuffer);
-			break;
+			return new RingBufferInsertBehavior<>(this.ringBuffers.get(lane));
 		case 5:
-			this.insertBehavior = new BypassQueueBehavior(this.monitoringWriter);
-			break;
+			return new BypassQueueBehavior(this.monitoringWriter);
 		default:
-			this.insertBehavior = new TerminateOnFailedInsertBehavior<>(this.writerQueue);
-			break;
+			return new TerminateOnFailedInsertBehavior<>(this.writerQueues.get(lane));
+		}
+	}
+
+	private BlockingQueue<IMonitoringRecord> newBlockingQueue(final Configuration configuration, final int capacity) {
+		final String queueFqn = configuration.getStringProperty(PREFIX + RECORD_QUEUE_FQN);
+		final Queue<IMonitoringRecord> queue = this.newQueue(queueFqn, capacity);
+		if (queue instanceof BlockingQueue) {
+			return (BlockingQueue<IMonitoringRecord>) queue;
+		} else {
+			final PutStrategy putStrategy = new SPBlockingPutStrategy();
+			final TakeStrategy takeStrategy = new SCBlockingTakeStrategy();
+			return new BlockingQueueDecorator<>(queue, putStrategy, takeStrategy);
 		}
 	}
 
-	// private void initDisruptor(final Configuration configuration) throws IOException {
-	// final EventFactory<IMonitoringRecordEvent> eventFactory = new NewRecordEventFactory();
-	// final int bufferSize = 1024;
-	// final ThreadFactory threadFactory = new ThreadFactory() {
-	// @Override
-	// public Thread newThread(final Runnable r) {
-	// final Thread thread = new Thread(r);
-	// thread.setDaemon(true);
-	// return thread;
-	// }
-	// };
-	//
-	// this.disruptor = new Disruptor<IMonitoringRecordEvent>(eventFactory, bufferSize, threadFactory);
-	//
-	// final SharedConnection connection = new SharedConnection(configuration);
-	// final EventHandler<? super IMonitoringRecordEvent> handler1 = new DisruptorTcpWriter(configuration, connection);
-	// // allowing more than one consumes breaks the assumptions that the records are sent in order of occurrence
-	// // final EventHandler<? super IMonitoringRecordEvent> handler2 = new DisruptorTcpWriter(configuration,
-	// connection);
-	//
-	// this.disruptor.handleEventsWith(handler1);
-	// this.disruptor.start();
-	//
-	// this.ringBuffer = this.disruptor.getRingBuffer();
-	// }
+	/**
+	 * @param waitStrategyName
+	 *            one of <code>park</code> (default), <code>yield</code> and <code>busyspin</code>
+	 * @return a new instance of the named wait strategy
+	 */
+	private WaitStrategy newWaitStrategy(final String waitStrategyName) {
+		switch (waitStrategyName.toLowerCase(Locale.ENGLISH)) {
+		case "busyspin":
+			return new BusySpinWaitStrategy();
+		case "yield":
+			return new YieldingWaitStrategy();
+		case "park":
+		case "":
+			return new ParkingWaitStrategy();
+		default:
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Unknown value '" + waitStrategyName + "' for " + PREFIX + RING_BUFFER_WAIT_STRATEGY
+						+ "; using default value 'park'");
+			}
+			return new ParkingWaitStrategy();
+		}
+	}
 
 	/**
 	 * @param queueFqn
@@ -215,8 +355,48 @@ public final class WriterController extends AbstractController implements IWrite
 			LOG.debug("Initializing Writer Controller");
 		}
 
-		if (this.monitoringWriterThread != null) {
-			this.monitoringWriterThread.start();
+		for (final MonitoringWriterThread monitoringWriterThread : this.monitoringWriterThreads) {
+			monitoringWriterThread.start();
+		}
+
+		if (this.recordStaging != null) {
+			// also hands over the records of threads which have died meanwhile
+			final Timer timer = new Timer("RecordStagingFlusher", true);
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					WriterController.this.recordStaging.flushAll();
+				}
+			}, this.stagingFlushInterval, this.stagingFlushInterval);
+			this.stagingFlushTimer = timer;
+		}
+
+		if (this.backpressure != Backpressure.NONE) {
+			final Timer timer = new Timer("BackpressureMonitor", true);
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					WriterController.this.updateBackpressure();
+				}
+			}, this.backpressureInterval, this.backpressureInterval);
+			this.backpressureTimer = timer;
+		}
+	}
+
+	/**
+	 * Adapts the backpressure level to the current queue fill level and reports a change of the level.
+	 */
+	final void updateBackpressure() {
+		final double fillLevel = this.getQueueFillLevel();
+		if (this.backpressure.update(fillLevel)) {
+			final int level = this.backpressure.getLevel();
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Writer queue filled to " + Math.round(fillLevel * 100) + "%; backpressure level is now " + level);
+			}
+			final MonitoringController controller = this.monitoringController;
+			if (controller != null) {
+				controller.newMonitoringRecord(new BackpressureRecord(controller.getTimeSource().getTime(), controller.getHostname(), level, fillLevel));
+			}
 		}
 	}
 
@@ -226,13 +406,20 @@ public final class WriterController extends AbstractController implements IWrite
 			LOG.debug("Shutting down Writer Controller");
 		}
 
-		if (this.monitoringWriterThread != null) {
-			this.monitoringWriterThread.terminate();
+		if (this.stagingFlushTimer != null) {
+			this.stagingFlushTimer.cancel();
+		}
+		if (this.backpressureTimer != null) {
+			this.backpressureTimer.cancel();
+		}
+		if (this.recordStaging != null) {
+			// the staged records must be enqueued before the end of monitoring
+			this.recordStaging.close();
 		}
 
-		// if (this.disruptor != null) {
-		// this.disruptor.shutdown();
-		// }
+		for (final MonitoringWriterThread monitoringWriterThread : this.monitoringWriterThreads) {
+			monitoringWriterThread.terminate();
+		}
 
 		// LOG.info("block durations: {}" + this.insertBehavior.toString());
 		// System.out.println("block durations: " + this.insertBehavior.toString());
@@ -243,9 +430,17 @@ public final class WriterController extends AbstractController implements IWrite
 		final StringBuilder sb = new StringBuilder(256) // NOPMD (consecutive calls of append with string literals)
 				.append("WriterController:")
 				.append("\n\tQueue type: ")
-				.append(this.writerQueue)
+				.append(this.ringBuffers.isEmpty() ? this.writerQueues : this.ringBuffers) // NOCS (inline conditional)
 				.append("\n\tQueue capacity: ")
 				.append(this.queueCapacity)
+				.append("\n\tWriter lanes: ")
+				.append(this.numLanes)
+				.append(" (writer threads: ")
+				.append(this.monitoringWriterThreads.size())
+				.append(")\n\t")
+				.append((this.recordStaging != null) ? this.recordStaging.toString() : "Record staging disabled") // NOCS (inline conditional)
+				.append("\n\t")
+				.append(this.backpressure.toString())
 				.append("\n\tInsert behavior (a.k.a. QueueFullBehavior): ")
 				.append(this.insertBehavior.toString())
 				.append("\n");
@@ -260,6 +455,9 @@ public final class WriterController extends AbstractController implements IWrite
 
 	@Override
 	public final boolean newMonitoringRecord(final IMonitoringRecord record) {
+		if (this.recordStaging != null) {
+			return this.recordStaging.stage(record);
+		}
 		final boolean recordSent = this.insertBehavior.insert(record);
 		if (!recordSent) {
 			LOG.error("Error writing the monitoring data. Will terminate monitoring!");
@@ -269,10 +467,80 @@ public final class WriterController extends AbstractController implements IWrite
 		return recordSent;
 	}
 
+	/**
+	 * Inserts the given records, in order, bypassing the record staging.
+	 *
+	 * @param records
+	 *            the records to insert
+	 * @param count
+	 *            the number of records to insert from index 0
+	 * @return true on success; false in case of an error.
+	 */
+	final boolean newMonitoringRecords(final IMonitoringRecord[] records, final int count) {
+		final InsertBehavior<IMonitoringRecord> localInsertBehavior = this.insertBehavior;
+		for (int i = 0; i < count; i++) {
+			if (!localInsertBehavior.insert(records[i])) {
+				LOG.error("Error writing the monitoring data. Will terminate monitoring!");
+				this.terminate();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public final boolean flushStagedRecords() {
+		if (this.recordStaging == null) {
+			return true;
+		}
+		return this.recordStaging.flushCurrentThread();
+	}
+
+	@Override
+	public final double getQueueFillLevel() {
+		double fillLevel = 0.0;
+		for (final RingBuffer<IMonitoringRecord> ringBuffer : this.ringBuffers) {
+			fillLevel = Math.max(fillLevel, (double) ringBuffer.size() / ringBuffer.getCapacity());
+		}
+		for (final BlockingQueue<IMonitoringRecord> queue : this.writerQueues) {
+			final int size = queue.size();
+			final long capacity = (long) size + queue.remainingCapacity();
+			if (capacity > 0) {
+				fillLevel = Math.max(fillLevel, (double) size / capacity);
+			}
+		}
+		return Math.min(fillLevel, 1.0);
+	}
+
+	/**
+	 * @return the number of records in all writer queues
+	 */
+	public final int getQueueSize() {
+		int size = 0;
+		for (final RingBuffer<IMonitoringRecord> ringBuffer : this.ringBuffers) {
+			size += ringBuffer.size();
+		}
+		for (final BlockingQueue<IMonitoringRecord> queue : this.writerQueues) {
+			size += queue.size();
+		}
+		return size;
+	}
+
+	@Override
+	public final Backpressure getBackpressure() {
+		return this.backpressure;
+	}
+
+	@Override
+	public final int getBackpressureLevel() {
+		return this.backpressure.getLevel();
+	}
+
 	@Override
 	public void waitForTermination(final long timeoutInMs) throws InterruptedException {
-		if (this.monitoringWriterThread != null) {
-			this.monitoringWriterThread.join(timeoutInMs);
+		final long deadline = System.currentTimeMillis() + timeoutInMs;
+		for (final MonitoringWriterThread monitoringWriterThread : this.monitoringWriterThreads) {
+			monitoringWriterThread.join(Math.max(1L, deadline - System.currentTimeMillis()));
 		}
 	}
 
@@ -281,6 +549,30 @@ public final class WriterController extends AbstractController implements IWrite
 	 */
 	@SuppressWarnings({ "PMD.DefaultPackage", "PMD.CommentDefaultAccessModifier" })
 	State getStateOfMonitoringWriterThread() {
-		return this.monitoringWriterThread.getState();
+		return this.getStateOfMonitoringWriterThread(0);
+	}
+
+	/**
+	 * Used in tests only.
+	 */
+	@SuppressWarnings({ "PMD.DefaultPackage", "PMD.CommentDefaultAccessModifier" })
+	State getStateOfMonitoringWriterThread(final int index) {
+		return this.monitoringWriterThreads.get(index).getState();
+	}
+
+	/**
+	 * Used in tests only.
+	 */
+	@SuppressWarnings({ "PMD.DefaultPackage", "PMD.CommentDefaultAccessModifier" })
+	int getNumberOfRecordStagingBuffers() {
+		return (this.recordStaging != null) ? this.recordStaging.getNumberOfBuffers() : 0; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Used in tests only.
+	 */
+	@SuppressWarnings({ "PMD.DefaultPackage", "PMD.CommentDefaultAccessModifier" })
+	int getNumberOfMonitoringWriterThreads() {
+		return this.monitoringWriterThreads.size();
 	}
 }
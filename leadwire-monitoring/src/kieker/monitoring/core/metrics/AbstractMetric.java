@@ -0,0 +1,170 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import kieker.common.record.misc.AgentMetricRecord;
+
+/**
+ * The base of the striped metrics. Each thread updates the cells of one stripe (chosen by its id), and each stripe
+ * starts at a cache line of its own, so that threads updating a metric concurrently do not contend on a cache line.
+ * Reading the metric sums up all stripes.
+ *
+ * <p>
+ * The cells hold the events of the current interval. {@link AgentMetrics} drains them once per interval into an
+ * {@link AgentMetricRecord}; the drained values are accumulated for {@link #getCount()} and {@link #getTotal()}.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public abstract class AbstractMetric {
+
+	/** the cell holding the number of events. */
+	static final int COUNT = 0;
+	/** the cell holding the sum of the amounts. */
+	static final int TOTAL = 1;
+
+	/** the number of longs per cache line. */
+	private static final int CACHE_LINE_LONGS = 8;
+
+	private final String name;
+	private final AtomicLongArray cells;
+	private final int stripeLength;
+	private final int stripeMask;
+	private final int numStripes;
+
+	private final AtomicLong drainedCount = new AtomicLong();
+	private final AtomicLong drainedTotal = new AtomicLong();
+
+	/**
+	 * @param name
+	 *            the name of the metric
+	 * @param stripes
+	 *            the number of stripes, a power of two
+	 * @param cellsPerStripe
+	 *            the number of cells of each stripe
+	 */
+	AbstractMetric(final String name, final int stripes, final int cellsPerStripe) {
+		this.name = name;
+		this.stripeLength = ((cellsPerStripe + CACHE_LINE_LONGS - 1) / CACHE_LINE_LONGS) * CACHE_LINE_LONGS;
+		this.numStripes = stripes;
+		this.stripeMask = stripes - 1;
+		// the first cache line separates the cells from the array header
+		this.cells = new AtomicLongArray(CACHE_LINE_LONGS + (stripes * this.stripeLength));
+	}
+
+	/**
+	 * @return the name of the metric
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the number of events since the start of the monitoring
+	 */
+	public long getCount() {
+		return this.drainedCount.get() + this.sum(COUNT);
+	}
+
+	/**
+	 * @return the sum of the amounts of all events since the start of the monitoring
+	 */
+	public long getTotal() {
+		return this.drainedTotal.get() + this.sum(TOTAL);
+	}
+
+	/**
+	 * @return the cells of all stripes
+	 */
+	final AtomicLongArray cells() {
+		return this.cells;
+	}
+
+	/**
+	 * @return the index of the first cell of the stripe of the calling thread
+	 */
+	final int stripeOffset() {
+		return CACHE_LINE_LONGS + (((int) Thread.currentThread().getId() & this.stripeMask) * this.stripeLength);
+	}
+
+	/**
+	 * @return the number of stripes
+	 */
+	final int getNumberOfStripes() {
+		return this.numStripes;
+	}
+
+	/**
+	 * @param stripe
+	 *            the index of a stripe
+	 * @return the index of the first cell of the given stripe
+	 */
+	final int stripeOffset(final int stripe) {
+		return CACHE_LINE_LONGS + (stripe * this.stripeLength);
+	}
+
+	private long sum(final int cell) {
+		long sum = 0;
+		for (int stripe = 0; stripe < this.numStripes; stripe++) {
+			sum += this.cells.get(this.stripeOffset(stripe) + cell);
+		}
+		return sum;
+	}
+
+	/**
+	 * Resets the given cell of all stripes.
+	 *
+	 * @param cell
+	 *            the index of the cell within a stripe
+	 * @return the sum of the cell before the reset
+	 */
+	final long drainCell(final int cell) {
+		long sum = 0;
+		for (int stripe = 0; stripe < this.numStripes; stripe++) {
+			sum += this.cells.getAndSet(this.stripeOffset(stripe) + cell, 0);
+		}
+		return sum;
+	}
+
+	/**
+	 * Accumulates the drained values of an interval.
+	 *
+	 * @param count
+	 *            the number of events of the interval
+	 * @param total
+	 *            the sum of their amounts
+	 */
+	final void addDrained(final long count, final long total) {
+		this.drainedCount.addAndGet(count);
+		this.drainedTotal.addAndGet(total);
+	}
+
+	/**
+	 * Resets the cells of the current interval. Must only be called by a single thread.
+	 *
+	 * @param timestamp
+	 *            the end of the interval
+	 * @param hostname
+	 *            the hostname
+	 * @return the values of the interval, or null if no event has occurred
+	 */
+	abstract AgentMetricRecord drain(long timestamp, String hostname);
+}
@@ -0,0 +1,251 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+import kieker.common.record.misc.AgentMetricRecord;
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.sampler.ISampler;
+
+/**
+ * The self-monitoring metrics of the agent: the invocations of and the time spent in each probe, the depth of and the
+ * records dropped by the writer queues, and the records, bytes, latencies and flushes of the writers. The metrics are
+ * created on first use by name and live as long as the agent.
+ *
+ * <p>
+ * Counters and timers are striped (see {@link AbstractMetric}), so that updating them costs a few uncontended atomic
+ * operations. The probes only measure their own time while the self-monitoring is enabled; the writer side counts per
+ * batch or flush, which is negligible.
+ *
+ * <p>
+ * When scheduled as sampler, an {@link AgentMetricRecord} is written per metric and interval. The accumulated values
+ * are also exposed as attributes of a dynamic MBean (<code>&lt;metric&gt;.count</code> and
+ * <code>&lt;metric&gt;.total</code>), which the JMX controller registers.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class AgentMetrics implements ISampler, DynamicMBean {
+
+	/** The metrics of this agent. */
+	public static final AgentMetrics INSTANCE = new AgentMetrics();
+
+	/** the maximal number of stripes per metric. */
+	private static final int MAX_STRIPES = 64;
+	private static final String COUNT_SUFFIX = ".count";
+	private static final String TOTAL_SUFFIX = ".total";
+
+	private final int stripes;
+	private final ConcurrentMap<String, AbstractMetric> metrics = new ConcurrentHashMap<String, AbstractMetric>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+	private volatile boolean enabled;
+
+	/**
+	 * Creates an empty registry with a stripe per processor.
+	 */
+	AgentMetrics() {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		this.stripes = Math.min(Integer.highestOneBit((Math.max(processors, 1) << 1) - 1), MAX_STRIPES);
+	}
+
+	/**
+	 * @return whether the probes measure their own time and the metrics are exported
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            whether the probes measure their own time and the metrics are exported
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the counter, e.g., <code>writer.bytes</code>
+	 * @return the counter of the given name, created on first use
+	 */
+	public Counter counter(final String name) {
+		final AbstractMetric metric = this.metrics.get(name);
+		if (metric != null) {
+			return (Counter) metric;
+		}
+		this.metrics.putIfAbsent(name, new Counter(name, this.stripes));
+		return (Counter) this.metrics.get(name);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the timer, e.g., <code>writer.latency</code>
+	 * @return the timer of the given name, created on first use
+	 */
+	public Timer timer(final String name) {
+		final AbstractMetric metric = this.metrics.get(name);
+		if (metric != null) {
+			return (Timer) metric;
+		}
+		this.metrics.putIfAbsent(name, new Timer(name, this.stripes));
+		return (Timer) this.metrics.get(name);
+	}
+
+	/**
+	 * @param probeName
+	 *            the name of the probe, e.g., <code>operationExecution</code>
+	 * @return the metric of the given probe, named <code>probe.&lt;probeName&gt;</code>
+	 */
+	public ProbeMetric probe(final String probeName) {
+		return new ProbeMetric(this, this.timer("probe." + probeName));
+	}
+
+	/**
+	 * Registers a gauge, replacing a gauge of the same name.
+	 *
+	 * @param name
+	 *            the name of the gauge, e.g., <code>queue.depth</code>
+	 * @param gauge
+	 *            the gauge
+	 */
+	public void gauge(final String name, final Gauge gauge) {
+		this.gauges.put(name, gauge);
+	}
+
+	/**
+	 * Writes a record per metric with events in the past interval and per gauge.
+	 */
+	@Override
+	public void sample(final IMonitoringController monitoringController) {
+		if (!this.enabled) {
+			return;
+		}
+		final long timestamp = monitoringController.getTimeSource().getTime();
+		final String hostname = monitoringController.getHostname();
+		synchronized (this) {
+			for (final AbstractMetric metric : this.metrics.values()) {
+				final AgentMetricRecord record = metric.drain(timestamp, hostname);
+				if (record != null) {
+					monitoringController.newMonitoringRecord(record);
+				}
+			}
+		}
+		for (final Map.Entry<String, Gauge> entry : this.gauges.entrySet()) {
+			monitoringController.newMonitoringRecord(new AgentMetricRecord(timestamp, hostname, entry.getKey(), 1, entry.getValue().getValue(), 0, 0, 0));
+		}
+	}
+
+	/**
+	 * @return the names of the attributes of the MBean, sorted
+	 */
+	private List<String> getAttributeNames() {
+		final List<String> names = new ArrayList<String>((this.metrics.size() * 2) + this.gauges.size());
+		for (final String name : this.metrics.keySet()) {
+			names.add(name + COUNT_SUFFIX);
+			names.add(name + TOTAL_SUFFIX);
+		}
+		names.addAll(this.gauges.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	@Override
+	public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+		final Gauge gauge = this.gauges.get(attribute);
+		if (gauge != null) {
+			return gauge.getValue();
+		}
+		if (attribute.endsWith(COUNT_SUFFIX)) {
+			final AbstractMetric metric = this.metrics.get(attribute.substring(0, attribute.length() - COUNT_SUFFIX.length()));
+			if (metric != null) {
+				return metric.getCount();
+			}
+		} else if (attribute.endsWith(TOTAL_SUFFIX)) {
+			final AbstractMetric metric = this.metrics.get(attribute.substring(0, attribute.length() - TOTAL_SUFFIX.length()));
+			if (metric != null) {
+				return metric.getTotal();
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public AttributeList getAttributes(final String[] attributes) {
+		final AttributeList list = new AttributeList();
+		for (final String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, this.getAttribute(attribute)));
+			} catch (final AttributeNotFoundException e) { // NOPMD (skip unknown attributes as specified)
+				// not part of the result
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(final AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		final List<String> names = this.getAttributeNames();
+		final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.size()];
+		for (int i = 0; i < attributes.length; i++) {
+			attributes[i] = new MBeanAttributeInfo(names.get(i), long.class.getName(), names.get(i), true, false, false);
+		}
+		return new MBeanInfo(this.getClass().getName(), "Self-monitoring metrics of the agent", attributes, null, new MBeanOperationInfo[0], null);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append("Self-monitoring: ")
+			.append(this.enabled ? "enabled" : "disabled") // NOCS (inline conditional)
+			.append(" (metrics: ")
+			.append(this.metrics.size() + this.gauges.size())
+			.append(')');
+		return builder.toString();
+	}
+}
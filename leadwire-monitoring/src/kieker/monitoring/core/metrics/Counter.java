@@ -0,0 +1,69 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+import kieker.common.record.misc.AgentMetricRecord;
+
+/**
+ * Counts events and sums up their amounts, e.g., the number of flushes and the bytes written.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class Counter extends AbstractMetric {
+
+	/**
+	 * @param name
+	 *            the name of the metric
+	 * @param stripes
+	 *            the number of stripes, a power of two
+	 */
+	Counter(final String name, final int stripes) {
+		super(name, stripes, TOTAL + 1);
+	}
+
+	/**
+	 * Counts a single event with an amount of 1.
+	 */
+	public void increment() {
+		this.add(1);
+	}
+
+	/**
+	 * Counts a single event.
+	 *
+	 * @param amount
+	 *            the amount of the event, e.g., a number of bytes
+	 */
+	public void add(final long amount) {
+		final int offset = this.stripeOffset();
+		this.cells().incrementAndGet(offset + COUNT);
+		this.cells().addAndGet(offset + TOTAL, amount);
+	}
+
+	@Override
+	AgentMetricRecord drain(final long timestamp, final String hostname) {
+		final long count = this.drainCell(COUNT);
+		final long total = this.drainCell(TOTAL);
+		if (count == 0) {
+			return null;
+		}
+		this.addDrained(count, total);
+		return new AgentMetricRecord(timestamp, hostname, this.getName(), count, total, 0, 0, 0);
+	}
+}
@@ -0,0 +1,96 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+/**
+ * Measures the invocations of a probe and the time spent in the probe itself, i.e., the time of the advice minus the
+ * time of the monitored code it proceeds to. A probe takes three timestamps:
+ *
+ * <pre>
+ * final long probeStart = PROBE_METRIC.start();
+ * ... // collect data
+ * final long proceedStart = PROBE_METRIC.mark(probeStart);
+ * try {
+ * 	return thisJoinPoint.proceed();
+ * } finally {
+ * 	final long proceedEnd = PROBE_METRIC.mark(probeStart);
+ * 	... // create the record
+ * 	PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
+ * }
+ * </pre>
+ *
+ * While the self-monitoring is disabled, the timestamps are 0 and no clock is read.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class ProbeMetric {
+
+	private final AgentMetrics metrics;
+	private final Timer overhead;
+
+	/**
+	 * @param metrics
+	 *            the registry telling whether the self-monitoring is enabled
+	 * @param overhead
+	 *            the timer of the time spent in the probe
+	 */
+	ProbeMetric(final AgentMetrics metrics, final Timer overhead) {
+		this.metrics = metrics;
+		this.overhead = overhead;
+	}
+
+	/**
+	 * @return the start of the probe, 0 if the self-monitoring is disabled
+	 */
+	public long start() {
+		return this.metrics.isEnabled() ? System.nanoTime() : 0L; // NOCS (inline conditional)
+	}
+
+	/**
+	 * @param probeStart
+	 *            the value returned by {@link #start()}
+	 * @return the current time, 0 if the invocation is not measured
+	 */
+	public long mark(final long probeStart) {
+		return (probeStart != 0L) ? System.nanoTime() : 0L; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Records the time spent in the probe, excluding the monitored code.
+	 *
+	 * @param probeStart
+	 *            the value returned by {@link #start()}
+	 * @param proceedStart
+	 *            the value returned by {@link #mark(long)} before proceeding to the monitored code
+	 * @param proceedEnd
+	 *            the value returned by {@link #mark(long)} after the monitored code has returned
+	 */
+	public void stop(final long probeStart, final long proceedStart, final long proceedEnd) {
+		if (probeStart != 0L) {
+			this.overhead.record((proceedStart - probeStart) + (System.nanoTime() - proceedEnd));
+		}
+	}
+
+	/**
+	 * @return the timer of the time spent in the probe
+	 */
+	public Timer getTimer() {
+		return this.overhead;
+	}
+}
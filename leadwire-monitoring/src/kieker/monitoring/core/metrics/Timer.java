@@ -0,0 +1,134 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import kieker.common.record.misc.AgentMetricRecord;
+
+/**
+ * Counts durations in nanoseconds and their distribution. The histogram has a bucket per power of two, so that the
+ * exported percentiles are precise up to a factor of two, which suffices to tell where the agent spends its time.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class Timer extends AbstractMetric {
+
+	/** the cell holding the maximal duration. */
+	private static final int MAX = TOTAL + 1;
+	/** the cell holding the first bucket. */
+	private static final int BUCKETS_OFFSET = MAX + 1;
+	/** the number of buckets: one for 0 and one per bit of a positive long. */
+	static final int BUCKETS = Long.SIZE;
+
+	private final long[] interval = new long[BUCKETS];
+
+	/**
+	 * @param name
+	 *            the name of the metric
+	 * @param stripes
+	 *            the number of stripes, a power of two
+	 */
+	Timer(final String name, final int stripes) {
+		super(name, stripes, BUCKETS_OFFSET + BUCKETS);
+	}
+
+	/**
+	 * @param nanos
+	 *            the duration of an event in nanoseconds
+	 */
+	public void record(final long nanos) {
+		final AtomicLongArray cells = this.cells();
+		final int offset = this.stripeOffset();
+		cells.incrementAndGet(offset + COUNT);
+		cells.addAndGet(offset + TOTAL, nanos);
+		long max = cells.get(offset + MAX);
+		while ((nanos > max) && !cells.compareAndSet(offset + MAX, max, nanos)) {
+			max = cells.get(offset + MAX);
+		}
+		cells.incrementAndGet(offset + BUCKETS_OFFSET + bucketIndex(nanos));
+	}
+
+	@Override
+	AgentMetricRecord drain(final long timestamp, final String hostname) {
+		final long count = this.drainCell(COUNT);
+		final long total = this.drainCell(TOTAL);
+		long max = 0;
+		final AtomicLongArray cells = this.cells();
+		for (int stripe = 0; stripe < this.getNumberOfStripes(); stripe++) {
+			max = Math.max(max, cells.getAndSet(this.stripeOffset(stripe) + MAX, 0));
+		}
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			this.interval[bucket] = this.drainCell(BUCKETS_OFFSET + bucket);
+		}
+		if (count == 0) {
+			return null;
+		}
+		this.addDrained(count, total);
+		return new AgentMetricRecord(timestamp, hostname, this.getName(), count, total,
+				Math.min(valueAtPercentile(this.interval, 50.0), max), Math.min(valueAtPercentile(this.interval, 99.0), max), max);
+	}
+
+	/**
+	 * @param value
+	 *            a duration
+	 * @return the index of the bucket holding the given duration, i.e., the number of significant bits
+	 */
+	static int bucketIndex(final long value) {
+		if (value <= 0) {
+			return 0;
+		}
+		return Long.SIZE - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * @param index
+	 *            the index of a bucket
+	 * @return the largest duration held by the given bucket
+	 */
+	static long bucketUpperBound(final int index) {
+		if (index == 0) {
+			return 0;
+		}
+		return (index >= (Long.SIZE - 1)) ? Long.MAX_VALUE : ((1L << index) - 1); // NOCS (inline conditional)
+	}
+
+	/**
+	 * @param counts
+	 *            the counts per bucket
+	 * @param percentile
+	 *            the percentile, e.g., 99.0
+	 * @return the upper bound of the bucket holding the given percentile, 0 if there are no counts
+	 */
+	static long valueAtPercentile(final long[] counts, final double percentile) {
+		long total = 0;
+		for (final long count : counts) {
+			total += count;
+		}
+		final long rank = (long) Math.ceil((total * percentile) / 100.0);
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if ((seen >= rank) && (seen > 0)) {
+				return bucketUpperBound(bucket);
+			}
+		}
+		return 0;
+	}
+}
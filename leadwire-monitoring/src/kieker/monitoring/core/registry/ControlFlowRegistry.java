@@ -40,9 +40,16 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	// far. Of course, negative values may occur (as a result of an overflow) -- this does not hurt!
 	private final AtomicLong lastThreadId = new AtomicLong(MonitoringController.getInstance().isDebug() ? 0 // NOCS
 			: (long) new Random().nextInt(65536) << (Long.SIZE - 16 - 1));
-	private final transient ThreadLocal<Long> threadLocalTraceId = new ThreadLocal<Long>();
-	private final transient ThreadLocal<Integer> threadLocalEoi = new ThreadLocal<Integer>();
-	private final transient ThreadLocal<Integer> threadLocalEss = new ThreadLocal<Integer>();
+	// trace id, eoi and ess live in one mutable object per thread, so that a probe needs a single lookup
+	private final transient ThreadLocal<TraceContext> threadLocalContext = new ThreadLocal<TraceContext>() {
+		@Override
+		protected TraceContext initialValue() {
+			return new TraceContext();
+		}
+	};
+
+	// decides whether the records of a new trace are written
+	private final transient TraceSampler traceSampler = MonitoringController.getInstance().getTraceSampler();
 
 	static {
 		LOG.info("First threadId will be " + INSTANCE.lastThreadId.get());
@@ -72,6 +79,37 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 		}
 	}
 
+	/**
+	 * Returns the trace context of the current thread. Probes should fetch it once per join point and
+	 * work on the returned object instead of calling the other thread-local methods of this registry.
+	 *
+	 * @return the trace context of the current thread, never null
+	 *
+	 * @since 1.14
+	 */
+	public final TraceContext getThreadLocalTraceContext() {
+		return this.threadLocalContext.get();
+	}
+
+	/**
+	 * Starts a new trace in the given context: assigns a globally unique trace id and makes the sampling decision of
+	 * the trace (see {@link TraceSampler}). The calling execution is the entry point of the trace, as described in
+	 * {@link TraceContext#beginTrace(long)}.
+	 *
+	 * @param traceContext
+	 *            the trace context of the current thread
+	 * @param endpoint
+	 *            the operation or URL starting the trace, used for the endpoint quotas
+	 * @return the id of the new trace
+	 *
+	 * @since 1.14
+	 */
+	public final long beginTrace(final TraceContext traceContext, final String endpoint) {
+		final long traceId = this.getUniqueTraceId();
+		traceContext.beginTrace(traceId, this.traceSampler.sample(endpoint));
+		return traceId;
+	}
+
 	/**
 	 * This method returns a thread-local traceid which is globally unique and stored it local for the thread. The thread is responsible for invalidating the stored
 	 * curTraceId using the method unsetThreadLocalTraceId()!
@@ -80,7 +118,7 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 */
 	public final long getAndStoreUniqueThreadLocalTraceId() {
 		final long id = this.getUniqueTraceId();
-		this.threadLocalTraceId.set(id);
+		this.threadLocalContext.get().setTraceId(id);
 		return id;
 	}
 
@@ -91,7 +129,7 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 *            The trace ID to store in a thread-local way.
 	 */
 	public final void storeThreadLocalTraceId(final long traceId) {
-		this.threadLocalTraceId.set(traceId);
+		this.threadLocalContext.get().setTraceId(traceId);
 	}
 
 	/**
@@ -100,18 +138,14 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * @return the traceid. -1 if no curTraceId has been registered for this thread.
 	 */
 	public final long recallThreadLocalTraceId() {
-		final Long traceIdObj = this.threadLocalTraceId.get();
-		if (traceIdObj == null) {
-			return -1;
-		}
-		return traceIdObj;
+		return this.threadLocalContext.get().getTraceId();
 	}
 
 	/**
 	 * This method unsets a previously registered traceid.
 	 */
 	public final void unsetThreadLocalTraceId() {
-		this.threadLocalTraceId.remove();
+		this.threadLocalContext.get().unsetTraceId();
 	}
 
 	/**
@@ -121,7 +155,7 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 *            The execution order index to register.
 	 */
 	public final void storeThreadLocalEOI(final int eoi) {
-		this.threadLocalEoi.set(eoi);
+		this.threadLocalContext.get().setEoi(eoi);
 	}
 
 	/**
@@ -130,13 +164,10 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * @return Increments the thread local execution order index and returns it.
 	 */
 	public final int incrementAndRecallThreadLocalEOI() {
-		final Integer curEoi = this.threadLocalEoi.get();
-		if (curEoi == null) {
+		final int newEoi = this.threadLocalContext.get().incrementAndGetEoi();
+		if (newEoi == TraceContext.INVALID) {
 			LOG.error("eoi has not been registered before");
-			return -1;
 		}
-		final int newEoi = curEoi + 1;
-		this.threadLocalEoi.set(newEoi);
 		return newEoi;
 	}
 
@@ -146,10 +177,9 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * @return the sessionid. -1 if no curEoi registered.
 	 */
 	public final int recallThreadLocalEOI() {
-		final Integer curEoi = this.threadLocalEoi.get();
-		if (curEoi == null) {
+		final int curEoi = this.threadLocalContext.get().getEoi();
+		if (curEoi == TraceContext.INVALID) {
 			LOG.error("eoi has not been registered before");
-			return -1;
 		}
 		return curEoi;
 	}
@@ -158,7 +188,7 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * This method unsets a previously registered traceid.
 	 */
 	public final void unsetThreadLocalEOI() {
-		this.threadLocalEoi.remove();
+		this.threadLocalContext.get().unsetEoi();
 	}
 
 	/**
@@ -169,7 +199,7 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 *            The execution stack size to store.
 	 */
 	public final void storeThreadLocalESS(final int ess) {
-		this.threadLocalEss.set(ess);
+		this.threadLocalContext.get().setEss(ess);
 	}
 
 	/**
@@ -178,12 +208,10 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * @return The current execution stack size, before the incrementation.
 	 */
 	public final int recallAndIncrementThreadLocalESS() {
-		final Integer curEss = this.threadLocalEss.get();
-		if (curEss == null) {
+		final int curEss = this.threadLocalContext.get().getAndIncrementEss();
+		if (curEss == TraceContext.INVALID) {
 			LOG.error("ess has not been registered before");
-			return -1;
 		}
-		this.threadLocalEss.set(curEss + 1);
 		return curEss;
 	}
 
@@ -193,10 +221,9 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * @return the sessionid. -1 if no curEss registered.
 	 */
 	public final int recallThreadLocalESS() {
-		final Integer ess = this.threadLocalEss.get();
-		if (ess == null) {
+		final int ess = this.threadLocalContext.get().getEss();
+		if (ess == TraceContext.INVALID) {
 			LOG.error("ess has not been registered before");
-			return -1;
 		}
 		return ess;
 	}
@@ -205,6 +232,6 @@ public enum ControlFlowRegistry { // Singleton (Effective Java #3)
 	 * This method unsets a previously registered curEss.
 	 */
 	public final void unsetThreadLocalESS() {
-		this.threadLocalEss.remove();
+		this.threadLocalContext.get().unsetEss();
 	}
 }
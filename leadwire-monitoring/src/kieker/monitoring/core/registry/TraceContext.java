@@ -0,0 +1,235 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.monitoring.core.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kieker.common.record.IMonitoringRecord;
+
+/**
+ * Mutable per-thread trace state (trace id, execution order index and execution stack size) kept in
+ * primitive fields. An instance is obtained once per join point via
+ * {@link ControlFlowRegistry#getThreadLocalTraceContext()} and must only be used by its owning thread.
+ *
+ * <p>
+ * The context also carries the sampling decision made at the start of the trace (see {@link TraceSampler}) and,
+ * for traces decided at their end, the records buffered so far.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class TraceContext {
+
+	/** Marks that no trace is active for the thread. */
+	public static final long NO_TRACE_ID = -1L;
+	/** Returned for an eoi or ess which has not been registered. */
+	public static final int INVALID = -1;
+
+	/** The records of the trace are written. */
+	public static final int SAMPLED = 0;
+	/** The records of the trace are buffered until the trace ends and written only if it was slow or failed. */
+	public static final int BUFFERED = 1;
+	/** The records of the trace are not created at all. */
+	public static final int DROPPED = 2;
+
+	/** Marks an unregistered eoi or ess (distinct from any value a probe may store). */
+	private static final int UNSET = Integer.MIN_VALUE;
+
+	private long traceId = NO_TRACE_ID;
+	private int eoi = UNSET;
+	private int ess = UNSET;
+	private int sampling = SAMPLED;
+	private boolean failed;
+	/** created on the first buffered trace of the thread and reused afterwards. */
+	private List<IMonitoringRecord> buffer;
+
+	TraceContext() {
+		// created by the ControlFlowRegistry only
+	}
+
+	/**
+	 * Starts a new trace in which the calling execution is the entry point: the entry point has eoi 0 and
+	 * ess 0, the next execution will get eoi 1 and ess 1.
+	 *
+	 * @param newTraceId
+	 *            the id of the new trace
+	 */
+	public void beginTrace(final long newTraceId) {
+		this.beginTrace(newTraceId, SAMPLED);
+	}
+
+	/**
+	 * Starts a new trace like {@link #beginTrace(long)} with the given sampling decision.
+	 *
+	 * @param newTraceId
+	 *            the id of the new trace
+	 * @param newSampling
+	 *            {@link #SAMPLED}, {@link #BUFFERED} or {@link #DROPPED}
+	 */
+	public void beginTrace(final long newTraceId, final int newSampling) {
+		this.traceId = newTraceId;
+		this.eoi = 0;
+		this.ess = 1;
+		this.sampling = newSampling;
+		this.failed = false;
+	}
+
+	/**
+	 * Clears trace id, eoi, ess, the sampling decision and the buffered records, typically when the entry point of a
+	 * trace returns.
+	 */
+	public void reset() {
+		this.traceId = NO_TRACE_ID;
+		this.eoi = UNSET;
+		this.ess = UNSET;
+		this.sampling = SAMPLED;
+		this.failed = false;
+		if (this.buffer != null) {
+			this.buffer.clear();
+		}
+	}
+
+	/**
+	 * @return whether a trace is active for the thread
+	 */
+	public boolean isTraceActive() {
+		return this.traceId != NO_TRACE_ID;
+	}
+
+	/**
+	 * @return the trace id or {@link #NO_TRACE_ID}
+	 */
+	public long getTraceId() {
+		return this.traceId;
+	}
+
+	public void setTraceId(final long traceId) {
+		this.traceId = traceId;
+	}
+
+	public void unsetTraceId() {
+		this.traceId = NO_TRACE_ID;
+	}
+
+	/**
+	 * @return the current execution order index or {@link #INVALID} if none has been registered
+	 */
+	public int getEoi() {
+		return (this.eoi == UNSET) ? INVALID : this.eoi; // NOCS (inline conditional)
+	}
+
+	public void setEoi(final int eoi) {
+		this.eoi = eoi;
+	}
+
+	public void unsetEoi() {
+		this.eoi = UNSET;
+	}
+
+	/**
+	 * @return the incremented execution order index or {@link #INVALID} if none has been registered
+	 */
+	public int incrementAndGetEoi() {
+		if (this.eoi == UNSET) {
+			return INVALID;
+		}
+		return ++this.eoi;
+	}
+
+	/**
+	 * @return the current execution stack size or {@link #INVALID} if none has been registered
+	 */
+	public int getEss() {
+		return (this.ess == UNSET) ? INVALID : this.ess; // NOCS (inline conditional)
+	}
+
+	public void setEss(final int ess) {
+		this.ess = ess;
+	}
+
+	public void unsetEss() {
+		this.ess = UNSET;
+	}
+
+	/**
+	 * @return the execution stack size before the incrementation or {@link #INVALID} if none has been registered
+	 */
+	public int getAndIncrementEss() {
+		if (this.ess == UNSET) {
+			return INVALID;
+		}
+		return this.ess++;
+	}
+
+	/**
+	 * @return {@link #SAMPLED}, {@link #BUFFERED} or {@link #DROPPED}
+	 */
+	public int getSampling() {
+		return this.sampling;
+	}
+
+	/**
+	 * Sets the sampling decision, e.g., when the trace is continued from a propagated request.
+	 *
+	 * @param sampling
+	 *            {@link #SAMPLED}, {@link #BUFFERED} or {@link #DROPPED}
+	 */
+	public void setSampling(final int sampling) {
+		this.sampling = sampling;
+	}
+
+	/**
+	 * @return whether the records of the trace are written; this is the decision propagated to other services
+	 */
+	public boolean isSampled() {
+		return this.sampling == SAMPLED;
+	}
+
+	/**
+	 * Probes may skip the creation of their records if this method returns false.
+	 *
+	 * @return whether the records of the trace are written or buffered
+	 */
+	public boolean isRecording() {
+		return this.sampling != DROPPED;
+	}
+
+	/**
+	 * Marks the trace as failed, so that its buffered records are written when it ends.
+	 */
+	public void markFailed() {
+		this.failed = true;
+	}
+
+	/**
+	 * @return whether an execution of the trace has thrown an exception
+	 */
+	public boolean isFailed() {
+		return this.failed;
+	}
+
+	/**
+	 * @return the records buffered for the trace so far
+	 */
+	List<IMonitoringRecord> getBuffer() {
+		if (this.buffer == null) {
+			this.buffer = new ArrayList<>();
+		}
+		return this.buffer;
+	}
+}
@@ -0,0 +1,317 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.registry;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.util.map.BoundedConcurrentHashMap;
+import kieker.common.util.map.BoundedConcurrentHashMap.BoundedCacheBehaviour;
+import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.controller.Backpressure;
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.sampler.ISampler;
+
+/**
+ * Decides once per trace, when the trace starts, whether its records are written. The decision is stored in the
+ * {@link TraceContext} of the thread and propagated to called services, which follow it. Three head-based criteria
+ * apply, in this order:
+ *
+ * <ul>
+ * <li><b>rate</b>: the fraction of the traces sampled at random.</li>
+ * <li><b>queue fill level</b>: while the fullest writer queue is filled above a configured level, the rate is reduced
+ * linearly, down to 0 for a full queue.</li>
+ * <li><b>endpoint quota</b>: at most the configured number of traces per second is sampled per endpoint (entry
+ * operation or URL), so that frequent endpoints do not crowd out rare ones.</li>
+ * </ul>
+ * Additionally, the rate is lowered according to the {@link Backpressure} of the writer.
+ *
+ * <p>
+ * In tail-based mode, the records of the traces not sampled at their start are buffered by their thread and written
+ * when the trace ends, but only if it has failed or took at least the configured duration. A trace whose buffer
+ * overflows is written completely.
+ *
+ * <p>
+ * When scheduled as sampler (once per second), the quotas are renewed and the queue fill level is updated.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class TraceSampler implements ISampler {
+
+	private static final double DEFAULT_RATE = 1.0;
+	private static final int DEFAULT_ENDPOINT_QUOTA = 0;
+	private static final double DEFAULT_QUEUE_FILL_THRESHOLD = 1.0;
+	private static final long DEFAULT_TAIL_THRESHOLD = 1000;
+	private static final int DEFAULT_TAIL_MAX_RECORDS = 1000;
+	private static final int MAX_ENDPOINTS = 1000;
+
+	private final double rate;
+	private final int endpointQuota;
+	private final double queueFillThreshold;
+	private final boolean tailBased;
+	private final long tailThreshold;
+	private final int tailMaxRecords;
+	private final Backpressure backpressure;
+	/** the number of traces sampled per endpoint in the current second. */
+	private final ConcurrentMap<String, AtomicInteger> endpointCounts;
+	/** shared by the endpoints exceeding the maximum number of endpoints. */
+	private final AtomicInteger otherEndpointsCount = new AtomicInteger();
+
+	/** the rate reduced according to the queue fill level. */
+	private volatile double effectiveRate;
+
+	/**
+	 * @param rate
+	 *            the fraction of the traces sampled, between 0 and 1
+	 * @param endpointQuota
+	 *            the maximum number of traces sampled per endpoint and second, 0 for no quota
+	 * @param queueFillThreshold
+	 *            the queue fill level above which the rate is reduced, 1.0 to never reduce it
+	 * @param tailBased
+	 *            whether the traces not sampled at their start are buffered and decided at their end
+	 * @param tailThreshold
+	 *            the duration of the entry point (in the unit of the time source) from which on a buffered trace is
+	 *            written
+	 * @param tailMaxRecords
+	 *            the maximum number of records buffered per trace
+	 */
+	public TraceSampler(final double rate, final int endpointQuota, final double queueFillThreshold, final boolean tailBased, final long tailThreshold,
+			final int tailMaxRecords) {
+		this(rate, endpointQuota, queueFillThreshold, tailBased, tailThreshold, tailMaxRecords, Backpressure.NONE);
+	}
+
+	/**
+	 * @param rate
+	 *            the fraction of the traces sampled, between 0 and 1
+	 * @param endpointQuota
+	 *            the maximum number of traces sampled per endpoint and second, 0 for no quota
+	 * @param queueFillThreshold
+	 *            the queue fill level above which the rate is reduced, 1.0 to never reduce it
+	 * @param tailBased
+	 *            whether the traces not sampled at their start are buffered and decided at their end
+	 * @param tailThreshold
+	 *            the duration of the entry point (in the unit of the time source) from which on a buffered trace is
+	 *            written
+	 * @param tailMaxRecords
+	 *            the maximum number of records buffered per trace
+	 * @param backpressure
+	 *            the backpressure signal of the writer
+	 */
+	public TraceSampler(final double rate, final int endpointQuota, final double queueFillThreshold, final boolean tailBased, final long tailThreshold,
+			final int tailMaxRecords, final Backpressure backpressure) {
+		this.rate = Math.min(Math.max(rate, 0.0), 1.0);
+		this.endpointQuota = Math.max(endpointQuota, 0);
+		this.queueFillThreshold = Math.min(Math.max(queueFillThreshold, 0.0), 1.0);
+		this.tailBased = tailBased;
+		this.tailThreshold = tailThreshold;
+		this.tailMaxRecords = Math.max(tailMaxRecords, 1);
+		this.backpressure = backpressure;
+		this.endpointCounts = new BoundedConcurrentHashMap<String, AtomicInteger>(BoundedCacheBehaviour.IGNORE_NEW_ENTRIES, MAX_ENDPOINTS);
+		this.effectiveRate = this.rate;
+	}
+
+	/**
+	 * Creates the trace sampler as configured.
+	 *
+	 * @param configuration
+	 *            the configuration of the monitoring controller
+	 * @param backpressure
+	 *            the backpressure signal of the writer
+	 * @return the new trace sampler
+	 */
+	public static TraceSampler create(final Configuration configuration, final Backpressure backpressure) {
+		return new TraceSampler(
+				configuration.getDoubleProperty(ConfigurationFactory.TRACE_SAMPLING_RATE, DEFAULT_RATE),
+				configuration.getIntProperty(ConfigurationFactory.TRACE_SAMPLING_ENDPOINT_QUOTA, DEFAULT_ENDPOINT_QUOTA),
+				configuration.getDoubleProperty(ConfigurationFactory.TRACE_SAMPLING_QUEUE_FILL_THRESHOLD, DEFAULT_QUEUE_FILL_THRESHOLD),
+				configuration.getBooleanProperty(ConfigurationFactory.TRACE_SAMPLING_TAIL_ENABLED, false),
+				configuration.getIntProperty(ConfigurationFactory.TRACE_SAMPLING_TAIL_THRESHOLD, (int) DEFAULT_TAIL_THRESHOLD),
+				configuration.getIntProperty(ConfigurationFactory.TRACE_SAMPLING_TAIL_MAX_RECORDS, DEFAULT_TAIL_MAX_RECORDS),
+				backpressure);
+	}
+
+	/**
+	 * @return whether the sampler has to be scheduled, i.e., whether quotas or the queue fill level apply
+	 */
+	public boolean isAdaptive() {
+		return (this.endpointQuota > 0) || (this.queueFillThreshold < 1.0);
+	}
+
+	/**
+	 * Makes the sampling decision for a new trace.
+	 *
+	 * @param endpoint
+	 *            the operation or URL starting the trace, may be null
+	 * @return {@link TraceContext#SAMPLED}, {@link TraceContext#BUFFERED} or {@link TraceContext#DROPPED}
+	 */
+	public int sample(final String endpoint) {
+		if (this.isHeadSampled(endpoint)) {
+			return TraceContext.SAMPLED;
+		}
+		return this.tailBased ? TraceContext.BUFFERED : TraceContext.DROPPED; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Makes the sampling decision for a trace continued from another service.
+	 *
+	 * @param sampledByCaller
+	 *            the decision propagated by the calling service
+	 * @return {@link TraceContext#SAMPLED}, {@link TraceContext#BUFFERED} or {@link TraceContext#DROPPED}
+	 */
+	public int follow(final boolean sampledByCaller) {
+		if (sampledByCaller) {
+			return TraceContext.SAMPLED;
+		}
+		return this.tailBased ? TraceContext.BUFFERED : TraceContext.DROPPED; // NOCS (inline conditional)
+	}
+
+	private boolean isHeadSampled(final String endpoint) {
+		final double currentRate = this.effectiveRate * this.backpressure.getSamplingFactor();
+		if ((currentRate < 1.0) && (ThreadLocalRandom.current().nextDouble() >= currentRate)) {
+			return false;
+		}
+		if ((this.endpointQuota == 0) || (endpoint == null)) {
+			return true;
+		}
+		return this.endpointCount(endpoint).incrementAndGet() <= this.endpointQuota;
+	}
+
+	private AtomicInteger endpointCount(final String endpoint) {
+		final AtomicInteger count = this.endpointCounts.get(endpoint);
+		if (count != null) {
+			return count;
+		}
+		this.endpointCounts.putIfAbsent(endpoint, new AtomicInteger());
+		// null if the maximum number of endpoints is reached
+		final AtomicInteger addedCount = this.endpointCounts.get(endpoint);
+		return (addedCount != null) ? addedCount : this.otherEndpointsCount; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Writes the given record of the current trace, buffers it, or discards it, depending on the sampling decision.
+	 *
+	 * @param monitoringController
+	 *            the controller to write the record to
+	 * @param traceContext
+	 *            the context of the current trace
+	 * @param record
+	 *            the record to write
+	 */
+	public void record(final IMonitoringController monitoringController, final TraceContext traceContext, final IMonitoringRecord record) {
+		switch (traceContext.getSampling()) {
+		case TraceContext.SAMPLED:
+			monitoringController.newMonitoringRecord(record);
+			break;
+		case TraceContext.BUFFERED:
+			final List<IMonitoringRecord> buffer = traceContext.getBuffer();
+			buffer.add(record);
+			if (buffer.size() >= this.tailMaxRecords) {
+				// too large to be buffered: a trace this long is worth keeping anyway
+				this.writeBuffer(monitoringController, buffer);
+				traceContext.setSampling(TraceContext.SAMPLED);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Ends the current trace: writes its buffered records if it has failed or has been slow, resets the trace context,
+	 * and hands the staged records over to the writer. Must be called by the entry point of the trace.
+	 *
+	 * @param monitoringController
+	 *            the controller to write the records to
+	 * @param traceContext
+	 *            the context of the current trace
+	 * @param duration
+	 *            the duration of the entry point
+	 */
+	public void endTrace(final IMonitoringController monitoringController, final TraceContext traceContext, final long duration) {
+		if ((traceContext.getSampling() == TraceContext.BUFFERED) && (traceContext.isFailed() || (duration >= this.tailThreshold))) {
+			this.writeBuffer(monitoringController, traceContext.getBuffer());
+		}
+		traceContext.reset();
+		monitoringController.flushStagedRecords();
+	}
+
+	private void writeBuffer(final IMonitoringController monitoringController, final List<IMonitoringRecord> buffer) {
+		for (final IMonitoringRecord record : buffer) {
+			monitoringController.newMonitoringRecord(record);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Renews the endpoint quotas and adapts the rate to the current queue fill level.
+	 */
+	@Override
+	public void sample(final IMonitoringController monitoringController) {
+		final Iterator<AtomicInteger> iterator = this.endpointCounts.values().iterator();
+		while (iterator.hasNext()) {
+			// forget the endpoints without sampled traces in the last second
+			if (iterator.next().getAndSet(0) == 0) {
+				iterator.remove();
+			}
+		}
+		this.otherEndpointsCount.set(0);
+
+		if (this.queueFillThreshold < 1.0) {
+			final double fillLevel = monitoringController.getQueueFillLevel();
+			if (fillLevel <= this.queueFillThreshold) {
+				this.effectiveRate = this.rate;
+			} else {
+				this.effectiveRate = (this.rate * (1.0 - fillLevel)) / (1.0 - this.queueFillThreshold);
+			}
+		}
+	}
+
+	/**
+	 * @return the rate currently applied
+	 */
+	public double getEffectiveRate() {
+		return this.effectiveRate;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append("Trace sampling rate: ")
+			.append(this.rate)
+			.append(", endpoint quota: ")
+			.append((this.endpointQuota > 0) ? String.valueOf(this.endpointQuota) : "none") // NOCS (inline conditional)
+			.append(", queue fill threshold: ")
+			.append(this.queueFillThreshold)
+			.append(", tail-based: ")
+			.append(this.tailBased);
+		if (this.tailBased) {
+			builder.append(" (threshold: ")
+				.append(this.tailThreshold)
+				.append(", max records: ")
+				.append(this.tailMaxRecords)
+				.append(')');
+		}
+		return builder.toString();
+	}
+}
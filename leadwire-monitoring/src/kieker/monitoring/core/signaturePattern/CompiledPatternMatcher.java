@@ -0,0 +1,214 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.monitoring.core.signaturePattern;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable matcher compiled from an ordered list of {@link PatternEntry}s. Like a linear scan over the list in
+ * reverse order, the last matching pattern decides whether a signature is activated; if none matches, the signature
+ * is activated.
+ *
+ * The patterns are indexed in a trie over the literal segments of their fully qualified method names (see
+ * {@link PatternParser#parseLiteralNamePrefix(String)}), so that only patterns which can possibly match a signature
+ * have their regular expression evaluated. Decisions are additionally cached per signature id. The cache tolerates
+ * races: a lost update merely causes a decision to be computed again.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class CompiledPatternMatcher {
+
+	private static final byte UNKNOWN = 0;
+	private static final byte ACTIVATED = 1;
+	private static final byte DEACTIVATED = 2;
+
+	private static final int INITIAL_DECISION_CACHE_SIZE = 256;
+
+	private final PatternEntry[] patterns;
+	private final Node root;
+	private final int generation;
+
+	private volatile byte[] decisions; // NOPMD (volatile array: only the reference needs to be published)
+
+	/**
+	 * Creates a new matcher.
+	 *
+	 * @param patternList
+	 *            The pattern entries in the order in which they have been added.
+	 * @param generation
+	 *            The generation of the pattern list this matcher has been compiled from.
+	 */
+	public CompiledPatternMatcher(final List<PatternEntry> patternList, final int generation) {
+		this.patterns = patternList.toArray(new PatternEntry[patternList.size()]);
+		this.generation = generation;
+		this.decisions = new byte[INITIAL_DECISION_CACHE_SIZE];
+
+		final BuildNode buildRoot = new BuildNode();
+		for (int i = 0; i < this.patterns.length; i++) {
+			BuildNode node = buildRoot;
+			for (final String segment : PatternParser.parseLiteralNamePrefix(this.patterns[i].getStrPattern())) {
+				BuildNode child = node.children.get(segment);
+				if (child == null) {
+					child = new BuildNode();
+					node.children.put(segment, child);
+				}
+				node = child;
+			}
+			node.patternIndices.add(i);
+		}
+		this.root = buildRoot.freeze();
+	}
+
+	/**
+	 * @return The generation of the pattern list this matcher has been compiled from.
+	 */
+	public int getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * @return The number of patterns.
+	 */
+	public int size() {
+		return this.patterns.length;
+	}
+
+	/**
+	 * Returns whether the signature with the given id is activated, using the per-id decision cache.
+	 *
+	 * @param signatureId
+	 *            A non-negative id which uniquely identifies the signature.
+	 * @param signature
+	 *            The signature, used if the decision has not been cached yet.
+	 * @return true if the signature is activated
+	 */
+	public boolean isActivated(final int signatureId, final String signature) {
+		byte[] cache = this.decisions;
+		if (signatureId < cache.length) {
+			final byte decision = cache[signatureId];
+			if (decision != UNKNOWN) {
+				return decision == ACTIVATED;
+			}
+		}
+		final boolean activated = this.matches(signature);
+		if (signatureId >= cache.length) {
+			final byte[] grown = new byte[Math.max(signatureId + 1, cache.length * 2)];
+			System.arraycopy(cache, 0, grown, 0, cache.length);
+			this.decisions = grown;
+			cache = grown;
+		}
+		cache[signatureId] = activated ? ACTIVATED : DEACTIVATED; // NOCS (inline conditional)
+		return activated;
+	}
+
+	/**
+	 * Evaluates the patterns for the given signature without consulting the decision cache.
+	 *
+	 * @param signature
+	 *            The signature to match.
+	 * @return true if the signature is activated
+	 */
+	public boolean matches(final String signature) {
+		int bestIndex = this.bestMatch(this.root, signature, -1);
+
+		final int openingParenthesis = signature.indexOf('(');
+		if (openingParenthesis > 0) {
+			int start = openingParenthesis - 1;
+			while ((start >= 0) && !Character.isWhitespace(signature.charAt(start))) {
+				start--;
+			}
+			start++;
+			Node node = this.root;
+			while ((node.children != null) && (start < openingParenthesis)) {
+				int end = signature.indexOf('.', start);
+				if ((end == -1) || (end > openingParenthesis)) {
+					end = openingParenthesis;
+				}
+				node = node.children.get(signature.substring(start, end));
+				if (node == null) {
+					break;
+				}
+				bestIndex = this.bestMatch(node, signature, bestIndex);
+				start = end + 1;
+			}
+		}
+
+		if (bestIndex >= 0) {
+			return this.patterns[bestIndex].isActivated();
+		}
+		return true; // if nothing matches, the default is true!
+	}
+
+	/**
+	 * @return The highest index of a pattern of the given node matching the signature, if higher than the given index.
+	 */
+	private int bestMatch(final Node node, final String signature, final int currentBest) {
+		for (final int index : node.patternIndices) { // descending
+			if (index <= currentBest) {
+				break;
+			}
+			if (this.patterns[index].getPattern().matcher(signature).matches()) {
+				return index;
+			}
+		}
+		return currentBest;
+	}
+
+	/**
+	 * A node of the compiled trie.
+	 */
+	private static final class Node {
+		final Map<String, Node> children; // null for leaves
+		final int[] patternIndices; // descending
+
+		Node(final Map<String, Node> children, final int[] patternIndices) {
+			this.children = children;
+			this.patternIndices = patternIndices;
+		}
+	}
+
+	/**
+	 * A mutable node used while building the trie.
+	 */
+	private static final class BuildNode {
+		final Map<String, BuildNode> children = new HashMap<String, BuildNode>(); // NOPMD (no concurrent access)
+		final List<Integer> patternIndices = new ArrayList<Integer>();
+
+		BuildNode() {
+			// only used by the enclosing class
+		}
+
+		Node freeze() {
+			final int[] indices = new int[this.patternIndices.size()];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = this.patternIndices.get(indices.length - 1 - i);
+			}
+			Map<String, Node> frozenChildren = null;
+			if (!this.children.isEmpty()) {
+				frozenChildren = new HashMap<String, Node>(); // NOPMD (read-only after construction)
+				for (final Map.Entry<String, BuildNode> entry : this.children.entrySet()) {
+					frozenChildren.put(entry.getKey(), entry.getValue().freeze());
+				}
+			}
+			return new Node(frozenChildren, indices);
+		}
+	}
+}
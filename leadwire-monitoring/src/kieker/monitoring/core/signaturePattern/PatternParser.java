@@ -158,6 +158,34 @@ public final class PatternParser {
 		return Pattern.compile(sb.toString());
 	}
 
+	/**
+	 * Returns the leading segments of the fully qualified method name of the given pattern which contain no wildcard.
+	 * Every signature matched by the pattern has a fully qualified name (the token before the opening parenthesis) starting
+	 * with exactly these segments. Returns an empty array for regular expressions, for "*", and for names starting with a wildcard.
+	 *
+	 * @param strPattern
+	 *            A pattern string accepted by {@link #parseToPattern(String)}.
+	 * @return The literal name segments, possibly empty.
+	 *
+	 * @since 1.14
+	 */
+	public static final String[] parseLiteralNamePrefix(final String strPattern) {
+		final String trimPattern = strPattern.trim();
+		final int openingParenthesis = trimPattern.indexOf('(');
+		if ((trimPattern.length() == 0) || (trimPattern.charAt(0) == SignatureFactory.PATTERN_PREFIX) || (openingParenthesis == -1)) {
+			return new String[0];
+		}
+		final String[] array = trimPattern.substring(0, openingParenthesis).trim().split("\\s+"); // NOPMD
+		final String[] segments = array[array.length - 1].split("\\.", -1);
+		int literals = 0;
+		while ((literals < segments.length) && (segments[literals].length() > 0) && (segments[literals].indexOf('*') == -1)) {
+			literals++;
+		}
+		final String[] prefix = new String[literals];
+		System.arraycopy(segments, 0, prefix, 0, literals);
+		return prefix;
+	}
+
 	private static final String parseMethodName(final String methodName) throws InvalidPatternException {
 		try {
 			return PatternParser.parseIdentifier(methodName);
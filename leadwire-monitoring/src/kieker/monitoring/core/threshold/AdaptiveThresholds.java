@@ -0,0 +1,306 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.threshold;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.record.latency.LatencyHistogramRecord;
+import kieker.common.util.map.BoundedConcurrentHashMap;
+import kieker.common.util.map.BoundedConcurrentHashMap.BoundedCacheBehaviour;
+import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.controller.Backpressure;
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
+import kieker.monitoring.core.sampler.ISampler;
+
+/**
+ * The latency histograms and recording thresholds per operation. If operations are tracked, a {@link LatencyHistogram}
+ * counts the durations of all executions of each operation. When scheduled as sampler, it exports the distribution of
+ * each operation as a {@link LatencyHistogramRecord} per interval. Two modes make use of the histograms:
+ *
+ * <ul>
+ * <li><b>adaptive thresholds</b>: only executions slower than a configured percentile of the recent durations of their
+ * operation are recorded individually. The distribution used for the thresholds decays by half per interval, so that
+ * the thresholds follow changes of the latencies.</li>
+ * <li><b>aggregation</b>: the exported distributions replace the individual records of fast executions. Only the
+ * executions exceeding the threshold and those of the traces sampled by the {@link TraceSampler} (see
+ * {@link #isRecordingAll(TraceContext)}) are recorded individually.</li>
+ * </ul>
+ *
+ * <p>
+ * Until an operation has been executed often enough, for operations exceeding the maximum number of tracked operations,
+ * and if the thresholds are not adaptive, the static threshold is used. If neither mode is enabled, no operation is
+ * tracked at all.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class AdaptiveThresholds implements ISampler {
+
+	private static final double DEFAULT_PERCENTILE = 99.0;
+	private static final int DEFAULT_MIN_SAMPLES = 100;
+	private static final int DEFAULT_MAX_OPERATIONS = 1000;
+	private static final int DEFAULT_STRIPES = 4;
+
+	private final String kind;
+	private final boolean adaptive;
+	private final boolean aggregating;
+	private final int stripes;
+	private final long staticThreshold;
+	private final double percentile;
+	private final long minSamples;
+	/** raises the thresholds while the writer cannot keep up. */
+	private final Backpressure backpressure;
+	private final ConcurrentMap<String, LatencyHistogram> histograms;
+	/** used if the thresholds are disabled or no further operation can be tracked. */
+	private final LatencyHistogram staticHistogram;
+	/**
+	 * the histograms removed from the map by the last sample, which threads having obtained them just before may still
+	 * count into; only accessed by the sampler.
+	 */
+	private final List<LatencyHistogram> retired = new ArrayList<LatencyHistogram>();
+	/** the counts of the interval being exported; only accessed by the sampler. */
+	private final long[] interval = new long[LatencyHistogram.BUCKETS];
+
+	/**
+	 * Creates thresholds without aggregation.
+	 *
+	 * @param kind
+	 *            {@link LatencyHistogramRecord#KIND_METHOD} or {@link LatencyHistogramRecord#KIND_SQL}
+	 * @param adaptive
+	 *            whether to adapt the thresholds
+	 * @param staticThreshold
+	 *            the threshold used while an operation has too few samples
+	 * @param percentile
+	 *            the percentile of the durations used as threshold, e.g., 99.0
+	 * @param minSamples
+	 *            the minimum number of samples of an operation before its threshold is adapted
+	 * @param maxOperations
+	 *            the maximum number of operations tracked at the same time
+	 */
+	public AdaptiveThresholds(final String kind, final boolean adaptive, final long staticThreshold, final double percentile, final long minSamples,
+			final int maxOperations) {
+		this(kind, adaptive, false, staticThreshold, percentile, minSamples, maxOperations, 1);
+	}
+
+	/**
+	 * @param kind
+	 *            {@link LatencyHistogramRecord#KIND_METHOD} or {@link LatencyHistogramRecord#KIND_SQL}
+	 * @param adaptive
+	 *            whether to adapt the thresholds
+	 * @param aggregating
+	 *            whether the exported distributions replace the individual records of unsampled traces
+	 * @param staticThreshold
+	 *            the threshold used while an operation has too few samples
+	 * @param percentile
+	 *            the percentile of the durations used as threshold, e.g., 99.0
+	 * @param minSamples
+	 *            the minimum number of samples of an operation before its threshold is adapted
+	 * @param maxOperations
+	 *            the maximum number of operations tracked at the same time
+	 * @param stripes
+	 *            the number of stripes per histogram, rounded up to a power of two
+	 */
+	public AdaptiveThresholds(final String kind, final boolean adaptive, final boolean aggregating, final long staticThreshold, final double percentile,
+			final long minSamples, final int maxOperations, final int stripes) {
+		this(kind, adaptive, aggregating, staticThreshold, percentile, minSamples, maxOperations, stripes, Backpressure.NONE);
+	}
+
+	/**
+	 * @param kind
+	 *            {@link LatencyHistogramRecord#KIND_METHOD} or {@link LatencyHistogramRecord#KIND_SQL}
+	 * @param adaptive
+	 *            whether to adapt the thresholds
+	 * @param aggregating
+	 *            whether the exported distributions replace the individual records of unsampled traces
+	 * @param staticThreshold
+	 *            the threshold used while an operation has too few samples
+	 * @param percentile
+	 *            the percentile of the durations used as threshold, e.g., 99.0
+	 * @param minSamples
+	 *            the minimum number of samples of an operation before its threshold is adapted
+	 * @param maxOperations
+	 *            the maximum number of operations tracked at the same time
+	 * @param stripes
+	 *            the number of stripes per histogram, rounded up to a power of two
+	 * @param backpressure
+	 *            the backpressure signal of the writer
+	 */
+	public AdaptiveThresholds(final String kind, final boolean adaptive, final boolean aggregating, final long staticThreshold, final double percentile,
+			final long minSamples, final int maxOperations, final int stripes, final Backpressure backpressure) {
+		this.kind = kind;
+		this.adaptive = adaptive;
+		this.aggregating = aggregating;
+		this.stripes = (stripes > 1) ? Integer.highestOneBit((stripes - 1) << 1) : 1; // NOCS (inline conditional)
+		this.staticThreshold = staticThreshold;
+		this.percentile = percentile;
+		this.minSamples = minSamples;
+		this.backpressure = backpressure;
+		this.histograms = new BoundedConcurrentHashMap<String, LatencyHistogram>(BoundedCacheBehaviour.IGNORE_NEW_ENTRIES, maxOperations);
+		this.staticHistogram = new LatencyHistogram(kind, staticThreshold, 0, backpressure);
+	}
+
+	/**
+	 * Creates the thresholds for the given kind of operations as configured.
+	 *
+	 * @param configuration
+	 *            the configuration of the monitoring controller
+	 * @param kind
+	 *            {@link LatencyHistogramRecord#KIND_METHOD} or {@link LatencyHistogramRecord#KIND_SQL}
+	 * @param percentileKey
+	 *            the key of the configured percentile
+	 * @param staticThreshold
+	 *            the static threshold of this kind of operations
+	 * @param backpressure
+	 *            the backpressure signal of the writer
+	 * @return the new thresholds
+	 */
+	public static AdaptiveThresholds create(final Configuration configuration, final String kind, final String percentileKey, final long staticThreshold,
+			final Backpressure backpressure) {
+		return new AdaptiveThresholds(kind,
+				configuration.getBooleanProperty(ConfigurationFactory.ADAPTIVE_THRESHOLD_ENABLED, false),
+				configuration.getBooleanProperty(ConfigurationFactory.AGGREGATION_ENABLED, false),
+				staticThreshold,
+				configuration.getDoubleProperty(percentileKey, DEFAULT_PERCENTILE),
+				configuration.getIntProperty(ConfigurationFactory.ADAPTIVE_THRESHOLD_MIN_SAMPLES, DEFAULT_MIN_SAMPLES),
+				configuration.getIntProperty(ConfigurationFactory.ADAPTIVE_THRESHOLD_MAX_OPERATIONS, DEFAULT_MAX_OPERATIONS),
+				configuration.getIntProperty(ConfigurationFactory.AGGREGATION_STRIPES, DEFAULT_STRIPES),
+				backpressure);
+	}
+
+	/**
+	 * @return whether the durations of the operations are tracked, i.e., whether the thresholds are adaptive or the
+	 *         distributions are aggregated
+	 */
+	public boolean isTracking() {
+		return this.adaptive || this.aggregating;
+	}
+
+	/**
+	 * Uses the decision of the {@link TraceSampler} made at the start of the trace (and propagated to the called
+	 * services), so that the sampled traces are complete across all probes and services.
+	 *
+	 * @param traceContext
+	 *            the context of the current trace
+	 * @return whether all executions of the given trace are recorded individually, regardless of the thresholds; always
+	 *         false unless aggregating
+	 */
+	public boolean isRecordingAll(final TraceContext traceContext) {
+		return this.aggregating && traceContext.isSampled();
+	}
+
+	/**
+	 * @param operation
+	 *            the operation signature or the normalized SQL
+	 * @return the histogram of the given operation, or a histogram with the static threshold
+	 */
+	public LatencyHistogram getHistogram(final String operation) {
+		if (!this.isTracking() || (operation == null)) {
+			return this.staticHistogram;
+		}
+		final LatencyHistogram histogram = this.histograms.get(operation);
+		if (histogram != null) {
+			return histogram;
+		}
+		this.histograms.putIfAbsent(operation, new LatencyHistogram(operation, this.staticThreshold, this.stripes, this.backpressure));
+		// null if the maximum number of operations is reached
+		final LatencyHistogram added = this.histograms.get(operation);
+		return (added != null) ? added : this.staticHistogram; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Exports the distributions of the last interval and adapts the thresholds if enabled. Operations which have not been
+	 * executed for several intervals are forgotten. Since threads only hold a histogram during a single
+	 * {@link LatencyHistogram#exceedsThreshold(long)}, the executions counted into a removed histogram are recovered in
+	 * the next interval.
+	 */
+	@Override
+	public synchronized void sample(final IMonitoringController monitoringController) {
+		final long timestamp = monitoringController.getTimeSource().getTime();
+		final String hostname = monitoringController.getHostname();
+		this.recoverRetired();
+		final Iterator<Map.Entry<String, LatencyHistogram>> iterator = this.histograms.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final LatencyHistogram histogram = iterator.next().getValue();
+			final long count = histogram.drainInterval(this.interval);
+			if (histogram.getDecayedTotal() == 0) {
+				iterator.remove();
+				this.retired.add(histogram);
+			} else if (this.adaptive) {
+				histogram.updateThreshold(this.percentile, this.minSamples);
+			}
+			if (count > 0) {
+				monitoringController.newMonitoringRecord(new LatencyHistogramRecord(timestamp, hostname, this.kind, histogram.getOperation(), count,
+						histogram.getIntervalDuration(),
+						LatencyHistogram.valueAtPercentile(this.interval, count, 50.0),
+						LatencyHistogram.valueAtPercentile(this.interval, count, 90.0),
+						LatencyHistogram.valueAtPercentile(this.interval, count, 99.0),
+						LatencyHistogram.maxValue(this.interval),
+						histogram.getThreshold()));
+			}
+		}
+	}
+
+	/**
+	 * Puts the retired histograms with late executions back, or moves their counts to the histogram which replaced them.
+	 */
+	private void recoverRetired() {
+		for (final LatencyHistogram histogram : this.retired) {
+			if (histogram.hasIntervalCounts()) {
+				this.histograms.putIfAbsent(histogram.getOperation(), histogram);
+				// null if the maximum number of operations is reached
+				final LatencyHistogram current = this.histograms.get(histogram.getOperation());
+				if ((current != null) && (current != histogram)) { // NOPMD (identity of the retired histogram)
+					histogram.moveIntervalTo(current);
+				}
+			}
+		}
+		this.retired.clear();
+	}
+
+	/**
+	 * @return the number of operations currently tracked
+	 */
+	public int getNumberOfOperations() {
+		return this.histograms.size();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(64)
+			.append("Adaptive ").append(this.kind).append(" thresholds: ");
+		if (this.adaptive) {
+			sb.append(this.percentile).append("th percentile");
+		} else {
+			sb.append("disabled");
+		}
+		if (this.aggregating) {
+			sb.append("; aggregation enabled");
+		}
+		if (this.isTracking()) {
+			sb.append(" (operations: ").append(this.histograms.size()).append(')');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,260 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.threshold;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import kieker.monitoring.core.controller.Backpressure;
+
+/**
+ * The latency histogram and the current recording threshold of a single operation.
+ *
+ * <p>
+ * The histogram is log-linear, like an HDR histogram: each power of two is split into 8 buckets, so that a bucket
+ * covers at most 12.5% of its values and the whole range up to 2<sup>36</sup> time units fits into
+ * {@value #BUCKETS} buckets. Longer durations are counted in the last bucket.
+ *
+ * <p>
+ * Application threads only increment a bucket and read the threshold. The buckets are striped by thread, so that
+ * threads executing the same operation concurrently rarely increment the same counter. The {@link AdaptiveThresholds}
+ * sampler drains the stripes periodically, adds them to an exponentially decaying distribution owned by the sampler,
+ * and derives the new threshold from that distribution.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 36;
+
+	/** the number of buckets. */
+	static final int BUCKETS = SUB_BUCKETS + ((MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS);
+	/** the buckets of a stripe, followed by the sum of its durations. */
+	private static final int STRIPE_LENGTH = BUCKETS + 1;
+
+	private final String operation;
+	/** the stripes of the current interval, null if the histogram is not tracking. */
+	private final AtomicLongArray counts;
+	private final int stripeMask;
+	/** the decayed counts of the previous intervals; only accessed by the sampler. */
+	private final long[] decayedCounts;
+	/** the sum of the decayed counts; only accessed by the sampler. */
+	private long decayedTotal;
+	/** the sum of the durations of the last drained interval; only accessed by the sampler. */
+	private long intervalDuration;
+
+	/** raises the threshold while the writer cannot keep up. */
+	private final Backpressure backpressure;
+
+	private volatile long threshold;
+
+	/**
+	 * @param operation
+	 *            the operation signature or the normalized SQL
+	 * @param threshold
+	 *            the initial threshold
+	 * @param stripes
+	 *            the number of stripes, a power of two; 0 to not count the durations and keep the threshold static
+	 * @param backpressure
+	 *            the backpressure signal of the writer
+	 */
+	LatencyHistogram(final String operation, final long threshold, final int stripes, final Backpressure backpressure) {
+		this.operation = operation;
+		this.backpressure = backpressure;
+		this.threshold = threshold;
+		this.counts = (stripes > 0) ? new AtomicLongArray(stripes * STRIPE_LENGTH) : null; // NOCS (inline conditional)
+		this.stripeMask = stripes - 1;
+		this.decayedCounts = (stripes > 0) ? new long[BUCKETS] : null; // NOCS (inline conditional)
+	}
+
+	/**
+	 * Counts the given duration and tests it against the current threshold, raised according to the backpressure.
+	 *
+	 * @param duration
+	 *            the duration of an execution
+	 * @return whether the execution should be recorded, i.e., whether its duration exceeds the threshold
+	 */
+	public boolean exceedsThreshold(final long duration) {
+		final AtomicLongArray stripes = this.counts;
+		if (stripes != null) {
+			final int offset = ((int) Thread.currentThread().getId() & this.stripeMask) * STRIPE_LENGTH;
+			stripes.incrementAndGet(offset + bucketIndex(duration));
+			stripes.addAndGet(offset + BUCKETS, Math.max(duration, 0));
+		}
+		return (duration >> this.backpressure.getThresholdShift()) > this.threshold;
+	}
+
+	/**
+	 * @return the duration above which executions are recorded
+	 */
+	public long getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * @return the operation signature or the normalized SQL
+	 */
+	public String getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * Moves the counts of all stripes of the current interval into the given array, and adds them to the decayed
+	 * distribution after halving the latter.
+	 *
+	 * @param interval
+	 *            receives the counts of the interval; must have {@link #BUCKETS} elements
+	 * @return the number of executions during the interval
+	 */
+	long drainInterval(final long[] interval) {
+		final int length = this.counts.length();
+		long total = 0;
+		long decayed = 0;
+		long duration = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			long count = 0;
+			for (int offset = 0; offset < length; offset += STRIPE_LENGTH) {
+				count += this.counts.getAndSet(offset + i, 0);
+			}
+			interval[i] = count;
+			this.decayedCounts[i] = (this.decayedCounts[i] >>> 1) + count;
+			total += count;
+			decayed += this.decayedCounts[i];
+		}
+		for (int offset = 0; offset < length; offset += STRIPE_LENGTH) {
+			duration += this.counts.getAndSet(offset + BUCKETS, 0);
+		}
+		this.intervalDuration = duration;
+		this.decayedTotal = decayed;
+		return total;
+	}
+
+	/**
+	 * @return whether executions have been counted since the interval drained last
+	 */
+	boolean hasIntervalCounts() {
+		for (int i = 0; i < this.counts.length(); i++) {
+			if (this.counts.get(i) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the counts of the current interval into another histogram of the same operation, which replaced this one.
+	 *
+	 * @param other
+	 *            the histogram to add the counts to
+	 */
+	void moveIntervalTo(final LatencyHistogram other) {
+		for (int i = 0; i < this.counts.length(); i++) {
+			final long count = this.counts.getAndSet(i, 0);
+			if (count != 0) {
+				// into the first stripe of the other histogram
+				other.counts.addAndGet(i % STRIPE_LENGTH, count);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of (decayed) samples after the interval drained last; 0 if the operation has been idle for a
+	 *         while
+	 */
+	long getDecayedTotal() {
+		return this.decayedTotal;
+	}
+
+	/**
+	 * @return the sum of the durations of the interval drained last
+	 */
+	long getIntervalDuration() {
+		return this.intervalDuration;
+	}
+
+	/**
+	 * Derives the threshold from the decayed distribution, if it holds enough samples.
+	 *
+	 * @param percentile
+	 *            the percentile of the durations to use as threshold, e.g., 99.0
+	 * @param minSamples
+	 *            the minimum number of (decayed) samples; below, the threshold is kept
+	 */
+	void updateThreshold(final double percentile, final long minSamples) {
+		if ((this.decayedTotal > 0) && (this.decayedTotal >= minSamples)) {
+			this.threshold = valueAtPercentile(this.decayedCounts, this.decayedTotal, percentile);
+		}
+	}
+
+	/**
+	 * @param counts
+	 *            the counts per bucket
+	 * @param total
+	 *            the sum of the counts
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the upper bound of the bucket containing the given percentile, or 0 if there are no counts
+	 */
+	static long valueAtPercentile(final long[] counts, final long total, final double percentile) {
+		final long rank = Math.max(1, (long) Math.ceil((total * percentile) / 100.0));
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank) {
+				return bucketUpperBound(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the upper bound of the highest non-empty bucket, or 0 if there are no counts
+	 */
+	static long maxValue(final long[] counts) {
+		for (int i = counts.length - 1; i >= 0; i--) {
+			if (counts[i] > 0) {
+				return bucketUpperBound(i);
+			}
+		}
+		return 0;
+	}
+
+	static int bucketIndex(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (value > 0) ? (int) value : 0; // NOCS (inline conditional)
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + ((exponent - SUB_BUCKET_BITS) * SUB_BUCKETS) + subBucket;
+	}
+
+	static long bucketUpperBound(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int exponent = ((index - SUB_BUCKETS) / SUB_BUCKETS) + SUB_BUCKET_BITS;
+		final long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		final long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((1L << exponent) + (subBucket * width) + width) - 1;
+	}
+}
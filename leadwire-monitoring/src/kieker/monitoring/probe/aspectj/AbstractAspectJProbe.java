@@ -20,12 +20,15 @@ import java.lang.reflect.Modifier;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.ConstructorSignature;
 import org.aspectj.lang.reflect.MethodSignature;
 
+import kieker.monitoring.core.controller.IProbeController;
+import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.probe.IMonitoringProbe;
 
 /**
@@ -37,6 +40,8 @@ import kieker.monitoring.probe.IMonitoringProbe;
 public abstract class AbstractAspectJProbe implements IMonitoringProbe {
 
 	private final ConcurrentMap<Signature, String> signatureCache = new ConcurrentHashMap<Signature, String>();
+	// AspectJ creates one StaticPart per join point, which has identity semantics
+	private final ConcurrentMap<JoinPoint.StaticPart, ProbeHandle> probeHandles = new ConcurrentHashMap<JoinPoint.StaticPart, ProbeHandle>();
 
 	// Pointcuts should not be final!
 
@@ -70,6 +75,27 @@ public abstract class AbstractAspectJProbe implements IMonitoringProbe {
 	@Pointcut("!getter() && !setter()")
 	public void noGetterAndSetter() {} // NOPMD (Aspect)
 
+	/**
+	 * Returns the handle of the given join point, creating it on the first invocation. The handle caches the long
+	 * signature string and the activation decision of the probe.
+	 * 
+	 * @param staticPart
+	 *            the static part of the join point ({@code thisJoinPoint.getStaticPart()})
+	 * @return the handle of the join point
+	 * 
+	 * @since 1.14
+	 */
+	protected final ProbeHandle getProbeHandle(final JoinPoint.StaticPart staticPart) {
+		final ProbeHandle handle = this.probeHandles.get(staticPart);
+		if (null != handle) {
+			return handle;
+		}
+		final IProbeController probeController = MonitoringController.getInstance();
+		final ProbeHandle newHandle = new ProbeHandle(this.signatureToLongString(staticPart.getSignature()), probeController);
+		final ProbeHandle previousHandle = this.probeHandles.putIfAbsent(staticPart, newHandle);
+		return (null != previousHandle) ? previousHandle : newHandle; // NOCS (inline conditional)
+	}
+
 	/**
 	 * Better handling of AspectJ Signature.toLongString (especially with constructors).
 	 * 
@@ -0,0 +1,88 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.monitoring.probe.aspectj;
+
+import kieker.monitoring.core.controller.IProbeController;
+
+/**
+ * Per join point state of an AspectJ probe: the long signature string, its signature id and the activation
+ * decision together with the probe pattern generation it has been made for. As long as the generation of the
+ * {@link IProbeController} does not change, the decision is answered from a single field.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class ProbeHandle {
+
+	private final String signature;
+	private final int signatureId;
+
+	// (generation << 1) | activated, in one field so that both are always read consistently
+	private volatile int state;
+
+	/**
+	 * Creates a new handle and makes the initial activation decision.
+	 *
+	 * @param signature
+	 *            the long signature string of the join point
+	 * @param probeController
+	 *            used to assign the signature id and to make the initial decision
+	 */
+	public ProbeHandle(final String signature, final IProbeController probeController) {
+		this.signature = signature;
+		this.signatureId = probeController.getSignatureId(signature);
+		this.state = this.decide(probeController);
+	}
+
+	/**
+	 * @return the long signature string of the join point
+	 */
+	public String getSignature() {
+		return this.signature;
+	}
+
+	/**
+	 * @return the signature id or {@link IProbeController#NO_SIGNATURE_ID}
+	 */
+	public int getSignatureId() {
+		return this.signatureId;
+	}
+
+	/**
+	 * Tests if the probe is active, asking the controller again only if its pattern generation has changed.
+	 *
+	 * @param probeController
+	 *            the probe controller
+	 * @return true if the probe is active
+	 */
+	public boolean isActivated(final IProbeController probeController) {
+		final int current = this.state;
+		if ((current >>> 1) == (probeController.getProbePatternGeneration() & Integer.MAX_VALUE)) {
+			return (current & 1) != 0;
+		}
+		final int decided = this.decide(probeController);
+		this.state = decided;
+		return (decided & 1) != 0;
+	}
+
+	private int decide(final IProbeController probeController) {
+		// read the generation first: if the patterns change meanwhile, the decision is merely made again next time
+		final int generation = probeController.getProbePatternGeneration();
+		final boolean activated = probeController.isProbeActivated(this.signatureId, this.signature);
+		return (generation << 1) | (activated ? 1 : 0); // NOCS (inline conditional)
+	}
+}
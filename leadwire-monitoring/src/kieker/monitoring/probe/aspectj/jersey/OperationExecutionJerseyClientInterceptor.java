@@ -199,6 +199,7 @@ public class OperationExecutionJerseyClientInterceptor extends AbstractAspectJPr
 				CF_REGISTRY.unsetThreadLocalEOI();
 				CF_REGISTRY.unsetThreadLocalESS();
 				SESSION_REGISTRY.unsetThreadLocalSessionId();
+				CTRLINST.flushStagedRecords();
 			} else {
 				CF_REGISTRY.storeThreadLocalESS(ess); // next operation is ess
 			}
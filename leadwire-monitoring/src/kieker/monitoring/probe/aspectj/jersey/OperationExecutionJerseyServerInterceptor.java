@@ -166,6 +166,7 @@ public class OperationExecutionJerseyServerInterceptor extends AbstractAspectJPr
 			// cleanup
 			if (entrypoint) {
 				this.unsetKiekerThreadLocalData();
+				CTRLINST.flushStagedRecords();
 			} else {
 				CF_REGISTRY.storeThreadLocalESS(ess); // next operation is ess
 			}
@@ -16,15 +16,12 @@
 
 package kieker.monitoring.probe.aspectj.leadwire;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 
-import javassist.ClassPool;
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.common.record.http.HttpOperationExecutionRecord;
@@ -32,6 +29,8 @@ import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
 import kieker.monitoring.probe.aspectj.operationExecution.AbstractOperationExecutionAspect;
 import kieker.monitoring.timer.ITimeSource;
@@ -52,6 +51,7 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 	private static final Log LOG = LogFactory.getLog(AbstractOperationExecutionAspect.class);
 	private static final String VMNAME = CTRLINST.getHostname();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
 
 
 
@@ -63,7 +63,7 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+		if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
 
@@ -73,12 +73,16 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 		String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 		final int eoi; // this is executionOrderIndex-th execution in this trace
 		final int ess; // this is the height in the dynamic call tree of this execution
-		long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
-		if (traceId == -1) {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+		final Object req = (Object) thisJoinPoint.getArgs()[0];
+		final String completeURL;
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+			// check getRequestURL for static resources  jsp/css/js/png/jpg/gif; also the endpoint of the trace sampling
+			StringBuffer requestURL =  (StringBuffer) HttpAccessors.GET_REQUEST_URL.invoke(req);
+			completeURL = requestURL.toString();
+			traceId = CFREGISTRY.beginTrace(traceContext, completeURL); // next operation is eoi + 1, ess + 1
 			eoi = 0;
 			ess = 0;
 		}
@@ -92,35 +96,19 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 		// measure before
 		final long tin = TIME.getTime(); 
 
-		final Object req = (Object) thisJoinPoint.getArgs()[0];
-
 
 
 		if (sessionId==null) {
 
-			Method aMethodgetSession = req.getClass().getMethod("getSession", boolean.class);
-			aMethodgetSession.setAccessible(Boolean.TRUE); 
-			Object aSession = (Object) aMethodgetSession.invoke(req, true); 
-
-			Method aMethodgetId = aSession.getClass().getMethod("getId");
-			aMethodgetId.setAccessible(Boolean.TRUE); 
-			String aId = (String) aMethodgetId.invoke(aSession);	 
-
-			sessionId = (req != null) ? aId : null; 
+			sessionId = HttpAccessors.getSessionId(req);
 			SESSIONREGISTRY.storeThreadLocalSessionId(sessionId);
 
 		}
 
 		Object retVal;
-		String completeURL = null;
 		try {
-			// check getRequestURL for static resources  jsp/css/js/png/jpg/gif
-			Method aMethodgetRequestURL = req.getClass().getMethod("getRequestURL");
-			aMethodgetRequestURL.setAccessible(Boolean.TRUE); 
-			StringBuffer requestURL =  (StringBuffer) aMethodgetRequestURL.invoke(req);
-			completeURL = requestURL.toString();
-
-			if (	completeURL.endsWith(".jsp") || 
+			if (	!CTRLINST.isRumEnable() ||
+					completeURL.endsWith(".jsp") || 
 					completeURL.endsWith(".css") || 
 					completeURL.endsWith(".js")  || 
 					completeURL.endsWith(".gif") || 
@@ -132,186 +120,40 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 				
 				final Object rep = (Object) thisJoinPoint.getArgs()[1];			
 				
-				////// Begin of javassist phase
-				ClassPool pool = ClassPool.getDefault();
-				
-				 try {
-					 rep.getClass().getClassLoader().loadClass("kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream");	 
-				 } catch (ClassNotFoundException e) {
-					 JavassistGenerator.generatecustomServletOutputStream("kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream",rep.getClass().getClassLoader());
-					 
-				 }
-				 		
-				 Class<?> clazzHtmlResponseWrapper = null;
-				 try {
-					 clazzHtmlResponseWrapper = rep.getClass().getClassLoader().loadClass("kieker.monitoring.probe.aspectj.leadwire.javassist.HtmlResponseWrapper");	 
-				 } catch (ClassNotFoundException e) {
-					 clazzHtmlResponseWrapper = JavassistGenerator.generateHtmlResponseWrapper("kieker.monitoring.probe.aspectj.leadwire.javassist.HtmlResponseWrapper", rep.getClass().getClassLoader());
-					 
-				 }
-				 					
-				  Class<?> aClassHttpServletResponse = Class.forName("javax.servlet.http.HttpServletResponse", true, rep.getClass().getClassLoader());
-				//  ClassClassPath aClassClassPath2 = new ClassClassPath(aClassHttpServletResponse);
-				//  pool.insertClassPath(aClassClassPath2);
-				 
-				Constructor<?> aConstructor = clazzHtmlResponseWrapper.getDeclaredConstructor(aClassHttpServletResponse);				
-				Object capturingResponseWrapper = aConstructor.newInstance(rep);
-				
-				////// End of javassist phase
-				
-				Object[] arg0 = {req,capturingResponseWrapper};
-				retVal = thisJoinPoint.proceed(arg0);
-
-				if (CTRLINST.isRumEnable()){
-					final String apmServer = CTRLINST.getapmServer();
-					final String cdnServer = CTRLINST.getCDNServer();
-
-					final String appUuid = CTRLINST.getAppUuid();
-
-
-					String isBeaconed = null;
-					Method aMethodgetCaptureAsString = capturingResponseWrapper.getClass().getMethod("getCaptureAsString");
-					aMethodgetCaptureAsString.setAccessible(Boolean.TRUE); 
-					String content = (String) aMethodgetCaptureAsString.invoke(capturingResponseWrapper);
-
-					
-					
-					StringBuilder _sb = new StringBuilder(content);
-
-					Method aMethodgetContentType = rep.getClass().getMethod("getContentType");
-					aMethodgetContentType.setAccessible(Boolean.TRUE); 
-					String aContentType = (String) aMethodgetContentType.invoke(rep);
-
-					if (aContentType != null
-							&& aContentType.contains("text/html")) {			
-						if (content.contains(appUuid) ) 
-						{
-							isBeaconed="true"; 
-						}
-
-						if ( isBeaconed == null ) {		
-
-							/*String rum= "\n"
-									+ "<script type=\"text/javascript\" src=\"https://"+apmServer+"/rum/boomerang-master/boomerang.js\"></script> "
-									+ "<script type=\"text/javascript\" src=\"https://"+apmServer+"/rum/boomerang-master/plugins/navtiming.js\"></script> "
-									+ "<script type=\"text/javascript\" src=\"https://"+apmServer+"/rum/boomerang-master/plugins/rt.js\"></script> "
-									+ "<script type=\"text/javascript\" > "
-									+ "  BOOMR.init({ "
-									+ "	traceid: \""+traceId+"\","
-									+ "	sessionid: \""+sessionId+"\","
-									+ "	appuuid: \""+appUuid+"\","
-									+ "      beacon_url: \"https://"+apmServer+"/rum/\" "
-									+ " }); "
-									+ "</script> "
-									+ "\n";
-									*/
-							
-							String rum ="<script>\n" + 
-									"(function(){\n" + 
-									"  // Boomerang Loader Snippet version 10\n" + 
-									"  if (window.BOOMR && (window.BOOMR.version || window.BOOMR.snippetExecuted)) {\n" + 
-									"    return;\n" + 
-									"  }\n" + 
-									"\n" + 
-									"  window.BOOMR = window.BOOMR || {};\n" + 
-									"  window.BOOMR.snippetExecuted = true;\n" + 
-									"  \n" + 
-									"  BOOMR_sessionid=\""+sessionId+"\";\n" + 
-									"  BOOMR_traceid=\""+traceId+"\";\n" + 
-									"  BOOMR_appuuid=\""+appUuid+"\";\n" + 
-									"  BOOMR_apmServer=\""+apmServer+"\";\n" + 
-									"\n" + 
-									"  var dom, doc, where, iframe = document.createElement(\"iframe\"), win = window;\n" + 
-									"\n" + 
-									"  function boomerangSaveLoadTime(e) {\n" + 
-									"    win.BOOMR_onload = (e && e.timeStamp) || new Date().getTime();\n" + 
-									"  }\n" + 
-									"\n" + 
-									"  if (win.addEventListener) {\n" + 
-									"    win.addEventListener(\"load\", boomerangSaveLoadTime, false);\n" + 
-									"  } else if (win.attachEvent) {\n" + 
-									"    win.attachEvent(\"onload\", boomerangSaveLoadTime);\n" + 
-									"  }\n" + 
-									"\n" + 
-									"  iframe.src = \"javascript:void(0)\";\n" + 
-									"  iframe.title = \"\";\n" + 
-									"  iframe.role = \"presentation\";\n" + 
-									"  (iframe.frameElement || iframe).style.cssText = \"width:0;height:0;border:0;display:none;\";\n" + 
-									"  where = document.getElementsByTagName(\"script\")[0];\n" + 
-									"  where.parentNode.insertBefore(iframe, where);\n" + 
-									"\n" + 
-									"  try {\n" + 
-									"    doc = iframe.contentWindow.document;\n" + 
-									"  } catch (e) {\n" + 
-									"    dom = document.domain;\n" + 
-									"    iframe.src = \"javascript:var d=document.open();d.domain='\" + dom + \"';void(0);\";\n" + 
-									"    doc = iframe.contentWindow.document;\n" + 
-									"  }\n" + 
-									"\n" + 
-									"  doc.open()._l = function() {\n" + 
-									"    var js = this.createElement(\"script\");\n" + 
-									"    if (dom) {\n" + 
-									"      this.domain = dom;\n" + 
-									"    }\n" + 
-									"    js.id = \"boomr-if-as\";\n" + 
-									"    js.src = 'https://"+cdnServer+"/boomerang-1.0.0.min.js';\n" + 
-									"    BOOMR_lstart = new Date().getTime();\n" + 
-									"    this.body.appendChild(js);\n" + 
-									"  };\n" + 
-									"  doc.write('<bo' + 'dy onload=\"document._l();\">');\n" + 
-									"  doc.close();\n" + 
-									"})();\n" + 
-									"</script>";
-
-							int indexOfHead = _sb.indexOf("</head>");
-
-							if (indexOfHead>=0) {
-
-								_sb.insert(indexOfHead, rum );
-
-								
-								Method aMethodgetHeader= rep.getClass().getMethod("getHeader", String.class);
-								aMethodgetHeader.setAccessible(Boolean.TRUE); 
-								String aTransferEncoding = (String) aMethodgetHeader.invoke(rep, "Transfer-Encoding");
-								
-								if (aTransferEncoding==null || ! aTransferEncoding.contains("chunked")) {
-
-								Method aMethodsetContentLength = rep.getClass().getMethod("setContentLength", int.class);
-								aMethodsetContentLength.setAccessible(Boolean.TRUE); 
-								aMethodsetContentLength.invoke(rep, _sb.toString().length());
-								
-								}
-								
-							}
-						}				
-					}
-
-					Method aMethodgetWriter = rep.getClass().getMethod("getWriter");
-					aMethodgetWriter.setAccessible(Boolean.TRUE); 
-						Object aWriter = (Object) aMethodgetWriter.invoke(rep);
-
-					Method aMethodwrite = aWriter.getClass().getDeclaredMethod("write", String.class);
-					aMethodwrite.setAccessible(Boolean.TRUE); 
-					aMethodwrite.invoke(aWriter, _sb.toString());
-
+				// the wrapper streams the content and inserts the snippet in front of </head> on the fly (HTML only)
+				final HtmlResponseWrapperFactory wrapperFactory = HtmlResponseWrapperFactory.forResponse(rep);
+				if (wrapperFactory.isAvailable()) {
+					final Object injectingResponseWrapper = wrapperFactory.newWrapper(rep, rumSnippet(sessionId, traceId));
+
+					Object[] arg0 = {req,injectingResponseWrapper};
+					retVal = thisJoinPoint.proceed(arg0);
+
+					// passes on the bytes held back while looking for </head> and the characters buffered by the writer
+					wrapperFactory.finishResponse(injectingResponseWrapper);
+				} else {
+					retVal = thisJoinPoint.proceed();
 				}
 
 			} 
 
 		}
+		catch (final Throwable t) { // NOCS (Throwable)
+			traceContext.markFailed();
+			throw t;
+		}
 		finally	{
 
 			final long tout = TIME.getTime();
-			CTRLINST.newMonitoringRecord(new HttpOperationExecutionRecord(completeURL, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			if (traceContext.isRecording()) {
+				TRACE_SAMPLER.record(CTRLINST, traceContext, new HttpOperationExecutionRecord(completeURL, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			}
 			SESSIONREGISTRY.unsetThreadLocalSessionId();
 
 			// cleanup
 			if (entrypoint) {
-				CFREGISTRY.unsetThreadLocalTraceId();
-				CFREGISTRY.unsetThreadLocalEOI();
-				CFREGISTRY.unsetThreadLocalESS();
+				TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 			} else {
-				CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+				traceContext.setEss(ess); // next operation is ess
 			}
 
 		}
@@ -320,6 +162,70 @@ public abstract class AbstractServletAspect extends AbstractAspectJProbe {
 		return retVal;
 	}
 
+	/**
+	 * @return the Boomerang loader snippet for the given trace
+	 */
+	private static String rumSnippet(final String sessionId, final long traceId) {
+		final String apmServer = CTRLINST.getapmServer();
+		final String cdnServer = CTRLINST.getCDNServer();
+		final String appUuid = CTRLINST.getAppUuid();
+
+		return "<script>\n" + 
+				"(function(){\n" + 
+				"  // Boomerang Loader Snippet version 10\n" + 
+				"  if (window.BOOMR && (window.BOOMR.version || window.BOOMR.snippetExecuted)) {\n" + 
+				"    return;\n" + 
+				"  }\n" + 
+				"\n" + 
+				"  window.BOOMR = window.BOOMR || {};\n" + 
+				"  window.BOOMR.snippetExecuted = true;\n" + 
+				"  \n" + 
+				"  BOOMR_sessionid=\""+sessionId+"\";\n" + 
+				"  BOOMR_traceid=\""+traceId+"\";\n" + 
+				"  BOOMR_appuuid=\""+appUuid+"\";\n" + 
+				"  BOOMR_apmServer=\""+apmServer+"\";\n" + 
+				"\n" + 
+				"  var dom, doc, where, iframe = document.createElement(\"iframe\"), win = window;\n" + 
+				"\n" + 
+				"  function boomerangSaveLoadTime(e) {\n" + 
+				"    win.BOOMR_onload = (e && e.timeStamp) || new Date().getTime();\n" + 
+				"  }\n" + 
+				"\n" + 
+				"  if (win.addEventListener) {\n" + 
+				"    win.addEventListener(\"load\", boomerangSaveLoadTime, false);\n" + 
+				"  } else if (win.attachEvent) {\n" + 
+				"    win.attachEvent(\"onload\", boomerangSaveLoadTime);\n" + 
+				"  }\n" + 
+				"\n" + 
+				"  iframe.src = \"javascript:void(0)\";\n" + 
+				"  iframe.title = \"\";\n" + 
+				"  iframe.role = \"presentation\";\n" + 
+				"  (iframe.frameElement || iframe).style.cssText = \"width:0;height:0;border:0;display:none;\";\n" + 
+				"  where = document.getElementsByTagName(\"script\")[0];\n" + 
+				"  where.parentNode.insertBefore(iframe, where);\n" + 
+				"\n" + 
+				"  try {\n" + 
+				"    doc = iframe.contentWindow.document;\n" + 
+				"  } catch (e) {\n" + 
+				"    dom = document.domain;\n" + 
+				"    iframe.src = \"javascript:var d=document.open();d.domain='\" + dom + \"';void(0);\";\n" + 
+				"    doc = iframe.contentWindow.document;\n" + 
+				"  }\n" + 
+				"\n" + 
+				"  doc.open()._l = function() {\n" + 
+				"    var js = this.createElement(\"script\");\n" + 
+				"    if (dom) {\n" + 
+				"      this.domain = dom;\n" + 
+				"    }\n" + 
+				"    js.id = \"boomr-if-as\";\n" + 
+				"    js.src = 'https://"+cdnServer+"/boomerang-1.0.0.min.js';\n" + 
+				"    BOOMR_lstart = new Date().getTime();\n" + 
+				"    this.body.appendChild(js);\n" + 
+				"  };\n" + 
+				"  doc.write('<bo' + 'dy onload=\"document._l();\">');\n" + 
+				"  doc.close();\n" + 
+				"})();\n" + 
+				"</script>";
+	}
 
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,187 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes the bytes of an HTML page through to the given stream and inserts a snippet in front of the
+ * <code>&lt;/head&gt;</code> tag on the fly. The tag is matched case-insensitively. Scanning stops after the
+ * snippet has been inserted or as soon as a <code>&lt;body</code> tag shows that the head section is over; from then
+ * on, all bytes are passed through unchanged. Only the bytes of a partially matched tag (at most 6) are held back
+ * between two calls.
+ *
+ * <p>
+ * The tag is searched for byte by byte, which works for all ASCII-compatible charsets (e.g., UTF-8 and ISO-8859-1).
+ * Instances are not thread-safe, just like the response they belong to.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class HeadInjectingOutputStream extends OutputStream {
+
+	private static final byte[] HEAD_END = { '<', '/', 'h', 'e', 'a', 'd', '>' };
+	private static final byte[] BODY_START = { '<', 'b', 'o', 'd', 'y' };
+
+	private final OutputStream out;
+	private final byte[] snippet;
+	/** the bytes of a partially matched <code>&lt;/head&gt;</code> tag received by previous calls. */
+	private final byte[] pending = new byte[HEAD_END.length - 1];
+	private final byte[] singleByte = new byte[1];
+
+	private int pendingCount;
+	private int headMatched;
+	private int bodyMatched;
+	private boolean scanning;
+	private boolean injected;
+
+	/**
+	 * @param out
+	 *            the stream to pass the bytes to
+	 * @param snippet
+	 *            the bytes to insert, or <code>null</code> to pass all bytes through without scanning (e.g., for non-HTML
+	 *            content)
+	 */
+	public HeadInjectingOutputStream(final OutputStream out, final byte[] snippet) {
+		super();
+		this.out = out;
+		this.snippet = snippet; // NOPMD (no copy for performance reasons)
+		this.scanning = snippet != null;
+	}
+
+	/**
+	 * @return whether the stream scans for the head section, i.e., whether the length of the content may change
+	 */
+	public boolean isInjecting() {
+		return this.snippet != null;
+	}
+
+	/**
+	 * @return whether the snippet has been inserted
+	 */
+	public boolean isInjected() {
+		return this.injected;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (!this.scanning) {
+			this.out.write(b);
+			return;
+		}
+		this.singleByte[0] = (byte) b;
+		this.write(this.singleByte, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		if (!this.scanning) {
+			this.out.write(b, off, len);
+			return;
+		}
+		final int end = off + len;
+		for (int i = off; i < end; i++) {
+			final int c = toLowerCase(b[i]);
+
+			if (c == HEAD_END[this.headMatched]) {
+				this.headMatched++;
+				if (this.headMatched == HEAD_END.length) {
+					// the tag consists of the pending bytes and the bytes of this call up to i
+					final int tagStart = (this.pendingCount > 0) ? off : (i + 1) - HEAD_END.length; // NOCS (inline conditional)
+					this.out.write(b, off, tagStart - off);
+					this.out.write(this.snippet);
+					this.writePending();
+					this.injected = true;
+					this.stopScanning();
+					this.out.write(b, tagStart, end - tagStart);
+					return;
+				}
+			} else {
+				// the pending bytes are not part of a tag, so they precede all bytes of this call
+				this.writePending();
+				this.headMatched = (c == HEAD_END[0]) ? 1 : 0; // NOCS (inline conditional)
+			}
+
+			if (c == BODY_START[this.bodyMatched]) {
+				this.bodyMatched++;
+				if (this.bodyMatched == BODY_START.length) {
+					// no head section to insert the snippet into
+					this.writePending();
+					this.stopScanning();
+					this.out.write(b, off, len);
+					return;
+				}
+			} else {
+				this.bodyMatched = (c == BODY_START[0]) ? 1 : 0; // NOCS (inline conditional)
+			}
+		}
+
+		// hold back the bytes of a partially matched tag
+		final int heldBack = Math.min(this.headMatched - this.pendingCount, len);
+		this.out.write(b, off, len - heldBack);
+		System.arraycopy(b, end - heldBack, this.pending, this.pendingCount, heldBack);
+		this.pendingCount += heldBack;
+	}
+
+	/**
+	 * Passes the held back bytes through, and stops scanning. Must be called when the content is complete.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void finish() throws IOException {
+		this.writePending();
+		this.stopScanning();
+		this.out.flush();
+	}
+
+	/**
+	 * Flushes the underlying stream, but keeps the bytes of a partially matched tag.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.finish();
+		this.out.close();
+	}
+
+	private void writePending() throws IOException {
+		if (this.pendingCount > 0) {
+			this.out.write(this.pending, 0, this.pendingCount);
+			this.pendingCount = 0;
+		}
+	}
+
+	private void stopScanning() {
+		this.scanning = false;
+		this.headMatched = 0;
+		this.bodyMatched = 0;
+	}
+
+	private static int toLowerCase(final byte b) {
+		if ((b >= 'A') && (b <= 'Z')) {
+			return b + ('a' - 'A');
+		}
+		return b;
+	}
+}
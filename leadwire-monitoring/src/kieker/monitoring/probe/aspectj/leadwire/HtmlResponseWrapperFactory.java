@@ -0,0 +1,143 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import javassist.ClassPool;
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+
+/**
+ * Creates the Javassist-generated <code>HtmlResponseWrapper</code> for a response. The servlet API is only visible to
+ * the class loader of the container, so the wrapper classes are generated into the class loader of the response class.
+ * This happens once per class loader, when the first response of that class loader is wrapped; afterwards, wrapping a
+ * response costs a single {@link MethodHandle} invocation.
+ *
+ * <p>
+ * The factories are stored per response class in a {@link ClassValue}, i.e., in the response class itself. Neither this
+ * class nor the {@link ClassPool} used for the generation keeps a class loader alive, so redeployed web applications can
+ * be collected.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class HtmlResponseWrapperFactory {
+
+	/** The name of the generated servlet output stream. */
+	public static final String OUTPUT_STREAM_CLASS_NAME = "kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream";
+	/** The name of the generated response wrapper. */
+	public static final String WRAPPER_CLASS_NAME = "kieker.monitoring.probe.aspectj.leadwire.javassist.HtmlResponseWrapper";
+
+	private static final Log LOG = LogFactory.getLog(HtmlResponseWrapperFactory.class);
+
+	/** used if the classes cannot be generated, e.g., because the servlet API is not visible. */
+	private static final HtmlResponseWrapperFactory UNAVAILABLE = new HtmlResponseWrapperFactory(null, null);
+
+	private static final ClassValue<HtmlResponseWrapperFactory> FACTORIES = new ClassValue<HtmlResponseWrapperFactory>() {
+		@Override
+		protected HtmlResponseWrapperFactory computeValue(final Class<?> responseClass) {
+			return HtmlResponseWrapperFactory.create(responseClass.getClassLoader());
+		}
+	};
+
+	/** (HttpServletResponse, String)Object. */
+	private final MethodHandle constructor;
+	/** (Object)void. */
+	private final MethodHandle finishResponse;
+
+	private HtmlResponseWrapperFactory(final MethodHandle constructor, final MethodHandle finishResponse) {
+		this.constructor = constructor;
+		this.finishResponse = finishResponse;
+	}
+
+	/**
+	 * @param response
+	 *            the response to wrap
+	 * @return the factory for the class of the given response
+	 */
+	public static HtmlResponseWrapperFactory forResponse(final Object response) {
+		return FACTORIES.get(response.getClass());
+	}
+
+	/**
+	 * @return whether responses can be wrapped
+	 */
+	public boolean isAvailable() {
+		return this.constructor != null;
+	}
+
+	/**
+	 * @param response
+	 *            the response to wrap
+	 * @param snippet
+	 *            the snippet to insert in front of <code>&lt;/head&gt;</code>
+	 * @return a new wrapper streaming into the given response
+	 */
+	public Object newWrapper(final Object response, final String snippet) throws Throwable { // NOCS (Throwable)
+		return this.constructor.invoke(response, snippet);
+	}
+
+	/**
+	 * Passes on the content still held back by the given wrapper. Must be called when the request has been processed.
+	 *
+	 * @param wrapper
+	 *            a wrapper created by {@link #newWrapper(Object, String)}
+	 */
+	public void finishResponse(final Object wrapper) throws Throwable { // NOCS (Throwable)
+		this.finishResponse.invoke(wrapper);
+	}
+
+	private static HtmlResponseWrapperFactory create(final ClassLoader cl) {
+		if (cl == null) {
+			return UNAVAILABLE;
+		}
+		try {
+			final Class<?> wrapperClass = loadOrGenerate(cl);
+			final Class<?> responseInterface = Class.forName("javax.servlet.http.HttpServletResponse", false, cl);
+			final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			final MethodHandle constructor = lookup.findConstructor(wrapperClass, MethodType.methodType(void.class, responseInterface, String.class))
+					.asType(MethodType.methodType(Object.class, Object.class, String.class));
+			final MethodHandle finishResponse = lookup.findVirtual(wrapperClass, "finishResponse", MethodType.methodType(void.class))
+					.asType(MethodType.methodType(void.class, Object.class));
+			return new HtmlResponseWrapperFactory(constructor, finishResponse);
+		} catch (final Exception e) { // NOCS NOPMD (any failure disables the wrapping for this class loader)
+			LOG.warn("Cannot generate the HTML response wrapper for class loader " + cl + "; RUM injection is disabled for it", e);
+			return UNAVAILABLE;
+		} catch (final LinkageError e) {
+			LOG.warn("Cannot generate the HTML response wrapper for class loader " + cl + "; RUM injection is disabled for it", e);
+			return UNAVAILABLE;
+		}
+	}
+
+	/**
+	 * Several response classes may share a class loader and their factories may be computed concurrently, but the classes
+	 * must be defined only once per class loader.
+	 */
+	private static synchronized Class<?> loadOrGenerate(final ClassLoader cl) throws Exception { // NOCS (Exception)
+		try {
+			return Class.forName(WRAPPER_CLASS_NAME, false, cl);
+		} catch (final ClassNotFoundException e) { // NOPMD (not generated yet)
+			final ClassPool pool = JavassistGenerator.newClassPool(cl);
+			JavassistGenerator.generatecustomServletOutputStream(OUTPUT_STREAM_CLASS_NAME, cl, pool);
+			return JavassistGenerator.generateHtmlResponseWrapper(WRAPPER_CLASS_NAME, cl, pool);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+/**
+ * The methods of servlet, JSF and Apache HttpClient objects called by the probes of this package. Those APIs are only
+ * visible to the class loaders of the monitored application, so the methods are called via {@link MethodAccessor}s.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class HttpAccessors {
+
+	/** HttpServletRequest.getSession(boolean). */
+	static final MethodAccessor GET_SESSION = new MethodAccessor("getSession", boolean.class);
+	/** HttpSession.getId(). */
+	static final MethodAccessor GET_ID = new MethodAccessor("getId");
+	/** HttpServletRequest.getRequestURL(). */
+	static final MethodAccessor GET_REQUEST_URL = new MethodAccessor("getRequestURL");
+	/** HttpServletRequest.getHeader(String). */
+	static final MethodAccessor GET_HEADER = new MethodAccessor("getHeader", String.class);
+
+	/** FacesContext.getExternalContext(). */
+	static final MethodAccessor GET_EXTERNAL_CONTEXT = new MethodAccessor("getExternalContext");
+	/** ExternalContext.getRequestServletPath(). */
+	static final MethodAccessor GET_REQUEST_SERVLET_PATH = new MethodAccessor("getRequestServletPath");
+
+	/** HttpRequest.containsHeader(String). */
+	static final MethodAccessor CONTAINS_HEADER = new MethodAccessor("containsHeader", String.class);
+	/** HttpRequest.addHeader(String, String). */
+	static final MethodAccessor ADD_HEADER = new MethodAccessor("addHeader", String.class, String.class);
+
+	private HttpAccessors() {
+		// constants only
+	}
+
+	/**
+	 * @param request
+	 *            an HttpServletRequest
+	 * @return the id of the session of the given request, which is created if necessary
+	 */
+	static String getSessionId(final Object request) throws Throwable { // NOCS (Throwable)
+		final Object session = GET_SESSION.invoke(request, Boolean.TRUE);
+		return (String) GET_ID.invoke(session);
+	}
+}
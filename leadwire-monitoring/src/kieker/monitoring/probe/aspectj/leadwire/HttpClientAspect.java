@@ -16,7 +16,6 @@
 
 package kieker.monitoring.probe.aspectj.leadwire;
 
-import java.lang.reflect.Method;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -27,9 +26,14 @@ import kieker.common.logging.LogFactory;
 import kieker.common.record.controlflow.OperationExecutionRecord;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.ProbeMetric;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
+import kieker.monitoring.probe.aspectj.ProbeHandle;
 import kieker.monitoring.probe.aspectj.operationExecution.AbstractOperationExecutionAspect;
 import kieker.monitoring.timer.ITimeSource;
 
@@ -49,6 +53,8 @@ public class HttpClientAspect extends AbstractAspectJProbe {
 	private static final Log LOG = LogFactory.getLog(AbstractOperationExecutionAspect.class);
 	private static final String VMNAME = CTRLINST.getHostname();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
+	private static final ProbeMetric PROBE_METRIC = AgentMetrics.INSTANCE.probe("httpClient");
 	public static final String SESSION_ID_ASYNC_TRACE = "NOSESSION-ASYNCIN";
 
 
@@ -58,11 +64,12 @@ public class HttpClientAspect extends AbstractAspectJProbe {
 			return thisJoinPoint.proceed();
 		}
 		
-		final String signature = this.signatureToLongString(thisJoinPoint.getSignature());
+		final ProbeHandle probe = this.getProbeHandle(thisJoinPoint.getStaticPart());
 
-		if (!CTRLINST.isProbeActivated(signature)) {
+		if (!probe.isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
+		final long probeStart = PROBE_METRIC.start();
 		
 		
 		//get call args
@@ -79,19 +86,18 @@ public class HttpClientAspect extends AbstractAspectJProbe {
 		final int eoi; // this is executionOrderIndex-th execution in this trace
 		final int ess; // this is the height in the dynamic call tree of this execution
 		final int nextESS;
-		long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
-		if (traceId == -1) {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+			traceId = CFREGISTRY.beginTrace(traceContext, probe.getSignature()); // next operation is eoi + 1, ess + 1
 			eoi = 0;
 			ess = 0;
 			nextESS = 1;
 		} else {
 			entrypoint = false;
-			eoi = CFREGISTRY.incrementAndRecallThreadLocalEOI();
-			ess = CFREGISTRY.recallAndIncrementThreadLocalESS();
+			eoi = traceContext.incrementAndGetEoi();
+			ess = traceContext.getAndIncrementEss();
 			nextESS = ess + 1;
 			if ((eoi == -1) || (ess == -1)) {
 				LOG.error("eoi and/or ess have invalid values:" + " eoi == " + eoi + " ess == " + ess);
@@ -104,18 +110,16 @@ public class HttpClientAspect extends AbstractAspectJProbe {
 		
 		//check if header contains  
 		boolean containsRequestHeader = false;
-		Method aMethodcontainsHeader = req.getClass().getMethod("containsHeader", String.class);
-		aMethodcontainsHeader.setAccessible(Boolean.TRUE); 
-		containsRequestHeader = (boolean) aMethodcontainsHeader.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER );
+		containsRequestHeader = (Boolean) HttpAccessors.CONTAINS_HEADER.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER );
 		
 		
 		if (!containsRequestHeader) {
 
-			String requestHeader = Long.toString(traceId) + "," + sessionId + "," + Integer.toString(eoi) + "," + Integer.toString(nextESS);
+			// the called service follows the sampling decision of this trace
+			final String sampled = traceContext.isSampled() ? HttpClientHeaderConstants.SAMPLED : HttpClientHeaderConstants.NOT_SAMPLED; // NOCS (inline conditional)
+			String requestHeader = Long.toString(traceId) + "," + sessionId + "," + Integer.toString(eoi) + "," + Integer.toString(nextESS) + "," + sampled;
 			
-			Method aMethodaddHeader = req.getClass().getMethod("addHeader", String.class, String.class);
-			aMethodaddHeader.setAccessible(Boolean.TRUE); 
-			aMethodaddHeader.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER, requestHeader  );
+			HttpAccessors.ADD_HEADER.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER, requestHeader  );
 
 		} 
 
@@ -124,23 +128,30 @@ public class HttpClientAspect extends AbstractAspectJProbe {
 	final long tin = TIME.getTime();
 	Object retVal = null;
 	
+		final long proceedStart = PROBE_METRIC.mark(probeStart);
 		try {
 			retVal = thisJoinPoint.proceed(args);
 		}
+		catch (final Throwable t) { // NOCS (Throwable)
+			traceContext.markFailed();
+			throw t;
+		}
 		finally	{
 
 			final long tout = TIME.getTime();
-			CTRLINST.newMonitoringRecord(new OperationExecutionRecord(signature, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			final long proceedEnd = PROBE_METRIC.mark(probeStart);
+			if (traceContext.isRecording()) {
+				TRACE_SAMPLER.record(CTRLINST, traceContext, new OperationExecutionRecord(probe.getSignature(), sessionId, traceId, tin, tout, hostname, eoi, ess));
+			}
 			SESSIONREGISTRY.unsetThreadLocalSessionId();
 
 			// cleanup
 			if (entrypoint) {
-				CFREGISTRY.unsetThreadLocalTraceId();
-				CFREGISTRY.unsetThreadLocalEOI();
-				CFREGISTRY.unsetThreadLocalESS();
+				TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 			} else {
-				CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+				traceContext.setEss(ess); // next operation is ess
 			}
+			PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
 
 		}
 
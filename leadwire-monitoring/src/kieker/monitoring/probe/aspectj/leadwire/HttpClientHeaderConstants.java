@@ -25,6 +25,12 @@ package kieker.monitoring.probe.aspectj.leadwire;
  */
 public interface HttpClientHeaderConstants { // NOPMD NOCS (constants interface)
 
+	/** The value is <code>traceId,sessionId,eoi,ess,sampled</code>; older agents omit the sampled flag. */
 	public static final String OPERATION_EXECUTION_HTTPCLIENT_HEADER = "OperationExecutionHttpClientHeader";
 
+	/** The flag of a trace whose records are written. */
+	public static final String SAMPLED = "1";
+	/** The flag of a trace whose records are not written (or buffered, see tail-based sampling). */
+	public static final String NOT_SAMPLED = "0";
+
 }
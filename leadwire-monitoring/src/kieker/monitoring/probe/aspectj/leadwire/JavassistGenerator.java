@@ -25,74 +25,137 @@ import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.CtMethod;
 import javassist.CtNewConstructor;
+import javassist.LoaderClassPath;
 import javassist.NotFoundException;
 
 public class JavassistGenerator {
 
-	public static Class generateHtmlResponseWrapper(String className, ClassLoader cl) throws NotFoundException,
+	/**
+	 * Creates a class pool which resolves the classes visible to the given class loader (e.g., the servlet API) and the
+	 * classes of this agent. The pool is meant to be used for the classes generated for this class loader only and to be
+	 * dropped afterwards, so that it does not keep the class loader alive.
+	 */
+	public static ClassPool newClassPool(ClassLoader cl) {
+		ClassPool pool = new ClassPool(true);
+		pool.appendClassPath(new LoaderClassPath(cl));
+		pool.appendClassPath(new ClassClassPath(JavassistGenerator.class));
+		return pool;
+	}
+
+	public static Class<?> generateHtmlResponseWrapper(String className, ClassLoader cl, ClassPool pool) throws NotFoundException,
 			CannotCompileException, ClassNotFoundException {
 
-		ClassPool pool = ClassPool.getDefault();
-		CtClass cc ;
-		 try {
-			cc = pool.get (className); 
-			cc.defrost();
-			cc.stopPruning(true);
-			return cc.toClass(cl);
-            } catch (NotFoundException e) {
-            cc = pool.makeClass(className);
-            }
+		CtClass cc = pool.makeClass(className);
 		 
 	    Class<?> aClassHttpServletResponseWrapper = Class.forName("javax.servlet.http.HttpServletResponseWrapper", true, cl);
-		// Class<?> aClassHttpServletResponseWrapper = cl.loadClass("javax.servlet.http.HttpServletResponseWrapper");	 
-        ClassClassPath aClassClassPath = new ClassClassPath(aClassHttpServletResponseWrapper);
-		pool.insertClassPath(aClassClassPath);
-
-		cc.setSuperclass(resolveCtClass(aClassHttpServletResponseWrapper));
+		cc.setSuperclass(resolveCtClass(pool, aClassHttpServletResponseWrapper));
 
 		Class<?> aClassServletOutputStream = Class.forName("javax.servlet.ServletOutputStream", true, cl);
-		// Class<?> aClassServletOutputStream = cl.loadClass("javax.servlet.ServletOutputStream");	 
-		ClassClassPath aClassClassPath2 = new ClassClassPath(aClassServletOutputStream);
-		pool.insertClassPath(aClassClassPath2);
 
-		Class<?> aFieldcapture = java.io.ByteArrayOutputStream.class;
+		Class<?> aFieldinjector = HeadInjectingOutputStream.class;
 		Class<?> aFieldoutput = aClassServletOutputStream;
 		Class<?> aFieldwriter = java.io.PrintWriter.class;
-				
-		cc.addField(new CtField(resolveCtClass(aFieldcapture), "capture", cc));
-		cc.addField(new CtField(resolveCtClass(aFieldoutput), "output", cc));
-		cc.addField(new CtField(resolveCtClass(aFieldwriter), "writer", cc));
 
-		Class<?> aClassHttpServletResponse = Class.forName("javax.servlet.http.HttpServletResponse", true, cl);
-		//Class<?> aClassHttpServletResponse = cl.loadClass("javax.servlet.http.HttpServletResponse");	 
-		ClassClassPath aClassClassPath3 = new ClassClassPath(aClassHttpServletResponse);
-		pool.insertClassPath(aClassClassPath3);
-				 
-		CtConstructor defaultConstructor = CtNewConstructor.make("public " + cc.getSimpleName() + "(javax.servlet.http.HttpServletResponse rep) {super(rep); capture = new java.io.ByteArrayOutputStream(((javax.servlet.http.HttpServletResponse) rep).getBufferSize());}", cc);
+		cc.addField(new CtField(resolveCtClass(pool, String.class), "snippet", cc));
+		cc.addField(new CtField(resolveCtClass(pool, String.class), "pendingContentLength", cc));
+		cc.addField(new CtField(resolveCtClass(pool, aFieldinjector), "injector", cc));
+		cc.addField(new CtField(resolveCtClass(pool, aFieldoutput), "output", cc));
+		cc.addField(new CtField(resolveCtClass(pool, aFieldwriter), "writer", cc));
+
+
+		CtConstructor defaultConstructor = CtNewConstructor.make("public " + cc.getSimpleName() + "(javax.servlet.http.HttpServletResponse rep, String pSnippet) {super(rep); snippet = pSnippet;}", cc);
 	    cc.addConstructor(defaultConstructor);
+	    // callees first, since javassist compiles each method on its own
+	    cc.addMethod(generate_forwardContentLength(cc));
+	    cc.addMethod(generate_handleContentLength(cc));
+	    cc.addMethod(generate_openInjector(cc));
 	    cc.addMethod(generate_flushBuffer(cc));
 		cc.addMethod(generate_getOutputStream(cc));
 		cc.addMethod(generate_getWriter(cc));
-		cc.addMethod(generate_getCaptureAsBytes(cc));
-		cc.addMethod(generate_getCaptureAsString(cc));
+		cc.addMethod(generate_finishResponse(cc));
+		cc.addMethod(generate_setContentLength(cc));
+		if (hasMethod(aClassHttpServletResponseWrapper, "setContentLengthLong", long.class)) { // since Servlet 3.1
+			cc.addMethod(generate_setContentLengthLong(cc));
+		}
+		cc.addMethod(generate_setHeader(cc, "setHeader"));
+		cc.addMethod(generate_setHeader(cc, "addHeader"));
+		cc.addMethod(generate_setIntHeader(cc, "setIntHeader"));
+		cc.addMethod(generate_setIntHeader(cc, "addIntHeader"));
+
+		return cc.toClass(cl, null);
+	}
 
-		cc.stopPruning(true);
-		return cc.toClass(cl);
-         
+	private static boolean hasMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+		try {
+			clazz.getMethod(name, parameterTypes);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
 	}
 
+	/*
+	 * The content is streamed through a HeadInjectingOutputStream which is created as soon as the application asks for
+	 * the output stream or the writer. By then, the content type is known: only HTML content is scanned. Since the
+	 * snippet changes the length of HTML content, a content length set by the application is dropped for HTML content
+	 * (the container falls back to chunked encoding) and forwarded otherwise.
+	 */
+
+	private static CtMethod generate_openInjector (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("private void openInjector() throws java.io.IOException {\r\n" + 
+				"		String contentType = getContentType();\r\n" + 
+				"		byte[] snippetBytes = null;\r\n" + 
+				"		if (contentType != null && contentType.indexOf(\"text/html\") >= 0) {\r\n" + 
+				"			snippetBytes = snippet.getBytes(getCharacterEncoding());\r\n" + 
+				"		} else {\r\n" + 
+				"			forwardContentLength();\r\n" + 
+				"		}\r\n" + 
+				"		injector = new kieker.monitoring.probe.aspectj.leadwire.HeadInjectingOutputStream(super.getOutputStream(), snippetBytes);\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
+	
+	}
+
+	private static CtMethod generate_forwardContentLength (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("private void forwardContentLength() {\r\n" + 
+				"		if (pendingContentLength != null) {\r\n" + 
+				"			super.setHeader(\"Content-Length\", pendingContentLength);\r\n" + 
+				"			pendingContentLength = null;\r\n" + 
+				"		}\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
+	
+	}
+
+	private static CtMethod generate_handleContentLength (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("private void handleContentLength(String value) {\r\n" + 
+				"		if (injector == null) {\r\n" + 
+				"			pendingContentLength = value;\r\n" + 
+				"		} else if (!injector.isInjecting()) {\r\n" + 
+				"			super.setHeader(\"Content-Length\", value);\r\n" + 
+				"		}\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
+	
+	}
 
 	private static CtMethod generate_flushBuffer (CtClass declaringClass )
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
 		sb.append("	public void flushBuffer() throws java.io.IOException {\r\n" + 
-				"		super.flushBuffer();\r\n" + 
-				"\r\n" + 
 				"		if (writer != null) {\r\n" + 
 				"			writer.flush();\r\n" + 
 				"		} else if (output != null) {\r\n" + 
 				"			output.flush();\r\n" + 
 				"		}\r\n" + 
+				"\r\n" + 
+				"		super.flushBuffer();\r\n" + 
 				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
@@ -107,7 +170,8 @@ public class JavassistGenerator {
 				"		}\r\n" + 
 				"\r\n" + 
 				"		if (writer == null) {\r\n" + 
-				"			writer = new java.io.PrintWriter(new java.io.OutputStreamWriter(capture,getCharacterEncoding()));\r\n" + 
+				"			openInjector();\r\n" + 
+				"			writer = new java.io.PrintWriter(new java.io.OutputStreamWriter(injector, getCharacterEncoding()));\r\n" + 
 				"		}\r\n" + 
 				"\r\n" + 
 				"		return writer;\r\n" + 
@@ -116,132 +180,134 @@ public class JavassistGenerator {
 	
 	}
 	
+	private static CtMethod generate_getOutputStream (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("public javax.servlet.ServletOutputStream getOutputStream() throws java.io.IOException {\r\n" + 
+				"		if (writer != null) {\r\n" + 
+				"			throw new java.lang.IllegalStateException(\r\n" + 
+				"					\"getWriter() has already been called on this response.\");\r\n" + 
+				"	}\r\n" + 
+				"\r\n" + 
+				"	if (output == null) {\r\n" + 
+				"		openInjector();\r\n" + 
+				"		output = new kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream(injector) ; "+ //{\r\n" + 
+				"	}\r\n" + 
+				"\r\n" + 
+				"	return output;\r\n" + 
+				"}");
+		return CtMethod.make(sb.toString(), declaringClass);
 	
-	private static CtMethod generate_getCaptureAsBytes (CtClass declaringClass )
+	}
+
+	private static CtMethod generate_finishResponse (CtClass declaringClass )
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
-		sb.append("public byte[] getCaptureAsBytes() throws java.io.IOException {\r\n" + 
+		sb.append("public void finishResponse() throws java.io.IOException {\r\n" + 
 				"		if (writer != null) {\r\n" + 
-				"			writer.close();\r\n" + 
-				"		} else if (output != null) {\r\n" + 
-				"			output.close();\r\n" + 
+				"			writer.flush();\r\n" + 
+				"		}\r\n" + 
+				"		if (injector != null) {\r\n" + 
+				"			injector.finish();\r\n" + 
+				"		} else {\r\n" + 
+				"			forwardContentLength();\r\n" + 
 				"		}\r\n" + 
-				"\r\n" + 
-				"		return capture.toByteArray();\r\n" + 
 				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
 	}
+
+	private static CtMethod generate_setContentLength (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("public void setContentLength(int len) {\r\n" + 
+				"		handleContentLength(String.valueOf(len));\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
 	
-	private static CtMethod generate_getCaptureAsString(CtClass declaringClass )
+	}
+
+	private static CtMethod generate_setContentLengthLong (CtClass declaringClass )
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
-		sb.append("public String getCaptureAsString() throws java.io.IOException {\r\n" + 
-				"		return new String(getCaptureAsBytes(), getCharacterEncoding());\r\n" + 
+		sb.append("public void setContentLengthLong(long len) {\r\n" + 
+				"		handleContentLength(String.valueOf(len));\r\n" + 
 				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
 	}
+
+	private static CtMethod generate_setHeader (CtClass declaringClass, String methodName )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("public void " + methodName + "(String name, String value) {\r\n" + 
+				"		if (\"Content-Length\".equalsIgnoreCase(name)) {\r\n" + 
+				"			handleContentLength(value);\r\n" + 
+				"		} else {\r\n" + 
+				"			super." + methodName + "(name, value);\r\n" + 
+				"		}\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
 	
-	private static CtMethod generate_getOutputStream (CtClass declaringClass )
+	}
+
+	private static CtMethod generate_setIntHeader (CtClass declaringClass, String methodName )
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
-		sb.append("public javax.servlet.ServletOutputStream getOutputStream() {\r\n" + 
-				"		if (writer != null) {\r\n" + 
-				"			throw new java.lang.IllegalStateException(\r\n" + 
-				"					\"getWriter() has already been called on this response.\");\r\n" + 
-				"	}\r\n" + 
-				"\r\n" + 
-				"	if (output == null) {\r\n" + 
-				"		output = new kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream(capture) ; "+ //{\r\n" + 
-				"	}\r\n" + 
-				"\r\n" + 
-				"	return output;\r\n" + 
-				"}");
+		sb.append("public void " + methodName + "(String name, int value) {\r\n" + 
+				"		if (\"Content-Length\".equalsIgnoreCase(name)) {\r\n" + 
+				"			handleContentLength(String.valueOf(value));\r\n" + 
+				"		} else {\r\n" + 
+				"			super." + methodName + "(name, value);\r\n" + 
+				"		}\r\n" + 
+				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
 	}
 
-	private static CtClass resolveCtClass(Class clazz) throws NotFoundException {
-		ClassPool pool = ClassPool.getDefault();
+	private static CtClass resolveCtClass(ClassPool pool, Class<?> clazz) throws NotFoundException {
 		return pool.get(clazz.getName());
 	}
 
 
-	public static Class<?> generatecustomServletOutputStream(String className, ClassLoader cl) throws ClassNotFoundException, CannotCompileException, NotFoundException {
-		ClassPool pool = ClassPool.getDefault();
-		CtClass cc ;
-		 try {
-			cc = pool.get (className); 
-			cc.defrost();
-			cc.stopPruning(true);
-			return cc.toClass(cl);
-            } catch (NotFoundException e) {
-            cc = pool.makeClass(className);
-            }
+	public static Class<?> generatecustomServletOutputStream(String className, ClassLoader cl, ClassPool pool) throws ClassNotFoundException, CannotCompileException, NotFoundException {
+		CtClass cc = pool.makeClass(className);
 		 Class<?> aClassServletOutputStream = Class.forName("javax.servlet.ServletOutputStream", true, cl);
-    		//Class<?> aClassServletOutputStream = cl.loadClass("javax.servlet.ServletOutputStream");	 
-
-			ClassClassPath aClassClassPath1 = new ClassClassPath(aClassServletOutputStream);
-			pool.insertClassPath(aClassClassPath1);
-			 
-			cc.setSuperclass(resolveCtClass(aClassServletOutputStream));
-			 Class<?> aFieldcapture = java.io.ByteArrayOutputStream.class;
+			cc.setSuperclass(resolveCtClass(pool, aClassServletOutputStream));
+			 Class<?> aFieldtarget = java.io.OutputStream.class;
 
-			 cc.addField(new CtField(resolveCtClass(aFieldcapture), "capture", cc));
-				 CtConstructor defaultConstructor = CtNewConstructor.make("public customServletOutputStream(java.io.ByteArrayOutputStream pCapture){\r\n" + 
+			 cc.addField(new CtField(resolveCtClass(pool, aFieldtarget), "target", cc));
+				 CtConstructor defaultConstructor = CtNewConstructor.make("public customServletOutputStream(java.io.OutputStream pTarget){\r\n" + 
 				 		"		super();\r\n" + 
-				 		"		capture=pCapture;\r\n" + 
+				 		"		target=pTarget;\r\n" + 
 				 		"		}", cc);
 				 cc.addConstructor(defaultConstructor);
 			      
 				 cc.addMethod(generate_write(cc));
+				 cc.addMethod(generate_writeArray(cc));
 				 cc.addMethod(generate_flush(cc));
 				 cc.addMethod(generate_close(cc));
-				 return cc.toClass(cl);
+				 // stays in the pool, since the wrapper refers to it
+				 return cc.toClass(cl, null);
        
 		 
 	}
 	
-	public static Class<?> generatecustomServletOutputStream_old(String string, ClassLoader cl) throws ClassNotFoundException, CannotCompileException, NotFoundException {
-		ClassPool pool = ClassPool.getDefault();
-		CtClass acustomServletOutputStream;
-		 try {
-			 acustomServletOutputStream = pool.get ("kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream"); // just getting the class
-
-           } catch (NotFoundException e) {
-           	acustomServletOutputStream = pool.makeClass("kieker.monitoring.probe.aspectj.leadwire.javassist.customServletOutputStream");
-
-				Class<?> aClassServletOutputStream = Class.forName("javax.servlet.ServletOutputStream", true, cl);
-           		//Class<?> aClassServletOutputStream = cl.loadClass("javax.servlet.ServletOutputStream");	 
-	
-				ClassClassPath aClassClassPath1 = new ClassClassPath(aClassServletOutputStream);
-				pool.insertClassPath(aClassClassPath1);
-				 
-				acustomServletOutputStream.setSuperclass(resolveCtClass(aClassServletOutputStream));
-				 Class<?> aFieldcapture = java.io.ByteArrayOutputStream.class;
-	
-				acustomServletOutputStream.addField(new CtField(resolveCtClass(aFieldcapture), "capture", acustomServletOutputStream));
-					 CtConstructor defaultConstructor = CtNewConstructor.make("public customServletOutputStream(java.io.ByteArrayOutputStream pCapture){\r\n" + 
-					 		"		super();\r\n" + 
-					 		"		capture=pCapture;\r\n" + 
-					 		"		}", acustomServletOutputStream);
-				acustomServletOutputStream.addConstructor(defaultConstructor);
-				      
-				acustomServletOutputStream.addMethod(generate_write(acustomServletOutputStream));
-				acustomServletOutputStream.addMethod(generate_flush(acustomServletOutputStream));
-				acustomServletOutputStream.addMethod(generate_close(acustomServletOutputStream));
-				acustomServletOutputStream.toClass(cl);
-              
-           }
-		return null;
-	}
-	
 	private static CtMethod generate_write (CtClass declaringClass )
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
 		sb.append("public void write(int b) throws java.io.IOException {\r\n" + 
-				"		capture.write(b);\r\n" + 
+				"		target.write(b);\r\n" + 
+				"	}");
+		return CtMethod.make(sb.toString(), declaringClass);
+	
+	}
+
+	private static CtMethod generate_writeArray (CtClass declaringClass )
+			throws CannotCompileException {
+		StringBuffer sb = new StringBuffer();
+		sb.append("public void write(byte[] b, int off, int len) throws java.io.IOException {\r\n" + 
+				"		target.write(b, off, len);\r\n" + 
 				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
@@ -251,7 +317,7 @@ public class JavassistGenerator {
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
 		sb.append("public void flush() throws java.io.IOException {\r\n" + 
-				"		capture.flush();\r\n" + 
+				"		target.flush();\r\n" + 
 				"	}");
 		return CtMethod.make(sb.toString(), declaringClass);
 	
@@ -261,7 +327,7 @@ public class JavassistGenerator {
 			throws CannotCompileException {
 		StringBuffer sb = new StringBuffer();
 		sb.append("	public void close() throws java.io.IOException {\r\n" + 
-				"		capture.close();\r\n" + 
+				"		target.close();\r\n" + 
 				"		\r\n" + 
 				"		\r\n" + 
 				"	}");
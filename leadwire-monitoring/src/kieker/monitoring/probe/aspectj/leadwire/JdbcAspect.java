@@ -27,9 +27,14 @@ import kieker.common.logging.LogFactory;
 import kieker.common.record.jdbc.JdbcOperationExecutionRecord;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.ProbeMetric;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
+import kieker.monitoring.probe.aspectj.ProbeHandle;
 import kieker.monitoring.probe.aspectj.operationExecution.AbstractOperationExecutionAspect;
 import kieker.monitoring.timer.ITimeSource;
 
@@ -48,6 +53,8 @@ public class JdbcAspect extends AbstractAspectJProbe {
 	private static final IMonitoringController CTRLINST = MonitoringController.getInstance();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
 	private static final String VMNAME = CTRLINST.getHostname();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
+	private static final ProbeMetric PROBE_METRIC = AgentMetrics.INSTANCE.probe("jdbc");
 	private static final long SQL_THRESHOLD = CTRLINST.getSqlThreshold();
 
 	
@@ -91,9 +98,11 @@ public class JdbcAspect extends AbstractAspectJProbe {
 if (!CTRLINST.isMonitoringEnabled()) {
 	return thisJoinPoint.proceed();
 }
-if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+final ProbeHandle probe = this.getProbeHandle(thisJoinPoint.getStaticPart());
+if (!probe.isActivated(CTRLINST)) {
 	return thisJoinPoint.proceed();
 }
+		final long probeStart = PROBE_METRIC.start();
 
 		
 // collect data
@@ -102,18 +111,17 @@ final String hostname = VMNAME;
 final String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 final int eoi; // this is executionOrderIndex-th execution in this trace
 final int ess; // this is the height in the dynamic call tree of this execution
-long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
-if (traceId == -1) {
+final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+if (traceId == TraceContext.NO_TRACE_ID) {
 	entrypoint = true;
-	traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-	CFREGISTRY.storeThreadLocalEOI(0);
-	CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+	traceId = CFREGISTRY.beginTrace(traceContext, probe.getSignature()); // next operation is eoi + 1, ess + 1
 	eoi = 0;
 	ess = 0;
 } else {
 	entrypoint = false;
-	eoi = CFREGISTRY.incrementAndRecallThreadLocalEOI(); // ess > 1
-	ess = CFREGISTRY.recallAndIncrementThreadLocalESS(); // ess >= 0
+	eoi = traceContext.incrementAndGetEoi(); // ess > 1
+	ess = traceContext.getAndIncrementEss(); // ess >= 0
 	if ((eoi == -1) || (ess == -1)) {
 		LOG.error("eoi and/or ess have invalid values:" + " eoi == " + eoi + " ess == " + ess);
 		CTRLINST.terminateMonitoring();
@@ -126,26 +134,30 @@ final long tin = TIME.getTime();
 	    
 	final String sqlStatement = thisJoinPoint.getThis().toString().replaceAll("\\r\\n|\\r|\\n", " ");
 	
+	final long proceedStart = PROBE_METRIC.mark(probeStart);
 	try {	
 		
 		retVal = thisJoinPoint.proceed();
 		
+			} catch (final Throwable t) { // NOCS (Throwable)
+				traceContext.markFailed();
+				throw t;
 			} finally {
 				
 				final long tout = TIME.getTime();
+				final long proceedEnd = PROBE_METRIC.mark(probeStart);
 				if (tout-tin > SQL_THRESHOLD && sqlStatement.length() < 65534) {
-				CTRLINST.newMonitoringRecord(new JdbcOperationExecutionRecord(sqlStatement, sessionId, traceId, tin, tout, hostname, eoi, ess));
+				TRACE_SAMPLER.record(CTRLINST, traceContext, new JdbcOperationExecutionRecord(sqlStatement, sessionId, traceId, tin, tout, hostname, eoi, ess));
 				}
 				SESSIONREGISTRY.unsetThreadLocalSessionId();
 				
 				// cleanup
 				if (entrypoint) {
-					CFREGISTRY.unsetThreadLocalTraceId();
-					CFREGISTRY.unsetThreadLocalEOI();
-					CFREGISTRY.unsetThreadLocalESS();
+					TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 				} else {
-					CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+					traceContext.setEss(ess); // next operation is ess
 				}
+				PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
 				
 			}
 			return retVal;
@@ -18,8 +18,6 @@ package kieker.monitoring.probe.aspectj.leadwire;
 
 
 
-import java.util.Map;
-
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -42,7 +40,6 @@ public class JdbcConnectionAspect extends AbstractAspectJProbe {
 	private static final Log LOG = LogFactory.getLog(AbstractOperationExecutionAspect.class);
 
 	private static final IMonitoringController CTRLINST = MonitoringController.getInstance();
-	private static final Map<Object, String> statementSqlMap = CTRLINST.getStatementSqlMap();
 
 	
 	
@@ -75,7 +72,7 @@ public class JdbcConnectionAspect extends AbstractAspectJProbe {
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+		if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
 		   
@@ -83,7 +80,7 @@ public class JdbcConnectionAspect extends AbstractAspectJProbe {
 			
 	Object PreparedStatement  = thisJoinPoint.proceed();
 		
-    statementSqlMap.put(PreparedStatement , sqlStatement);
+    StatementSql.attach(PreparedStatement , sqlStatement);
 	
 	return PreparedStatement ;
 		
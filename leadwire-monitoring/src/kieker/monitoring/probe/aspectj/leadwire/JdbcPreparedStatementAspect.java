@@ -18,8 +18,6 @@ package kieker.monitoring.probe.aspectj.leadwire;
 
 
 
-import java.util.Map;
-
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -29,9 +27,15 @@ import kieker.common.logging.LogFactory;
 import kieker.common.record.jdbc.JdbcOperationExecutionRecord;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.ProbeMetric;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
+import kieker.monitoring.core.threshold.AdaptiveThresholds;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
+import kieker.monitoring.probe.aspectj.ProbeHandle;
 import kieker.monitoring.probe.aspectj.operationExecution.AbstractOperationExecutionAspect;
 import kieker.monitoring.timer.ITimeSource;
 
@@ -50,8 +54,11 @@ public class JdbcPreparedStatementAspect extends AbstractAspectJProbe {
 	private static final IMonitoringController CTRLINST = MonitoringController.getInstance();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
 	private static final String VMNAME = CTRLINST.getHostname();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
+	private static final ProbeMetric PROBE_METRIC = AgentMetrics.INSTANCE.probe("jdbcPreparedStatement");
 	private static final long SQL_THRESHOLD = CTRLINST.getSqlThreshold();
-	private static final Map<Object, String> statementSqlMap = CTRLINST.getStatementSqlMap();
+	private static final SqlFingerprints SQL_FINGERPRINTS = SqlFingerprints.forController(CTRLINST);
+	private static final AdaptiveThresholds SQL_THRESHOLDS = CTRLINST.getSqlThresholds();
 	
 	
 	/* Configuration */
@@ -78,9 +85,11 @@ public class JdbcPreparedStatementAspect extends AbstractAspectJProbe {
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+		final ProbeHandle probe = this.getProbeHandle(thisJoinPoint.getStaticPart());
+		if (!probe.isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
+		final long probeStart = PROBE_METRIC.start();
 		
 		// measure before
 		final long tin = TIME.getTime();
@@ -93,18 +102,17 @@ public class JdbcPreparedStatementAspect extends AbstractAspectJProbe {
 		final String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 		final int eoi; // this is executionOrderIndex-th execution in this trace
 		final int ess; // this is the height in the dynamic call tree of this execution
-		long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
-		if (traceId == -1) {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+			traceId = CFREGISTRY.beginTrace(traceContext, probe.getSignature()); // next operation is eoi + 1, ess + 1
 			eoi = 0;
 			ess = 0;
 		} else {
 			entrypoint = false;
-			eoi = CFREGISTRY.incrementAndRecallThreadLocalEOI(); // ess > 1
-			ess = CFREGISTRY.recallAndIncrementThreadLocalESS(); // ess >= 0
+			eoi = traceContext.incrementAndGetEoi(); // ess > 1
+			ess = traceContext.getAndIncrementEss(); // ess >= 0
 			if ((eoi == -1) || (ess == -1)) {
 				LOG.error("eoi and/or ess have invalid values:" + " eoi == " + eoi + " ess == " + ess);
 				CTRLINST.terminateMonitoring();
@@ -113,28 +121,37 @@ public class JdbcPreparedStatementAspect extends AbstractAspectJProbe {
 		
 	Object retVal;
 	    
-	 final String sqlStatement = statementSqlMap.get(thisJoinPoint.getThis());
+	 final String sqlStatement = StatementSql.lookup(thisObject);
     	
+	final long proceedStart = PROBE_METRIC.mark(probeStart);
 	try {	
 		
 		retVal = thisJoinPoint.proceed();
 		
+			} catch (final Throwable t) { // NOCS (Throwable)
+				traceContext.markFailed();
+				throw t;
 			} finally {
 				
 				final long tout = TIME.getTime();
-				if (sqlStatement != null && tout-tin > SQL_THRESHOLD && sqlStatement.length() < 65534) {
-				CTRLINST.newMonitoringRecord(new JdbcOperationExecutionRecord(sqlStatement, sessionId, traceId, tin, tout, hostname, eoi, ess));
+				final long proceedEnd = PROBE_METRIC.mark(probeStart);
+				// tracking needs the fingerprint of each statement, the static threshold only of the slow ones
+				if (sqlStatement != null && (SQL_THRESHOLDS.isTracking() || tout-tin > SQL_THRESHOLD)) {
+					final String sqlFingerprint = SQL_FINGERPRINTS.fingerprint(sqlStatement);
+					if ((SQL_THRESHOLDS.getHistogram(sqlFingerprint).exceedsThreshold(tout - tin) || SQL_THRESHOLDS.isRecordingAll(traceContext))
+							&& sqlFingerprint.length() < 65534) {
+						TRACE_SAMPLER.record(CTRLINST, traceContext, new JdbcOperationExecutionRecord(sqlFingerprint, sessionId, traceId, tin, tout, hostname, eoi, ess));
+					}
 				}
 				SESSIONREGISTRY.unsetThreadLocalSessionId();
 				
 				// cleanup
 				if (entrypoint) {
-					CFREGISTRY.unsetThreadLocalTraceId();
-					CFREGISTRY.unsetThreadLocalEOI();
-					CFREGISTRY.unsetThreadLocalESS();
+					TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 				} else {
-					CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+					traceContext.setEss(ess); // next operation is ess
 				}
+				PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
 				
 			}
 			return retVal;
@@ -0,0 +1,55 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.DeclareMixin;
+
+/**
+ * Makes the prepared statements of the woven JDBC drivers implement {@link SqlAttachment}, so that
+ * {@link JdbcConnectionAspect} can attach the SQL to the statement itself instead of storing it in the weak-key map of
+ * the monitoring controller. The attachment lives and dies with its statement: there is no shared map to lock, and no
+ * weak reference for the garbage collector to process per statement.
+ *
+ * <p>
+ * This aspect is optional. Without it, or for statements whose classes have not been woven (e.g., proxies of connection
+ * pools), the probes fall back to the map; see {@link StatementSql}.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@Aspect
+public class JdbcSqlAttachmentAspect {
+
+	/**
+	 * Creates an instance.
+	 */
+	public JdbcSqlAttachmentAspect() {
+		super();
+	}
+
+	/**
+	 * The attachment is created when the SQL is attached for the first time.
+	 *
+	 * @return a new attachment
+	 */
+	@DeclareMixin("java.sql.PreparedStatement+ && !java.sql..* && !is(InterfaceType)")
+	public static SqlAttachment createSqlAttachment() {
+		return new SqlAttachment.Holder();
+	}
+}
@@ -16,7 +16,6 @@
 
 package kieker.monitoring.probe.aspectj.leadwire;
 
-import java.lang.reflect.Method;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -27,6 +26,8 @@ import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
 import kieker.monitoring.timer.ITimeSource;
 
@@ -45,6 +46,7 @@ public class JsfAspect extends AbstractAspectJProbe {
 	private static final IMonitoringController CTRLINST = MonitoringController.getInstance();
 		private static final String VMNAME = CTRLINST.getHostname();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
 	public static final String SESSION_ID_ASYNC_TRACE = "NOSESSION-ASYNCIN";
 
 
@@ -54,7 +56,7 @@ public class JsfAspect extends AbstractAspectJProbe {
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+		if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
 		
@@ -67,14 +69,22 @@ public class JsfAspect extends AbstractAspectJProbe {
 				String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 				int eoi; // this is executionOrderIndex-th execution in this trace
 				int ess; // this is the height in the dynamic call tree of this execution
-				long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
+				final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+				long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+				String requestServletPath = null;
 				
-		if (traceId == -1) {
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+
+			// getRequestURL (also the endpoint of the trace sampling)
+			Object externalContext =  HttpAccessors.GET_EXTERNAL_CONTEXT.invoke(fCtx);
+			
+			if (externalContext != null) {
+				requestServletPath =  (String) HttpAccessors.GET_REQUEST_SERVLET_PATH.invoke(externalContext);
+			}
+
+			traceId = CFREGISTRY.beginTrace(traceContext, requestServletPath); // next operation is eoi + 1, ess + 1
 			eoi = 0;
 			ess = 0;
 
@@ -84,22 +94,6 @@ public class JsfAspect extends AbstractAspectJProbe {
 		}
 		
 		
-
-	// getRequestURL 
-	Method aMethodgetExternalContext = fCtx.getClass().getMethod("getExternalContext");
-	aMethodgetExternalContext.setAccessible(Boolean.TRUE); 
-	Object externalContext =  aMethodgetExternalContext.invoke(fCtx);
-	
-	String requestServletPath = null;
-			
-	 if (externalContext != null) {
-		 
-		 Method aMethodgetRequestServletPath = externalContext.getClass().getMethod("getRequestServletPath");
-		 aMethodgetRequestServletPath.setAccessible(Boolean.TRUE); 
-			requestServletPath =  (String) aMethodgetRequestServletPath.invoke(externalContext);
-			
-         }
- 
 				
 	// measure before
 	final long tin = TIME.getTime();
@@ -109,21 +103,25 @@ public class JsfAspect extends AbstractAspectJProbe {
 
 			retVal = thisJoinPoint.proceed();
 		}
+		catch (final Throwable t) { // NOCS (Throwable)
+			traceContext.markFailed();
+			throw t;
+		}
 		finally	{
 
 
 			final long tout = TIME.getTime();
-			CTRLINST.newMonitoringRecord(new HttpOperationExecutionRecord(requestServletPath, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			if (traceContext.isRecording()) {
+				TRACE_SAMPLER.record(CTRLINST, traceContext, new HttpOperationExecutionRecord(requestServletPath, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			}
 			SESSIONREGISTRY.unsetThreadLocalSessionId();
 
 			// cleanup
 			if (entrypoint) {
 
-				CFREGISTRY.unsetThreadLocalTraceId();
-				CFREGISTRY.unsetThreadLocalEOI();
-				CFREGISTRY.unsetThreadLocalESS();
+				TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 			} else {
-				CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+				traceContext.setEss(ess); // next operation is ess
 			}
 
 		}
@@ -0,0 +1,127 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a public method by name on objects whose classes are not visible to the agent (e.g., servlet requests, which
+ * are loaded by the class loader of the container). The method is looked up once per concrete class and kept as a
+ * {@link MethodHandle} in a {@link ClassValue}, i.e., in the class itself, so that the cache does not keep class loaders
+ * alive. Primitive arguments and results are boxed.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class MethodAccessor {
+
+	private final String name;
+	private final Class<?>[] parameterTypes;
+	/** (Object, Object...)Object, with one Object per parameter. */
+	private final MethodType genericType;
+
+	private final ClassValue<MethodHandle> handles = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(final Class<?> type) {
+			return MethodAccessor.this.lookup(type);
+		}
+	};
+
+	/**
+	 * @param name
+	 *            the name of the method
+	 * @param parameterTypes
+	 *            the parameter types of the method
+	 */
+	public MethodAccessor(final String name, final Class<?>... parameterTypes) {
+		this.name = name;
+		this.parameterTypes = parameterTypes.clone();
+		this.genericType = MethodType.genericMethodType(parameterTypes.length + 1);
+	}
+
+	/**
+	 * Invokes the method without parameters.
+	 */
+	public Object invoke(final Object target) throws Throwable { // NOCS (Throwable)
+		return (Object) this.handles.get(target.getClass()).invokeExact(target);
+	}
+
+	/**
+	 * Invokes the method with one parameter.
+	 */
+	public Object invoke(final Object target, final Object arg) throws Throwable { // NOCS (Throwable)
+		return (Object) this.handles.get(target.getClass()).invokeExact(target, arg);
+	}
+
+	/**
+	 * Invokes the method with two parameters.
+	 */
+	public Object invoke(final Object target, final Object arg1, final Object arg2) throws Throwable { // NOCS (Throwable)
+		return (Object) this.handles.get(target.getClass()).invokeExact(target, arg1, arg2);
+	}
+
+	private MethodHandle lookup(final Class<?> type) {
+		try {
+			Method method = type.getMethod(this.name, this.parameterTypes);
+			if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+				// the method is public, but its class is not: call it via a public supertype, if possible
+				final Method publicMethod = this.findInPublicSupertype(type);
+				if (publicMethod != null) {
+					method = publicMethod;
+				} else {
+					method.setAccessible(true);
+				}
+			}
+			return MethodHandles.publicLookup().unreflect(method).asType(this.genericType);
+		} catch (final NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException("Cannot access " + this.name + " of " + type.getName(), e);
+		}
+	}
+
+	private Method findInPublicSupertype(final Class<?> type) {
+		if (type == null) {
+			return null;
+		}
+		if (Modifier.isPublic(type.getModifiers())) {
+			try {
+				final Method method = type.getMethod(this.name, this.parameterTypes);
+				if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+					return method;
+				}
+			} catch (final NoSuchMethodException e) { // NOPMD (not declared by this type)
+				return null;
+			}
+		}
+		for (final Class<?> iface : type.getInterfaces()) {
+			final Method method = this.findInPublicSupertype(iface);
+			if (method != null) {
+				return method;
+			}
+		}
+		return this.findInPublicSupertype(type.getSuperclass());
+	}
+
+	@Override
+	public String toString() {
+		return this.name + this.genericType;
+	}
+}
@@ -16,7 +16,6 @@
 
 package kieker.monitoring.probe.aspectj.leadwire;
 
-import java.lang.reflect.Method;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -29,8 +28,12 @@ import kieker.common.record.controlflow.OperationExecutionRecord;
 import kieker.common.record.http.HttpOperationExecutionRecord;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.ProbeMetric;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
 import kieker.monitoring.probe.aspectj.operationExecution.AbstractOperationExecutionAspect;
 import kieker.monitoring.timer.ITimeSource;
@@ -51,6 +54,8 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 	private static final Log LOG = LogFactory.getLog(AbstractOperationExecutionAspect.class);
 	private static final String VMNAME = CTRLINST.getHostname();
 	private static final ITimeSource TIME = CTRLINST.getTimeSource();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
+	private static final ProbeMetric PROBE_METRIC = AgentMetrics.INSTANCE.probe("servlet");
 	public static final String SESSION_ID_ASYNC_TRACE = "NOSESSION-ASYNCIN";
 
 
@@ -61,9 +66,10 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+		if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
+		final long probeStart = PROBE_METRIC.start();
 		
 		final Object req = (Object) thisJoinPoint.getArgs()[0];
 
@@ -74,14 +80,16 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 				String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 				int eoi; // this is executionOrderIndex-th execution in this trace
 				int ess; // this is the height in the dynamic call tree of this execution
-				long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
+				final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+				long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+				final String completeURL;
 				
-		if (traceId == -1) {
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+			// getRequestURL (also the endpoint of the trace sampling)
+			StringBuffer requestURL =  (StringBuffer) HttpAccessors.GET_REQUEST_URL.invoke(req);
+			completeURL = requestURL.toString();
 			eoi = 0;
 			ess = 0;
 			
@@ -89,15 +97,18 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 			String requestHeader = null;
 
 			//get request headers
-			Method aMethodgetHeader = req.getClass().getMethod("getHeader", String.class);
-			aMethodgetHeader.setAccessible(Boolean.TRUE); 
-			requestHeader = (String) aMethodgetHeader.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER );
+			requestHeader = (String) HttpAccessors.GET_HEADER.invoke(req, HttpClientHeaderConstants.OPERATION_EXECUTION_HTTPCLIENT_HEADER );
 			//}
 			
 			if (requestHeader != null)  {
 
 			final String[] headerArray = requestHeader.split(",");
 
+			// Extract the sampling decision of the caller (missing if sent by an older agent)
+			final boolean sampledByCaller = (headerArray.length < 5) || !HttpClientHeaderConstants.NOT_SAMPLED.equals(headerArray[4]);
+			traceId = CFREGISTRY.getUniqueTraceId();
+			traceContext.beginTrace(traceId, TRACE_SAMPLER.follow(sampledByCaller));
+
 			// Extract session id
 			sessionId = headerArray[1];
 			if ("null".equals(sessionId)) {
@@ -139,23 +150,18 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 			}
 
 			// Store thread-local values
-			CFREGISTRY.storeThreadLocalTraceId(traceId);
-			CFREGISTRY.storeThreadLocalEOI(eoi); // this execution has EOI=eoi; next execution will get eoi with incrementAndRecall
-			CFREGISTRY.storeThreadLocalESS(ess + 1); // this execution has ESS=ess
+			traceContext.setTraceId(traceId);
+			traceContext.setEoi(eoi); // this execution has EOI=eoi; next execution will get eoi with incrementAndRecall
+			traceContext.setEss(ess + 1); // this execution has ESS=ess
 			SESSIONREGISTRY.storeThreadLocalSessionId(sessionId);
 		} 
-			else if (sessionId==null) {
-
-				Method aMethodgetSession = req.getClass().getMethod("getSession", boolean.class);
-				aMethodgetSession.setAccessible(Boolean.TRUE); 
-				Object aSession = (Object) aMethodgetSession.invoke(req, true); 
+			else {
+				traceId = CFREGISTRY.beginTrace(traceContext, completeURL); // next operation is eoi + 1, ess + 1
 
-				Method aMethodgetId = aSession.getClass().getMethod("getId");
-				aMethodgetId.setAccessible(Boolean.TRUE); 
-				String aId = (String) aMethodgetId.invoke(aSession);	 
-
-				sessionId = (req != null) ? aId : null; 
+				if (sessionId==null) {
+				sessionId = HttpAccessors.getSessionId(req);
 				SESSIONREGISTRY.storeThreadLocalSessionId(sessionId);
+				}
 			}
 
 		} else {
@@ -165,36 +171,37 @@ public class SimpleServletAspect extends AbstractAspectJProbe {
 		
 		
 
-	// getRequestURL 
-	Method aMethodgetRequestURL = req.getClass().getMethod("getRequestURL");
-	aMethodgetRequestURL.setAccessible(Boolean.TRUE); 
-	StringBuffer requestURL =  (StringBuffer) aMethodgetRequestURL.invoke(req);
-	String completeURL = requestURL.toString();
-				
 	// measure before
 	final long tin = TIME.getTime();
 	Object retVal = null;
 	
+		final long proceedStart = PROBE_METRIC.mark(probeStart);
 		try {
 
 			retVal = thisJoinPoint.proceed();
 		}
+		catch (final Throwable t) { // NOCS (Throwable)
+			traceContext.markFailed();
+			throw t;
+		}
 		finally	{
 
 
 			final long tout = TIME.getTime();
-			CTRLINST.newMonitoringRecord(new HttpOperationExecutionRecord(completeURL, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			final long proceedEnd = PROBE_METRIC.mark(probeStart);
+			if (traceContext.isRecording()) {
+				TRACE_SAMPLER.record(CTRLINST, traceContext, new HttpOperationExecutionRecord(completeURL, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			}
 			SESSIONREGISTRY.unsetThreadLocalSessionId();
 
 			// cleanup
 			if (entrypoint) {
 
-				CFREGISTRY.unsetThreadLocalTraceId();
-				CFREGISTRY.unsetThreadLocalEOI();
-				CFREGISTRY.unsetThreadLocalESS();
+				TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 			} else {
-				CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+				traceContext.setEss(ess); // next operation is ess
 			}
+			PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
 
 		}
 
@@ -0,0 +1,64 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+/**
+ * Mixed into the prepared statements of the woven JDBC drivers by {@link JdbcSqlAttachmentAspect}, so that the JDBC
+ * probes can keep the SQL of a statement in the statement itself. The methods are prefixed to avoid clashes with the
+ * methods of the drivers.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public interface SqlAttachment {
+
+	/**
+	 * @return the SQL the statement has been prepared with, or <code>null</code> if unknown
+	 */
+	String leadwireGetSql();
+
+	/**
+	 * @param sql
+	 *            the SQL the statement has been prepared with
+	 */
+	void leadwireSetSql(String sql);
+
+	/**
+	 * The state mixed into each statement.
+	 */
+	final class Holder implements SqlAttachment {
+		private String sql;
+
+		/**
+		 * Creates a new, empty attachment.
+		 */
+		public Holder() {
+			super();
+		}
+
+		@Override
+		public String leadwireGetSql() {
+			return this.sql;
+		}
+
+		@Override
+		public void leadwireSetSql(final String sql) {
+			this.sql = sql;
+		}
+	}
+}
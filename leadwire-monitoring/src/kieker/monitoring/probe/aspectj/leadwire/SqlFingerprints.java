@@ -0,0 +1,246 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.util.concurrent.ConcurrentMap;
+
+import kieker.common.util.map.BoundedConcurrentHashMap;
+import kieker.common.util.map.BoundedConcurrentHashMap.BoundedCacheBehaviour;
+import kieker.monitoring.core.controller.IMonitoringController;
+
+/**
+ * Normalizes the SQL of the JDBC probes: string and numeric literals are replaced by <code>?</code> and whitespace is
+ * collapsed, so that all executions of a statement with different values share a single text. The normalized texts
+ * are canonicalized, i.e., all records of a statement reference the same {@link String} instance. The writers register
+ * that instance once per session in their string registry, and afterwards only send its id.
+ *
+ * <p>
+ * The raw texts are mapped to their normalized text by a bounded cache, so that a statement is usually normalized only
+ * once. Very long texts are normalized on each call instead of being cached.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class SqlFingerprints {
+
+	/** raw texts longer than this are not cached, to bound the memory held by the cache. */
+	static final int MAX_CACHED_LENGTH = 4096;
+
+	private static final char PLACEHOLDER = '?';
+
+	private final boolean enabled;
+	/** whether a backslash escapes the next character inside a string literal. */
+	private final boolean backslashEscapes;
+	/** raw text to canonical normalized text. */
+	private final ConcurrentMap<String, String> fingerprints;
+	/** normalized text to its canonical instance. */
+	private final ConcurrentMap<String, String> canonicalTexts;
+
+	/**
+	 * @param enabled
+	 *            whether to normalize the texts; otherwise, they are passed through unchanged
+	 * @param backslashEscapes
+	 *            whether a backslash escapes the next character inside a string literal
+	 * @param cacheSize
+	 *            the maximum number of raw texts to cache
+	 */
+	SqlFingerprints(final boolean enabled, final boolean backslashEscapes, final int cacheSize) {
+		this.enabled = enabled;
+		this.backslashEscapes = backslashEscapes;
+		this.fingerprints = new BoundedConcurrentHashMap<String, String>(BoundedCacheBehaviour.REMOVE_RANDOM_ENTRY, cacheSize);
+		this.canonicalTexts = new BoundedConcurrentHashMap<String, String>(BoundedCacheBehaviour.REMOVE_RANDOM_ENTRY, cacheSize);
+	}
+
+	/**
+	 * @param controller
+	 *            the controller providing the configuration
+	 * @return the fingerprints configured for the given controller
+	 */
+	static SqlFingerprints forController(final IMonitoringController controller) {
+		return new SqlFingerprints(controller.isSqlNormalizationEnabled(), controller.isSqlBackslashEscapesEnabled(),
+				controller.getSqlFingerprintCacheSize());
+	}
+
+	/**
+	 * @param sql
+	 *            the SQL as passed to the driver
+	 * @return the canonical normalized SQL, or the given SQL if normalization is disabled
+	 */
+	String fingerprint(final String sql) {
+		if (!this.enabled || (sql == null)) {
+			return sql;
+		}
+		final String cached = this.fingerprints.get(sql);
+		if (cached != null) {
+			return cached;
+		}
+		final String normalized = normalize(sql, this.backslashEscapes);
+		final String existing = this.canonicalTexts.putIfAbsent(normalized, normalized);
+		final String canonical = (existing != null) ? existing : normalized; // NOCS (inline conditional)
+		if (sql.length() <= MAX_CACHED_LENGTH) {
+			this.fingerprints.put(sql, canonical);
+		}
+		return canonical;
+	}
+
+	/**
+	 * Normalizes the given SQL as standard SQL, i.e., without backslash escapes.
+	 *
+	 * @param sql
+	 *            the SQL to normalize
+	 * @return the normalized SQL
+	 */
+	static String normalize(final String sql) {
+		return normalize(sql, false);
+	}
+
+	/**
+	 * Replaces string literals (<code>'...'</code>) and numeric literals by <code>?</code>, and collapses each run of
+	 * whitespace into a single space. Quoted identifiers, keywords and comments are kept; comments are copied as they
+	 * are, so quotes inside them do not start a literal.
+	 *
+	 * <p>
+	 * As in standard SQL, a doubled quote escapes a quote inside a literal. Without backslash escapes, a backslash is an
+	 * ordinary character, so <code>'C:\'</code> is a complete literal; but a MySQL literal such as
+	 * <code>'x\'y'</code> then ends at its second quote, and its third quote starts a literal which extends to the
+	 * end of the statement. With backslash escapes, as in MySQL, a backslash escapes the next character, so that
+	 * <code>'x\'y'</code> is a single literal.
+	 *
+	 * @param sql
+	 *            the SQL to normalize
+	 * @param backslashEscapes
+	 *            whether a backslash escapes the next character inside a string literal
+	 * @return the normalized SQL
+	 */
+	static String normalize(final String sql, final boolean backslashEscapes) {
+		final int length = sql.length();
+		final StringBuilder sb = new StringBuilder(length);
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				while ((i < length) && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if ((sb.length() > 0) && (i < length)) {
+					sb.append(' ');
+				}
+			} else if ((c == '-') && startsWith(sql, i + 1, '-')) {
+				final int end = sql.indexOf('\n', i + 2);
+				final int commentEnd = (end < 0) ? length : end; // NOCS (inline conditional)
+				sb.append(sql, i, commentEnd);
+				i = commentEnd;
+			} else if ((c == '/') && startsWith(sql, i + 1, '*')) {
+				final int end = sql.indexOf("*/", i + 2);
+				final int commentEnd = (end < 0) ? length : end + 2; // NOCS (inline conditional)
+				sb.append(sql, i, commentEnd);
+				i = commentEnd;
+			} else if (c == '\'') {
+				i = skipStringLiteral(sql, i, backslashEscapes);
+				sb.append(PLACEHOLDER);
+			} else if (c == '"' || c == '`') {
+				final int end = skipQuoted(sql, i, c);
+				sb.append(sql, i, end);
+				i = end;
+			} else if (isDigit(c) && !continuesIdentifier(sb)) {
+				i = skipNumber(sql, i);
+				sb.append(PLACEHOLDER);
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the index after the literal starting at the given quote; a doubled quote (and, with backslash escapes, any
+	 *         escaped character) is part of the literal
+	 */
+	private static int skipStringLiteral(final String sql, final int start, final boolean backslashEscapes) {
+		final int length = sql.length();
+		int i = start + 1;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (backslashEscapes && (c == '\\')) {
+				i += 2;
+			} else if (c == '\'') {
+				if (((i + 1) < length) && (sql.charAt(i + 1) == '\'')) {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				i++;
+			}
+		}
+		return length;
+	}
+
+	private static boolean startsWith(final String sql, final int index, final char c) {
+		return (index < sql.length()) && (sql.charAt(index) == c);
+	}
+
+	private static int skipQuoted(final String sql, final int start, final char quote) {
+		final int end = sql.indexOf(quote, start + 1);
+		return (end < 0) ? sql.length() : end + 1; // NOCS (inline conditional)
+	}
+
+	/**
+	 * @return the index after the number starting at the given digit, including decimals, exponents and hexadecimals
+	 */
+	private static int skipNumber(final String sql, final int start) {
+		final int length = sql.length();
+		int i = start + 1;
+		if ((sql.charAt(start) == '0') && (i < length) && ((sql.charAt(i) == 'x') || (sql.charAt(i) == 'X'))) {
+			i++;
+			while ((i < length) && (Character.digit(sql.charAt(i), 16) >= 0)) {
+				i++;
+			}
+			return i;
+		}
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (isDigit(c) || (c == '.')) {
+				i++;
+			} else if (((c == 'e') || (c == 'E')) && ((i + 1) < length)
+					&& (isDigit(sql.charAt(i + 1)) || (((sql.charAt(i + 1) == '+') || (sql.charAt(i + 1) == '-')) && ((i + 2) < length)
+							&& isDigit(sql.charAt(i + 2))))) {
+				i += 2;
+			} else {
+				return i;
+			}
+		}
+		return i;
+	}
+
+	private static boolean isDigit(final char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	/**
+	 * @return whether a digit appended to the given text is part of an identifier, e.g., <code>t1</code>
+	 */
+	private static boolean continuesIdentifier(final StringBuilder sb) {
+		if (sb.length() == 0) {
+			return false;
+		}
+		final char last = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(last) || (last == '_') || (last == '$');
+	}
+}
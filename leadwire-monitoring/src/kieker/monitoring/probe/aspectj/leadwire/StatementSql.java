@@ -0,0 +1,73 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.util.Map;
+
+import kieker.monitoring.core.controller.MonitoringController;
+
+/**
+ * Keeps the SQL of the prepared statements for the JDBC probes. The SQL is attached to the statement itself if its class
+ * implements {@link SqlAttachment} (see {@link JdbcSqlAttachmentAspect}), and is kept in the weak-key map of the
+ * monitoring controller otherwise.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class StatementSql {
+
+	private static final Map<Object, String> FALLBACK_MAP = MonitoringController.getInstance().getStatementSqlMap();
+
+	private StatementSql() {
+		// static methods only
+	}
+
+	/**
+	 * @param statement
+	 *            the prepared statement
+	 * @param sql
+	 *            the SQL the statement has been prepared with
+	 */
+	static void attach(final Object statement, final String sql) {
+		attach(statement, sql, FALLBACK_MAP);
+	}
+
+	/**
+	 * @param statement
+	 *            the prepared statement
+	 * @return the SQL the statement has been prepared with, or <code>null</code> if unknown
+	 */
+	static String lookup(final Object statement) {
+		return lookup(statement, FALLBACK_MAP);
+	}
+
+	static void attach(final Object statement, final String sql, final Map<Object, String> fallbackMap) {
+		if (statement instanceof SqlAttachment) {
+			((SqlAttachment) statement).leadwireSetSql(sql);
+		} else if ((statement != null) && (sql != null)) {
+			fallbackMap.put(statement, sql);
+		}
+	}
+
+	static String lookup(final Object statement, final Map<Object, String> fallbackMap) {
+		if (statement instanceof SqlAttachment) {
+			return ((SqlAttachment) statement).leadwireGetSql();
+		}
+		return (statement != null) ? fallbackMap.get(statement) : null; // NOCS (inline conditional)
+	}
+}
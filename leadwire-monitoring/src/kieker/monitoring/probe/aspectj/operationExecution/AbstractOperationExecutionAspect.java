@@ -24,11 +24,18 @@ import org.aspectj.lang.annotation.Pointcut;
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.monitoring.core.controller.Backpressure;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.ProbeMetric;
 import kieker.monitoring.core.registry.ControlFlowRegistry;
 import kieker.monitoring.core.registry.SessionRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.core.registry.TraceSampler;
+import kieker.monitoring.core.threshold.AdaptiveThresholds;
 import kieker.monitoring.probe.aspectj.AbstractAspectJProbe;
+import kieker.monitoring.probe.aspectj.ProbeHandle;
 import kieker.monitoring.timer.ITimeSource;
 
 /**
@@ -45,7 +52,10 @@ public abstract class AbstractOperationExecutionAspect extends AbstractAspectJPr
 	private static final String VMNAME = CTRLINST.getHostname();
 	private static final ControlFlowRegistry CFREGISTRY = ControlFlowRegistry.INSTANCE;
 	private static final SessionRegistry SESSIONREGISTRY = SessionRegistry.INSTANCE;
-	private static final long METHOD_THRESHOLD = CTRLINST.getMethodThreshold();
+	private static final AdaptiveThresholds THRESHOLDS = CTRLINST.getMethodThresholds();
+	private static final TraceSampler TRACE_SAMPLER = CTRLINST.getTraceSampler();
+	private static final Backpressure BACKPRESSURE = CTRLINST.getBackpressure();
+	private static final ProbeMetric PROBE_METRIC = AgentMetrics.INSTANCE.probe("operationExecution");
 
 
 	/**
@@ -60,28 +70,32 @@ public abstract class AbstractOperationExecutionAspect extends AbstractAspectJPr
 		if (!CTRLINST.isMonitoringEnabled()) {
 			return thisJoinPoint.proceed();
 		}
-		final String signature = this.signatureToLongString(thisJoinPoint.getSignature());
-		if (!CTRLINST.isProbeActivated(signature)) {
+		final ProbeHandle probe = this.getProbeHandle(thisJoinPoint.getStaticPart());
+		if (!probe.isActivated(CTRLINST)) {
 			return thisJoinPoint.proceed();
 		}
+		final long probeStart = PROBE_METRIC.start();
 		// collect data
 		final boolean entrypoint;
 		final String hostname = VMNAME;
 		final String sessionId = SESSIONREGISTRY.recallThreadLocalSessionId();
 		final int eoi; // this is executionOrderIndex-th execution in this trace
 		final int ess; // this is the height in the dynamic call tree of this execution
-		long traceId = CFREGISTRY.recallThreadLocalTraceId(); // traceId, -1 if entry point
-		if (traceId == -1) {
+		final TraceContext traceContext = CFREGISTRY.getThreadLocalTraceContext();
+		long traceId = traceContext.getTraceId(); // traceId, -1 if entry point
+		if ((traceId != TraceContext.NO_TRACE_ID) && BACKPRESSURE.isSheddingProbes()) {
+			// the writer cannot keep up: only the entry points are recorded
+			return thisJoinPoint.proceed();
+		}
+		if (traceId == TraceContext.NO_TRACE_ID) {
 			entrypoint = true;
-			traceId = CFREGISTRY.getAndStoreUniqueThreadLocalTraceId();
-			CFREGISTRY.storeThreadLocalEOI(0);
-			CFREGISTRY.storeThreadLocalESS(1); // next operation is ess + 1
+			traceId = CFREGISTRY.beginTrace(traceContext, probe.getSignature()); // next operation is eoi + 1, ess + 1
 			eoi = 0;
 			ess = 0;
 		} else {
 			entrypoint = false;
-			eoi = CFREGISTRY.incrementAndRecallThreadLocalEOI(); // ess > 1
-			ess = CFREGISTRY.recallAndIncrementThreadLocalESS(); // ess >= 0
+			eoi = traceContext.incrementAndGetEoi(); // ess > 1
+			ess = traceContext.getAndIncrementEss(); // ess >= 0
 			if ((eoi == -1) || (ess == -1)) {
 				LOG.error("eoi and/or ess have invalid values:" + " eoi == " + eoi + " ess == " + ess);
 				CTRLINST.terminateMonitoring();
@@ -89,25 +103,31 @@ public abstract class AbstractOperationExecutionAspect extends AbstractAspectJPr
 		}
 		// measure before
 		final long tin = TIME.getTime();
+		final long proceedStart = PROBE_METRIC.mark(probeStart);
 		// execution of the called method
 		final Object retval;
 		try {
 			retval = thisJoinPoint.proceed();
+		} catch (final Throwable t) { // NOCS (Throwable)
+			traceContext.markFailed();
+			throw t;
 		} finally {
 			// measure after
 			final long tout = TIME.getTime();
+			final long proceedEnd = PROBE_METRIC.mark(probeStart);
 			
-			if (tout-tin > METHOD_THRESHOLD ) {
-			CTRLINST.newMonitoringRecord(new OperationExecutionRecord(signature, sessionId, traceId, tin, tout, hostname, eoi, ess));
+			if ((THRESHOLDS.getHistogram(probe.getSignature()).exceedsThreshold(tout - tin) || THRESHOLDS.isRecordingAll(traceContext))
+					&& traceContext.isRecording()) {
+				TRACE_SAMPLER.record(CTRLINST, traceContext,
+						new OperationExecutionRecord(probe.getSignature(), sessionId, traceId, tin, tout, hostname, eoi, ess));
 			}
 			// cleanup
 			if (entrypoint) {
-				CFREGISTRY.unsetThreadLocalTraceId();
-				CFREGISTRY.unsetThreadLocalEOI();
-				CFREGISTRY.unsetThreadLocalESS();
+				TRACE_SAMPLER.endTrace(CTRLINST, traceContext, tout - tin);
 			} else {
-				CFREGISTRY.storeThreadLocalESS(ess); // next operation is ess
+				traceContext.setEss(ess); // next operation is ess
 			}
+			PROBE_METRIC.stop(probeStart, proceedStart, proceedEnd);
 		}
 		return retval;
 	}
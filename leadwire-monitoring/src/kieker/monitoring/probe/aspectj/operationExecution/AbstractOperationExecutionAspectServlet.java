@@ -51,7 +51,7 @@ public Object servlet(final ProceedingJoinPoint thisJoinPoint) throws Throwable
 if (!CTRLINST.isMonitoringEnabled()) {
 	return thisJoinPoint.proceed();
 }
-if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 	return thisJoinPoint.proceed();
 }
 final HttpServletRequest req = (HttpServletRequest) thisJoinPoint.getArgs()[0];
@@ -119,7 +119,7 @@ public Object servletservice(final ProceedingJoinPoint thisJoinPoint) throws Thr
 if (!CTRLINST.isMonitoringEnabled()) {
 	return thisJoinPoint.proceed();
 }
-if (!CTRLINST.isProbeActivated(this.signatureToLongString(thisJoinPoint.getSignature()))) {
+if (!this.getProbeHandle(thisJoinPoint.getStaticPart()).isActivated(CTRLINST)) {
 	return thisJoinPoint.proceed();
 }
 final HttpServletRequest req = (HttpServletRequest) thisJoinPoint.getArgs()[0];
@@ -0,0 +1,200 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import kieker.monitoring.queue.waitstrategy.WaitStrategy;
+
+/**
+ * A bounded multi-producer, single-consumer ring buffer in the style of the LMAX Disruptor. The slots are allocated
+ * once. Producers claim a sequence number by CAS, fill the slot and publish it by storing the sequence number into
+ * the slot's entry of the published array. The consumer drains all contiguously published slots as one batch.
+ *
+ * @param <E>
+ *            the type of the elements
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class RingBuffer<E> {
+
+	private static final long PRODUCER_PARK_NANOS = 1000L;
+
+	private final Object[] slots;
+	/** the sequence number last published into each slot, -1 if none. */
+	private final AtomicLongArray published;
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+
+	/** the next sequence number to be claimed by a producer. */
+	private final AtomicLong claimSequence = new AtomicLong();
+	/** the next sequence number to be consumed; only written by the consumer. */
+	private volatile long consumeSequence;
+
+	/**
+	 * Creates a new ring buffer.
+	 *
+	 * @param requestedCapacity
+	 *            the minimal capacity, rounded up to the next power of two
+	 * @param waitStrategy
+	 *            the strategy of the consumer to wait for new elements
+	 */
+	public RingBuffer(final int requestedCapacity, final WaitStrategy waitStrategy) {
+		if (requestedCapacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive, but was " + requestedCapacity);
+		}
+		if (requestedCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("The capacity must not exceed 2^30, but was " + requestedCapacity);
+		}
+		final int capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+		this.slots = new Object[Math.max(capacity, 1)];
+		this.mask = this.slots.length - 1;
+		this.published = new AtomicLongArray(this.slots.length);
+		for (int i = 0; i < this.slots.length; i++) {
+			this.published.set(i, -1L);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * @return the number of slots
+	 */
+	public int getCapacity() {
+		return this.slots.length;
+	}
+
+	/**
+	 * @return the number of elements published but not yet consumed (approximation)
+	 */
+	public int size() {
+		return (int) Math.max(0L, this.claimSequence.get() - this.consumeSequence);
+	}
+
+	/**
+	 * Inserts the element if a slot is free. May be called by any thread.
+	 *
+	 * @param element
+	 *            the element to insert, not null
+	 * @return <code>false</code> if the ring buffer is full
+	 */
+	public boolean offer(final E element) {
+		if (element == null) {
+			throw new NullPointerException("The element may not be null.");
+		}
+		final int capacity = this.slots.length;
+		long sequence;
+		do {
+			sequence = this.claimSequence.get();
+			if ((sequence - this.consumeSequence) >= capacity) {
+				return false;
+			}
+		} while (!this.claimSequence.compareAndSet(sequence, sequence + 1));
+
+		final int index = (int) sequence & this.mask;
+		this.slots[index] = element;
+		// release store: the element becomes visible to the consumer together with the sequence number
+		this.published.lazySet(index, sequence);
+		return true;
+	}
+
+	/**
+	 * Inserts the element, waiting for a free slot if necessary. May be called by any thread.
+	 *
+	 * @param element
+	 *            the element to insert, not null
+	 * @throws InterruptedException
+	 *             if the calling thread has been interrupted while waiting
+	 */
+	public void put(final E element) throws InterruptedException {
+		int attempts = 0;
+		while (!this.offer(element)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (attempts++ < 100) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Moves all contiguously published elements, at most <code>batch.length</code>, into the given array and frees
+	 * their slots. Must only be called by the single consumer thread.
+	 *
+	 * @param batch
+	 *            the array to fill from index 0
+	 * @return the number of elements moved, 0 if none is available
+	 */
+	@SuppressWarnings("unchecked")
+	public int poll(final E[] batch) {
+		final long first = this.consumeSequence;
+		int count = 0;
+		while (count < batch.length) {
+			final long sequence = first + count;
+			final int index = (int) sequence & this.mask;
+			if (this.published.get(index) != sequence) {
+				break;
+			}
+			batch[count] = (E) this.slots[index];
+			this.slots[index] = null;
+			count++;
+		}
+		if (count > 0) {
+			// frees the slots for the producers
+			this.consumeSequence = first + count;
+		}
+		return count;
+	}
+
+	/**
+	 * Like {@link #poll(Object[])}, but waits according to the wait strategy until at least one element is available.
+	 * Must only be called by the single consumer thread.
+	 *
+	 * @param batch
+	 *            the array to fill from index 0
+	 * @return the number of elements moved, at least 1
+	 * @throws InterruptedException
+	 *             if the calling thread has been interrupted while waiting
+	 */
+	public int take(final E[] batch) throws InterruptedException {
+		int idleCounter = 0;
+		int count = this.poll(batch);
+		while (count == 0) {
+			idleCounter = this.waitStrategy.idle(idleCounter);
+			count = this.poll(batch);
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append(this.getClass().getName())
+			.append(" (capacity: ")
+			.append(this.slots.length)
+			.append(", wait strategy: ")
+			.append(this.waitStrategy.getClass().getSimpleName())
+			.append(')');
+		return builder.toString();
+	}
+}
@@ -21,6 +21,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
 
 /**
  * @author "Christian Wulf"
@@ -33,6 +35,7 @@ import kieker.common.logging.LogFactory;
 public class CountOnFailedInsertBehavior<E> implements InsertBehavior<E> {
 
 	private static final Log LOG = LogFactory.getLog(CountOnFailedInsertBehavior.class);
+	private static final Counter DROPPED = AgentMetrics.INSTANCE.counter("queue.dropped");
 
 	private final BlockingQueue<E> queue;
 	private final AtomicLong numFailedInserts = new AtomicLong();
@@ -46,6 +49,7 @@ public class CountOnFailedInsertBehavior<E> implements InsertBehavior<E> {
 		final boolean offered = this.queue.offer(element);
 		if (!offered) {
 			final long tmpMissedRecords = this.numFailedInserts.incrementAndGet();
+			DROPPED.increment();
 			if (LOG.isWarnEnabled() && ((tmpMissedRecords % 1024) == 1)) {
 				// warn upon the first failed element and upon all 1024th one
 				LOG.warn("Queue is full, dropping records. Number of already dropped records: " + tmpMissedRecords);
@@ -0,0 +1,94 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue.behavior;
+
+import java.util.List;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.ITraceRecord;
+import kieker.common.record.flow.trace.TraceMetadata;
+import kieker.common.record.http.HttpOperationExecutionRecord;
+import kieker.common.record.jdbc.JdbcOperationExecutionRecord;
+
+/**
+ * Distributes records to one of several lanes, each with its own insert behavior (and thus queue). Records carrying
+ * a trace id are routed by their trace id, so that all records of a trace keep their order even if the trace spans
+ * several threads. All other records are routed by the id of the inserting thread.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class LaneRoutingInsertBehavior implements InsertBehavior<IMonitoringRecord> {
+
+	private final InsertBehavior<IMonitoringRecord>[] lanes;
+
+	@SuppressWarnings("unchecked")
+	public LaneRoutingInsertBehavior(final List<InsertBehavior<IMonitoringRecord>> laneInsertBehaviors) {
+		this.lanes = laneInsertBehaviors.toArray(new InsertBehavior[laneInsertBehaviors.size()]);
+	}
+
+	@Override
+	public boolean insert(final IMonitoringRecord element) {
+		return this.lanes[laneOf(element, this.lanes.length)].insert(element);
+	}
+
+	/**
+	 * @param record
+	 *            the record to route
+	 * @param numLanes
+	 *            the number of lanes
+	 * @return the lane of the record, between 0 (inclusive) and <code>numLanes</code> (exclusive)
+	 */
+	public static int laneOf(final IMonitoringRecord record, final int numLanes) {
+		final long key;
+		if (record instanceof OperationExecutionRecord) {
+			key = ((OperationExecutionRecord) record).getTraceId();
+		} else if (record instanceof JdbcOperationExecutionRecord) {
+			key = ((JdbcOperationExecutionRecord) record).getTraceId();
+		} else if (record instanceof HttpOperationExecutionRecord) {
+			key = ((HttpOperationExecutionRecord) record).getTraceId();
+		} else if (record instanceof ITraceRecord) {
+			key = ((ITraceRecord) record).getTraceId();
+		} else if (record instanceof TraceMetadata) {
+			key = ((TraceMetadata) record).getTraceId();
+		} else {
+			key = Thread.currentThread().getId();
+		}
+		// trace ids are consecutive per host, so spread the bits before reducing to the number of lanes
+		long hash = key * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		return (int) ((hash & Integer.MAX_VALUE) % numLanes);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append(this.getClass())
+			.append("\n\t\t")
+			.append("Number of lanes: ")
+			.append(this.lanes.length);
+		for (int i = 0; i < this.lanes.length; i++) {
+			builder.append("\n\t\tLane ")
+				.append(i)
+				.append(": ")
+				.append(this.lanes[i].toString());
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,77 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue.behavior;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.queue.RingBuffer;
+
+/**
+ * Inserts elements into a {@link RingBuffer} without blocking. If the ring buffer is full, the element is dropped and
+ * counted.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ *
+ * @param <E>
+ *            the type of the element which should be inserted into the ring buffer.
+ */
+public class RingBufferInsertBehavior<E> implements InsertBehavior<E> {
+
+	private static final Log LOG = LogFactory.getLog(RingBufferInsertBehavior.class);
+	private static final Counter DROPPED = AgentMetrics.INSTANCE.counter("queue.dropped");
+
+	private final RingBuffer<E> ringBuffer;
+	private final AtomicLong numFailedInserts = new AtomicLong();
+
+	public RingBufferInsertBehavior(final RingBuffer<E> ringBuffer) {
+		this.ringBuffer = ringBuffer;
+	}
+
+	@Override
+	public boolean insert(final E element) {
+		final boolean offered = this.ringBuffer.offer(element);
+		if (!offered) {
+			final long tmpMissedRecords = this.numFailedInserts.incrementAndGet();
+			DROPPED.increment();
+			if (LOG.isWarnEnabled() && ((tmpMissedRecords % 1024) == 1)) {
+				// warn upon the first failed element and upon all 1024th one
+				LOG.warn("Ring buffer is full, dropping records. Number of already dropped records: " + tmpMissedRecords);
+			}
+		}
+		return true;
+	}
+
+	public long getNumFailedInserts() {
+		return this.numFailedInserts.get();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder()
+			.append(this.getClass())
+			.append("\n\t\t")
+			.append("Number of failed inserts: ")
+			.append(this.getNumFailedInserts());
+		return builder.toString();
+	}
+}
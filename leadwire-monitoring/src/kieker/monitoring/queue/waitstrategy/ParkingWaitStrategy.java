@@ -0,0 +1,56 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue.waitstrategy;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins and yields for a few attempts, then parks for a short, fixed time on each attempt. Costs almost no CPU while
+ * idle at the price of up to {@link #PARK_NANOS} additional latency. Producers never have to signal the consumer.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+	/** The time the consumer parks on each attempt after spinning and yielding. */
+	public static final long PARK_NANOS = 100000L;
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 200;
+
+	public ParkingWaitStrategy() {
+		super();
+	}
+
+	@Override
+	public int idle(final int idleCounter) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if (idleCounter >= YIELD_TRIES) {
+			LockSupport.parkNanos(this, PARK_NANOS);
+			return idleCounter;
+		}
+		if (idleCounter >= SPIN_TRIES) {
+			Thread.yield();
+		}
+		return idleCounter + 1;
+	}
+
+}
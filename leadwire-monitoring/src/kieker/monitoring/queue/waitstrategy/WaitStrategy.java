@@ -0,0 +1,40 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue.waitstrategy;
+
+/**
+ * Determines how the consumer of a {@link kieker.monitoring.queue.RingBuffer} waits while no element is available.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public interface WaitStrategy { // NOCS //NOPMD (name without prefix "I" for reasons of readability)
+
+	/**
+	 * Waits once after an unsuccessful attempt to consume an element.
+	 *
+	 * @param idleCounter
+	 *            the number of preceding unsuccessful attempts, 0 for the first one
+	 * @return the new value of the idle counter
+	 * @throws InterruptedException
+	 *             if the waiting thread has been interrupted
+	 *
+	 * @since 1.14
+	 */
+	int idle(int idleCounter) throws InterruptedException;
+}
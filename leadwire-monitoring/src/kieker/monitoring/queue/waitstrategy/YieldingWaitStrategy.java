@@ -0,0 +1,45 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue.waitstrategy;
+
+/**
+ * Spins for a few attempts, then yields the CPU to other threads on each attempt.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+	private static final int SPIN_TRIES = 100;
+
+	public YieldingWaitStrategy() {
+		super();
+	}
+
+	@Override
+	public int idle(final int idleCounter) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if (idleCounter >= SPIN_TRIES) {
+			Thread.yield();
+		}
+		return idleCounter + 1;
+	}
+
+}
@@ -16,7 +16,9 @@
 
 package kieker.monitoring.registry;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,6 +31,8 @@ public class WriterRegistry implements IWriterRegistry<String> {
 
 	// TODO introduce faster, non-boxing ObjectIntMap
 	private final Map<String, Integer> storage = new HashMap<String, Integer>(); // NOPMD (synchronization is not necessary)
+	/** the registered values in the order of their ids */
+	private final List<String> values = new ArrayList<String>();
 	/** id of the next value which will be registered */
 	private int nextId;
 	/** the listener of this registry which is notified upon a newly registered value */
@@ -56,10 +60,27 @@ public class WriterRegistry implements IWriterRegistry<String> {
 		if (!this.storage.containsKey(value)) {
 			final int valueId = this.nextId++;
 			this.storage.put(value, valueId);
+			synchronized (this.values) {
+				this.values.add(value);
+			}
 			this.registryListener.onNewRegistryEntry(value, valueId);
 		}
 	}
 
+	/**
+	 * May be called by another thread than the registering one (e.g., a compressor thread sending the registry on a
+	 * reconnect).
+	 *
+	 * @return a copy of the registered values, where the index of each value is its id
+	 *
+	 * @since 1.14
+	 */
+	public List<String> getValues() {
+		synchronized (this.values) {
+			return new ArrayList<String>(this.values);
+		}
+	}
+
 	@Override
 	public long getId() {
 		return this.id;
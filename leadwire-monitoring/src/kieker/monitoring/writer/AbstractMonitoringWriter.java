@@ -49,6 +49,37 @@ public abstract class AbstractMonitoringWriter {
 	 */
 	public abstract void writeMonitoringRecord(IMonitoringRecord record);
 
+	/**
+	 * This event fires when the writer thread has taken a batch of records, i.e., all records which were available
+	 * at once, up to a maximal batch size. The default implementation passes each record to
+	 * {@link #writeMonitoringRecord(IMonitoringRecord)} and then fires {@link #onEndOfBatch()}. Writers may override
+	 * this method to amortize serialization setup, locking and flushing across the batch.
+	 *
+	 * @param records
+	 *            the records; the writer must not keep a reference to the array
+	 * @param count
+	 *            the number of records, starting at index 0
+	 *
+	 * @since 1.14
+	 */
+	public void writeMonitoringRecords(final IMonitoringRecord[] records, final int count) {
+		for (int i = 0; i < count; i++) {
+			this.writeMonitoringRecord(records[i]);
+		}
+		this.onEndOfBatch();
+	}
+
+	/**
+	 * This event fires after the default {@link #writeMonitoringRecords(IMonitoringRecord[], int)} has passed a batch
+	 * of records to {@link #writeMonitoringRecord(IMonitoringRecord)}, i.e., when no further record is immediately
+	 * available. Writers which buffer records may flush here.
+	 *
+	 * @since 1.14
+	 */
+	public void onEndOfBatch() {
+		// do nothing by default
+	}
+
 	/**
 	 * This event fires when Kieker has been notified to terminate.
 	 * It is executed by the {@link MonitoringWriterThread} just after finishing the writer queue.
@@ -0,0 +1,108 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.common.record.IMonitoringRecord;
+import kieker.monitoring.queue.waitstrategy.WaitStrategy;
+
+/**
+ * Feeds the records of several lane queues into a single writer. The producers are spread over the lanes, so they
+ * contend less, while writers which cannot be instantiated more than once (e.g., because all instances would write
+ * to the same destination) still receive all records. The order of records is kept per lane.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class MergingWriterThread extends MonitoringWriterThread {
+
+	private static final Log LOG = LogFactory.getLog(MergingWriterThread.class);
+
+	private final BlockingQueue<IMonitoringRecord>[] laneQueues;
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * @param writer
+	 *            the writer records are passed to
+	 * @param laneQueues
+	 *            the queues records are taken from
+	 * @param waitStrategy
+	 *            determines how to wait while all queues are empty
+	 * @param batchSize
+	 *            the maximal number of records passed to the writer at once
+	 */
+	@SuppressWarnings("unchecked")
+	public MergingWriterThread(final AbstractMonitoringWriter writer, final List<BlockingQueue<IMonitoringRecord>> laneQueues,
+			final WaitStrategy waitStrategy, final int batchSize) {
+		super(writer, batchSize);
+		if (laneQueues.isEmpty()) {
+			throw new IllegalArgumentException("At least one lane queue is required.");
+		}
+		this.laneQueues = laneQueues.toArray(new BlockingQueue[laneQueues.size()]);
+		this.waitStrategy = waitStrategy;
+	}
+
+	@Override
+	protected void consumeRecords() throws InterruptedException {
+		final IMonitoringRecord[] localBatch = this.batch;
+		final BlockingQueue<IMonitoringRecord>[] queues = this.laneQueues;
+		boolean terminated = false;
+		int firstLane = 0;
+		int idleCounter = 0;
+		while (true) {
+			int count = 0;
+			// start with a different lane each round, so that no lane is preferred if the batch fills up
+			for (int n = 0; (n < queues.length) && (count < localBatch.length); n++) {
+				final BlockingQueue<IMonitoringRecord> queue = queues[(firstLane + n) % queues.length];
+				IMonitoringRecord record;
+				while ((count < localBatch.length) && ((record = queue.poll()) != null)) { // NOPMD (assignment in operand)
+					if (record == END_OF_MONITORING_RECORD) { // NOPMD (compare references by == not by equals())
+						// write the records still pending in the other lanes before terminating
+						terminated = true;
+					} else {
+						localBatch[count++] = record;
+					}
+				}
+			}
+			firstLane = (firstLane + 1) % queues.length;
+
+			if (count > 0) {
+				idleCounter = 0;
+				this.writeBatch(count);
+			} else if (terminated) {
+				return;
+			} else {
+				idleCounter = this.waitStrategy.idle(idleCounter);
+			}
+		}
+	}
+
+	@Override
+	public void terminate() {
+		try {
+			// apply "blocking wait" since we must ensure that this EOF record is inserted to terminate the thread
+			this.laneQueues[0].put(END_OF_MONITORING_RECORD);
+		} catch (final InterruptedException e) {
+			LOG.warn("An exception occurred", e);
+		}
+	}
+}
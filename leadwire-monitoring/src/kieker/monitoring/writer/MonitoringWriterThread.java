@@ -16,12 +16,16 @@
 
 package kieker.monitoring.writer;
 
+import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 
 import kieker.common.logging.Log;
 import kieker.common.logging.LogFactory;
 import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.misc.EmptyRecord;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.core.metrics.Timer;
 
 /**
  * @author Christian Wulf
@@ -31,15 +35,39 @@ import kieker.common.record.misc.EmptyRecord;
 public class MonitoringWriterThread extends Thread {
 
 	private static final Log LOG = LogFactory.getLog(MonitoringWriterThread.class);
+	/** the batches and records passed to the writers. */
+	private static final Counter WRITTEN_RECORDS = AgentMetrics.INSTANCE.counter("writer.records");
+	/** the time the writers take per batch. */
+	private static final Timer WRITE_LATENCY = AgentMetrics.INSTANCE.timer("writer.latency");
 
-	private static final IMonitoringRecord END_OF_MONITORING_RECORD = new EmptyRecord();
+	/** the maximal number of records passed to the writer at once if not configured otherwise. */
+	public static final int DEFAULT_BATCH_SIZE = 256;
 
-	private final BlockingQueue<IMonitoringRecord> writerQueue;
-	private final AbstractMonitoringWriter writer;
+	/** the unique token indicating that the thread should terminate itself. */
+	protected static final IMonitoringRecord END_OF_MONITORING_RECORD = new EmptyRecord();
 
-	// private int numWrittenRecords;
+	/** the writer records are passed to. */
+	protected final AbstractMonitoringWriter writer;
+	/** the records taken from the queue, passed to the writer at once. */
+	protected final IMonitoringRecord[] batch;
+	private final BlockingQueue<IMonitoringRecord> writerQueue;
 
 	public MonitoringWriterThread(final AbstractMonitoringWriter writer, final BlockingQueue<IMonitoringRecord> writerQueue) {
+		this(writer, writerQueue, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param writer
+	 *            the writer records are passed to
+	 * @param writerQueue
+	 *            the queue records are taken from
+	 * @param batchSize
+	 *            the maximal number of records passed to the writer at once
+	 *
+	 * @since 1.14
+	 */
+	public MonitoringWriterThread(final AbstractMonitoringWriter writer, final BlockingQueue<IMonitoringRecord> writerQueue,
+			final int batchSize) {
 		if (writer == null) {
 			throw new NullPointerException("The given writer may not be null.");
 		}
@@ -48,10 +76,32 @@ public class MonitoringWriterThread extends Thread {
 		}
 		this.writer = writer;
 		this.writerQueue = writerQueue;
+		this.batch = new IMonitoringRecord[Math.max(batchSize, 1)];
 		// All Kieker threads must be daemon threads. Otherwise the monitored application can never terminate.
 		this.setDaemon(true);
 	}
 
+	/**
+	 * Constructor for subclasses which take the records from a different source than a {@link BlockingQueue}.
+	 * They must override {@link #consumeRecords()} and {@link #terminate()}.
+	 *
+	 * @param writer
+	 *            the writer records are passed to
+	 * @param batchSize
+	 *            the maximal number of records passed to the writer at once
+	 *
+	 * @since 1.14
+	 */
+	protected MonitoringWriterThread(final AbstractMonitoringWriter writer, final int batchSize) {
+		if (writer == null) {
+			throw new NullPointerException("The given writer may not be null.");
+		}
+		this.writer = writer;
+		this.writerQueue = null; // NOPMD (null)
+		this.batch = new IMonitoringRecord[Math.max(batchSize, 1)];
+		this.setDaemon(true);
+	}
+
 	@Override
 	public void run() {
 		if (LOG.isDebugEnabled()) {
@@ -61,11 +111,7 @@ public class MonitoringWriterThread extends Thread {
 		this.writer.onStarting();
 
 		try {
-			IMonitoringRecord record = this.writerQueue.take();
-			while (record != END_OF_MONITORING_RECORD) { // NOPMD (compare references by == not by equals())
-				this.writer.writeMonitoringRecord(record);
-				record = this.writerQueue.take();
-			}
+			this.consumeRecords();
 		} catch (final InterruptedException e) {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug(this.getClass().getName() + " was interrupted.", e);
@@ -80,6 +126,55 @@ public class MonitoringWriterThread extends Thread {
 		}
 	}
 
+	/**
+	 * Passes records to the writer until the {@link #END_OF_MONITORING_RECORD} is received. Waits for one record,
+	 * then drains all further available records up to the batch size without waiting and passes them to the writer at once.
+	 *
+	 * @throws InterruptedException
+	 *             if the thread has been interrupted while waiting for records
+	 *
+	 * @since 1.14
+	 */
+	protected void consumeRecords() throws InterruptedException {
+		final BlockingQueue<IMonitoringRecord> queue = this.writerQueue;
+		final IMonitoringRecord[] localBatch = this.batch;
+		boolean terminated = false;
+		while (!terminated) {
+			IMonitoringRecord record = queue.take();
+			int count = 0;
+			while (record != null) {
+				if (record == END_OF_MONITORING_RECORD) { // NOPMD (compare references by == not by equals())
+					terminated = true;
+					break;
+				}
+				localBatch[count++] = record;
+				if (count == localBatch.length) {
+					break;
+				}
+				record = queue.poll();
+			}
+			this.writeBatch(count);
+		}
+	}
+
+	/**
+	 * Passes the first <code>count</code> records of the {@link #batch} to the writer and clears them.
+	 *
+	 * @param count
+	 *            the number of records in the batch
+	 *
+	 * @since 1.14
+	 */
+	protected final void writeBatch(final int count) {
+		if (count > 0) {
+			final long start = System.nanoTime();
+			this.writer.writeMonitoringRecords(this.batch, count);
+			WRITE_LATENCY.record(System.nanoTime() - start);
+			WRITTEN_RECORDS.add(count);
+			Arrays.fill(this.batch, 0, count, null);
+		}
+	}
+
 	/**
 	 * Initiates the termination of this thread.
 	 */
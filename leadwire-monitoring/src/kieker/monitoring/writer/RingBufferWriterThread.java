@@ -0,0 +1,87 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer;
+
+import java.util.Arrays;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.common.record.IMonitoringRecord;
+import kieker.monitoring.queue.RingBuffer;
+
+/**
+ * The consumer of a {@link RingBuffer}: drains all available records, up to the batch size, and passes them to
+ * the writer at once.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class RingBufferWriterThread extends MonitoringWriterThread {
+
+	private static final Log LOG = LogFactory.getLog(RingBufferWriterThread.class);
+
+	private final RingBuffer<IMonitoringRecord> ringBuffer;
+
+	public RingBufferWriterThread(final AbstractMonitoringWriter writer, final RingBuffer<IMonitoringRecord> ringBuffer) {
+		this(writer, ringBuffer, ringBuffer.getCapacity());
+	}
+
+	/**
+	 * @param writer
+	 *            the writer records are passed to
+	 * @param ringBuffer
+	 *            the ring buffer records are taken from
+	 * @param batchSize
+	 *            the maximal number of records passed to the writer at once
+	 */
+	public RingBufferWriterThread(final AbstractMonitoringWriter writer, final RingBuffer<IMonitoringRecord> ringBuffer, final int batchSize) {
+		super(writer, batchSize);
+		if (ringBuffer == null) {
+			throw new NullPointerException("The given ringBuffer may not be null.");
+		}
+		this.ringBuffer = ringBuffer;
+	}
+
+	@Override
+	protected void consumeRecords() throws InterruptedException {
+		final IMonitoringRecord[] localBatch = this.batch;
+		boolean terminated = false;
+		while (!terminated) {
+			int count = this.ringBuffer.take(localBatch);
+			for (int i = 0; i < count; i++) {
+				if (localBatch[i] == END_OF_MONITORING_RECORD) { // NOPMD (compare references by == not by equals())
+					// records after the EOF record are dropped
+					Arrays.fill(localBatch, i, count, null);
+					count = i;
+					terminated = true;
+				}
+			}
+			this.writeBatch(count);
+		}
+	}
+
+	@Override
+	public void terminate() {
+		try {
+			// apply "blocking wait" since we must ensure that this EOF record is inserted to terminate the thread
+			this.ringBuffer.put(END_OF_MONITORING_RECORD);
+		} catch (final InterruptedException e) {
+			LOG.warn("An exception occurred", e);
+		}
+	}
+}
@@ -19,9 +19,13 @@ package kieker.monitoring.writer;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 import kieker.common.logging.Log;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.core.metrics.Timer;
 
 /**
  * @author Christian Wulf
@@ -30,6 +34,11 @@ import kieker.common.logging.Log;
  */
 public final class WriterUtil {
 
+	/** the flushes and the bytes written to channels. */
+	private static final Counter WRITTEN_BYTES = AgentMetrics.INSTANCE.counter("writer.bytes");
+	/** the time a flush to a channel takes. */
+	private static final Timer FLUSH_TIME = AgentMetrics.INSTANCE.timer("writer.flush");
+
 	private WriterUtil() {
 		// utility class
 	}
@@ -39,6 +48,7 @@ public final class WriterUtil {
 	 */
 	public static long flushBuffer(final ByteBuffer buffer, final WritableByteChannel writableChannel, final Log log) {
 		long bytesWritten = 0;
+		final long start = System.nanoTime();
 
 		buffer.flip();
 		try {
@@ -51,6 +61,41 @@ public final class WriterUtil {
 			WriterUtil.close(writableChannel, log);
 		}
 
+		FLUSH_TIME.record(System.nanoTime() - start);
+		WRITTEN_BYTES.add(bytesWritten);
+		return bytesWritten;
+	}
+
+	/**
+	 * Writes the given buffers in this order with gathering writes, i.e., usually with a single system call.
+	 *
+	 * @return the number of bytes written from the buffers to the channel
+	 *
+	 * @since 1.14
+	 */
+	public static long flushBuffers(final ByteBuffer[] buffers, final GatheringByteChannel gatheringChannel, final Log log) {
+		long bytesWritten = 0;
+		final long start = System.nanoTime();
+
+		long remaining = 0;
+		for (final ByteBuffer buffer : buffers) {
+			buffer.flip();
+			remaining += buffer.remaining();
+		}
+		try {
+			while (bytesWritten < remaining) {
+				bytesWritten += gatheringChannel.write(buffers);
+			}
+			for (final ByteBuffer buffer : buffers) {
+				buffer.clear();
+			}
+		} catch (final IOException e) {
+			log.error("Caught exception while writing to the channel.", e);
+			WriterUtil.close(gatheringChannel, log);
+		}
+
+		FLUSH_TIME.record(System.nanoTime() - start);
+		WRITTEN_BYTES.add(bytesWritten);
 		return bytesWritten;
 	}
 
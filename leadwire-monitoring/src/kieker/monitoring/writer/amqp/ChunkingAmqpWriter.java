@@ -112,6 +112,8 @@ public class ChunkingAmqpWriter implements IRawDataWriter {
 	
 	@Override
 	public void writeData(final ByteBuffer buffer, final int offset, final int length) {
+		// The channel only accepts arrays of the exact length, and writes them to the connection within basicPublish().
+		// Thus, this is the only copy, and the buffer can be reused as soon as this method returns.
 		buffer.position(offset);
 		final byte[] rawData = new byte[length];
 		buffer.get(rawData);
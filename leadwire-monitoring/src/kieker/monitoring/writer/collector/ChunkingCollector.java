@@ -35,6 +35,8 @@ import kieker.common.util.thread.DaemonThreadFactory;
 import kieker.monitoring.core.controller.ControllerFactory;
 import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.writer.AbstractMonitoringWriter;
+import kieker.monitoring.writer.raw.ByteBufferPool;
+import kieker.monitoring.writer.raw.IAsyncRawDataWriter;
 import kieker.monitoring.writer.raw.IRawDataWriter;
 import kieker.monitoring.writer.serializer.IMonitoringRecordSerializer;
 
@@ -48,6 +50,10 @@ import kieker.monitoring.writer.serializer.IMonitoringRecordSerializer;
  * on one another. In particular, the queue size should be chosen large enough so that the queue
  * does not fill up in a single task run interval. In addition, the output buffer needs to be
  * large enough to hold a completely serialized chunk, and therefore depends on the chunk size.
+ * <p/>
+ * The chunks are serialized into pooled output buffers. A synchronous writer gets the same buffer for each chunk,
+ * whereas an {@link IAsyncRawDataWriter} takes over the buffer and releases it when it is done; if all output buffers
+ * are in use, the writer task waits for one to be released.
  *
  * @author Holger Knoche
  *
@@ -72,6 +78,9 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 	// Default output buffer size (in bytes)
 	private static final int DEFAULT_OUTPUT_BUFFER_SIZE = 65536;
 
+	// Default number of output buffers
+	private static final int DEFAULT_OUTPUT_BUFFER_COUNT = 4;
+
 	// Default run task run interval (in milliseconds)
 	private static final int DEFAULT_TASK_RUN_INTERVAL = 20;
 
@@ -95,6 +104,9 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 	/** The name of the configuration property for the output buffer size. */
 	public static final String CONFIG_OUTPUT_BUFFER_SIZE = PREFIX + "outputBufferSize"; // NOCS (afterPREFIX)
 
+	/** The name of the configuration property for the number of output buffers (relevant for asynchronous writers only). */
+	public static final String CONFIG_OUTPUT_BUFFER_COUNT = PREFIX + "outputBufferCount"; // NOCS (afterPREFIX)
+
 	/** The name of the configuration property for the writer task interval. */
 	public static final String CONFIG_TASK_RUN_INTERVAL = PREFIX + "taskRunInterval"; // NOCS (afterPREFIX)
 	
@@ -134,8 +146,9 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 		final int deferredWriteDelayMs = configuration.getIntProperty(CONFIG_DEFERRED_WRITE_DELAY, DEFAULT_DEFERRED_WRITE_DELAY);
 		final int chunkSize = configuration.getIntProperty(CONFIG_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
 		final int outputBufferSize = configuration.getIntProperty(CONFIG_OUTPUT_BUFFER_SIZE, DEFAULT_OUTPUT_BUFFER_SIZE);
+		final int outputBufferCount = configuration.getIntProperty(CONFIG_OUTPUT_BUFFER_COUNT, DEFAULT_OUTPUT_BUFFER_COUNT);
 
-		this.writerTask = new ChunkWriterTask(chunkSize, deferredWriteDelayMs, outputBufferSize, serializer, writer);
+		this.writerTask = new ChunkWriterTask(chunkSize, deferredWriteDelayMs, new ByteBufferPool(outputBufferCount, outputBufferSize), serializer, writer);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -207,25 +220,29 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 	 */
 	class ChunkWriterTask implements Runnable {
 
-		private final ByteBuffer buffer;
+		private final ByteBufferPool bufferPool;
 
 		private final IMonitoringRecordSerializer serializer;
 
 		private final IRawDataWriter writer;
 
+		/** The records of the current chunk, reused for all chunks. */
+		private final List<IMonitoringRecord> chunk;
+
 		private final int outputChunkSize;
 
 		private final long deferredWriteDelayNs;
 
 		private volatile long nextWriteTime;
 
-		public ChunkWriterTask(final int outputChunkSize, final int deferredWriteDelayMs, final int outputBufferSize, final IMonitoringRecordSerializer serializer,
+		public ChunkWriterTask(final int outputChunkSize, final int deferredWriteDelayMs, final ByteBufferPool bufferPool, final IMonitoringRecordSerializer serializer,
 				final IRawDataWriter writer) {
 			this.serializer = serializer;
 			this.writer = writer;
 			this.outputChunkSize = outputChunkSize;
 			this.deferredWriteDelayNs = deferredWriteDelayMs * 1000000L;
-			this.buffer = ByteBuffer.allocate(outputBufferSize);
+			this.bufferPool = bufferPool;
+			this.chunk = new ArrayList<IMonitoringRecord>(outputChunkSize);
 
 			this.updateNextWriteTime();
 		}
@@ -294,7 +311,7 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 		}
 
 		private void writeChunk(final Queue<IMonitoringRecord> queue, final int chunkSize) {
-			final List<IMonitoringRecord> chunk = new ArrayList<IMonitoringRecord>(chunkSize);
+			final List<IMonitoringRecord> chunk = this.chunk;
 
 			for (int recordIndex = 0; recordIndex < chunkSize; recordIndex++) {
 				// Due to checks at the call sites, writeChunk is only called with a chunk size
@@ -303,11 +320,32 @@ public class ChunkingCollector extends AbstractMonitoringWriter {
 				chunk.add(record);
 			}
 
+			final ByteBuffer outputBuffer;
+			try {
+				outputBuffer = this.bufferPool.acquire();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				LOG.error("Interrupted while waiting for an output buffer; " + chunkSize + " records are lost.", e);
+				chunk.clear();
+				return;
+			}
+
 			// Serialize and write the data
-			final ByteBuffer outputBuffer = this.buffer;
-			outputBuffer.rewind();
-			final int bytesWritten = this.serializer.serializeRecords(chunk, outputBuffer);
-			this.writer.writeData(outputBuffer, 0, bytesWritten);
+			boolean handedOver = false;
+			try {
+				final int bytesWritten = this.serializer.serializeRecords(chunk, outputBuffer);
+				if (this.writer instanceof IAsyncRawDataWriter) {
+					handedOver = true;
+					((IAsyncRawDataWriter) this.writer).writeData(outputBuffer, 0, bytesWritten, this.bufferPool);
+				} else {
+					this.writer.writeData(outputBuffer, 0, bytesWritten);
+				}
+			} finally {
+				chunk.clear();
+				if (!handedOver) {
+					this.bufferPool.release(outputBuffer);
+				}
+			}
 		}
 
 		private void updateNextWriteTime() {
@@ -0,0 +1,235 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.common.util.thread.DaemonThreadFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.writer.raw.ByteBufferPool;
+
+/**
+ * Compresses blocks on a separate thread and passes each {@link BlockFrames frame} to {@link #writeFrame(ByteBuffer)},
+ * which is called by that thread only. If the compressor falls behind by more than the queue size, the caller of
+ * {@link #enqueue(Block)} blocks. If the compressor thread dies (e.g., of an {@link OutOfMemoryError}), the pending and
+ * all further blocks are dropped, so that callers never block forever.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+abstract class BlockCompressor implements Runnable {
+
+	private static final Log LOG = LogFactory.getLog(BlockCompressor.class);
+	/** the blocks and their bytes before compression. */
+	private static final Counter INPUT_BYTES = AgentMetrics.INSTANCE.counter("compression.input");
+	/** the frames and their bytes after compression. */
+	private static final Counter OUTPUT_BYTES = AgentMetrics.INSTANCE.counter("compression.output");
+
+	/** marks the end of the blocks. */
+	private static final Block END = new Block(ByteBuffer.allocate(0), 0, 0, null);
+	/** how often a blocked caller checks whether the compressor is still alive. */
+	private static final long ENQUEUE_TIMEOUT_MS = 100;
+
+	private final IBlockCodec codec;
+	private final BlockingQueue<Block> blocks;
+	private final Thread thread;
+	/** the reason the compressor thread stopped early, or <code>null</code> while it is alive. */
+	private volatile Throwable failure;
+
+	private byte[] frame = new byte[0];
+	/** holds blocks of buffers without an accessible array. */
+	private byte[] scratch = new byte[0];
+
+	protected BlockCompressor(final IBlockCodec codec, final int queueSize) {
+		this.codec = codec;
+		this.blocks = new ArrayBlockingQueue<>(queueSize);
+		this.thread = new DaemonThreadFactory().newThread(this);
+		this.thread.setName("leadwire-compressor");
+	}
+
+	public void start() {
+		this.thread.start();
+	}
+
+	/**
+	 * Passes a block to the compressor thread, and blocks while the queue is full.
+	 *
+	 * @return <code>false</code> if the block has been dropped and released, since the compressor has failed or the
+	 *         caller has been interrupted
+	 */
+	public boolean enqueue(final Block block) {
+		try {
+			while (!this.blocks.offer(block, ENQUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				if (this.failure != null) {
+					block.release();
+					return false;
+				}
+			}
+			if ((this.failure != null) && this.blocks.remove(block)) {
+				// the compressor died in the meantime and will not release the block anymore
+				block.release();
+				return false;
+			}
+			return true;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Interrupted while passing data to the compressor; the data is lost.", e);
+			block.release();
+			return false;
+		}
+	}
+
+	/**
+	 * Compresses and writes the pending blocks, and waits for the compressor thread to stop.
+	 */
+	public void finish() {
+		// a failed compressor does not take the end marker, but still releases the pending blocks
+		this.enqueue(END);
+		try {
+			this.thread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Interrupted while waiting for the compressor to finish.", e);
+		}
+	}
+
+	/**
+	 * @return the reason the compressor thread stopped early, or <code>null</code> if it did not
+	 */
+	public Throwable getFailure() {
+		return this.failure;
+	}
+
+	/**
+	 * Writes a frame; called by the compressor thread only.
+	 *
+	 * @param frameBuffer
+	 *            the frame, which is only valid until this method returns
+	 */
+	protected abstract void writeFrame(ByteBuffer frameBuffer) throws IOException;
+
+	@Override
+	public void run() {
+		try {
+			Block block = this.blocks.take();
+			while (block != END) { // NOPMD (identity of the end marker)
+				this.write(block);
+				block = this.blocks.take();
+			}
+		} catch (final InterruptedException e) {
+			this.failure = e;
+			LOG.warn("Compressor interrupted; pending data is lost.", e);
+		} catch (final Throwable t) { // NOPMD NOCS (the callers must not wait for a dead compressor)
+			this.failure = t;
+			LOG.error("Compressor failed; pending and further data is lost.", t);
+		} finally {
+			if (this.failure != null) {
+				Block block = this.blocks.poll();
+				while (block != null) {
+					block.release();
+					block = this.blocks.poll();
+				}
+			}
+		}
+	}
+
+	private void write(final Block block) {
+		final int length = block.length;
+		final int maxFrameLength = BlockFrames.maxFrameLength(length);
+		if (this.frame.length < maxFrameLength) {
+			this.frame = new byte[maxFrameLength];
+		}
+		try {
+			final int frameLength;
+			try {
+				frameLength = this.encode(block);
+			} finally {
+				// the frame is complete, so the buffer of the block can be reused
+				block.release();
+			}
+			this.writeFrame(ByteBuffer.wrap(this.frame, 0, frameLength));
+			INPUT_BYTES.add(length);
+			OUTPUT_BYTES.add(frameLength);
+		} catch (final IOException e) {
+			LOG.error("Cannot write a block of " + length + " bytes.", e);
+		} catch (final RuntimeException e) { // NOPMD (a single broken block must not stop the compressor)
+			LOG.error("Cannot write a block of " + length + " bytes.", e);
+		}
+	}
+
+	private int encode(final Block block) {
+		final byte[] src;
+		final int srcOffset;
+		if (block.data.hasArray()) {
+			src = block.data.array();
+			srcOffset = block.data.arrayOffset() + block.offset;
+		} else {
+			if (this.scratch.length < block.length) {
+				this.scratch = new byte[block.length];
+			}
+			final ByteBuffer source = block.data.duplicate();
+			source.position(block.offset);
+			source.get(this.scratch, 0, block.length);
+			src = this.scratch;
+			srcOffset = 0;
+		}
+		return BlockFrames.encode(src, srcOffset, block.length, this.codec, this.frame);
+	}
+
+	/**
+	 * A block waiting for compression.
+	 */
+	static final class Block {
+		final ByteBuffer data; // NOCS (package visible)
+		final int offset; // NOCS (package visible)
+		final int length; // NOCS (package visible)
+		/** the pool to return the buffer to, or <code>null</code> for a copy. */
+		private final ByteBufferPool pool;
+
+		Block(final ByteBuffer data, final int offset, final int length, final ByteBufferPool pool) {
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+			this.pool = pool;
+		}
+
+		/**
+		 * Creates a block holding a copy of the given data, since the caller reuses its buffer.
+		 */
+		static Block copyOf(final ByteBuffer data, final int offset, final int length) {
+			final byte[] block = new byte[length];
+			final ByteBuffer source = data.duplicate();
+			source.position(offset);
+			source.get(block);
+			return new Block(ByteBuffer.wrap(block), 0, length, null);
+		}
+
+		void release() {
+			if (this.pool != null) {
+				this.pool.release(this.data);
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes and decodes the frames written by the {@link CompressingRawDataWriter} and the
+ * {@link CompressingByteChannel}. Each frame holds one independently compressed block, so that a reader can skip frames
+ * (e.g., to seek) or resynchronize on the magic number after a corrupt frame. A frame consists of
+ *
+ * <ul>
+ * <li>the magic number {@link #MAGIC} (int),</li>
+ * <li>the id of the codec, or {@link #STORED} if the block did not become smaller (byte),</li>
+ * <li>the length of the block (int),</li>
+ * <li>the length of the payload (int),</li>
+ * <li>the CRC32 of the block (int),</li>
+ * <li>the payload.</li>
+ * </ul>
+ *
+ * All numbers are big-endian.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class BlockFrames {
+
+	/** The magic number starting each frame ("LWBK"). */
+	public static final int MAGIC = 0x4C57424B;
+	/** The codec id of blocks stored uncompressed. */
+	public static final byte STORED = 0;
+	/** The size of the frame header. */
+	public static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 4;
+	/** The extension of files holding frames. */
+	public static final String FILE_EXTENSION = ".lwbk";
+
+	private BlockFrames() {
+		// utility class
+	}
+
+	/**
+	 * @param length
+	 *            the length of a block
+	 * @return the maximal length of the frame of the block
+	 */
+	public static int maxFrameLength(final int length) {
+		return HEADER_SIZE + length;
+	}
+
+	/**
+	 * Encodes a block as a frame.
+	 *
+	 * @param src
+	 *            the array holding the block
+	 * @param srcOffset
+	 *            the offset of the block in <code>src</code>
+	 * @param length
+	 *            the length of the block
+	 * @param codec
+	 *            the codec to compress the block with
+	 * @param dst
+	 *            the array to encode the frame into, with at least {@link #maxFrameLength(int)} bytes
+	 * @return the length of the frame
+	 */
+	public static int encode(final byte[] src, final int srcOffset, final int length, final IBlockCodec codec, final byte[] dst) {
+		final CRC32 crc = new CRC32();
+		crc.update(src, srcOffset, length);
+
+		byte codecId = codec.getId();
+		// only worth it if the block becomes smaller
+		int payloadLength = codec.compress(src, srcOffset, length, dst, HEADER_SIZE, length - 1);
+		if (payloadLength < 0) {
+			codecId = STORED;
+			payloadLength = length;
+			System.arraycopy(src, srcOffset, dst, HEADER_SIZE, length);
+		}
+
+		final ByteBuffer header = ByteBuffer.wrap(dst, 0, HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.put(codecId);
+		header.putInt(length);
+		header.putInt(payloadLength);
+		header.putInt((int) crc.getValue());
+		return HEADER_SIZE + payloadLength;
+	}
+
+	/**
+	 * Decodes the frame at the position of the given buffer and advances the position behind the frame.
+	 *
+	 * @param frames
+	 *            the buffer holding the frame
+	 * @param codec
+	 *            the codec the block has been compressed with
+	 * @return the block
+	 * @throws IOException
+	 *             if the frame is corrupt or has been compressed with another codec
+	 */
+	public static byte[] decode(final ByteBuffer frames, final IBlockCodec codec) throws IOException {
+		if (frames.getInt() != MAGIC) {
+			throw new IOException("Not at the start of a frame");
+		}
+		final byte codecId = frames.get();
+		final int length = frames.getInt();
+		final int payloadLength = frames.getInt();
+		final int checksum = frames.getInt();
+
+		final byte[] payload = new byte[payloadLength];
+		frames.get(payload);
+		final byte[] block;
+		if (codecId == STORED) {
+			block = payload;
+		} else if (codecId == codec.getId()) {
+			block = new byte[length];
+			codec.decompress(payload, 0, payloadLength, block, length);
+		} else {
+			throw new IOException("Unknown codec id " + codecId);
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(block, 0, block.length);
+		if ((int) crc.getValue() != checksum) {
+			throw new IOException("Checksum mismatch");
+		}
+		return block;
+	}
+}
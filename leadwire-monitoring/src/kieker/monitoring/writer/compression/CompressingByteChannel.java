@@ -0,0 +1,126 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compresses the data written to another channel in {@link BlockFrames frames} with a checksum each, for the file and
+ * TCP writers. Each write (including each gathering write) becomes one frame, so that a
+ * {@link kieker.monitoring.writer.tcp.ReconnectingSocketChannel} still sends one chunk per flush. The data is copied
+ * and compressed by a separate thread (see {@link BlockCompressor}), which is the only thread writing to the other
+ * channel until {@link #close()} closes it.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class CompressingByteChannel implements GatheringByteChannel {
+
+	/** The default number of blocks waiting for compression. */
+	public static final int DEFAULT_QUEUE_SIZE = 16;
+
+	private final WritableByteChannel channel;
+	private final BlockCompressor compressor;
+	private boolean open = true;
+
+	/**
+	 * @param channel
+	 *            the channel to write the frames to
+	 * @param codec
+	 *            the codec to compress the blocks with, which is used by this channel only
+	 * @param queueSize
+	 *            the number of blocks waiting for compression, before writes block
+	 */
+	public CompressingByteChannel(final WritableByteChannel channel, final IBlockCodec codec, final int queueSize) {
+		this.channel = channel;
+		this.compressor = new BlockCompressor(codec, queueSize) {
+			@Override
+			protected void writeFrame(final ByteBuffer frameBuffer) throws IOException {
+				while (frameBuffer.hasRemaining()) {
+					channel.write(frameBuffer);
+				}
+			}
+		};
+		this.compressor.start();
+	}
+
+	@Override
+	public int write(final ByteBuffer src) throws IOException {
+		this.checkWritable();
+		final int length = src.remaining();
+		if (length > 0) {
+			this.compressor.enqueue(BlockCompressor.Block.copyOf(src, src.position(), length));
+			src.position(src.limit());
+		}
+		return length;
+	}
+
+	@Override
+	public long write(final ByteBuffer[] srcs) throws IOException {
+		return this.write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+		this.checkWritable();
+		int total = 0;
+		for (int i = offset; i < (offset + length); i++) {
+			total += srcs[i].remaining();
+		}
+		if (total > 0) {
+			// a single block, so that the buffers stay together in one frame
+			final ByteBuffer block = ByteBuffer.allocate(total);
+			for (int i = offset; i < (offset + length); i++) {
+				block.put(srcs[i]);
+			}
+			this.compressor.enqueue(new BlockCompressor.Block(block, 0, total, null));
+		}
+		return total;
+	}
+
+	private void checkWritable() throws IOException {
+		if (!this.open) {
+			throw new ClosedChannelException();
+		}
+		final Throwable failure = this.compressor.getFailure();
+		if (failure != null) {
+			throw new IOException("The compressor has stopped", failure);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.open;
+	}
+
+	/**
+	 * Compresses and writes the pending blocks, and closes the other channel afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.open) {
+			this.open = false;
+			this.compressor.finish();
+			this.channel.close();
+		}
+	}
+}
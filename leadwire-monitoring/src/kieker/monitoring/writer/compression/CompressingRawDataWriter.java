@@ -0,0 +1,111 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.nio.ByteBuffer;
+
+import kieker.common.configuration.Configuration;
+import kieker.monitoring.core.controller.ControllerFactory;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
+import kieker.monitoring.writer.raw.ByteBufferPool;
+import kieker.monitoring.writer.raw.IAsyncRawDataWriter;
+import kieker.monitoring.writer.raw.IRawDataWriter;
+
+/**
+ * Compresses the data passed to another raw data writer in {@link BlockFrames frames} with a checksum each. Each call
+ * of {@link #writeData(ByteBuffer, int, int)} (e.g., each chunk of a
+ * {@link kieker.monitoring.writer.collector.ChunkingCollector}) becomes one frame, so that message-oriented writers
+ * (such as Kafka or AMQP) still send one message per chunk. The blocks are compressed by a separate thread, which also
+ * calls the other writer (see {@link BlockCompressor}). Pooled buffers are compressed in place and released afterwards,
+ * other data is copied before {@link #writeData(ByteBuffer, int, int)} returns.
+ *
+ * <p>
+ * Select it as the writer of the collector and configure the actual writer with {@link #CONFIG_WRITER_CLASSNAME}.
+ * Larger chunks compress better.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@ReceiveUnfilteredConfiguration // required for creating the actual writer
+public class CompressingRawDataWriter implements IAsyncRawDataWriter {
+
+	private static final int DEFAULT_QUEUE_SIZE = 16;
+
+	private static final String PREFIX = CompressingRawDataWriter.class.getName() + ".";
+
+	/** The name of the configuration property for the class name of the writer the frames are passed to. */
+	public static final String CONFIG_WRITER_CLASSNAME = PREFIX + "writer"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the class name of the codec. */
+	public static final String CONFIG_CODEC_CLASSNAME = PREFIX + "codec"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the number of blocks waiting for compression. */
+	public static final String CONFIG_QUEUE_SIZE = PREFIX + "queueSize"; // NOCS (afterPREFIX)
+
+	private final IRawDataWriter writer;
+	private final BlockCompressor compressor;
+
+	public CompressingRawDataWriter(final Configuration configuration) {
+		final ControllerFactory controllerFactory = ControllerFactory.getInstance(configuration);
+		final String writerName = configuration.getStringProperty(CONFIG_WRITER_CLASSNAME);
+		this.writer = controllerFactory.createAndInitialize(IRawDataWriter.class, writerName, configuration);
+		if (this.writer == null) {
+			throw new IllegalArgumentException("Cannot create the writer '" + writerName + "'");
+		}
+		final String codecName = configuration.getStringProperty(CONFIG_CODEC_CLASSNAME, DeflateBlockCodec.class.getName());
+		final IBlockCodec codec = controllerFactory.createAndInitialize(IBlockCodec.class, codecName, configuration);
+		if (codec == null) {
+			throw new IllegalArgumentException("Cannot create the codec '" + codecName + "'");
+		}
+
+		final IRawDataWriter frameWriter = this.writer;
+		this.compressor = new BlockCompressor(codec, configuration.getIntProperty(CONFIG_QUEUE_SIZE, DEFAULT_QUEUE_SIZE)) {
+			@Override
+			protected void writeFrame(final ByteBuffer frameBuffer) {
+				frameWriter.writeData(frameBuffer, 0, frameBuffer.remaining());
+			}
+		};
+	}
+
+	@Override
+	public void onInitialization() {
+		this.writer.onInitialization();
+		this.compressor.start();
+	}
+
+	@Override
+	public void writeData(final ByteBuffer data, final int offset, final int length) {
+		if (length == 0) {
+			return;
+		}
+		this.compressor.enqueue(BlockCompressor.Block.copyOf(data, offset, length));
+	}
+
+	@Override
+	public void writeData(final ByteBuffer data, final int offset, final int length, final ByteBufferPool pool) {
+		if (length == 0) {
+			pool.release(data);
+			return;
+		}
+		this.compressor.enqueue(new BlockCompressor.Block(data, offset, length, pool));
+	}
+
+	@Override
+	public void onTermination() {
+		this.compressor.finish();
+		this.writer.onTermination();
+	}
+}
@@ -0,0 +1,87 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import kieker.common.configuration.Configuration;
+
+/**
+ * Compresses blocks with raw DEFLATE (without zlib header and trailer, since each frame has its own checksum).
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class DeflateBlockCodec implements IBlockCodec {
+
+	/** The id of this codec in the frames. */
+	public static final byte ID = 1;
+
+	private static final String PREFIX = DeflateBlockCodec.class.getName() + ".";
+
+	/** The name of the configuration property for the compression level (1 for the best speed, 9 for the best compression). */
+	public static final String CONFIG_LEVEL = PREFIX + "level"; // NOCS (afterPREFIX)
+
+	private final Deflater deflater;
+	private final Inflater inflater = new Inflater(true);
+
+	public DeflateBlockCodec(final Configuration configuration) {
+		this.deflater = new Deflater(configuration.getIntProperty(CONFIG_LEVEL, Deflater.BEST_SPEED), true);
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public int compress(final byte[] src, final int srcOffset, final int length, final byte[] dst, final int dstOffset, final int maxLength) {
+		this.deflater.reset();
+		this.deflater.setInput(src, srcOffset, length);
+		this.deflater.finish();
+		int compressedLength = 0;
+		while (!this.deflater.finished()) {
+			if (compressedLength == maxLength) {
+				return -1;
+			}
+			compressedLength += this.deflater.deflate(dst, dstOffset + compressedLength, maxLength - compressedLength);
+		}
+		return compressedLength;
+	}
+
+	@Override
+	public void decompress(final byte[] src, final int srcOffset, final int srcLength, final byte[] dst, final int dstLength) throws IOException {
+		this.inflater.reset();
+		this.inflater.setInput(src, srcOffset, srcLength);
+		try {
+			int decompressedLength = 0;
+			while (decompressedLength < dstLength) {
+				final int inflated = this.inflater.inflate(dst, decompressedLength, dstLength - decompressedLength);
+				if ((inflated == 0) && (this.inflater.needsInput() || this.inflater.finished())) {
+					throw new IOException("Truncated block: " + decompressedLength + " of " + dstLength + " bytes");
+				}
+				decompressedLength += inflated;
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt block", e);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+
+/**
+ * Compresses and decompresses independent blocks of data. Implementations need not be thread-safe; each
+ * {@link CompressingRawDataWriter} and each {@link CompressingByteChannel} uses its own instance. They must provide a
+ * public constructor which accepts a single {@link kieker.common.configuration.Configuration}.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public interface IBlockCodec {
+
+	/**
+	 * @return the id identifying this codec in each frame; {@link BlockFrames#STORED} is reserved for uncompressed blocks
+	 */
+	byte getId();
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param src
+	 *            the array holding the block
+	 * @param srcOffset
+	 *            the offset of the block in <code>src</code>
+	 * @param length
+	 *            the length of the block
+	 * @param dst
+	 *            the array to compress the block into
+	 * @param dstOffset
+	 *            the offset in <code>dst</code>
+	 * @param maxLength
+	 *            the maximal number of bytes to write to <code>dst</code>
+	 * @return the length of the compressed block, or -1 if it would exceed <code>maxLength</code>
+	 */
+	int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int maxLength);
+
+	/**
+	 * Decompresses a block.
+	 *
+	 * @param src
+	 *            the array holding the compressed block
+	 * @param srcOffset
+	 *            the offset of the compressed block in <code>src</code>
+	 * @param srcLength
+	 *            the length of the compressed block
+	 * @param dst
+	 *            the array to decompress the block into
+	 * @param dstLength
+	 *            the length of the decompressed block
+	 * @throws IOException
+	 *             if the compressed block is corrupt
+	 */
+	void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException;
+}
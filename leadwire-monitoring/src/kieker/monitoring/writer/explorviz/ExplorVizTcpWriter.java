@@ -18,12 +18,11 @@ package kieker.monitoring.writer.explorviz;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
@@ -36,18 +35,21 @@ import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
 import kieker.common.record.misc.HostApplicationMetaData;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.registry.IRegistryListener;
-import kieker.monitoring.registry.IWriterRegistry;
 import kieker.monitoring.registry.RegisterAdapter;
 import kieker.monitoring.registry.WriterRegistry;
 import kieker.monitoring.writer.AbstractMonitoringWriter;
+import kieker.monitoring.writer.tcp.IConnectionListener;
+import kieker.monitoring.writer.tcp.ReconnectingSocketChannel;
 
 /**
  * @author Florian Fittkau, Jan Waller, Christian Wulf
  *
  * @since 1.9
  */
-public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String> {
+@ReceiveUnfilteredConfiguration // required for the settings of the ReconnectingSocketChannel
+public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String>, IConnectionListener {
 
 	private static final Log LOG = LogFactory.getLog(ExplorVizTcpWriter.class);
 
@@ -68,6 +70,8 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 	private static final byte STRING_REGISTRY_CLAZZ_ID = 4;
 
 	private static final String EMPTY_STRING = "";
+	/** the class id and the four string ids of a {@link HostApplicationMetaData} record */
+	private static final int HOST_APPLICATION_META_DATA_SIZE = 17;
 
 	/** <code>true</code> if the {@link #byteBuffer} should be flushed upon each new incoming monitoring record */
 	private final boolean flush;
@@ -76,9 +80,11 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 	/** the channel used to write out monitoring and registry records */
 	private final WritableByteChannel socketChannel;
 	/** the registry used to compress string fields in monitoring records */
-	private final IWriterRegistry<String> writerRegistry;
+	private final WriterRegistry writerRegistry;
 	/** this adapter allows to use the new WriterRegistry with the legacy IRegistry in {@link AbstractMonitoringRecord.registerStrings(..)} */
 	private final RegisterAdapter<String> registerStringsAdapter;
+	/** the record sent on starting, which is sent again on each reconnect */
+	private HostApplicationMetaData hostApplicationMetaData;
 
 	public ExplorVizTcpWriter(final Configuration configuration) throws IOException {
 		super(configuration);
@@ -89,7 +95,7 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 		this.flush = configuration.getBooleanProperty(CONFIG_FLUSH);
 
 		this.byteBuffer = ByteBuffer.allocateDirect(bufferSize);
-		this.socketChannel = SocketChannel.open(new InetSocketAddress(hostname, port));
+		this.socketChannel = ReconnectingSocketChannel.open(configuration, hostname, port, this);
 
 		LOG.info("Initialized socket channel for writing to " + hostname + ":" + port);
 
@@ -110,6 +116,7 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 					monitoringController.getName());
 
 			this.writeMonitoringRecord(record);
+			this.hostApplicationMetaData = record;
 		} catch (final UnknownHostException e) {
 			LOG.warn("An exception occurred", e);
 		}
@@ -128,7 +135,7 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 		} else if (record instanceof AfterOperationEvent) {
 			recordSize = 21;
 		} else if (record instanceof HostApplicationMetaData) {
-			recordSize = 17;
+			recordSize = HOST_APPLICATION_META_DATA_SIZE;
 		}
 
 		final ByteBuffer buffer = this.byteBuffer;
@@ -213,6 +220,42 @@ public class ExplorVizTcpWriter extends AbstractMonitoringWriter implements IReg
 		this.send(this.byteBuffer);
 	}
 
+	/**
+	 * Sends the string registry and the {@link HostApplicationMetaData} record again, since the receiver of the new
+	 * connection does not know them.
+	 */
+	@Override
+	public void onConnected(final WritableByteChannel connection) throws IOException {
+		final List<String> values = this.writerRegistry.getValues();
+		final byte[][] valuesAsBytes = new byte[values.size()][];
+		int size = HOST_APPLICATION_META_DATA_SIZE;
+		for (int id = 0; id < valuesAsBytes.length; id++) {
+			valuesAsBytes[id] = values.get(id).getBytes(StandardCharsets.UTF_8);
+			size += 1 + 4 + 4 + valuesAsBytes[id].length;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (int id = 0; id < valuesAsBytes.length; id++) {
+			buffer.put(STRING_REGISTRY_CLAZZ_ID);
+			buffer.putInt(id);
+			buffer.putInt(valuesAsBytes[id].length);
+			buffer.put(valuesAsBytes[id]);
+		}
+		final HostApplicationMetaData record = this.hostApplicationMetaData;
+		if (record != null) {
+			buffer.put(HOST_APPLICATION_META_DATA_CLAZZ_ID);
+			buffer.putInt(this.writerRegistry.getId(record.getSystemName()));
+			buffer.putInt(this.writerRegistry.getId(record.getIpAddress()));
+			buffer.putInt(this.writerRegistry.getId(record.getHostname()));
+			buffer.putInt(this.writerRegistry.getId(record.getApplicationName()));
+		}
+
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			connection.write(buffer);
+		}
+	}
+
 	@Override
 	public void onTerminating() {
 		try {
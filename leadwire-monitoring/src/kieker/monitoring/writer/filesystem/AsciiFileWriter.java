@@ -129,6 +129,27 @@ public class AsciiFileWriter extends AbstractMonitoringWriter implements IRegist
 
 	@Override
 	public void writeMonitoringRecord(final IMonitoringRecord record) {
+		final PrintWriter fileWriter = this.serializeRecord(record);
+
+		if (this.flush) {
+			fileWriter.flush();
+		}
+	}
+
+	@Override
+	public void writeMonitoringRecords(final IMonitoringRecord[] records, final int count) {
+		PrintWriter fileWriter = null;
+		for (int i = 0; i < count; i++) {
+			fileWriter = this.serializeRecord(records[i]);
+		}
+
+		// flush once per batch
+		if (this.flush && (fileWriter != null)) {
+			fileWriter.flush();
+		}
+	}
+
+	private PrintWriter serializeRecord(final IMonitoringRecord record) {
 		final String recordClassName = record.getClass().getName();
 		this.writerRegistry.register(recordClassName);
 
@@ -147,9 +168,7 @@ public class AsciiFileWriter extends AbstractMonitoringWriter implements IRegist
 		fileWriter.print(this.buffer.toString());
 		fileWriter.println();
 
-		if (this.flush) {
-			fileWriter.flush();
-		}
+		return fileWriter;
 	}
 
 	@Override
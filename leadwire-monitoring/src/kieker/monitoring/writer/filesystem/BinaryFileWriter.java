@@ -30,12 +30,14 @@ import kieker.common.logging.LogFactory;
 import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.io.DefaultValueSerializer;
 import kieker.common.util.filesystem.FileExtensionFilter;
+import kieker.monitoring.core.controller.ControllerFactory;
 import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.registry.GetIdAdapter;
 import kieker.monitoring.registry.IRegistryListener;
 import kieker.monitoring.registry.RegisterAdapter;
 import kieker.monitoring.registry.WriterRegistry;
 import kieker.monitoring.writer.AbstractMonitoringWriter;
+import kieker.monitoring.writer.compression.IBlockCodec;
 
 /**
  * @author Jan Waller, Christian Wulf
@@ -58,12 +60,23 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 	public static final String CONFIG_CHARSET_NAME = PREFIX + "charsetName";
 	/** The name of the configuration key determining to enable/disable compression of the record log files */
 	public static final String CONFIG_SHOULD_COMPRESS = PREFIX + "shouldCompress";
+	/**
+	 * The name of the configuration key for the class name of the {@link IBlockCodec} compressing the record log files in
+	 * frames on a separate thread; empty for no frames. Takes precedence over {@link #CONFIG_SHOULD_COMPRESS}.
+	 */
+	public static final String CONFIG_CODEC = PREFIX + "codec";
 	/** The name of the configuration key determining the buffer size of the output file stream */
 	public static final String CONFIG_BUFFERSIZE = PREFIX + "bufferSize";
 	/** The name of the configuration key determining to always flush the output file stream after writing each record */
 	public static final String CONFIG_FLUSH = PREFIX + "flush";
 	/** The name of the configuration determining whether to flush upon each incoming registry entry. */
 	public static final String CONFIG_FLUSH_MAPFILE = PREFIX + "flushMapfile";
+	/** The name of the configuration key determining whether to serialize the records directly into memory-mapped segment files. */
+	public static final String CONFIG_MAPPED_SEGMENTS = PREFIX + "mappedSegments";
+	/** The name of the configuration key determining the size of the memory-mapped segment files in MiB. */
+	public static final String CONFIG_SEGMENT_SIZE = PREFIX + "segmentSize";
+
+	private static final int DEFAULT_SEGMENT_SIZE = 64; // in MiB
 
 	private static final Log LOG = LogFactory.getLog(BinaryFileWriter.class);
 
@@ -71,6 +84,8 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 	private final ByteBuffer buffer;
 	private final MappingFileWriter mappingFileWriter;
 	private final BinaryFileWriterPool fileWriterPool;
+	/** the pool of memory-mapped segments, or <code>null</code> if the records are written through the {@link #buffer}. */
+	private final MappedSegmentPool segmentPool;
 	private final WriterRegistry writerRegistry;
 	private final RegisterAdapter<String> registerStringsAdapter;
 	private final GetIdAdapter<String> writeBytesAdapter;
@@ -109,12 +124,34 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 		// TODO should we check for buffers too small for a single record?
 		final int bufferSize = this.configuration.getIntProperty(CONFIG_BUFFERSIZE);
 		final boolean shouldCompress = configuration.getBooleanProperty(CONFIG_SHOULD_COMPRESS);
+		final String codecName = configuration.getStringProperty(CONFIG_CODEC);
 		this.flush = configuration.getBooleanProperty(CONFIG_FLUSH, false);
 		this.flushMapfile = configuration.getBooleanProperty(CONFIG_FLUSH_MAPFILE, true);
 
-		this.buffer = ByteBuffer.allocateDirect(bufferSize);
 		this.mappingFileWriter = new MappingFileWriter(this.logFolder, charsetName);
-		this.fileWriterPool = new BinaryFileWriterPool(LOG, this.logFolder, maxEntriesPerFile, shouldCompress, maxAmountOfFiles, maxMegaBytesPerFile);
+		if (configuration.getBooleanProperty(CONFIG_MAPPED_SEGMENTS, false)) {
+			if (shouldCompress || !codecName.isEmpty()) {
+				LOG.warn("Compression is not supported for mapped segments and is ignored.");
+			}
+			int segmentMegaBytes = configuration.getIntProperty(CONFIG_SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE);
+			segmentMegaBytes = (segmentMegaBytes <= 0) ? DEFAULT_SEGMENT_SIZE : Math.min(segmentMegaBytes, maxMegaBytesPerFile);// NOCS
+			final int segmentSize = (int) Math.min(segmentMegaBytes * 1024L * 1024L, Integer.MAX_VALUE); // conversion from MB to Bytes
+			this.buffer = null;
+			this.fileWriterPool = null;
+			this.segmentPool = new MappedSegmentPool(LOG, this.logFolder, segmentSize, maxEntriesPerFile, maxAmountOfFiles);
+		} else {
+			IBlockCodec codec = null;
+			if (!codecName.isEmpty()) {
+				codec = ControllerFactory.getInstance(configuration).createAndInitialize(IBlockCodec.class, codecName, configuration);
+				if (codec == null) {
+					throw new IllegalArgumentException("Cannot create the codec '" + codecName + "'");
+				}
+			}
+			this.buffer = ByteBuffer.allocateDirect(bufferSize);
+			this.fileWriterPool = new BinaryFileWriterPool(LOG, this.logFolder, maxEntriesPerFile, shouldCompress, codec, maxAmountOfFiles,
+					maxMegaBytesPerFile);
+			this.segmentPool = null;
+		}
 
 		this.writerRegistry = new WriterRegistry(this);
 		this.registerStringsAdapter = new RegisterAdapter<String>(this.writerRegistry);
@@ -128,6 +165,45 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 
 	@Override
 	public void writeMonitoringRecord(final IMonitoringRecord monitoringRecord) {
+		if (this.segmentPool != null) {
+			this.serializeRecordIntoSegment(monitoringRecord);
+			if (this.flush) {
+				this.segmentPool.flush();
+			}
+			return;
+		}
+
+		final PooledFileChannel channel = this.serializeRecord(monitoringRecord);
+
+		if (this.flush) {
+			channel.flush(this.buffer, LOG);
+		}
+	}
+
+	@Override
+	public void writeMonitoringRecords(final IMonitoringRecord[] monitoringRecords, final int count) {
+		if (this.segmentPool != null) {
+			for (int i = 0; i < count; i++) {
+				this.serializeRecordIntoSegment(monitoringRecords[i]);
+			}
+			if (this.flush) {
+				this.segmentPool.flush();
+			}
+			return;
+		}
+
+		PooledFileChannel channel = null;
+		for (int i = 0; i < count; i++) {
+			channel = this.serializeRecord(monitoringRecords[i]);
+		}
+
+		// flush once per batch
+		if (this.flush && (channel != null)) {
+			channel.flush(this.buffer, LOG);
+		}
+	}
+
+	private PooledFileChannel serializeRecord(final IMonitoringRecord monitoringRecord) {
 		final PooledFileChannel channel = this.fileWriterPool.getFileWriter(this.buffer);
 
 		monitoringRecord.registerStrings(this.registerStringsAdapter);
@@ -144,9 +220,19 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 		recordBuffer.putLong(monitoringRecord.getLoggingTimestamp());
 		monitoringRecord.serialize(DefaultValueSerializer.create(recordBuffer, this.writeBytesAdapter));
 
-		if (this.flush) {
-			channel.flush(recordBuffer, LOG);
-		}
+		return channel;
+	}
+
+	private void serializeRecordIntoSegment(final IMonitoringRecord monitoringRecord) {
+		monitoringRecord.registerStrings(this.registerStringsAdapter);
+
+		final String recordClassName = monitoringRecord.getClass().getName();
+		this.writerRegistry.register(recordClassName);
+
+		final ByteBuffer segment = this.segmentPool.getSegment(4 + 8 + monitoringRecord.getSize());
+		segment.putInt(this.writerRegistry.getId(recordClassName));
+		segment.putLong(monitoringRecord.getLoggingTimestamp());
+		monitoringRecord.serialize(DefaultValueSerializer.create(segment, this.writeBytesAdapter));
 	}
 
 	@Override
@@ -166,7 +252,11 @@ public class BinaryFileWriter extends AbstractMonitoringWriter implements IRegis
 
 	@Override
 	public void onTerminating() {
-		this.fileWriterPool.close(this.buffer);
+		if (this.segmentPool != null) {
+			this.segmentPool.close();
+		} else {
+			this.fileWriterPool.close(this.buffer);
+		}
 		this.mappingFileWriter.close();
 	}
 
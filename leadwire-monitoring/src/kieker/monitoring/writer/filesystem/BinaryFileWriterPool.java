@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -29,6 +30,9 @@ import java.util.zip.ZipOutputStream;
 
 import kieker.common.logging.Log;
 import kieker.common.util.filesystem.FSUtil;
+import kieker.monitoring.writer.compression.BlockFrames;
+import kieker.monitoring.writer.compression.CompressingByteChannel;
+import kieker.monitoring.writer.compression.IBlockCodec;
 
 /**
  * @author Christian Wulf (chw)
@@ -43,23 +47,30 @@ class BinaryFileWriterPool extends WriterPool {
 	private final long maxBytesPerFile;
 
 	private final boolean shouldCompress;
+	/** the codec compressing the files in frames, or <code>null</code> for no frames. */
+	private final IBlockCodec codec;
 	private final String fileExtensionWithDot;
 	private final int maxAmountOfFiles;
 
 	private PooledFileChannel currentChannel;
 	private int currentFileNumber;
 
-	public BinaryFileWriterPool(final Log writerLog, final Path folder, final int maxEntriesPerFile, final boolean shouldCompress, final int maxAmountOfFiles,
-			final int maxMegaBytesPerFile) {
+	public BinaryFileWriterPool(final Log writerLog, final Path folder, final int maxEntriesPerFile, final boolean shouldCompress, final IBlockCodec codec,
+			final int maxAmountOfFiles, final int maxMegaBytesPerFile) {
 		super(writerLog, folder);
 		this.maxEntriesPerFile = maxEntriesPerFile;
 		this.numEntriesInCurrentFile = maxEntriesPerFile; // triggers file creation
-		this.shouldCompress = shouldCompress;
+		this.codec = codec;
+		this.shouldCompress = shouldCompress && (codec == null);
 		this.maxAmountOfFiles = maxAmountOfFiles;
 		this.maxBytesPerFile = maxMegaBytesPerFile * 1024L * 1024L; // conversion from MB to Bytes
 
 		this.currentChannel = new PooledFileChannel(Channels.newChannel(new ByteArrayOutputStream())); // NullObject design pattern
-		this.fileExtensionWithDot = (shouldCompress) ? FSUtil.ZIP_FILE_EXTENSION : FSUtil.BINARY_FILE_EXTENSION; // NOCS
+		if (codec != null) {
+			this.fileExtensionWithDot = BlockFrames.FILE_EXTENSION;
+		} else {
+			this.fileExtensionWithDot = (shouldCompress) ? FSUtil.ZIP_FILE_EXTENSION : FSUtil.BINARY_FILE_EXTENSION; // NOCS
+		}
 	}
 
 	public PooledFileChannel getFileWriter(final ByteBuffer buffer) {
@@ -101,7 +112,12 @@ class BinaryFileWriterPool extends WriterPool {
 				outputStream = compressedOutputStream;
 			}
 
-			this.currentChannel = new PooledFileChannel(Channels.newChannel(outputStream));
+			WritableByteChannel channel = Channels.newChannel(outputStream);
+			if (this.codec != null) {
+				// the previous channel has been closed, so its compressor no longer uses the codec
+				channel = new CompressingByteChannel(channel, this.codec, CompressingByteChannel.DEFAULT_QUEUE_SIZE);
+			}
+			this.currentChannel = new PooledFileChannel(channel);
 		} catch (final IOException e) {
 			throw new IllegalStateException("This exception should not have been thrown.", e);
 		}
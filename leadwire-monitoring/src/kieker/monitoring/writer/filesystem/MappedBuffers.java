@@ -0,0 +1,119 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.filesystem;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+
+/**
+ * Unmaps memory-mapped buffers explicitly. Otherwise, a mapping is released only when its buffer is garbage collected,
+ * so that the file cannot be truncated (on Windows) and the space of a deleted file is not freed until then.
+ *
+ * <p>
+ * There is no public API for this, so the cleaner of the JDK is called via reflection: on Java 9 and later via
+ * <code>sun.misc.Unsafe.invokeCleaner</code>, on Java 7 and 8 via <code>sun.nio.ch.DirectBuffer.cleaner()</code>. If
+ * neither is accessible, the buffers are left to the garbage collector.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+final class MappedBuffers {
+
+	private static final Log LOG = LogFactory.getLog(MappedBuffers.class);
+
+	private static final Unmapper UNMAPPER = createUnmapper();
+
+	private MappedBuffers() {
+		// utility class
+	}
+
+	/**
+	 * Unmaps the given buffer. The buffer must not be accessed afterwards, since this would crash the JVM.
+	 *
+	 * @param buffer
+	 *            the buffer to unmap
+	 * @return whether the buffer has been unmapped; otherwise, it is unmapped when it is garbage collected
+	 */
+	static boolean unmap(final MappedByteBuffer buffer) {
+		if (UNMAPPER == null) {
+			return false;
+		}
+		try {
+			UNMAPPER.unmap(buffer);
+			return true;
+		} catch (final Exception e) { // NOCS NOPMD (reflective access may fail in various ways)
+			LOG.warn("Cannot unmap a buffer; it is released by the garbage collector.", e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return whether buffers can be unmapped on this JVM
+	 */
+	static boolean isSupported() {
+		return UNMAPPER != null;
+	}
+
+	private static Unmapper createUnmapper() {
+		try {
+			// Java 9 and later
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			final Object unsafe = theUnsafe.get(null);
+			return new Unmapper() {
+				@Override
+				public void unmap(final MappedByteBuffer buffer) throws Exception { // NOCS (Exception)
+					invokeCleaner.invoke(unsafe, buffer);
+				}
+			};
+		} catch (final Exception e) { // NOCS NOPMD (not Java 9 or later, or not accessible)
+			// fall through
+		}
+		try {
+			// Java 7 and 8
+			final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return new Unmapper() {
+				@Override
+				public void unmap(final MappedByteBuffer buffer) throws Exception { // NOCS (Exception)
+					final Object bufferCleaner = cleaner.invoke(buffer);
+					if (bufferCleaner != null) {
+						clean.invoke(bufferCleaner);
+					}
+				}
+			};
+		} catch (final Exception e) { // NOCS NOPMD (not accessible)
+			LOG.info("Mapped buffers cannot be unmapped explicitly on this JVM; they are released by the garbage collector.");
+			return null;
+		}
+	}
+
+	/**
+	 * Calls the cleaner of a buffer.
+	 */
+	private interface Unmapper {
+		void unmap(MappedByteBuffer buffer) throws Exception; // NOCS (Exception)
+	}
+}
@@ -0,0 +1,250 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import kieker.common.logging.Log;
+import kieker.common.util.filesystem.FSUtil;
+import kieker.common.util.thread.DaemonThreadFactory;
+
+/**
+ * Provides fixed-size, memory-mapped segment files into which the records are serialized directly. The next segment
+ * is created, preallocated and mapped by a background thread while the current one is filled, so that rotating to it
+ * does not stall the writer thread. The background thread also forces each finished segment to disk, unmaps it (see
+ * {@link MappedBuffers}), truncates it to the bytes written and deletes the segments exceeding the maximal number of
+ * files, in this order. Thus, neither the address space nor the disk space of the finished segments is held until
+ * their buffers are garbage collected.
+ *
+ * <p>
+ * A segment which has not been finished, e.g., because the JVM crashed, keeps its zeroed tail.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+class MappedSegmentPool extends WriterPool {
+
+	/** the size of the pages touched when preallocating a segment. */
+	private static final int PAGE_SIZE = 4096;
+	private static final long TERMINATION_TIMEOUT_SECONDS = 30;
+
+	private final int segmentSize;
+	private final int maxEntriesPerFile;
+	private final int maxAmountOfFiles;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+
+	/** null until the first record. */
+	private Segment currentSegment;
+	private Future<Segment> nextSegment;
+	private int numEntriesInCurrentFile;
+	private int currentFileNumber;
+
+	public MappedSegmentPool(final Log writerLog, final Path folder, final int segmentSize, final int maxEntriesPerFile, final int maxAmountOfFiles) {
+		super(writerLog, folder);
+		this.segmentSize = segmentSize;
+		this.maxEntriesPerFile = maxEntriesPerFile;
+		this.maxAmountOfFiles = maxAmountOfFiles;
+		this.nextSegment = this.createSegment();
+	}
+
+	/**
+	 * @param requiredBytes
+	 *            the size of the record to serialize
+	 * @return the mapping of the segment to serialize the record into
+	 */
+	public ByteBuffer getSegment(final int requiredBytes) {
+		this.numEntriesInCurrentFile++;
+
+		// (buffer overflow aware comparison) means: numEntriesInCurrentFile > maxEntriesPerFile
+		if ((this.currentSegment == null) || ((this.numEntriesInCurrentFile - this.maxEntriesPerFile) > 0)
+				|| (this.currentSegment.buffer.remaining() < requiredBytes)) {
+			this.onThresholdExceeded();
+		}
+
+		// the last file is the spare segment
+		if ((this.logFiles.size() - 1) > this.maxAmountOfFiles) {
+			final Path oldestFile = this.logFiles.remove(0);
+			// queued after the task finishing the segment, so it is deleted after having been unmapped
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					MappedSegmentPool.this.delete(oldestFile);
+				}
+			});
+		}
+
+		return this.currentSegment.buffer;
+	}
+
+	private void onThresholdExceeded() {
+		final Segment previousSegment = this.currentSegment;
+		try {
+			this.currentSegment = this.nextSegment.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the next segment.", e);
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Cannot create the next segment.", e.getCause());
+		}
+		this.nextSegment = this.createSegment();
+
+		if (previousSegment != null) {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					MappedSegmentPool.this.finish(previousSegment);
+				}
+			});
+		}
+		this.numEntriesInCurrentFile = 1;
+	}
+
+	private Future<Segment> createSegment() {
+		this.currentFileNumber++;
+		final Path file = this.getNextFileName(this.currentFileNumber, FSUtil.BINARY_FILE_EXTENSION);
+		return this.executor.submit(new Callable<Segment>() {
+			@Override
+			public Segment call() throws IOException {
+				return MappedSegmentPool.this.preallocate(file);
+			}
+		});
+	}
+
+	private Segment preallocate(final Path file) throws IOException {
+		// use CREATE_NEW to fail if the file already exists
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+			// allocate the pages now rather than on the writer thread
+			for (int i = 0; i < this.segmentSize; i += PAGE_SIZE) {
+				buffer.put(i, (byte) 0);
+			}
+			return new Segment(channel, buffer);
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void finish(final Segment segment) {
+		try {
+			segment.buffer.force();
+			final int size = segment.buffer.position();
+			// a mapped file cannot be truncated on Windows
+			this.unmap(segment);
+			segment.channel.truncate(size);
+		} catch (final IOException e) {
+			this.writerLog.warn("Cannot finish the segment.", e);
+		} finally {
+			this.close(segment);
+		}
+	}
+
+	private void unmap(final Segment segment) {
+		final MappedByteBuffer buffer = segment.buffer;
+		if (buffer != null) {
+			// drop the reference in any case, so that the mapping is at least released by the garbage collector
+			segment.buffer = null;
+			MappedBuffers.unmap(buffer);
+		}
+	}
+
+	private void close(final Segment segment) {
+		this.unmap(segment);
+		try {
+			segment.channel.close();
+		} catch (final IOException e) {
+			this.writerLog.warn("Cannot close the segment.", e);
+		}
+	}
+
+	private void delete(final Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (final IOException e) {
+			this.writerLog.warn("Cannot delete oldest file.", e);
+		}
+	}
+
+	/**
+	 * Forces the records written to the current segment to disk.
+	 */
+	public void flush() {
+		if (this.currentSegment != null) {
+			this.currentSegment.buffer.force();
+		}
+	}
+
+	/**
+	 * Finishes the current segment and deletes the unused spare segment.
+	 */
+	public void close() {
+		final Segment lastSegment = this.currentSegment;
+		final Future<Segment> spareSegment = this.nextSegment;
+		final Path spareFile = this.logFiles.remove(this.logFiles.size() - 1);
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (lastSegment != null) {
+					MappedSegmentPool.this.finish(lastSegment);
+				}
+				try {
+					// already done, since it has been submitted before
+					MappedSegmentPool.this.close(spareSegment.get());
+				} catch (final InterruptedException | ExecutionException e) { // NOPMD (no spare segment to close)
+					// not created
+				}
+				MappedSegmentPool.this.delete(spareFile);
+			}
+		});
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				this.writerLog.warn("Segments have not been finished within " + TERMINATION_TIMEOUT_SECONDS + " s.");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A segment file and its mapping.
+	 */
+	private static final class Segment {
+		final FileChannel channel; // NOCS (package visible)
+		/** null after having been unmapped. */
+		MappedByteBuffer buffer; // NOCS (package visible)
+
+		Segment(final FileChannel channel, final MappedByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+	}
+}
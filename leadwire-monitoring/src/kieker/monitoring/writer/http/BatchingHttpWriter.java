@@ -0,0 +1,484 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.monitoring.writer.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.io.JsonValueSerializer;
+import kieker.common.util.thread.DaemonThreadFactory;
+import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.core.metrics.Timer;
+import kieker.monitoring.writer.AbstractMonitoringWriter;
+
+/**
+ * HTTP writer which ships monitoring records in batches instead of issuing one request per record.
+ * Records are serialized as newline-delimited JSON directly into a reusable buffer until either the
+ * maximal number of records, the maximal payload size or the linger time is reached. Batches are then
+ * posted asynchronously over a pooled, keep-alive HTTP client. The number of requests in flight is bounded; once the bound is
+ * reached, the writer thread blocks, which makes the writer queue's insert behavior take effect.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+@ReceiveUnfilteredConfiguration // required for reading the apm server
+public class BatchingHttpWriter extends AbstractMonitoringWriter {
+
+	private static final Log LOG = LogFactory.getLog(BatchingHttpWriter.class);
+	/** the posts and the bytes sent. */
+	private static final Counter SENT_BYTES = AgentMetrics.INSTANCE.counter("writer.bytes");
+	/** the time a post takes. */
+	private static final Timer POST_TIME = AgentMetrics.INSTANCE.timer("writer.flush");
+	/** the records dropped by the writer. */
+	private static final Counter DROPPED_RECORDS = AgentMetrics.INSTANCE.counter("writer.dropped");
+
+	private static final String PREFIX = BatchingHttpWriter.class.getName() + ".";
+
+	/** The name of the configuration property for the target url (optional). */
+	public static final String CONFIG_URL = PREFIX + "url"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the maximal number of records per batch. */
+	public static final String CONFIG_BATCH_MAX_RECORDS = PREFIX + "batchMaxRecords"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the maximal (uncompressed) payload size of a batch in bytes. */
+	public static final String CONFIG_BATCH_MAX_BYTES = PREFIX + "batchMaxBytes"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the maximal time a record waits in a batch. */
+	public static final String CONFIG_LINGER_MS = PREFIX + "lingerMs"; // NOCS (afterPREFIX)
+	/** The name of the configuration property which enables gzip compression of the payload. */
+	public static final String CONFIG_GZIP = PREFIX + "gzip"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the maximal number of concurrent requests. */
+	public static final String CONFIG_MAX_IN_FLIGHT = PREFIX + "maxInFlight"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the number of retries of a failed batch. */
+	public static final String CONFIG_MAX_RETRIES = PREFIX + "maxRetries"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the initial retry backoff. */
+	public static final String CONFIG_RETRY_BACKOFF_MS = PREFIX + "retryBackoffMs"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the connect and socket timeout. */
+	public static final String CONFIG_TIMEOUT_MS = PREFIX + "timeoutMs"; // NOCS (afterPREFIX)
+	/** The name of the configuration property for the content type of a batch. */
+	public static final String CONFIG_CONTENT_TYPE = PREFIX + "contentType"; // NOCS (afterPREFIX)
+
+	private static final int DEFAULT_BATCH_MAX_RECORDS = 512;
+	private static final int DEFAULT_BATCH_MAX_BYTES = 1 << 20;
+	private static final int DEFAULT_LINGER_MS = 1000;
+	private static final int DEFAULT_MAX_IN_FLIGHT = 2;
+	private static final int DEFAULT_MAX_RETRIES = 3;
+	private static final int DEFAULT_RETRY_BACKOFF_MS = 200;
+	private static final int DEFAULT_TIMEOUT_MS = 10000;
+	private static final String DEFAULT_CONTENT_TYPE = "application/x-ndjson";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int TERMINATION_TIMEOUT_MS = 10000;
+
+	private final String url;
+	private final int batchMaxRecords;
+	private final int batchMaxBytes;
+	private final int lingerMs;
+	private final boolean gzip;
+	private final int maxInFlight;
+	private final int maxRetries;
+	private final int retryBackoffMs;
+	private final int timeoutMs;
+	private final ContentType contentType;
+
+	private final Semaphore inFlight;
+	private final Object batchLock = new Object();
+
+	private final AtomicLong sentRecords = new AtomicLong();
+	private final AtomicLong sentBatches = new AtomicLong();
+	private final AtomicLong failedBatches = new AtomicLong();
+	private final AtomicLong droppedRecords = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong blockedSubmits = new AtomicLong();
+
+	// guarded by batchLock
+	private final ByteBuffer batch;
+	private final JsonValueSerializer serializer;
+	private int batchRecords;
+	private long batchStartTime;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+	private CloseableHttpClient httpClient;
+	private ExecutorService senderPool;
+	private ScheduledExecutorService lingerTimer;
+
+	/**
+	 * Creates a new instance of this class using the given configuration.
+	 *
+	 * @param configuration
+	 *            the configuration of this writer
+	 */
+	public BatchingHttpWriter(final Configuration configuration) {
+		super(configuration);
+		this.url = BatchingHttpWriter.resolveUrl(configuration);
+		this.batchMaxRecords = Math.max(1, configuration.getIntProperty(CONFIG_BATCH_MAX_RECORDS, DEFAULT_BATCH_MAX_RECORDS));
+		this.batchMaxBytes = Math.max(1, configuration.getIntProperty(CONFIG_BATCH_MAX_BYTES, DEFAULT_BATCH_MAX_BYTES));
+		this.lingerMs = Math.max(1, configuration.getIntProperty(CONFIG_LINGER_MS, DEFAULT_LINGER_MS));
+		this.gzip = configuration.getBooleanProperty(CONFIG_GZIP, false);
+		this.maxInFlight = Math.max(1, configuration.getIntProperty(CONFIG_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT));
+		this.maxRetries = Math.max(0, configuration.getIntProperty(CONFIG_MAX_RETRIES, DEFAULT_MAX_RETRIES));
+		this.retryBackoffMs = Math.max(0, configuration.getIntProperty(CONFIG_RETRY_BACKOFF_MS, DEFAULT_RETRY_BACKOFF_MS));
+		this.timeoutMs = configuration.getIntProperty(CONFIG_TIMEOUT_MS, DEFAULT_TIMEOUT_MS);
+		this.contentType = ContentType.create(configuration.getStringProperty(CONFIG_CONTENT_TYPE, DEFAULT_CONTENT_TYPE), UTF8);
+
+		this.inFlight = new Semaphore(this.maxInFlight);
+		this.batch = ByteBuffer.allocate(this.batchMaxBytes);
+		this.serializer = JsonValueSerializer.create(this.batch);
+	}
+
+	private static String resolveUrl(final Configuration configuration) {
+		final String configuredUrl = configuration.getStringProperty(CONFIG_URL);
+		if (!configuredUrl.isEmpty()) {
+			return configuredUrl;
+		}
+		final String apmServer = configuration.getStringProperty(ConfigurationFactory.APM_SERVER);
+		final String appUuid = System.getProperty("leadwire.agent.name", "no.agent.name");
+		return "https://" + apmServer + "/" + appUuid + "/apm";
+	}
+
+	@Override
+	public void onStarting() {
+		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager.setMaxTotal(this.maxInFlight);
+		this.connectionManager.setDefaultMaxPerRoute(this.maxInFlight);
+
+		final RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(this.timeoutMs)
+				.setConnectionRequestTimeout(this.timeoutMs)
+				.setSocketTimeout(this.timeoutMs)
+				.build();
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(this.connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.disableAutomaticRetries()
+				.build();
+
+		this.senderPool = Executors.newFixedThreadPool(this.maxInFlight, new DaemonThreadFactory());
+		this.lingerTimer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+		final long period = Math.max(1, this.lingerMs / 2);
+		this.lingerTimer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				BatchingHttpWriter.this.flushIfLingered();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void writeMonitoringRecord(final IMonitoringRecord record) {
+		synchronized (this.batchLock) {
+			this.appendRecord(record);
+		}
+	}
+
+	@Override
+	public void writeMonitoringRecords(final IMonitoringRecord[] records, final int count) {
+		// one lock acquisition per batch of the writer thread
+		synchronized (this.batchLock) {
+			for (int i = 0; i < count; i++) {
+				this.appendRecord(records[i]);
+			}
+		}
+	}
+
+	/**
+	 * Appends the record to the current batch, flushing it first if the record does not fit anymore.
+	 * Must be called while holding the batch lock.
+	 */
+	private void appendRecord(final IMonitoringRecord record) {
+		final int start = this.batch.position();
+		try {
+			this.serializer.serializeRecordLine(record);
+		} catch (final BufferOverflowException e) {
+			this.batch.position(start);
+			if (this.batchRecords == 0) {
+				this.countDropped(1);
+				LOG.warn("Dropped record exceeding the maximal batch size of " + this.batchMaxBytes + " bytes: " + record.getClass().getName());
+				return;
+			}
+			this.flushBatch();
+			this.appendRecord(record);
+			return;
+		}
+		if (this.batchRecords == 0) {
+			this.batchStartTime = System.currentTimeMillis();
+		}
+		this.batchRecords++;
+		if (this.batchRecords >= this.batchMaxRecords) {
+			this.flushBatch();
+		}
+	}
+
+	private void flushIfLingered() {
+		synchronized (this.batchLock) {
+			if ((this.batchRecords > 0) && ((System.currentTimeMillis() - this.batchStartTime) >= this.lingerMs)) {
+				this.flushBatch();
+			}
+		}
+	}
+
+	/**
+	 * Hands the current batch over to the sender pool. Must be called while holding the batch lock.
+	 */
+	private void flushBatch() {
+		if (this.batchRecords == 0) {
+			return;
+		}
+		final byte[] payload = Arrays.copyOf(this.batch.array(), this.batch.position());
+		final int numRecords = this.batchRecords;
+		this.batch.clear();
+		this.batchRecords = 0;
+
+		if (!this.inFlight.tryAcquire()) {
+			this.blockedSubmits.incrementAndGet();
+			try {
+				this.inFlight.acquire();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.countDropped(numRecords);
+				return;
+			}
+		}
+		try {
+			this.senderPool.execute(new BatchSender(payload, numRecords));
+		} catch (final RuntimeException e) { // RejectedExecutionException after termination
+			this.inFlight.release();
+			this.countDropped(numRecords);
+			LOG.warn("Dropped batch of " + numRecords + " records: " + e.getMessage());
+		}
+	}
+
+	private void countDropped(final int numRecords) {
+		this.droppedRecords.addAndGet(numRecords);
+		DROPPED_RECORDS.add(numRecords);
+	}
+
+	private byte[] encode(final byte[] payload) throws IOException {
+		if (!this.gzip) {
+			return payload;
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 64);
+		final GZIPOutputStream gzipStream = new GZIPOutputStream(out);
+		try {
+			gzipStream.write(payload);
+		} finally {
+			gzipStream.close();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Posts the given batch once.
+	 *
+	 * @return the HTTP status code
+	 */
+	private int post(final byte[] body) throws IOException {
+		final HttpPost request = new HttpPost(this.url);
+		if (this.gzip) {
+			request.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		request.setEntity(new ByteArrayEntity(body, this.contentType));
+		final long start = System.nanoTime();
+		try {
+			final CloseableHttpResponse response = this.httpClient.execute(request);
+			try {
+				// consume the entity so that the connection is returned to the pool
+				EntityUtils.consume(response.getEntity());
+				return response.getStatusLine().getStatusCode();
+			} finally {
+				response.close();
+			}
+		} finally {
+			POST_TIME.record(System.nanoTime() - start);
+			SENT_BYTES.add(body.length);
+		}
+	}
+
+	private static boolean isRetryable(final int statusCode) {
+		return (statusCode == 429) || (statusCode >= 500);
+	}
+
+	@Override
+	public void onTerminating() {
+		synchronized (this.batchLock) {
+			this.flushBatch();
+		}
+		if (this.lingerTimer != null) {
+			this.lingerTimer.shutdownNow();
+		}
+		if (this.senderPool != null) {
+			this.senderPool.shutdown();
+			try {
+				if (!this.senderPool.awaitTermination(TERMINATION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+					LOG.warn("Timeout while waiting for pending batches; shutting down anyway.");
+					this.senderPool.shutdownNow();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (this.httpClient != null) {
+			try {
+				this.httpClient.close();
+			} catch (final IOException e) {
+				LOG.warn("Error while closing the http client", e);
+			}
+		}
+		if (this.connectionManager != null) {
+			this.connectionManager.shutdown();
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(this.toString());
+		}
+	}
+
+	public long getSentRecords() {
+		return this.sentRecords.get();
+	}
+
+	public long getSentBatches() {
+		return this.sentBatches.get();
+	}
+
+	public long getFailedBatches() {
+		return this.failedBatches.get();
+	}
+
+	public long getDroppedRecords() {
+		return this.droppedRecords.get();
+	}
+
+	public long getRetries() {
+		return this.retries.get();
+	}
+
+	public long getBlockedSubmits() {
+		return this.blockedSubmits.get();
+	}
+
+	@Override
+	public String toString() {
+		return super.toString()
+				+ "\n\tUrl: '" + this.url + "'"
+				+ "\n\tSent records: '" + this.sentRecords.get() + "'"
+				+ "\n\tSent batches: '" + this.sentBatches.get() + "'"
+				+ "\n\tFailed batches: '" + this.failedBatches.get() + "'"
+				+ "\n\tDropped records: '" + this.droppedRecords.get() + "'"
+				+ "\n\tRetries: '" + this.retries.get() + "'"
+				+ "\n\tBlocked submits: '" + this.blockedSubmits.get() + "'";
+	}
+
+	/**
+	 * Sends one batch, retrying with exponential backoff on transport errors and retryable status codes.
+	 */
+	private final class BatchSender implements Runnable {
+
+		private final byte[] payload;
+		private final int numRecords;
+
+		BatchSender(final byte[] payload, final int numRecords) {
+			this.payload = payload;
+			this.numRecords = numRecords;
+		}
+
+		@Override
+		public void run() {
+			try {
+				this.send();
+			} finally {
+				BatchingHttpWriter.this.inFlight.release();
+			}
+		}
+
+		private void send() {
+			final BatchingHttpWriter writer = BatchingHttpWriter.this;
+			final byte[] body;
+			try {
+				body = writer.encode(this.payload);
+			} catch (final IOException e) {
+				this.fail("Could not compress batch: " + e.getMessage());
+				return;
+			}
+
+			long backoff = writer.retryBackoffMs;
+			for (int attempt = 0;; attempt++) {
+				String reason;
+				try {
+					final int statusCode = writer.post(body);
+					if ((statusCode >= 200) && (statusCode < 300)) {
+						writer.sentBatches.incrementAndGet();
+						writer.sentRecords.addAndGet(this.numRecords);
+						return;
+					}
+					if (!BatchingHttpWriter.isRetryable(statusCode)) {
+						this.fail("Server rejected batch with status " + statusCode);
+						return;
+					}
+					reason = "status " + statusCode;
+				} catch (final IOException e) {
+					reason = e.getMessage();
+				}
+
+				if (attempt >= writer.maxRetries) {
+					this.fail("Giving up after " + (attempt + 1) + " attempts: " + reason);
+					return;
+				}
+				writer.retries.incrementAndGet();
+				try {
+					Thread.sleep(backoff);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.fail("Interrupted while waiting for retry");
+					return;
+				}
+				backoff *= 2;
+			}
+		}
+
+		private void fail(final String message) {
+			BatchingHttpWriter.this.failedBatches.incrementAndGet();
+			BatchingHttpWriter.this.countDropped(this.numRecords);
+			LOG.warn("Dropped batch of " + this.numRecords + " records: " + message);
+		}
+	}
+}
@@ -21,23 +21,28 @@ import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
 import kieker.common.configuration.Configuration;
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
 import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.io.TextValueSerializer;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.core.metrics.Timer;
 import kieker.monitoring.registry.IRegistryListener;
 import kieker.monitoring.registry.IWriterRegistry;
 import kieker.monitoring.registry.WriterRegistry;
@@ -58,50 +63,57 @@ import kieker.monitoring.writer.AbstractMonitoringWriter;
 public class httpWriter extends AbstractMonitoringWriter implements IRegistryListener<String> {
 
 	public static final String PREFIX = httpWriter.class.getName() + ".";
+
+	private static final Log LOG = LogFactory.getLog(httpWriter.class);
+	/** the posts and the bytes sent. */
+	private static final Counter SENT_BYTES = AgentMetrics.INSTANCE.counter("writer.bytes");
+	/** the time a post takes. */
+	private static final Timer POST_TIME = AgentMetrics.INSTANCE.timer("writer.flush");
+	/** the records dropped by the writer. */
+	private static final Counter DROPPED_RECORDS = AgentMetrics.INSTANCE.counter("writer.dropped");
 		
-	private String apmServer;
+	private final String apmServer;
 
-	private String appUuid;
+	private final String appUuid;
+
+	private final String url;
+
+	private CloseableHttpClient httpClient;
 
-		
 	public httpWriter(final Configuration configuration) {
 		super(configuration);
-		
+		this.apmServer = configuration.getStringProperty("kieker.monitoring.apmServer");
+		this.appUuid = (System.getProperty("leadwire.agent.name") ==  null) ? "no.agent.name" : System.getProperty("leadwire.agent.name");
+		this.url = "https://" + this.apmServer + "/" + this.appUuid + "/apm";
 	}
 
 	@Override
 	public void onStarting() {
-		// do nothing
+		// one client for the whole writer session, so that connections are kept alive between records
+		this.httpClient = HttpClientBuilder.create().build();
 	}
 
 	@Override
 	public void writeMonitoringRecord(final IMonitoringRecord record)  {
-		
-		apmServer = configuration.getStringProperty("kieker.monitoring.apmServer");
-		appUuid = (System.getProperty("leadwire.agent.name") ==  null) ? "no.agent.name" : System.getProperty("leadwire.agent.name");
-				
-		HttpClient httpClient = HttpClientBuilder.create().build();
-	    HttpPost request;
-		request = new HttpPost("https://"+apmServer+"/"+appUuid+"/apm");
-						
-		StringEntity params =new StringEntity(record.toJson(), ContentType.APPLICATION_FORM_URLENCODED);
+		final HttpPost request = new HttpPost(this.url);
+		final StringEntity params = new StringEntity(record.toJson(), ContentType.APPLICATION_FORM_URLENCODED);
 		request.setEntity(params);
 
-      HttpResponse response = null;
-      
+		final long start = System.nanoTime();
+		try {
+			final CloseableHttpResponse response = this.httpClient.execute(request);
 			try {
-						response = httpClient.execute(request);
-			} catch (ClientProtocolException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-			} catch (IOException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
+				// release the connection for reuse
+				EntityUtils.consume(response.getEntity());
+			} finally {
+				response.close();
 			}
-			
-	       
-
-	
+			POST_TIME.record(System.nanoTime() - start);
+			SENT_BYTES.add(params.getContentLength());
+		} catch (final IOException e) {
+			DROPPED_RECORDS.increment();
+			LOG.warn("Dropped record " + record.getClass().getName() + ", since posting it to " + this.url + " failed: " + e.getMessage());
+		}
 	}
 
 	@Override
@@ -111,7 +123,13 @@ public class httpWriter extends AbstractMonitoringWriter implements IRegistryLis
 
 	@Override
 	public void onTerminating() {
-		
+		if (this.httpClient != null) {
+			try {
+				this.httpClient.close();
+			} catch (final IOException e) {
+				LOG.warn("Error while closing the http client", e);
+			}
+		}
 	}
 
 
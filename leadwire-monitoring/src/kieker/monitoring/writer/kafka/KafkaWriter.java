@@ -118,6 +118,8 @@ public class KafkaWriter implements IRawDataWriter {
 
 	@Override
 	public void writeData(final ByteBuffer buffer, final int offset, final int length) {
+		// The producer only accepts arrays of the exact length, and copies them into its batches within send().
+		// Thus, this is the only copy, and the buffer can be reused as soon as this method returns.
 		buffer.position(offset);
 		final byte[] rawData = new byte[length];
 		buffer.get(rawData);
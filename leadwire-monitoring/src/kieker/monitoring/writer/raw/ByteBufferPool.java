@@ -0,0 +1,100 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.raw;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed number of equally sized heap buffers, which are handed out and returned explicitly. The buffers are
+ * allocated on first use, so a caller which returns its buffer before acquiring the next one only ever allocates a
+ * single buffer. The most recently returned buffer is handed out first, since it is most likely still cached.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class ByteBufferPool {
+
+	private final int bufferSize;
+	/** the returned buffers, used as a stack. */
+	private final ByteBuffer[] available;
+	private int numberOfAvailable;
+	private int numberOfAllocated;
+
+	/**
+	 * @param numberOfBuffers
+	 *            the maximal number of buffers
+	 * @param bufferSize
+	 *            the capacity of each buffer in bytes
+	 */
+	public ByteBufferPool(final int numberOfBuffers, final int bufferSize) {
+		if (numberOfBuffers < 1) {
+			throw new IllegalArgumentException("At least one buffer is required, but got " + numberOfBuffers);
+		}
+		this.bufferSize = bufferSize;
+		this.available = new ByteBuffer[numberOfBuffers];
+	}
+
+	/**
+	 * Hands out a cleared buffer and waits for one to be returned if all buffers are in use.
+	 *
+	 * @return the buffer, to be passed to {@link #release(ByteBuffer)} when it is no longer used
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized ByteBuffer acquire() throws InterruptedException {
+		while (this.numberOfAvailable == 0) {
+			if (this.numberOfAllocated < this.available.length) {
+				this.numberOfAllocated++;
+				return ByteBuffer.allocate(this.bufferSize);
+			}
+			this.wait();
+		}
+		final ByteBuffer buffer = this.available[--this.numberOfAvailable];
+		this.available[this.numberOfAvailable] = null;
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer handed out by {@link #acquire()}. May be called by any thread.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	public synchronized void release(final ByteBuffer buffer) {
+		if (this.numberOfAvailable == this.numberOfAllocated) {
+			throw new IllegalStateException("More buffers released than acquired");
+		}
+		this.available[this.numberOfAvailable++] = buffer;
+		this.notifyAll();
+	}
+
+	/**
+	 * @return the number of buffers currently handed out
+	 */
+	public synchronized int getNumberOfBuffersInUse() {
+		return this.numberOfAllocated - this.numberOfAvailable;
+	}
+
+	/**
+	 * @return the capacity of each buffer in bytes
+	 */
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+}
@@ -0,0 +1,49 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.raw;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A raw data writer which processes the data in the background. Instead of copying the data before
+ * {@link #writeData(ByteBuffer, int, int)} returns, it takes over pooled buffers and returns them to their pool once
+ * it is done with the data, e.g., when it has been sent.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public interface IAsyncRawDataWriter extends IRawDataWriter {
+
+	/**
+	 * Writes the raw data contained in the given pooled buffer. The writer becomes the owner of the buffer and must
+	 * {@link ByteBufferPool#release(ByteBuffer) release} it exactly once, even if the data cannot be written; the
+	 * caller must not touch the buffer afterwards.
+	 *
+	 * @param data
+	 *            The buffer containing the data
+	 * @param offset
+	 *            The offset in the buffer where the data starts
+	 * @param length
+	 *            The length of the data to write
+	 * @param pool
+	 *            The pool to return the buffer to
+	 * @since 1.14
+	 */
+	public void writeData(ByteBuffer data, int offset, int length, ByteBufferPool pool);
+
+}
@@ -46,6 +46,13 @@ public class BinarySerializer extends AbstractContainerFormatSerializer {
 	/** Charset to use for Strings. */
 	private static final Charset CHARSET = Charset.forName(ENCODING_NAME);
 
+	/** The strings of the current chunk; reused for all chunks, since chunks are serialized one at a time. */
+	private final SerializerStringRegistry stringRegistry = new SerializerStringRegistry();
+
+	/** The value serializer for the last buffer, reused as long as the chunks are written into the same buffer. */
+	private DefaultValueSerializer valueSerializer;
+	private ByteBuffer valueSerializerBuffer;
+
 	/**
 	 * Creates a new serializer using the given configuration.
 	 *
@@ -63,7 +70,8 @@ public class BinarySerializer extends AbstractContainerFormatSerializer {
 
 	@Override
 	protected int writeRecords(final Collection<IMonitoringRecord> records, final ByteBuffer buffer) {
-		final SerializerStringRegistry stringRegistry = new SerializerStringRegistry();
+		final SerializerStringRegistry stringRegistry = this.stringRegistry;
+		stringRegistry.clear();
 
 		// Write the record data into the buffer and collect the strings in the
 		// registry
@@ -82,6 +90,12 @@ public class BinarySerializer extends AbstractContainerFormatSerializer {
 	private int encodeRecords(final Collection<IMonitoringRecord> records, final ByteBuffer buffer, final IRegistry<String> stringRegistry) {
 		final int offsetBefore = buffer.position();
 
+		if (this.valueSerializerBuffer != buffer) { // NOPMD (identity of the buffer)
+			this.valueSerializer = DefaultValueSerializer.create(buffer, stringRegistry);
+			this.valueSerializerBuffer = buffer;
+		}
+		final DefaultValueSerializer valueSerializer = this.valueSerializer;
+
 		for (final IMonitoringRecord record : records) {
 			// Since writeBytes does not contain the type name and the logging timestamp,
 			// these two fields must be serialized separately
@@ -91,7 +105,7 @@ public class BinarySerializer extends AbstractContainerFormatSerializer {
 			buffer.putInt(typeNameId);
 			buffer.putLong(record.getLoggingTimestamp());
 
-			record.serialize(DefaultValueSerializer.create(buffer, stringRegistry));
+			record.serialize(valueSerializer);
 		}
 
 		final int offsetAfter = buffer.position();
@@ -25,8 +25,8 @@ import kieker.common.util.registry.IRegistry;
 import kieker.common.util.registry.IRegistryRecordReceiver;
 
 /**
- * Rudimentary string registry for use by the binary format serializer. This registry is meant for
- * per-chunk usage and is <b>not</b> thread-safe. It hands out only sequential IDs, and
+ * Rudimentary string registry for use by the binary format serializer. This registry holds the strings
+ * of a single chunk and is cleared before the next one; it is <b>not</b> thread-safe. It hands out only sequential IDs, and
  * allows to retrieve the data required for serialization easily. All methods not required for
  * serialization are not supported by this implementation.
  *
@@ -64,6 +64,14 @@ class SerializerStringRegistry implements IRegistry<String> {
 		}
 	}
 
+	/**
+	 * Removes all strings, so that the IDs start at 0 again.
+	 */
+	public void clear() {
+		this.valueToIdMap.clear();
+		this.values.clear();
+	}
+
 	/**
 	 * Returns a list of the stored IDs, where the position of each element corresponds to their
 	 * ID.
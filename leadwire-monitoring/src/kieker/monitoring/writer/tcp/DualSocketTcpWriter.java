@@ -17,10 +17,10 @@
 package kieker.monitoring.writer.tcp;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
@@ -29,6 +29,7 @@ import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.io.DefaultValueSerializer;
 import kieker.common.record.io.IValueSerializer;
 import kieker.common.record.misc.RegistryRecord;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.registry.GetIdAdapter;
 import kieker.monitoring.registry.IRegistryListener;
 import kieker.monitoring.registry.WriterRegistry;
@@ -40,7 +41,8 @@ import kieker.monitoring.writer.WriterUtil;
  *
  * @since 1.13
  */
-public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String> {
+@ReceiveUnfilteredConfiguration // required for the settings of the ReconnectingSocketChannel
+public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String>, IConnectionListener {
 
 	/** default size for the monitoring buffer. */
 	private static final int DEFAULT_STRING_REGISTRY_BUFFER_SIZE = 1024;
@@ -67,15 +69,17 @@ public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRe
 	private final boolean flush;
 
 	/** the channel which writes out monitoring records. */
-	private final SocketChannel monitoringRecordChannel;
+	private final ReconnectingSocketChannel monitoringRecordChannel;
 	/** the channel which writes out registry records. */
-	private final SocketChannel registryRecordChannel;
+	private final ReconnectingSocketChannel registryRecordChannel;
 	/** the buffer used for buffering monitoring records. */
 	private final ByteBuffer recordBuffer;
 	/** the buffer used for buffering registry records. */
 	private final ByteBuffer stringRegistryBuffer;
 	/** the serializer to use for the incoming records */
 	private final IValueSerializer serializer;
+	/** the registry whose entries are sent again on each reconnect of the {@link #registryRecordChannel} */
+	private final WriterRegistry writerRegistry;
 
 	public DualSocketTcpWriter(final Configuration configuration) throws IOException {
 		super(configuration);
@@ -96,11 +100,11 @@ public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRe
 		this.recordBuffer = ByteBuffer.allocateDirect(bufferSize);
 		this.stringRegistryBuffer = ByteBuffer.allocateDirect(stringRegistryBufferSize);
 		// buffer size is available by byteBuffer.capacity()
-		this.monitoringRecordChannel = SocketChannel.open(new InetSocketAddress(hostname, monitoringPort));
-		this.registryRecordChannel = SocketChannel.open(new InetSocketAddress(hostname, registryPort));
+		this.monitoringRecordChannel = ReconnectingSocketChannel.open(configuration, hostname, monitoringPort, null);
+		this.registryRecordChannel = ReconnectingSocketChannel.open(configuration, hostname, registryPort, this);
 
-		final WriterRegistry writerRegistry = new WriterRegistry(this);
-		final GetIdAdapter<String> writeBytesAdapter = new GetIdAdapter<>(writerRegistry);
+		this.writerRegistry = new WriterRegistry(this);
+		final GetIdAdapter<String> writeBytesAdapter = new GetIdAdapter<>(this.writerRegistry);
 		this.serializer = DefaultValueSerializer.create(this.recordBuffer, writeBytesAdapter);
 
 		// this.encoder = StandardCharsets.UTF_8.newEncoder();
@@ -118,7 +122,7 @@ public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRe
 		final ByteBuffer buffer = this.recordBuffer;
 		final int requiredBufferSize = 4 + 8 + monitoringRecord.getSize();
 		if (requiredBufferSize > buffer.remaining()) {
-			WriterUtil.flushBuffer(buffer, this.monitoringRecordChannel, LOG);
+			this.flushRecordBuffer();
 		}
 
 		final String recordClassName = monitoringRecord.getClass().getName();
@@ -128,10 +132,20 @@ public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRe
 		monitoringRecord.serialize(this.serializer);
 
 		if (this.flush) {
-			WriterUtil.flushBuffer(buffer, this.monitoringRecordChannel, LOG);
+			this.flushRecordBuffer();
 		}
 	}
 
+	/**
+	 * Flushes the registry entries collected so far before the records which may refer to them.
+	 */
+	private void flushRecordBuffer() {
+		if (this.stringRegistryBuffer.position() > 0) {
+			WriterUtil.flushBuffer(this.stringRegistryBuffer, this.registryRecordChannel, LOG);
+		}
+		WriterUtil.flushBuffer(this.recordBuffer, this.monitoringRecordChannel, LOG);
+	}
+
 	@Override
 	public void onNewRegistryEntry(final String value, final int id) {
 		final ByteBuffer buffer = this.stringRegistryBuffer;
@@ -144,21 +158,41 @@ public class DualSocketTcpWriter extends AbstractMonitoringWriter implements IRe
 			// stringRegistryBuffer = ByteBuffer.allocateDirect(RegistryRecord.SIZE + bytes.length);
 			throw new IllegalStateException("Insufficient capacity for string registry buffer");
 		}
+		if (buffer.remaining() < requiredBufferSize) {
+			WriterUtil.flushBuffer(buffer, this.registryRecordChannel, LOG);
+		}
 
 		// loggingTimestamp not transmitted by dual socket communication
 		// class id not used by dual socket communication
 		buffer.putInt(id);
 		buffer.putInt(value.length());
 		buffer.put(bytes);
+		// collected until the record buffer is flushed, which flushes this buffer first
+	}
 
-		// always flush so that the stringRegistryBuffer is transmitted before the record buffer
-		WriterUtil.flushBuffer(buffer, this.registryRecordChannel, LOG);
+	/**
+	 * Sends all registry entries again, since the receiver of the new connection does not know them.
+	 */
+	@Override
+	public void onConnected(final WritableByteChannel connection) throws IOException {
+		final List<String> values = this.writerRegistry.getValues();
+		for (int id = 0; id < values.size(); id++) {
+			final String value = values.get(id);
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer buffer = ByteBuffer.allocate(RegistryRecord.SIZE + bytes.length);
+			buffer.putInt(id);
+			buffer.putInt(value.length());
+			buffer.put(bytes);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				connection.write(buffer);
+			}
+		}
 	}
 
 	@Override
 	public void onTerminating() {
-		WriterUtil.flushBuffer(this.stringRegistryBuffer, this.registryRecordChannel, LOG);
-		WriterUtil.flushBuffer(this.recordBuffer, this.monitoringRecordChannel, LOG);
+		this.flushRecordBuffer();
 
 		WriterUtil.close(this.registryRecordChannel, LOG);
 		WriterUtil.close(this.monitoringRecordChannel, LOG);
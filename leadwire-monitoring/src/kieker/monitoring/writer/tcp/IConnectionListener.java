@@ -0,0 +1,42 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.tcp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Is notified by a {@link ReconnectingSocketChannel} each time it has (re)connected.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public interface IConnectionListener {
+
+	/**
+	 * Is called before any spilled or new data is sent over the connection, e.g., to send the data the receiver needs to
+	 * interpret the following data (such as the string registry) again. The data is buffered and sent ahead of all
+	 * other data without blocking, so each write to the given channel consumes all bytes.
+	 *
+	 * @param connection
+	 *            the channel buffering the data for the new connection
+	 * @throws IOException
+	 *             if the data cannot be written; the connection is then closed and retried later
+	 */
+	void onConnected(WritableByteChannel connection) throws IOException;
+}
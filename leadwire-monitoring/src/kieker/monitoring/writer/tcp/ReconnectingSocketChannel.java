@@ -0,0 +1,431 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.tcp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+import kieker.monitoring.writer.WriterUtil;
+
+/**
+ * A TCP connection which never blocks the writer thread on a slow or unavailable receiver. Each buffer passed to
+ * {@link #write(ByteBuffer)} (and each array of buffers passed to {@link #write(ByteBuffer[])}) is treated as a chunk of
+ * complete records: it is sent without blocking if possible, and is
+ * otherwise kept in a {@link SpillBuffer} and sent once the receiver accepts data again. Lost connections are
+ * re-established with an exponential backoff; the chunks kept in the meantime are replayed in order. A chunk which was
+ * partially sent over a lost connection is sent completely again, so that records may be received twice, but never
+ * truncated. If the spill buffer is full, the chunk is dropped and the connection is re-established, so that the
+ * receiver gets the data of the {@link IConnectionListener} (e.g., the string registry) again.
+ *
+ * <p>
+ * Connecting does not block either: a write starts a non-blocking connect, and the following writes (or
+ * {@link #close()}) complete it, or give up after the connect timeout. The chunks are kept in the meantime.
+ *
+ * <p>
+ * The {@link IConnectionListener} is notified on each (re)connect, so that the writer can send the data the receiver
+ * needs to decode the records again. That data is buffered and sent ahead of the kept chunks, again without blocking.
+ * This class is not thread-safe; it is used by the writer thread only (or by the compressor thread of a
+ * {@link kieker.monitoring.writer.compression.CompressingByteChannel} in front of it).
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class ReconnectingSocketChannel implements GatheringByteChannel {
+
+	private static final Log LOG = LogFactory.getLog(ReconnectingSocketChannel.class);
+	/** the connections established after the first one. */
+	private static final Counter RECONNECTS = AgentMetrics.INSTANCE.counter("writer.reconnects");
+
+	private static final String PREFIX = ReconnectingSocketChannel.class.getName() + ".";
+
+	/** The name of the configuration property for the connect timeout in milliseconds. */
+	public static final String CONFIG_CONNECT_TIMEOUT = PREFIX + "connectTimeout";
+	/** The name of the configuration property for the first delay in milliseconds before reconnecting. */
+	public static final String CONFIG_MIN_RECONNECT_BACKOFF = PREFIX + "minReconnectBackoff";
+	/** The name of the configuration property for the maximal delay in milliseconds before reconnecting. */
+	public static final String CONFIG_MAX_RECONNECT_BACKOFF = PREFIX + "maxReconnectBackoff";
+	/** The name of the configuration property for the bytes of unsent chunks kept in memory. */
+	public static final String CONFIG_SPILL_MEMORY_SIZE = PREFIX + "spillMemorySize";
+	/** The name of the configuration property for the bytes of unsent chunks kept in a file (0 disables the file). */
+	public static final String CONFIG_SPILL_FILE_SIZE = PREFIX + "spillFileSize";
+	/** The name of the configuration property for the directory of the spill file (empty for the temporary directory). */
+	public static final String CONFIG_SPILL_DIRECTORY = PREFIX + "spillDirectory";
+	/** The name of the configuration property for the time in milliseconds to send unsent chunks on termination. */
+	public static final String CONFIG_DRAIN_TIMEOUT = PREFIX + "drainTimeout";
+
+	private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+	private static final long DEFAULT_MIN_RECONNECT_BACKOFF = 100;
+	private static final long DEFAULT_MAX_RECONNECT_BACKOFF = 30000;
+	private static final int DEFAULT_SPILL_MEMORY_SIZE = 4 * 1024 * 1024;
+	private static final int DEFAULT_SPILL_FILE_SIZE = 64 * 1024 * 1024;
+	private static final long DEFAULT_DRAIN_TIMEOUT = 5000;
+	/** the pause between two attempts to send the unsent chunks on termination. */
+	private static final long DRAIN_PAUSE = 10;
+	/** a dropped chunk is logged once per this number of dropped chunks. */
+	private static final int DROP_LOG_INTERVAL = 1024;
+
+	private final InetSocketAddress address;
+	private final int connectTimeout;
+	private final long minReconnectBackoff;
+	private final long maxReconnectBackoff;
+	private final long drainTimeout;
+	private final IConnectionListener listener;
+	private final SpillBuffer spill;
+	/** the data written by the listener for the current connection; sent before the unsent chunks. */
+	private final HandshakeBuffer handshake = new HandshakeBuffer();
+
+	/** null while disconnected. */
+	private SocketChannel socket;
+	/** the connection being established, or null. */
+	private SocketChannel connecting;
+	private long connectDeadline;
+	private long nextConnectTime;
+	private long reconnectBackoff;
+	private boolean connectedBefore;
+	private long droppedChunks;
+	private boolean open = true;
+
+	/**
+	 * @param address
+	 *            the address of the receiver
+	 * @param connectTimeout
+	 *            the time in milliseconds a connect may take; checked by each write while connecting
+	 * @param minReconnectBackoff
+	 *            the first delay in milliseconds before reconnecting; doubled on each failed attempt
+	 * @param maxReconnectBackoff
+	 *            the maximal delay in milliseconds before reconnecting
+	 * @param drainTimeout
+	 *            the time in milliseconds to send the unsent chunks on {@link #close()}
+	 * @param spill
+	 *            the buffer for the unsent chunks
+	 * @param listener
+	 *            the listener notified on each (re)connect, or <code>null</code>
+	 */
+	public ReconnectingSocketChannel(final InetSocketAddress address, final int connectTimeout, final long minReconnectBackoff,
+			final long maxReconnectBackoff, final long drainTimeout, final SpillBuffer spill, final IConnectionListener listener) {
+		this.address = address;
+		this.connectTimeout = connectTimeout;
+		this.minReconnectBackoff = minReconnectBackoff;
+		this.maxReconnectBackoff = maxReconnectBackoff;
+		this.drainTimeout = drainTimeout;
+		this.spill = spill;
+		this.listener = listener;
+		this.reconnectBackoff = minReconnectBackoff;
+	}
+
+	/**
+	 * Creates a channel configured by the {@link ReconnectingSocketChannel} properties of the given configuration. The
+	 * connection is established lazily by the first write.
+	 *
+	 * @param configuration
+	 *            the configuration of the writer
+	 * @param hostname
+	 *            the host of the receiver
+	 * @param port
+	 *            the port of the receiver
+	 * @param listener
+	 *            the listener notified on each (re)connect, or <code>null</code>
+	 * @return the new channel
+	 */
+	public static ReconnectingSocketChannel open(final Configuration configuration, final String hostname, final int port,
+			final IConnectionListener listener) {
+		final String spillDirectory = configuration.getStringProperty(CONFIG_SPILL_DIRECTORY, "");
+		final SpillBuffer spill = new SpillBuffer(configuration.getIntProperty(CONFIG_SPILL_MEMORY_SIZE, DEFAULT_SPILL_MEMORY_SIZE),
+				configuration.getIntProperty(CONFIG_SPILL_FILE_SIZE, DEFAULT_SPILL_FILE_SIZE),
+				spillDirectory.isEmpty() ? null : new File(spillDirectory)); // NOCS (inline conditional)
+		return new ReconnectingSocketChannel(new InetSocketAddress(hostname, port),
+				configuration.getIntProperty(CONFIG_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT),
+				configuration.getLongProperty(CONFIG_MIN_RECONNECT_BACKOFF, DEFAULT_MIN_RECONNECT_BACKOFF),
+				configuration.getLongProperty(CONFIG_MAX_RECONNECT_BACKOFF, DEFAULT_MAX_RECONNECT_BACKOFF),
+				configuration.getLongProperty(CONFIG_DRAIN_TIMEOUT, DEFAULT_DRAIN_TIMEOUT),
+				spill, listener);
+	}
+
+	/**
+	 * Sends or keeps the remaining bytes of the given buffer as one chunk. Never blocks on the receiver and never fails
+	 * because of the connection; the bytes are always consumed.
+	 *
+	 * @return the number of bytes consumed
+	 * @throws ClosedChannelException
+	 *             if this channel has been closed
+	 */
+	@Override
+	public int write(final ByteBuffer src) throws ClosedChannelException {
+		return (int) this.write(new ByteBuffer[] { src }, 0, 1);
+	}
+
+	/**
+	 * Sends or keeps the remaining bytes of the given buffers as one chunk with a single gathering write.
+	 *
+	 * @see #write(ByteBuffer)
+	 */
+	@Override
+	public long write(final ByteBuffer[] srcs) throws ClosedChannelException {
+		return this.write(srcs, 0, srcs.length);
+	}
+
+	/**
+	 * Sends or keeps the remaining bytes of the given buffers as one chunk with a single gathering write.
+	 *
+	 * @see #write(ByteBuffer)
+	 */
+	@Override
+	public long write(final ByteBuffer[] srcs, final int offset, final int length) throws ClosedChannelException {
+		if (!this.open) {
+			throw new ClosedChannelException();
+		}
+		final int[] starts = new int[length];
+		long chunkLength = 0;
+		for (int i = 0; i < length; i++) {
+			starts[i] = srcs[offset + i].position();
+			chunkLength += srcs[offset + i].remaining();
+		}
+		if (chunkLength == 0) {
+			return 0;
+		}
+		if (!this.ensureConnected()) {
+			this.spill(srcs, offset, length, 0);
+			return chunkLength;
+		}
+		try {
+			if (this.drain()) {
+				final long written = this.socket.write(srcs, offset, length);
+				if (written < chunkLength) {
+					rewind(srcs, offset, starts);
+					this.spill(srcs, offset, length, (int) written);
+				}
+			} else {
+				this.spill(srcs, offset, length, 0);
+			}
+		} catch (final IOException e) {
+			LOG.warn("Lost the connection to " + this.address + ": " + e.getMessage());
+			this.disconnect();
+			rewind(srcs, offset, starts);
+			this.spill(srcs, offset, length, 0);
+		}
+		return chunkLength;
+	}
+
+	private static void rewind(final ByteBuffer[] srcs, final int offset, final int[] starts) {
+		for (int i = 0; i < starts.length; i++) {
+			srcs[offset + i].position(starts[i]);
+		}
+	}
+
+	private void spill(final ByteBuffer[] chunk, final int offset, final int length, final int alreadyWritten) {
+		if (!this.spill.append(chunk, offset, length, alreadyWritten)) {
+			if ((this.droppedChunks++ % DROP_LOG_INTERVAL) == 0) {
+				LOG.warn("Dropped unsent data for " + this.address + ", since the spill buffer is full (dropped chunks: "
+						+ this.droppedChunks + ")");
+			}
+			if (this.socket != null) {
+				// the receiver may have got a truncated chunk, and the dropped chunk may hold registry entries later records
+				// refer to; so the receiver must start over with a new connection, which replays the registry
+				this.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Sends the handshake and the unsent chunks as far as possible without blocking.
+	 *
+	 * @return whether all of them have been sent
+	 */
+	private boolean drain() throws IOException {
+		final ByteBuffer handshakeData = this.handshake.buffer;
+		if (handshakeData.hasRemaining()) {
+			this.socket.write(handshakeData);
+			if (handshakeData.hasRemaining()) {
+				return false;
+			}
+		}
+		return this.spill.drainTo(this.socket);
+	}
+
+	/**
+	 * Starts connecting if the backoff has expired, and completes a connect started before. Never blocks.
+	 *
+	 * @return whether the channel is connected
+	 */
+	private boolean ensureConnected() {
+		if (this.socket != null) {
+			return true;
+		}
+		final long now = System.currentTimeMillis();
+		try {
+			if (this.connecting == null) {
+				if (now < this.nextConnectTime) {
+					return false;
+				}
+				this.connecting = SocketChannel.open();
+				this.connecting.configureBlocking(false);
+				this.connectDeadline = now + this.connectTimeout;
+				if (this.connecting.connect(this.address)) {
+					return this.onConnected();
+				}
+			} else if (this.connecting.finishConnect()) {
+				return this.onConnected();
+			} else if (now >= this.connectDeadline) {
+				this.connectFailed(now, "timed out after " + this.connectTimeout + " ms");
+			}
+		} catch (final IOException e) {
+			this.connectFailed(now, e.getMessage());
+		}
+		return false;
+	}
+
+	private void connectFailed(final long now, final String reason) {
+		if (this.connecting != null) {
+			WriterUtil.close(this.connecting, LOG);
+			this.connecting = null;
+		}
+		LOG.warn("Cannot connect to " + this.address + ": " + reason + " (retrying in " + this.reconnectBackoff + " ms)");
+		this.nextConnectTime = now + this.reconnectBackoff;
+		this.reconnectBackoff = Math.min(this.reconnectBackoff * 2, this.maxReconnectBackoff);
+	}
+
+	private boolean onConnected() throws IOException {
+		this.handshake.buffer.clear();
+		if (this.listener != null) {
+			this.listener.onConnected(this.handshake);
+		}
+		this.handshake.buffer.flip();
+		this.socket = this.connecting;
+		this.connecting = null;
+		this.reconnectBackoff = this.minReconnectBackoff;
+		if (this.connectedBefore) {
+			RECONNECTS.increment();
+		}
+		this.connectedBefore = true;
+		LOG.info("Connected to " + this.address + " (unsent bytes: " + this.spill.size() + ")");
+		return true;
+	}
+
+	private void disconnect() {
+		if (this.socket != null) {
+			WriterUtil.close(this.socket, LOG);
+			this.socket = null;
+		}
+		this.spill.rewind();
+	}
+
+	/**
+	 * @return whether this channel is connected to the receiver
+	 */
+	public boolean isConnected() {
+		return this.socket != null;
+	}
+
+	/**
+	 * @return the number of bytes not sent yet
+	 */
+	public long getUnsentBytes() {
+		return this.spill.size();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.open;
+	}
+
+	/**
+	 * Tries to send the unsent chunks for at most the drain timeout, then closes the connection and drops the chunks
+	 * still unsent.
+	 */
+	@Override
+	public void close() {
+		if (!this.open) {
+			return;
+		}
+		this.open = false;
+		final long deadline = System.currentTimeMillis() + this.drainTimeout;
+		while (!this.spill.isEmpty() && (System.currentTimeMillis() < deadline)) {
+			if (this.ensureConnected()) {
+				try {
+					if (this.drain()) {
+						break;
+					}
+				} catch (final IOException e) {
+					LOG.warn("Lost the connection to " + this.address + ": " + e.getMessage());
+					this.disconnect();
+				}
+			}
+			try {
+				Thread.sleep(DRAIN_PAUSE);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (!this.spill.isEmpty()) {
+			LOG.warn("Dropping " + this.spill.size() + " bytes not sent to " + this.address);
+		}
+		this.disconnect();
+		if (this.connecting != null) {
+			WriterUtil.close(this.connecting, LOG);
+			this.connecting = null;
+		}
+		this.spill.close();
+	}
+
+	/**
+	 * Collects the data written by the {@link IConnectionListener}; grows as needed.
+	 */
+	private static final class HandshakeBuffer implements WritableByteChannel {
+		/** the data to send, ready for reading except while the listener writes. */
+		ByteBuffer buffer = ByteBuffer.allocate(0); // NOCS (package visible)
+
+		HandshakeBuffer() {
+			// only created by the outer class
+		}
+
+		@Override
+		public int write(final ByteBuffer src) {
+			final int length = src.remaining();
+			if (this.buffer.remaining() < length) {
+				final ByteBuffer grown = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + length));
+				this.buffer.flip();
+				grown.put(this.buffer);
+				this.buffer = grown;
+			}
+			this.buffer.put(src);
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// nothing to release
+		}
+	}
+}
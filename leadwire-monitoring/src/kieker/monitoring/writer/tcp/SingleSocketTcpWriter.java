@@ -17,11 +17,11 @@
 package kieker.monitoring.writer.tcp;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
@@ -31,18 +31,24 @@ import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.io.DefaultValueSerializer;
 import kieker.common.record.io.IValueSerializer;
 import kieker.common.record.misc.RegistryRecord;
+import kieker.monitoring.core.controller.ControllerFactory;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.registry.GetIdAdapter;
 import kieker.monitoring.registry.IRegistryListener;
 import kieker.monitoring.registry.WriterRegistry;
 import kieker.monitoring.writer.AbstractMonitoringWriter;
 import kieker.monitoring.writer.WriterUtil;
+import kieker.monitoring.writer.compression.BlockFrames;
+import kieker.monitoring.writer.compression.CompressingByteChannel;
+import kieker.monitoring.writer.compression.IBlockCodec;
 
 /**
  * @author Christian Wulf
  *
  * @since 1.13
  */
-public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String> {
+@ReceiveUnfilteredConfiguration // required for the settings of the ReconnectingSocketChannel
+public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements IRegistryListener<String>, IConnectionListener {
 
 	/** the logger for this class. */
 	private static final Log LOG = LogFactory.getLog(SingleSocketTcpWriter.class);
@@ -61,19 +67,39 @@ public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements I
 	/** configuration key for {@link #flush}. */
 	public static final String CONFIG_FLUSH = PREFIX + "flush"; // NOCS
 																// (afterPREFIX)
+	/** configuration key for {@link #flushOnEndOfBatch}. */
+	public static final String CONFIG_FLUSH_ON_END_OF_BATCH = PREFIX + "flushOnEndOfBatch"; // NOCS
+																							// (afterPREFIX)
+	/** configuration key for the class name of the {@link IBlockCodec} compressing the sent buffers; empty for none. */
+	public static final String CONFIG_CODEC = PREFIX + "codec"; // NOCS (afterPREFIX)
 
 	/** the channel which writes out monitoring and registry records. */
-	private final WritableByteChannel socketChannel;
+	private final ReconnectingSocketChannel socketChannel;
+	/** the channel the buffers are flushed to: the {@link #socketChannel}, or a compressing channel in front of it. */
+	private final GatheringByteChannel channel;
+	/**
+	 * the codec compressing the registry entries sent on each reconnect, or <code>null</code> if the buffers are sent
+	 * uncompressed.
+	 */
+	private final IBlockCodec handshakeCodec;
 	/** the buffer used for buffering monitoring records. */
 	private final ByteBuffer buffer;
 	/** the buffer used for buffering registry records. */
 	private final ByteBuffer registryBuffer;
+	/** the {@link #registryBuffer} followed by the {@link #buffer}, for gathering writes. */
+	private final ByteBuffer[] buffers;
 	/**
 	 * <code>true</code> if the {@link #buffer} should be flushed upon each new incoming monitoring record.
 	 */
 	private final boolean flush;
+	/**
+	 * <code>true</code> if the {@link #buffer} should be flushed once per batch of records taken by the writer thread.
+	 */
+	private final boolean flushOnEndOfBatch;
 	/** the serializer to use for the incoming records */
 	private final IValueSerializer serializer;
+	/** the registry whose entries are sent again on each reconnect */
+	private final WriterRegistry writerRegistry;
 
 	// remove RegisterAdapter
 
@@ -81,16 +107,37 @@ public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements I
 		super(configuration);
 		final String hostname = configuration.getStringProperty(CONFIG_HOSTNAME);
 		final int port = configuration.getIntProperty(CONFIG_PORT);
-		// buffer size is available by byteBuffer.capacity()
-		this.socketChannel = SocketChannel.open(new InetSocketAddress(hostname, port));
 		// TODO should we check for buffers too small for a single record?
 		final int bufferSize = this.configuration.getIntProperty(CONFIG_BUFFERSIZE);
 		this.buffer = ByteBuffer.allocateDirect(bufferSize);
 		this.registryBuffer = ByteBuffer.allocateDirect(bufferSize);
+		this.buffers = new ByteBuffer[] { this.registryBuffer, this.buffer };
 		this.flush = configuration.getBooleanProperty(CONFIG_FLUSH);
+		this.flushOnEndOfBatch = configuration.getBooleanProperty(CONFIG_FLUSH_ON_END_OF_BATCH);
 
-		final WriterRegistry writerRegistry = new WriterRegistry(this);
-		this.serializer = DefaultValueSerializer.create(this.buffer, new GetIdAdapter<>(writerRegistry));
+		this.writerRegistry = new WriterRegistry(this);
+		this.serializer = DefaultValueSerializer.create(this.buffer, new GetIdAdapter<>(this.writerRegistry));
+		// buffer size is available by byteBuffer.capacity()
+		this.socketChannel = ReconnectingSocketChannel.open(configuration, hostname, port, this);
+
+		final String codecName = configuration.getStringProperty(CONFIG_CODEC);
+		if (codecName.isEmpty()) {
+			this.handshakeCodec = null;
+			this.channel = this.socketChannel;
+		} else {
+			// the handshake is compressed by the compressor thread, too, but not with the same (stateful) codec
+			this.handshakeCodec = createCodec(configuration, codecName);
+			this.channel = new CompressingByteChannel(this.socketChannel, createCodec(configuration, codecName),
+					CompressingByteChannel.DEFAULT_QUEUE_SIZE);
+		}
+	}
+
+	private static IBlockCodec createCodec(final Configuration configuration, final String codecName) {
+		final IBlockCodec codec = ControllerFactory.getInstance(configuration).createAndInitialize(IBlockCodec.class, codecName, configuration);
+		if (codec == null) {
+			throw new IllegalArgumentException("Cannot create the codec '" + codecName + "'");
+		}
+		return codec;
 	}
 
 	@Override
@@ -100,13 +147,27 @@ public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements I
 
 	@Override
 	public void writeMonitoringRecord(final IMonitoringRecord monitoringRecord) {
-		final ByteBuffer recordBuffer = this.buffer;
-		if ((4 + 8 + monitoringRecord.getSize()) > recordBuffer.remaining()) {
-			// Always flush the registryBuffer before flushing the recordBuffer.
-			// Otherwise the monitoring records could arrive before their string
-			// records
-			WriterUtil.flushBuffer(this.registryBuffer, this.socketChannel, LOG);
-			WriterUtil.flushBuffer(recordBuffer, this.socketChannel, LOG);
+		this.serializeRecord(monitoringRecord);
+
+		if (this.flush) {
+			this.flushBuffers();
+		}
+	}
+
+	@Override
+	public void writeMonitoringRecords(final IMonitoringRecord[] monitoringRecords, final int count) {
+		for (int i = 0; i < count; i++) {
+			this.serializeRecord(monitoringRecords[i]);
+		}
+
+		if (this.flush || this.flushOnEndOfBatch) {
+			this.flushBuffers();
+		}
+	}
+
+	private void serializeRecord(final IMonitoringRecord monitoringRecord) {
+		if ((4 + 8 + monitoringRecord.getSize()) > this.buffer.remaining()) {
+			this.flushBuffers();
 		}
 
 		final String recordClassName = monitoringRecord.getClass().getName();
@@ -114,14 +175,13 @@ public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements I
 		this.serializer.putString(recordClassName);
 		this.serializer.putLong(monitoringRecord.getLoggingTimestamp());
 		monitoringRecord.serialize(this.serializer);
+	}
 
-		if (this.flush) {
-			// Always flush the registryBuffer before flushing the recordBuffer.
-			// Otherwise the monitoring records could arrive before their string
-			// records
-			WriterUtil.flushBuffer(this.registryBuffer, this.socketChannel, LOG);
-			WriterUtil.flushBuffer(recordBuffer, this.socketChannel, LOG);
-		}
+	private void flushBuffers() {
+		// Always flush the registryBuffer before flushing the recordBuffer.
+		// Otherwise the monitoring records could arrive before their string
+		// records. A single gathering write sends both in this order.
+		WriterUtil.flushBuffers(this.buffers, this.channel, LOG);
 	}
 
 	@Override
@@ -129,27 +189,61 @@ public class SingleSocketTcpWriter extends AbstractMonitoringWriter implements I
 		final ByteBuffer localRegistryBuffer = this.registryBuffer;
 
 		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-		// logging timestamp + class id + RegistryRecord.SIZE + bytes.length
-		final int requiredBufferSize = (2 * AbstractMonitoringRecord.TYPE_SIZE_INT) + RegistryRecord.SIZE
-				+ bytes.length;
 
-		if (localRegistryBuffer.remaining() < requiredBufferSize) {
-			WriterUtil.flushBuffer(localRegistryBuffer, this.socketChannel, LOG);
+		if (localRegistryBuffer.remaining() < requiredBufferSize(bytes)) {
+			WriterUtil.flushBuffer(localRegistryBuffer, this.channel, LOG);
+		}
+
+		putRegistryEntry(localRegistryBuffer, value, bytes, id);
+	}
+
+	/**
+	 * Sends all registry entries again, since the receiver of the new connection does not know them. If the buffers are
+	 * compressed, this is called by the compressor thread, and the entries are sent in a frame, too.
+	 */
+	@Override
+	public void onConnected(final WritableByteChannel connection) throws IOException {
+		final List<String> values = this.writerRegistry.getValues();
+		final byte[][] bytes = new byte[values.size()][];
+		int size = 0;
+		for (int id = 0; id < bytes.length; id++) {
+			bytes[id] = values.get(id).getBytes(StandardCharsets.UTF_8);
+			size += requiredBufferSize(bytes[id]);
+		}
+		if (size == 0) {
+			return;
+		}
+		ByteBuffer entries = ByteBuffer.allocate(size);
+		for (int id = 0; id < bytes.length; id++) {
+			putRegistryEntry(entries, values.get(id), bytes[id], id);
 		}
+		entries.flip();
+		if (this.handshakeCodec != null) {
+			final byte[] frame = new byte[BlockFrames.maxFrameLength(size)];
+			final int frameLength = BlockFrames.encode(entries.array(), 0, size, this.handshakeCodec, frame);
+			entries = ByteBuffer.wrap(frame, 0, frameLength);
+		}
+		while (entries.hasRemaining()) {
+			connection.write(entries);
+		}
+	}
 
-		localRegistryBuffer.putInt(RegistryRecord.CLASS_ID);
-		localRegistryBuffer.putInt(id);
-		localRegistryBuffer.putInt(value.length());
-		localRegistryBuffer.put(bytes);
+	private static int requiredBufferSize(final byte[] bytes) {
+		// logging timestamp + class id + RegistryRecord.SIZE + bytes.length
+		return (2 * AbstractMonitoringRecord.TYPE_SIZE_INT) + RegistryRecord.SIZE + bytes.length;
+	}
+
+	private static void putRegistryEntry(final ByteBuffer buffer, final String value, final byte[] bytes, final int id) {
+		buffer.putInt(RegistryRecord.CLASS_ID);
+		buffer.putInt(id);
+		buffer.putInt(value.length());
+		buffer.put(bytes);
 	}
 
 	@Override
 	public void onTerminating() {
-		// Always flush the registryBuffer before flushing the recordBuffer.
-		// Otherwise the monitoring records could arrive before their string
-		// records
-		WriterUtil.flushBuffer(this.registryBuffer, this.socketChannel, LOG);
-		WriterUtil.flushBuffer(this.buffer, this.socketChannel, LOG);
-		WriterUtil.close(this.socketChannel, LOG);
+		this.flushBuffers();
+		// also closes the socket channel
+		WriterUtil.close(this.channel, LOG);
 	}
 }
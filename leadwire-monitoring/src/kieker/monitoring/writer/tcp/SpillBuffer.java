@@ -0,0 +1,306 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.tcp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import kieker.common.logging.Log;
+import kieker.common.logging.LogFactory;
+import kieker.monitoring.core.metrics.AgentMetrics;
+import kieker.monitoring.core.metrics.Counter;
+
+/**
+ * A bounded FIFO of the chunks a {@link ReconnectingSocketChannel} could not send. Chunks are kept in memory first and,
+ * once the memory is full, in a memory-mapped file, which is created on first use and deleted on {@link #close()}. A
+ * chunk is kept or dropped as a whole, so that the receiver never sees a partial record.
+ *
+ * <p>
+ * Chunks are stored with a length prefix. While the file holds chunks, new chunks are appended to the file even if the
+ * memory has room again, so that the chunks are replayed in the order they were appended. This class is not
+ * thread-safe; it is used by the writer thread only.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public final class SpillBuffer implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(SpillBuffer.class);
+	/** the chunks and bytes kept for a later connection. */
+	private static final Counter SPILLED_BYTES = AgentMetrics.INSTANCE.counter("writer.spilledBytes");
+	/** the chunks and bytes dropped, because the buffer was full. */
+	private static final Counter DROPPED_BYTES = AgentMetrics.INSTANCE.counter("writer.droppedBytes");
+	/** the length prefix of a chunk. */
+	private static final int HEADER_SIZE = 4;
+
+	private final Region memory;
+	private final int fileSize;
+	private final File directory;
+
+	/** null until the memory overflows for the first time. */
+	private Region file;
+	private File spillFile;
+	private boolean fileFailed;
+	/** the bytes of the head chunk already written to the current connection. */
+	private int headProgress;
+
+	/**
+	 * @param memorySize
+	 *            the number of bytes kept in memory
+	 * @param fileSize
+	 *            the number of bytes kept in the file, 0 to keep chunks in memory only
+	 * @param directory
+	 *            the directory of the file, <code>null</code> for the default temporary-file directory
+	 */
+	public SpillBuffer(final int memorySize, final int fileSize, final File directory) {
+		this.memory = new Region(ByteBuffer.allocate(memorySize));
+		this.fileSize = fileSize;
+		this.directory = directory;
+	}
+
+	/**
+	 * Appends the remaining bytes of the given chunk and consumes them.
+	 *
+	 * @param chunk
+	 *            the chunk to append
+	 * @param alreadyWritten
+	 *            the number of leading bytes of the chunk already written to the current connection; must be 0 unless the
+	 *            buffer is empty
+	 * @return false if the chunk has been dropped, because it does not fit
+	 */
+	public boolean append(final ByteBuffer chunk, final int alreadyWritten) {
+		return this.append(new ByteBuffer[] { chunk }, 0, 1, alreadyWritten);
+	}
+
+	/**
+	 * Appends the remaining bytes of the given buffers as a single chunk and consumes them.
+	 *
+	 * @param chunk
+	 *            the buffers of the chunk to append
+	 * @param offset
+	 *            the index of the first buffer
+	 * @param length
+	 *            the number of buffers
+	 * @param alreadyWritten
+	 *            the number of leading bytes of the chunk already written to the current connection; must be 0 unless the
+	 *            buffer is empty
+	 * @return false if the chunk has been dropped, because it does not fit
+	 */
+	public boolean append(final ByteBuffer[] chunk, final int offset, final int length, final int alreadyWritten) {
+		long chunkLength = 0;
+		for (int i = offset; i < (offset + length); i++) {
+			chunkLength += chunk[i].remaining();
+		}
+		final long required = HEADER_SIZE + chunkLength;
+		final Region region;
+		if (!this.isFileInUse() && this.memory.fits(required)) {
+			region = this.memory;
+		} else if (this.openFile() && this.file.fits(required)) {
+			region = this.file;
+		} else {
+			DROPPED_BYTES.add(chunkLength);
+			for (int i = offset; i < (offset + length); i++) {
+				chunk[i].position(chunk[i].limit());
+			}
+			return false;
+		}
+		if (alreadyWritten > 0) {
+			if (!this.isEmpty()) {
+				throw new IllegalStateException("Only the head chunk can be partially written");
+			}
+			this.headProgress = alreadyWritten;
+		}
+		SPILLED_BYTES.add(chunkLength);
+		region.put(chunk, offset, length, (int) chunkLength);
+		return true;
+	}
+
+	/**
+	 * Writes the chunks in the order they were appended until the channel does not accept any more bytes.
+	 *
+	 * @param channel
+	 *            the (non-blocking) channel to write to
+	 * @return true if all chunks have been written
+	 * @throws IOException
+	 *             if the channel fails; the chunk being written stays the head chunk
+	 */
+	public boolean drainTo(final WritableByteChannel channel) throws IOException {
+		Region region = this.head();
+		while (region != null) {
+			final int length = region.headLength();
+			this.headProgress += channel.write(region.headContent(this.headProgress));
+			if (this.headProgress < length) {
+				return false;
+			}
+			region.removeHead();
+			this.headProgress = 0;
+			region = this.head();
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the head chunk be written completely again, e.g., after the connection it was partially written to has been
+	 * lost.
+	 */
+	public void rewind() {
+		this.headProgress = 0;
+	}
+
+	/**
+	 * @return whether the buffer holds no chunk
+	 */
+	public boolean isEmpty() {
+		return this.head() == null;
+	}
+
+	/**
+	 * @return the number of bytes held, including the length prefixes
+	 */
+	public long size() {
+		final long fileBytes = (this.file != null) ? this.file.size() : 0L; // NOCS (inline conditional)
+		return this.memory.size() + fileBytes;
+	}
+
+	/**
+	 * Drops all chunks and deletes the file.
+	 */
+	@Override
+	public void close() {
+		final long dropped = this.size();
+		if (dropped > 0) {
+			DROPPED_BYTES.add(dropped);
+		}
+		this.memory.clear();
+		this.headProgress = 0;
+		if (this.file != null) {
+			this.file = null;
+			if (!this.spillFile.delete()) {
+				LOG.warn("Cannot delete the spill file " + this.spillFile);
+			}
+		}
+	}
+
+	private Region head() {
+		if (!this.memory.isEmpty()) {
+			return this.memory;
+		}
+		return this.isFileInUse() ? this.file : null; // NOCS (inline conditional)
+	}
+
+	private boolean isFileInUse() {
+		return (this.file != null) && !this.file.isEmpty();
+	}
+
+	private boolean openFile() {
+		if (this.file != null) {
+			return true;
+		}
+		if ((this.fileSize <= 0) || this.fileFailed) {
+			return false;
+		}
+		try {
+			this.spillFile = File.createTempFile("leadwire-spill-", ".bin", this.directory);
+			this.spillFile.deleteOnExit();
+			final RandomAccessFile randomAccessFile = new RandomAccessFile(this.spillFile, "rw");
+			try {
+				// the mapping stays valid after closing the file
+				this.file = new Region(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.fileSize));
+			} finally {
+				randomAccessFile.close();
+			}
+			LOG.info("Spilling unsent data to " + this.spillFile);
+			return true;
+		} catch (final IOException e) {
+			LOG.error("Cannot create the spill file; unsent data is kept in memory only", e);
+			this.fileFailed = true;
+			return false;
+		}
+	}
+
+	/**
+	 * The chunks between a read and a write position of a buffer. The content is moved to the start of the buffer when
+	 * a chunk does not fit behind the last one.
+	 */
+	private static final class Region {
+		private final ByteBuffer buffer;
+		private int readPosition;
+		private int writePosition;
+
+		Region(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		boolean fits(final long required) {
+			return (this.buffer.capacity() - this.size()) >= required;
+		}
+
+		void put(final ByteBuffer[] chunk, final int offset, final int length, final int chunkLength) {
+			if ((this.buffer.capacity() - this.writePosition) < (HEADER_SIZE + chunkLength)) {
+				final ByteBuffer content = this.buffer.duplicate();
+				content.limit(this.writePosition).position(this.readPosition);
+				content.compact();
+				this.writePosition -= this.readPosition;
+				this.readPosition = 0;
+			}
+			this.buffer.putInt(this.writePosition, chunkLength);
+			final ByteBuffer target = this.buffer.duplicate();
+			target.position(this.writePosition + HEADER_SIZE);
+			for (int i = offset; i < (offset + length); i++) {
+				target.put(chunk[i]);
+			}
+			this.writePosition = target.position();
+		}
+
+		int headLength() {
+			return this.buffer.getInt(this.readPosition);
+		}
+
+		ByteBuffer headContent(final int offset) {
+			final ByteBuffer content = this.buffer.duplicate();
+			final int start = this.readPosition + HEADER_SIZE;
+			content.limit(start + this.headLength()).position(start + offset);
+			return content;
+		}
+
+		void removeHead() {
+			this.readPosition += HEADER_SIZE + this.headLength();
+			if (this.readPosition == this.writePosition) {
+				this.clear();
+			}
+		}
+
+		boolean isEmpty() {
+			return this.readPosition == this.writePosition;
+		}
+
+		int size() {
+			return this.writePosition - this.readPosition;
+		}
+
+		void clear() {
+			this.readPosition = 0;
+			this.writePosition = 0;
+		}
+	}
+}
@@ -17,10 +17,10 @@
 package kieker.monitoring.writer.tcp;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import kieker.common.configuration.Configuration;
 import kieker.common.logging.Log;
@@ -29,6 +29,7 @@ import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.io.DefaultValueSerializer;
 import kieker.common.record.io.IValueSerializer;
 import kieker.common.record.misc.RegistryRecord;
+import kieker.monitoring.core.controller.ReceiveUnfilteredConfiguration;
 import kieker.monitoring.registry.GetIdAdapter;
 import kieker.monitoring.registry.IRegistryListener;
 import kieker.monitoring.registry.WriterRegistry;
@@ -43,7 +44,8 @@ import kieker.monitoring.writer.WriterUtil;
  * @since unknown
  */
 @Deprecated
-public class TCPWriter extends AbstractMonitoringWriter implements IRegistryListener<String> {
+@ReceiveUnfilteredConfiguration // required for the settings of the ReconnectingSocketChannel
+public class TCPWriter extends AbstractMonitoringWriter implements IRegistryListener<String>, IConnectionListener {
 
 	private static final int DEFAULT_STRING_REGISTRY_BUFFER_SIZE = 1024;
 
@@ -61,13 +63,15 @@ public class TCPWriter extends AbstractMonitoringWriter implements IRegistryList
 																											// (afterPREFIX)
 
 	private final boolean flush;
-	private final SocketChannel monitoringRecordChannel;
-	private final SocketChannel registryRecordChannel;
+	private final ReconnectingSocketChannel monitoringRecordChannel;
+	private final ReconnectingSocketChannel registryRecordChannel;
 	private final ByteBuffer recordBuffer;
 	/** the buffer used for buffering registry records. */
 	private final ByteBuffer stringRegistryBuffer;
 	/** the serializer to use for the incoming records */
 	private final IValueSerializer serializer;
+	/** the registry whose entries are sent again on each reconnect of the {@link #registryRecordChannel} */
+	private final WriterRegistry writerRegistry;
 
 	public TCPWriter(final Configuration configuration) throws IOException {
 		super(configuration);
@@ -88,11 +92,11 @@ public class TCPWriter extends AbstractMonitoringWriter implements IRegistryList
 		this.recordBuffer = ByteBuffer.allocateDirect(bufferSize);
 		this.stringRegistryBuffer = ByteBuffer.allocateDirect(stringRegistryBufferSize);
 		// buffer size is available by byteBuffer.capacity()
-		this.monitoringRecordChannel = SocketChannel.open(new InetSocketAddress(hostname, port1));
-		this.registryRecordChannel = SocketChannel.open(new InetSocketAddress(hostname, port2));
+		this.monitoringRecordChannel = ReconnectingSocketChannel.open(configuration, hostname, port1, null);
+		this.registryRecordChannel = ReconnectingSocketChannel.open(configuration, hostname, port2, this);
 
-		final WriterRegistry writerRegistry = new WriterRegistry(this);
-		this.serializer = DefaultValueSerializer.create(this.recordBuffer, new GetIdAdapter<>(writerRegistry));
+		this.writerRegistry = new WriterRegistry(this);
+		this.serializer = DefaultValueSerializer.create(this.recordBuffer, new GetIdAdapter<>(this.writerRegistry));
 	}
 
 	@Override
@@ -142,6 +146,26 @@ public class TCPWriter extends AbstractMonitoringWriter implements IRegistryList
 		WriterUtil.flushBuffer(buffer, this.registryRecordChannel, LOG);
 	}
 
+	/**
+	 * Sends all registry entries again, since the receiver of the new connection does not know them.
+	 */
+	@Override
+	public void onConnected(final WritableByteChannel connection) throws IOException {
+		final List<String> values = this.writerRegistry.getValues();
+		for (int id = 0; id < values.size(); id++) {
+			final String value = values.get(id);
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer buffer = ByteBuffer.allocate(RegistryRecord.SIZE + bytes.length);
+			buffer.putInt(id);
+			buffer.putInt(value.length());
+			buffer.put(bytes);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				connection.write(buffer);
+			}
+		}
+	}
+
 	@Override
 	public void onTerminating() {
 		WriterUtil.flushBuffer(this.stringRegistryBuffer, this.registryRecordChannel, LOG);
@@ -0,0 +1,97 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class BackpressureTest {
+
+	private static final double DELTA = 1e-9;
+
+	public BackpressureTest() {
+		super();
+	}
+
+	@Test
+	public void testRisesOneLevelPerUpdateAboveHighWatermark() {
+		final Backpressure backpressure = new Backpressure(0.75, 0.25);
+		Assert.assertFalse(backpressure.update(0.5));
+		Assert.assertEquals(Backpressure.NORMAL, backpressure.getLevel());
+
+		for (int level = Backpressure.RAISED_THRESHOLDS; level <= Backpressure.SHEDDING_PROBES; level++) {
+			Assert.assertTrue(backpressure.update(0.9));
+			Assert.assertEquals(level, backpressure.getLevel());
+		}
+		// the highest level is kept
+		Assert.assertFalse(backpressure.update(1.0));
+		Assert.assertEquals(Backpressure.SHEDDING_PROBES, backpressure.getLevel());
+		Assert.assertEquals(1.0, backpressure.getQueueFillLevel(), DELTA);
+	}
+
+	@Test
+	public void testRecoversWithHysteresis() {
+		final Backpressure backpressure = new Backpressure(0.75, 0.25);
+		backpressure.update(0.8);
+		backpressure.update(0.8);
+		Assert.assertEquals(Backpressure.REDUCED_SAMPLING, backpressure.getLevel());
+
+		// between the watermarks, the level stays as it is
+		Assert.assertFalse(backpressure.update(0.5));
+		Assert.assertFalse(backpressure.update(0.25));
+		Assert.assertEquals(Backpressure.REDUCED_SAMPLING, backpressure.getLevel());
+
+		Assert.assertTrue(backpressure.update(0.1));
+		Assert.assertEquals(Backpressure.RAISED_THRESHOLDS, backpressure.getLevel());
+		Assert.assertTrue(backpressure.update(0.1));
+		Assert.assertFalse(backpressure.update(0.0));
+		Assert.assertEquals(Backpressure.NORMAL, backpressure.getLevel());
+	}
+
+	@Test
+	public void testMeasuresPerLevel() {
+		final Backpressure backpressure = new Backpressure(0.5, 0.5);
+		Assert.assertEquals(0, backpressure.getThresholdShift());
+		Assert.assertEquals(1.0, backpressure.getSamplingFactor(), DELTA);
+		Assert.assertFalse(backpressure.isSheddingProbes());
+
+		backpressure.update(1.0);
+		Assert.assertEquals(2, backpressure.getThresholdShift());
+		Assert.assertEquals(1.0, backpressure.getSamplingFactor(), DELTA);
+
+		backpressure.update(1.0);
+		Assert.assertEquals(4, backpressure.getThresholdShift());
+		Assert.assertEquals(0.25, backpressure.getSamplingFactor(), DELTA);
+		Assert.assertFalse(backpressure.isSheddingProbes());
+
+		backpressure.update(1.0);
+		Assert.assertEquals(0.0625, backpressure.getSamplingFactor(), DELTA);
+		Assert.assertTrue(backpressure.isSheddingProbes());
+	}
+
+	@Test
+	public void testNoneStaysNormal() {
+		Assert.assertEquals(Backpressure.NORMAL, Backpressure.NONE.getLevel());
+		Assert.assertEquals(1.0, Backpressure.NONE.getSamplingFactor(), DELTA);
+		Assert.assertEquals(0, Backpressure.NONE.getThresholdShift());
+	}
+}
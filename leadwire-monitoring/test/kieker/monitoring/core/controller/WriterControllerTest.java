@@ -17,6 +17,9 @@
 package kieker.monitoring.core.controller;
 
 import java.lang.Thread.State;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.CoreMatchers;
 import org.jctools.queues.MpscArrayQueue;
@@ -25,8 +28,11 @@ import org.junit.Test;
 
 import kieker.Await;
 import kieker.common.configuration.Configuration;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
 import kieker.common.record.misc.EmptyRecord;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.writer.AbstractMonitoringWriter;
 import kieker.monitoring.writer.dump.DumpWriter;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -93,4 +99,197 @@ public class WriterControllerTest {
 		Assert.assertThat(writerController.getStateOfMonitoringWriterThread(), CoreMatchers.is(State.TERMINATED));
 	}
 
+	@Test
+	public void testRingBufferInsertBehavior() throws Exception {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, BatchCountingWriter.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_SIZE, "4");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_INSERT_BEHAVIOR, "4");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RING_BUFFER_WAIT_STRATEGY, "yield");
+
+		final WriterController writerController = new WriterController(configuration);
+
+		// the consumer has not been started yet: the fifth record is dropped
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(writerController.newMonitoringRecord(new EmptyRecord()));
+		}
+
+		writerController.init(); // starts the ring buffer consumer
+		writerController.cleanup(); // triggers the termination of the ring buffer consumer
+		writerController.waitForTermination(CONTROLLER_TIMEOUT_IN_MS);
+
+		Assert.assertThat(writerController.getStateOfMonitoringWriterThread(), CoreMatchers.is(State.TERMINATED));
+		Assert.assertEquals(4, BatchCountingWriter.numRecords);
+		Assert.assertTrue(BatchCountingWriter.numBatches >= 1);
+		Assert.assertTrue(BatchCountingWriter.terminated);
+	}
+
+	@Test
+	public void testWriterLanesKeepTraceOrder() throws Exception {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, TraceOrderCheckingWriter.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_FQN, MpscArrayQueue.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_SIZE, "4096");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_INSERT_BEHAVIOR, "1");
+		configuration.setProperty(WriterController.PREFIX + WriterController.WRITER_LANES, "4");
+
+		final WriterController writerController = new WriterController(configuration);
+		Assert.assertEquals(4, writerController.getNumberOfMonitoringWriterThreads());
+		this.writeTracesAndTerminate(writerController);
+	}
+
+	@Test
+	public void testMergedWriterLanesKeepTraceOrder() throws Exception {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, TraceOrderCheckingWriter.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_FQN, MpscArrayQueue.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_SIZE, "4096");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_INSERT_BEHAVIOR, "1");
+		configuration.setProperty(WriterController.PREFIX + WriterController.WRITER_LANES, "4");
+		configuration.setProperty(WriterController.PREFIX + WriterController.WRITER_LANE_MODE, "merge");
+
+		final WriterController writerController = new WriterController(configuration);
+		Assert.assertEquals(1, writerController.getNumberOfMonitoringWriterThreads());
+		this.writeTracesAndTerminate(writerController);
+	}
+
+	@Test
+	public void testStagedRecordsAreWrittenOnTermination() throws Exception {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, BatchCountingWriter.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_FQN, MpscArrayQueue.class.getName());
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_SIZE, "64");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_QUEUE_INSERT_BEHAVIOR, "1");
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_STAGING_BUFFER_SIZE, "4");
+		// the timer must not interfere
+		configuration.setProperty(WriterController.PREFIX + WriterController.RECORD_STAGING_FLUSH_INTERVAL, "60000");
+
+		final WriterController writerController = new WriterController(configuration);
+		writerController.init();
+
+		// the first four records are handed over since the buffer is full, the fifth remains staged
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(writerController.newMonitoringRecord(new EmptyRecord()));
+		}
+
+		// a thread which dies with staged records
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 3; i++) {
+					writerController.newMonitoringRecord(new EmptyRecord());
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		Assert.assertEquals(2, writerController.getNumberOfRecordStagingBuffers());
+
+		writerController.cleanup(); // hands over all staged records before the end of monitoring
+		writerController.waitForTermination(CONTROLLER_TIMEOUT_IN_MS);
+
+		Assert.assertThat(writerController.getStateOfMonitoringWriterThread(), CoreMatchers.is(State.TERMINATED));
+		Assert.assertEquals(8, BatchCountingWriter.numRecords);
+		// the buffer of the dead thread has been released
+		Assert.assertEquals(1, writerController.getNumberOfRecordStagingBuffers());
+	}
+
+	private void writeTracesAndTerminate(final WriterController writerController) throws InterruptedException {
+		TraceOrderCheckingWriter.reset();
+		writerController.init();
+
+		final int numTraces = 100;
+		final int numRecordsPerTrace = 50;
+		for (int eoi = 0; eoi < numRecordsPerTrace; eoi++) {
+			for (long traceId = 0; traceId < numTraces; traceId++) {
+				writerController.newMonitoringRecord(new OperationExecutionRecord("op", "session", traceId, 0L, 1L, "host", eoi, 0));
+			}
+		}
+
+		writerController.cleanup();
+		writerController.waitForTermination(CONTROLLER_TIMEOUT_IN_MS);
+
+		for (int i = 0; i < writerController.getNumberOfMonitoringWriterThreads(); i++) {
+			Assert.assertThat(writerController.getStateOfMonitoringWriterThread(i), CoreMatchers.is(State.TERMINATED));
+		}
+		Assert.assertEquals(numTraces * numRecordsPerTrace, TraceOrderCheckingWriter.NUM_RECORDS.get());
+		Assert.assertEquals(0, TraceOrderCheckingWriter.NUM_OUT_OF_ORDER.get());
+	}
+
+	/**
+	 * A writer counting records whose eoi is not the successor of the previous eoi of the same trace.
+	 */
+	public static class TraceOrderCheckingWriter extends AbstractMonitoringWriter {
+
+		static final AtomicInteger NUM_RECORDS = new AtomicInteger();
+		static final AtomicInteger NUM_OUT_OF_ORDER = new AtomicInteger();
+		private static final ConcurrentMap<Long, Integer> LAST_EOIS = new ConcurrentHashMap<Long, Integer>();
+
+		public TraceOrderCheckingWriter(final Configuration configuration) {
+			super(configuration);
+		}
+
+		static void reset() {
+			NUM_RECORDS.set(0);
+			NUM_OUT_OF_ORDER.set(0);
+			LAST_EOIS.clear();
+		}
+
+		@Override
+		public void onStarting() {
+			// nothing to do
+		}
+
+		@Override
+		public void writeMonitoringRecord(final IMonitoringRecord record) {
+			final OperationExecutionRecord execution = (OperationExecutionRecord) record;
+			final Integer lastEoi = LAST_EOIS.put(execution.getTraceId(), execution.getEoi());
+			final int expectedEoi = (lastEoi == null) ? 0 : lastEoi + 1; // NOCS (inline conditional)
+			if (execution.getEoi() != expectedEoi) {
+				NUM_OUT_OF_ORDER.incrementAndGet();
+			}
+			NUM_RECORDS.incrementAndGet();
+		}
+
+		@Override
+		public void onTerminating() {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * A writer counting records and batches.
+	 */
+	public static class BatchCountingWriter extends AbstractMonitoringWriter {
+
+		static volatile int numRecords;
+		static volatile int numBatches;
+		static volatile boolean terminated;
+
+		public BatchCountingWriter(final Configuration configuration) {
+			super(configuration);
+		}
+
+		@Override
+		public void onStarting() {
+			numRecords = 0;
+			numBatches = 0;
+			terminated = false;
+		}
+
+		@Override
+		public void writeMonitoringRecord(final IMonitoringRecord record) {
+			numRecords++; // NOPMD (only the writer thread writes)
+		}
+
+		@Override
+		public void onEndOfBatch() {
+			numBatches++; // NOPMD (only the writer thread writes)
+		}
+
+		@Override
+		public void onTerminating() {
+			terminated = true;
+		}
+	}
 }
@@ -0,0 +1,185 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.record.misc.AgentMetricRecord;
+import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.timer.ITimeSource;
+import kieker.monitoring.timer.SystemNanoTimer;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class AgentMetricsTest {
+
+	private final Map<String, AgentMetricRecord> records = new HashMap<String, AgentMetricRecord>();
+
+	public AgentMetricsTest() {
+		super();
+	}
+
+	@Test
+	public void testCounterDrainsPerInterval() {
+		final AgentMetrics metrics = new AgentMetrics();
+		final Counter counter = metrics.counter("writer.bytes");
+		Assert.assertSame(counter, metrics.counter("writer.bytes"));
+
+		counter.add(100);
+		counter.add(50);
+		counter.increment();
+
+		final AgentMetricRecord record = counter.drain(1L, "host");
+		Assert.assertEquals("writer.bytes", record.getMetric());
+		Assert.assertEquals(3, record.getCount());
+		Assert.assertEquals(151, record.getTotal());
+		// nothing happened since the last interval
+		Assert.assertNull(counter.drain(2L, "host"));
+
+		counter.add(9);
+		Assert.assertEquals(9, counter.drain(3L, "host").getTotal());
+		// the cumulative values are kept for JMX
+		Assert.assertEquals(4, counter.getCount());
+		Assert.assertEquals(160, counter.getTotal());
+	}
+
+	@Test
+	public void testTimerPercentiles() {
+		final Timer timer = new AgentMetrics().timer("writer.latency");
+		for (int i = 0; i < 98; i++) {
+			timer.record(100);
+		}
+		timer.record(5000);
+		timer.record(70000);
+
+		final AgentMetricRecord record = timer.drain(1L, "host");
+		Assert.assertEquals(100, record.getCount());
+		Assert.assertEquals((98 * 100) + 5000 + 70000, record.getTotal());
+		// the percentiles are the upper bounds of power-of-two buckets
+		Assert.assertEquals(127, record.getP50());
+		Assert.assertEquals(8191, record.getP99());
+		Assert.assertEquals(70000, record.getMax());
+		Assert.assertNull(timer.drain(2L, "host"));
+	}
+
+	@Test
+	public void testStripedCountsAreExact() throws InterruptedException {
+		final Counter counter = new AgentMetrics().counter("queue.dropped");
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						counter.increment();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(80000, counter.getCount());
+	}
+
+	@Test
+	public void testProbeMeasuresOnlyWhenEnabled() {
+		final AgentMetrics metrics = new AgentMetrics();
+		final ProbeMetric probe = metrics.probe("operationExecution");
+		Assert.assertSame(metrics.timer("probe.operationExecution"), probe.getTimer());
+
+		long probeStart = probe.start();
+		Assert.assertEquals(0L, probeStart);
+		probe.stop(probeStart, probe.mark(probeStart), probe.mark(probeStart));
+		Assert.assertEquals(0, probe.getTimer().getCount());
+
+		metrics.setEnabled(true);
+		probeStart = probe.start();
+		final long proceedStart = probe.mark(probeStart);
+		final long proceedEnd = probe.mark(probeStart);
+		probe.stop(probeStart, proceedStart, proceedEnd);
+		Assert.assertEquals(1, probe.getTimer().getCount());
+	}
+
+	@Test
+	public void testSampleWritesRecords() throws Exception {
+		final AgentMetrics metrics = new AgentMetrics();
+		metrics.counter("writer.records").add(10);
+		metrics.timer("writer.latency").record(1000);
+		metrics.counter("queue.dropped");
+		metrics.gauge("queue.depth", new Gauge() {
+			@Override
+			public long getValue() {
+				return 42;
+			}
+		});
+		final IMonitoringController controller = this.createController();
+
+		// disabled: nothing is written
+		metrics.sample(controller);
+		Assert.assertTrue(this.records.isEmpty());
+
+		metrics.setEnabled(true);
+		metrics.sample(controller);
+		Assert.assertEquals(3, this.records.size());
+		Assert.assertEquals(10, this.records.get("writer.records").getTotal());
+		Assert.assertEquals(1000, this.records.get("writer.latency").getMax());
+		Assert.assertEquals(42, this.records.get("queue.depth").getTotal());
+		Assert.assertEquals("host", this.records.get("queue.depth").getHostname());
+
+		// JMX exposes the cumulative values and the gauges
+		Assert.assertEquals(Long.valueOf(10), metrics.getAttribute("writer.records.total"));
+		Assert.assertEquals(Long.valueOf(0), metrics.getAttribute("queue.dropped.count"));
+		Assert.assertEquals(Long.valueOf(42), metrics.getAttribute("queue.depth"));
+	}
+
+	private IMonitoringController createController() {
+		final Configuration configuration = ConfigurationFactory.createDefaultConfiguration();
+		final ITimeSource timeSource = new SystemNanoTimer(configuration);
+		return (IMonitoringController) Proxy.newProxyInstance(IMonitoringController.class.getClassLoader(),
+				new Class<?>[] { IMonitoringController.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						switch (method.getName()) {
+						case "newMonitoringRecord":
+							final AgentMetricRecord record = (AgentMetricRecord) args[0];
+							AgentMetricsTest.this.records.put(record.getMetric(), record);
+							return Boolean.TRUE;
+						case "getTimeSource":
+							return timeSource;
+						case "getHostname":
+							return "host";
+						default:
+							return null;
+						}
+					}
+				});
+	}
+}
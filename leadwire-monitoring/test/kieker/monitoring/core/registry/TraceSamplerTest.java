@@ -0,0 +1,215 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.registry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.monitoring.core.controller.IMonitoringController;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class TraceSamplerTest {
+
+	private static final long TAIL_THRESHOLD = 100;
+
+	private final List<IMonitoringRecord> records = new ArrayList<>();
+	private double queueFillLevel;
+
+	public TraceSamplerTest() {
+		super();
+	}
+
+	@Test
+	public void testSamplesAllTracesByDefault() {
+		final TraceSampler sampler = new TraceSampler(1.0, 0, 1.0, false, TAIL_THRESHOLD, 10);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(TraceContext.SAMPLED, sampler.sample("endpoint"));
+		}
+		Assert.assertFalse(sampler.isAdaptive());
+	}
+
+	@Test
+	public void testDropsTracesAccordingToRate() {
+		Assert.assertEquals(TraceContext.DROPPED, new TraceSampler(0.0, 0, 1.0, false, TAIL_THRESHOLD, 10).sample("endpoint"));
+
+		final TraceSampler sampler = new TraceSampler(0.25, 0, 1.0, false, TAIL_THRESHOLD, 10);
+		int sampled = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (sampler.sample("endpoint") == TraceContext.SAMPLED) {
+				sampled++;
+			}
+		}
+		Assert.assertTrue("sampled " + sampled, (sampled > 2000) && (sampled < 3000));
+	}
+
+	@Test
+	public void testLimitsTracesPerEndpoint() {
+		final TraceSampler sampler = new TraceSampler(1.0, 3, 1.0, false, TAIL_THRESHOLD, 10);
+		final IMonitoringController ctrl = this.createController();
+		for (int second = 0; second < 2; second++) {
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(TraceContext.SAMPLED, sampler.sample("a"));
+			}
+			Assert.assertEquals(TraceContext.DROPPED, sampler.sample("a"));
+			// other endpoints have their own quota
+			Assert.assertEquals(TraceContext.SAMPLED, sampler.sample("b"));
+			// the next second
+			sampler.sample(ctrl);
+		}
+	}
+
+	@Test
+	public void testReducesRateWithQueueFillLevel() {
+		final TraceSampler sampler = new TraceSampler(1.0, 0, 0.5, false, TAIL_THRESHOLD, 10);
+		final IMonitoringController ctrl = this.createController();
+		Assert.assertTrue(sampler.isAdaptive());
+
+		this.queueFillLevel = 0.4;
+		sampler.sample(ctrl);
+		Assert.assertEquals(1.0, sampler.getEffectiveRate(), 0.0);
+
+		this.queueFillLevel = 0.75;
+		sampler.sample(ctrl);
+		Assert.assertEquals(0.5, sampler.getEffectiveRate(), 0.0001);
+
+		this.queueFillLevel = 1.0;
+		sampler.sample(ctrl);
+		Assert.assertEquals(0.0, sampler.getEffectiveRate(), 0.0);
+		Assert.assertEquals(TraceContext.DROPPED, sampler.sample("endpoint"));
+
+		this.queueFillLevel = 0.0;
+		sampler.sample(ctrl);
+		Assert.assertEquals(TraceContext.SAMPLED, sampler.sample("endpoint"));
+	}
+
+	@Test
+	public void testFollowsCaller() {
+		final TraceSampler sampler = new TraceSampler(0.0, 0, 1.0, false, TAIL_THRESHOLD, 10);
+		Assert.assertEquals(TraceContext.SAMPLED, sampler.follow(true));
+		Assert.assertEquals(TraceContext.DROPPED, sampler.follow(false));
+		Assert.assertEquals(TraceContext.BUFFERED, new TraceSampler(0.0, 0, 1.0, true, TAIL_THRESHOLD, 10).follow(false));
+	}
+
+	@Test
+	public void testWritesOnlySampledTraces() {
+		final TraceSampler sampler = new TraceSampler(1.0, 0, 1.0, false, TAIL_THRESHOLD, 10);
+		final IMonitoringController ctrl = this.createController();
+		final TraceContext context = new TraceContext();
+
+		context.beginTrace(1, TraceContext.SAMPLED);
+		sampler.record(ctrl, context, newRecord(1));
+		sampler.endTrace(ctrl, context, 1);
+		Assert.assertEquals(1, this.records.size());
+		Assert.assertFalse(context.isTraceActive());
+
+		context.beginTrace(2, TraceContext.DROPPED);
+		Assert.assertFalse(context.isRecording());
+		sampler.record(ctrl, context, newRecord(2));
+		sampler.endTrace(ctrl, context, TAIL_THRESHOLD);
+		Assert.assertEquals(1, this.records.size());
+		// the next trace is sampled again unless decided otherwise
+		Assert.assertTrue(context.isSampled());
+	}
+
+	@Test
+	public void testWritesBufferedTracesIfSlowOrFailed() {
+		final TraceSampler sampler = new TraceSampler(0.0, 0, 1.0, true, TAIL_THRESHOLD, 10);
+		final IMonitoringController ctrl = this.createController();
+		final TraceContext context = new TraceContext();
+
+		// fast
+		context.beginTrace(1, sampler.sample("endpoint"));
+		Assert.assertEquals(TraceContext.BUFFERED, context.getSampling());
+		Assert.assertTrue(context.isRecording());
+		Assert.assertFalse(context.isSampled());
+		sampler.record(ctrl, context, newRecord(1));
+		sampler.endTrace(ctrl, context, TAIL_THRESHOLD - 1);
+		Assert.assertTrue(this.records.isEmpty());
+
+		// slow
+		context.beginTrace(2, sampler.sample("endpoint"));
+		sampler.record(ctrl, context, newRecord(2));
+		sampler.record(ctrl, context, newRecord(2));
+		Assert.assertTrue(this.records.isEmpty());
+		sampler.endTrace(ctrl, context, TAIL_THRESHOLD);
+		Assert.assertEquals(2, this.records.size());
+
+		// failed
+		this.records.clear();
+		context.beginTrace(3, sampler.sample("endpoint"));
+		sampler.record(ctrl, context, newRecord(3));
+		context.markFailed();
+		sampler.endTrace(ctrl, context, 0);
+		Assert.assertEquals(1, this.records.size());
+		Assert.assertEquals(3, ((OperationExecutionRecord) this.records.get(0)).getTraceId());
+	}
+
+	@Test
+	public void testWritesTraceExceedingBuffer() {
+		final TraceSampler sampler = new TraceSampler(0.0, 0, 1.0, true, TAIL_THRESHOLD, 3);
+		final IMonitoringController ctrl = this.createController();
+		final TraceContext context = new TraceContext();
+
+		context.beginTrace(1, sampler.sample("endpoint"));
+		sampler.record(ctrl, context, newRecord(1));
+		sampler.record(ctrl, context, newRecord(1));
+		Assert.assertTrue(this.records.isEmpty());
+		sampler.record(ctrl, context, newRecord(1));
+		Assert.assertEquals(3, this.records.size());
+		Assert.assertTrue(context.isSampled());
+
+		sampler.record(ctrl, context, newRecord(1));
+		sampler.endTrace(ctrl, context, 0);
+		Assert.assertEquals(4, this.records.size());
+	}
+
+	private static IMonitoringRecord newRecord(final long traceId) {
+		return new OperationExecutionRecord("op", "session", traceId, 0, 1, "host", 0, 0);
+	}
+
+	private IMonitoringController createController() {
+		return (IMonitoringController) Proxy.newProxyInstance(IMonitoringController.class.getClassLoader(),
+				new Class<?>[] { IMonitoringController.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						switch (method.getName()) {
+						case "newMonitoringRecord":
+							TraceSamplerTest.this.records.add((IMonitoringRecord) args[0]);
+							return Boolean.TRUE;
+						case "flushStagedRecords":
+							return Boolean.TRUE;
+						case "getQueueFillLevel":
+							return Double.valueOf(TraceSamplerTest.this.queueFillLevel);
+						default:
+							return null;
+						}
+					}
+				});
+	}
+}
@@ -0,0 +1,245 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.core.threshold;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.latency.LatencyHistogramRecord;
+import kieker.monitoring.core.controller.Backpressure;
+import kieker.monitoring.core.controller.IMonitoringController;
+import kieker.monitoring.core.registry.ControlFlowRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+import kieker.monitoring.timer.ITimeSource;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class AdaptiveThresholdsTest {
+
+	private static final long STATIC_THRESHOLD = 100;
+
+	public AdaptiveThresholdsTest() {
+		super();
+	}
+
+	@Test
+	public void testBucketBoundsCoverValues() {
+		for (long value = 0; value < 100000; value += (value / 16) + 1) {
+			final int index = LatencyHistogram.bucketIndex(value);
+			Assert.assertTrue("value " + value, value <= LatencyHistogram.bucketUpperBound(index));
+			if (index > 0) {
+				Assert.assertTrue("value " + value, value > LatencyHistogram.bucketUpperBound(index - 1));
+			}
+			// at most 12.5% above the value
+			Assert.assertTrue("value " + value, LatencyHistogram.bucketUpperBound(index) <= (value + (value / 8)));
+		}
+		Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+		Assert.assertEquals(0, LatencyHistogram.bucketIndex(-1));
+	}
+
+	@Test
+	public void testUsesStaticThresholdIfDisabled() {
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, false, STATIC_THRESHOLD, 90.0, 1, 10);
+		final LatencyHistogram histogram = thresholds.getHistogram("op");
+
+		Assert.assertFalse(histogram.exceedsThreshold(STATIC_THRESHOLD));
+		Assert.assertTrue(histogram.exceedsThreshold(STATIC_THRESHOLD + 1));
+		Assert.assertEquals(0, thresholds.getNumberOfOperations());
+	}
+
+	@Test
+	public void testRaisesThresholdsUnderBackpressure() {
+		final Backpressure backpressure = new Backpressure(0.5, 0.5);
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, false, true, STATIC_THRESHOLD, 99.0, 10, 10,
+				1, backpressure);
+		final LatencyHistogram histogram = thresholds.getHistogram("op");
+		Assert.assertTrue(histogram.exceedsThreshold(STATIC_THRESHOLD + 1));
+
+		backpressure.update(1.0);
+		// raised by a factor of 4
+		Assert.assertFalse(histogram.exceedsThreshold((STATIC_THRESHOLD * 4) + 3));
+		Assert.assertTrue(histogram.exceedsThreshold((STATIC_THRESHOLD + 1) * 4));
+	}
+
+	@Test
+	public void testAdaptsThresholdAndExportsDistribution() {
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, true, STATIC_THRESHOLD, 90.0, 10, 10);
+		final LatencyHistogram histogram = thresholds.getHistogram("op");
+		Assert.assertSame(histogram, thresholds.getHistogram("op"));
+
+		// warm-up: the static threshold applies
+		for (int i = 1; i <= 100; i++) {
+			Assert.assertEquals(i > STATIC_THRESHOLD, histogram.exceedsThreshold(i));
+		}
+		final List<IMonitoringRecord> records = new ArrayList<IMonitoringRecord>();
+		thresholds.sample(controller(records));
+
+		// the 90th percentile of 1..100 is 90, within the precision of the buckets
+		final long threshold = histogram.getThreshold();
+		Assert.assertTrue("threshold " + threshold, (threshold >= 90) && (threshold < 100));
+		Assert.assertTrue(histogram.exceedsThreshold(threshold + 1));
+		Assert.assertFalse(histogram.exceedsThreshold(threshold));
+
+		Assert.assertEquals(1, records.size());
+		final LatencyHistogramRecord record = (LatencyHistogramRecord) records.get(0);
+		Assert.assertEquals("op", record.getOperation());
+		Assert.assertEquals(LatencyHistogramRecord.KIND_METHOD, record.getKind());
+		Assert.assertEquals(100, record.getCount());
+		Assert.assertTrue(Math.abs(record.getP50() - 50) <= 6);
+		Assert.assertTrue(Math.abs(record.getP99() - 99) <= 12);
+		Assert.assertTrue((record.getMax() >= 100) && (record.getMax() <= 112));
+		Assert.assertEquals(threshold, record.getThreshold());
+	}
+
+	@Test
+	public void testForgetsIdleOperations() {
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_SQL, true, STATIC_THRESHOLD, 99.0, 10, 1);
+		final LatencyHistogram histogram = thresholds.getHistogram("SELECT ?");
+		histogram.exceedsThreshold(5);
+		// the maximum number of operations is reached
+		Assert.assertFalse(thresholds.getHistogram("SELECT ? FROM t").exceedsThreshold(STATIC_THRESHOLD));
+		Assert.assertEquals(1, thresholds.getNumberOfOperations());
+
+		final List<IMonitoringRecord> records = new ArrayList<IMonitoringRecord>();
+		thresholds.sample(controller(records));
+		thresholds.sample(controller(records));
+
+		Assert.assertEquals(1, records.size());
+		Assert.assertEquals(0, thresholds.getNumberOfOperations());
+	}
+
+	@Test
+	public void testKeepsExecutionsCountedIntoForgottenOperations() {
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_SQL, true, STATIC_THRESHOLD, 99.0, 10, 10);
+		final List<IMonitoringRecord> records = new ArrayList<IMonitoringRecord>();
+		final LatencyHistogram forgotten = thresholds.getHistogram("SELECT ?");
+		forgotten.exceedsThreshold(5);
+		thresholds.sample(controller(records));
+		thresholds.sample(controller(records));
+		Assert.assertEquals(0, thresholds.getNumberOfOperations());
+
+		// a thread having obtained the histogram before it was forgotten
+		forgotten.exceedsThreshold(7);
+		thresholds.sample(controller(records));
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(1, ((LatencyHistogramRecord) records.get(1)).getCount());
+		Assert.assertSame(forgotten, thresholds.getHistogram("SELECT ?"));
+
+		thresholds.sample(controller(records));
+		Assert.assertEquals(0, thresholds.getNumberOfOperations());
+
+		// ... while another thread already counts into a new histogram
+		forgotten.exceedsThreshold(7);
+		final LatencyHistogram replacement = thresholds.getHistogram("SELECT ?");
+		Assert.assertNotSame(forgotten, replacement);
+		replacement.exceedsThreshold(9);
+		thresholds.sample(controller(records));
+		final LatencyHistogramRecord record = (LatencyHistogramRecord) records.get(records.size() - 1);
+		Assert.assertEquals(2, record.getCount());
+		Assert.assertEquals(16, record.getTotalDuration());
+	}
+
+	@Test
+	public void testAggregatesStripesOfAllThreads() throws InterruptedException {
+		final AdaptiveThresholds thresholds = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, false, true, STATIC_THRESHOLD, 99.0, 10, 10,
+				3);
+		final Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					final LatencyHistogram histogram = thresholds.getHistogram("op");
+					for (int i = 0; i < 1000; i++) {
+						histogram.exceedsThreshold(10);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		final List<IMonitoringRecord> records = new ArrayList<IMonitoringRecord>();
+		thresholds.sample(controller(records));
+
+		final LatencyHistogramRecord record = (LatencyHistogramRecord) records.get(0);
+		Assert.assertEquals(8000, record.getCount());
+		Assert.assertEquals(80000, record.getTotalDuration());
+		// not adaptive: the static threshold is kept
+		Assert.assertEquals(STATIC_THRESHOLD, record.getThreshold());
+	}
+
+	@Test
+	public void testRecordsAllExecutionsOfSampledTraces() {
+		final AdaptiveThresholds aggregating = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, false, true, STATIC_THRESHOLD, 99.0, 10, 10,
+				1);
+		final AdaptiveThresholds notAggregating = new AdaptiveThresholds(LatencyHistogramRecord.KIND_METHOD, true, STATIC_THRESHOLD, 99.0, 10, 10);
+		final TraceContext traceContext = ControlFlowRegistry.INSTANCE.getThreadLocalTraceContext();
+		try {
+			traceContext.beginTrace(1, TraceContext.SAMPLED);
+			Assert.assertTrue(aggregating.isRecordingAll(traceContext));
+			Assert.assertFalse(notAggregating.isRecordingAll(traceContext));
+
+			// only the slow executions of the other traces are recorded
+			traceContext.reset();
+			traceContext.beginTrace(2, TraceContext.BUFFERED);
+			Assert.assertFalse(aggregating.isRecordingAll(traceContext));
+			traceContext.reset();
+			traceContext.beginTrace(3, TraceContext.DROPPED);
+			Assert.assertFalse(aggregating.isRecordingAll(traceContext));
+		} finally {
+			traceContext.reset();
+		}
+	}
+
+	private static IMonitoringController controller(final List<IMonitoringRecord> records) {
+		final ITimeSource timeSource = (ITimeSource) Proxy.newProxyInstance(ITimeSource.class.getClassLoader(), new Class<?>[] { ITimeSource.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						return "getTime".equals(method.getName()) ? Long.valueOf(42) : null; // NOCS (inline conditional)
+					}
+				});
+		return (IMonitoringController) Proxy.newProxyInstance(IMonitoringController.class.getClassLoader(),
+				new Class<?>[] { IMonitoringController.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						switch (method.getName()) {
+						case "getTimeSource":
+							return timeSource;
+						case "getHostname":
+							return "host";
+						case "newMonitoringRecord":
+							records.add((IMonitoringRecord) args[0]);
+							return Boolean.TRUE;
+						default:
+							return null;
+						}
+					}
+				});
+	}
+}
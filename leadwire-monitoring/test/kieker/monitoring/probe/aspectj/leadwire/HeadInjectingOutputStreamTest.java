@@ -0,0 +1,189 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class HeadInjectingOutputStreamTest {
+
+	private static final String SNIPPET = "<script>rum</script>";
+	private static final String PAGE = "<html><HEAD><title>t</title></HEAD><body>content</body></html>";
+	private static final String INJECTED_PAGE = "<html><HEAD><title>t</title>" + SNIPPET + "</HEAD><body>content</body></html>";
+
+	public HeadInjectingOutputStreamTest() {
+		super();
+	}
+
+	@Test
+	public void testInjectsInFrontOfHeadEnd() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HeadInjectingOutputStream stream = new HeadInjectingOutputStream(out, bytes(SNIPPET));
+		stream.write(bytes(PAGE));
+		stream.finish();
+
+		Assert.assertTrue(stream.isInjected());
+		Assert.assertEquals(INJECTED_PAGE, string(out));
+	}
+
+	@Test
+	public void testInjectsIntoPageWrittenInChunks() throws IOException {
+		final byte[] page = bytes(PAGE);
+		// each chunk size splits the tag differently
+		for (int chunkSize = 1; chunkSize <= page.length; chunkSize++) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final HeadInjectingOutputStream stream = new HeadInjectingOutputStream(out, bytes(SNIPPET));
+			for (int off = 0; off < page.length; off += chunkSize) {
+				stream.write(page, off, Math.min(chunkSize, page.length - off));
+			}
+			stream.finish();
+
+			Assert.assertEquals("chunk size " + chunkSize, INJECTED_PAGE, string(out));
+		}
+	}
+
+	@Test
+	public void testPassesPartialTagThroughOnFinish() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HeadInjectingOutputStream stream = new HeadInjectingOutputStream(out, bytes(SNIPPET));
+		stream.write(bytes("<html><head></hea"));
+		Assert.assertEquals("<html><head>", string(out));
+
+		stream.finish();
+		Assert.assertFalse(stream.isInjected());
+		Assert.assertEquals("<html><head></hea", string(out));
+	}
+
+	@Test
+	public void testStopsScanningAtBody() throws IOException {
+		final String page = "<html><body><p>no head</p></head></body></html>";
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HeadInjectingOutputStream stream = new HeadInjectingOutputStream(out, bytes(SNIPPET));
+		stream.write(bytes(page));
+		stream.finish();
+
+		Assert.assertFalse(stream.isInjected());
+		Assert.assertEquals(page, string(out));
+	}
+
+	@Test
+	public void testPassesThroughWithoutSnippet() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HeadInjectingOutputStream stream = new HeadInjectingOutputStream(out, null);
+		stream.write(bytes(PAGE));
+		stream.finish();
+
+		Assert.assertFalse(stream.isInjecting());
+		Assert.assertEquals(PAGE, string(out));
+	}
+
+	@Test
+	public void testGeneratedResponseWrapper() throws Throwable { // NOCS (Throwable)
+		// HTML: the content length is dropped, since the snippet changes it
+		final RecordingResponse html = new RecordingResponse("text/html; charset=UTF-8");
+		final HttpServletResponse htmlResponse = html.proxy();
+		final HtmlResponseWrapperFactory factory = HtmlResponseWrapperFactory.forResponse(htmlResponse);
+		Assert.assertTrue(factory.isAvailable());
+		HttpServletResponse wrapper = (HttpServletResponse) factory.newWrapper(htmlResponse, SNIPPET);
+		wrapper.setContentLength(PAGE.length());
+		final PrintWriter writer = wrapper.getWriter();
+		writer.write(PAGE);
+		factory.finishResponse(wrapper);
+
+		Assert.assertEquals(INJECTED_PAGE, string(html.body));
+		Assert.assertNull(html.headers.get("Content-Length"));
+
+		// other content: passed through with its content length
+		final RecordingResponse json = new RecordingResponse("application/json");
+		final HttpServletResponse jsonResponse = json.proxy();
+		// the same class, thus the same factory
+		Assert.assertSame(factory, HtmlResponseWrapperFactory.forResponse(jsonResponse));
+		wrapper = (HttpServletResponse) factory.newWrapper(jsonResponse, SNIPPET);
+		wrapper.setContentLength(PAGE.length());
+		wrapper.getOutputStream().write(bytes(PAGE));
+		factory.finishResponse(wrapper);
+
+		Assert.assertEquals(PAGE, string(json.body));
+		Assert.assertEquals(String.valueOf(PAGE.length()), json.headers.get("Content-Length"));
+	}
+
+	private static byte[] bytes(final String string) {
+		return string.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(final ByteArrayOutputStream out) {
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A response which records its body and headers.
+	 */
+	private static class RecordingResponse implements InvocationHandler {
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(); // NOCS (package visible)
+		final Map<String, String> headers = new HashMap<String, String>(); // NOCS (package visible)
+		private final String contentType;
+
+		RecordingResponse(final String contentType) {
+			this.contentType = contentType;
+		}
+
+		HttpServletResponse proxy() {
+			return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+					new Class<?>[] { HttpServletResponse.class }, this);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getContentType":
+				return this.contentType;
+			case "getCharacterEncoding":
+				return "UTF-8";
+			case "setHeader":
+				this.headers.put((String) args[0], (String) args[1]);
+				return null;
+			case "getOutputStream":
+				return new ServletOutputStream() {
+					@Override
+					public void write(final int b) {
+						RecordingResponse.this.body.write(b);
+					}
+				};
+			default:
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class MethodAccessorTest {
+
+	public MethodAccessorTest() {
+		super();
+	}
+
+	@Test
+	public void testBoxesPrimitives() throws Throwable { // NOCS (Throwable)
+		final MethodAccessor get = new MethodAccessor("get", int.class);
+		final MethodAccessor contains = new MethodAccessor("contains", Object.class);
+		final List<String> list = new ArrayList<String>();
+		list.add("a");
+
+		Assert.assertEquals("a", get.invoke(list, Integer.valueOf(0)));
+		Assert.assertEquals(Boolean.TRUE, contains.invoke(list, "a"));
+		Assert.assertEquals(Boolean.FALSE, contains.invoke(list, "b"));
+	}
+
+	@Test
+	public void testInvokesPublicMethodOfNonPublicClass() throws Throwable { // NOCS (Throwable)
+		final MethodAccessor add = new MethodAccessor("add", int.class, Object.class);
+		final MethodAccessor size = new MethodAccessor("size");
+		// the class of a synchronized list is private
+		final List<String> list = Collections.synchronizedList(new ArrayList<String>());
+
+		Assert.assertNull(add.invoke(list, Integer.valueOf(0), "a")); // void
+		Assert.assertEquals(Integer.valueOf(1), size.invoke(list));
+		// another concrete class
+		Assert.assertEquals(Integer.valueOf(0), size.invoke(new ArrayList<String>()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnknownMethod() throws Throwable { // NOCS (Throwable)
+		new MethodAccessor("unknown").invoke(new ArrayList<String>());
+	}
+}
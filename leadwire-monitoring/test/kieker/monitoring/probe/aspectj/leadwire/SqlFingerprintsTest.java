@@ -0,0 +1,94 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class SqlFingerprintsTest {
+
+	public SqlFingerprintsTest() {
+		super();
+	}
+
+	@Test
+	public void testReplacesLiterals() {
+		Assert.assertEquals("SELECT * FROM t1 WHERE name = ? AND id IN (?, ?) AND v > -? AND x = ?",
+				SqlFingerprints.normalize("SELECT * FROM t1 WHERE name = 'O''Brien' AND id IN (1, 23) AND v > -1.5e-3 AND x = 0x1F"));
+	}
+
+	@Test
+	public void testTreatsBackslashAsOrdinaryCharacter() {
+		Assert.assertEquals("SELECT * FROM t WHERE p = ? AND x = ? AND y = ?",
+				SqlFingerprints.normalize("SELECT * FROM t WHERE p = 'C:\\' AND x = 1 AND y = 'z'"));
+	}
+
+	@Test
+	public void testRecognizesBackslashEscapesIfEnabled() {
+		Assert.assertEquals("SELECT * FROM t WHERE a=? AND b=?",
+				SqlFingerprints.normalize("SELECT * FROM t WHERE a='x\\'y' AND b=1", true));
+		Assert.assertEquals("SELECT * FROM t WHERE a=? AND b=?",
+				SqlFingerprints.normalize("SELECT * FROM t WHERE a='C:\\\\' AND b=1", true));
+		// without backslash escapes, the escaped quote ends the literal, and the last quote starts one
+		Assert.assertEquals("SELECT * FROM t WHERE a=?y?",
+				SqlFingerprints.normalize("SELECT * FROM t WHERE a='x\\'y' AND b=1"));
+	}
+
+	@Test
+	public void testKeepsComments() {
+		Assert.assertEquals("SELECT a -- don't 1 FROM t WHERE b = ?",
+				SqlFingerprints.normalize("SELECT a -- don't 1\nFROM t WHERE b = 1"));
+		Assert.assertEquals("SELECT a /* it's\n 'quoted' 2 */ FROM t WHERE b = ? AND c = ?",
+				SqlFingerprints.normalize("SELECT a /* it's\n 'quoted' 2 */ FROM t WHERE b = 1 AND c = 'x'"));
+		// unterminated comments extend to the end
+		Assert.assertEquals("SELECT ? /* it's", SqlFingerprints.normalize("SELECT 1 /* it's"));
+	}
+
+	@Test
+	public void testKeepsIdentifiersAndPlaceholders() {
+		Assert.assertEquals("SELECT col_2, \"Col 3\", `c4` FROM schema1.t$2 WHERE a = ? AND b = $1",
+				SqlFingerprints.normalize("SELECT col_2, \"Col 3\", `c4` FROM schema1.t$2 WHERE a = ? AND b = $1"));
+	}
+
+	@Test
+	public void testCollapsesWhitespace() {
+		Assert.assertEquals("SELECT a FROM t WHERE b = ?",
+				SqlFingerprints.normalize("\n  SELECT a\r\n\tFROM   t\n WHERE b = 42  \n"));
+	}
+
+	@Test
+	public void testSharesCanonicalText() {
+		final SqlFingerprints fingerprints = new SqlFingerprints(true, false, 10);
+		final String first = fingerprints.fingerprint("SELECT a FROM t WHERE b = 1");
+		final String second = fingerprints.fingerprint("SELECT a FROM t WHERE b = 2");
+
+		Assert.assertEquals("SELECT a FROM t WHERE b = ?", first);
+		Assert.assertSame(first, second);
+		Assert.assertSame(first, fingerprints.fingerprint("SELECT a FROM t WHERE b = 1"));
+	}
+
+	@Test
+	public void testPassesThroughIfDisabled() {
+		final String sql = "SELECT a FROM t WHERE b = 1";
+		Assert.assertSame(sql, new SqlFingerprints(false, false, 10).fingerprint(sql));
+	}
+}
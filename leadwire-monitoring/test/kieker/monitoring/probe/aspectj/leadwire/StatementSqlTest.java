@@ -0,0 +1,71 @@
+/***************************************************************************
+ * Copyright 2018 Lead Wire (https://leadwire.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.probe.aspectj.leadwire;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class StatementSqlTest {
+
+	private static final String SQL = "SELECT * FROM t WHERE id = ?";
+
+	public StatementSqlTest() {
+		super();
+	}
+
+	@Test
+	public void testAttachesToWovenStatement() {
+		final Map<Object, String> fallbackMap = new HashMap<Object, String>();
+		final SqlAttachment statement = new SqlAttachment.Holder();
+
+		StatementSql.attach(statement, SQL, fallbackMap);
+
+		Assert.assertEquals(SQL, statement.leadwireGetSql());
+		Assert.assertEquals(SQL, StatementSql.lookup(statement, fallbackMap));
+		Assert.assertTrue(fallbackMap.isEmpty());
+	}
+
+	@Test
+	public void testFallsBackToMapForOtherStatements() {
+		final Map<Object, String> fallbackMap = new HashMap<Object, String>();
+		final Object statement = new Object();
+
+		Assert.assertNull(StatementSql.lookup(statement, fallbackMap));
+		StatementSql.attach(statement, SQL, fallbackMap);
+
+		Assert.assertEquals(SQL, StatementSql.lookup(statement, fallbackMap));
+		Assert.assertEquals(SQL, fallbackMap.get(statement));
+	}
+
+	@Test
+	public void testIgnoresMissingStatement() {
+		final Map<Object, String> fallbackMap = new HashMap<Object, String>();
+
+		StatementSql.attach(null, SQL, fallbackMap);
+
+		Assert.assertNull(StatementSql.lookup(null, fallbackMap));
+		Assert.assertTrue(fallbackMap.isEmpty());
+	}
+}
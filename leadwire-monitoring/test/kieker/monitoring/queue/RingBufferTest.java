@@ -0,0 +1,109 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.queue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.monitoring.queue.waitstrategy.ParkingWaitStrategy;
+import kieker.monitoring.queue.waitstrategy.YieldingWaitStrategy;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class RingBufferTest {
+
+	public RingBufferTest() {
+		super();
+	}
+
+	@Test
+	public void testCapacityIsRoundedUpToPowerOfTwo() {
+		Assert.assertEquals(1, new RingBuffer<Integer>(1, new ParkingWaitStrategy()).getCapacity());
+		Assert.assertEquals(16, new RingBuffer<Integer>(16, new ParkingWaitStrategy()).getCapacity());
+		Assert.assertEquals(16384, new RingBuffer<Integer>(10000, new ParkingWaitStrategy()).getCapacity());
+	}
+
+	@Test
+	public void testOfferFailsWhenFullAndPollDrainsInOrder() {
+		final RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(4, new ParkingWaitStrategy());
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(ringBuffer.offer(i));
+		}
+		Assert.assertFalse(ringBuffer.offer(4));
+		Assert.assertEquals(4, ringBuffer.size());
+
+		final Integer[] batch = new Integer[3];
+		Assert.assertEquals(3, ringBuffer.poll(batch));
+		Assert.assertArrayEquals(new Integer[] { 0, 1, 2 }, batch);
+		// the freed slots can be reused, also across the wrap-around
+		Assert.assertTrue(ringBuffer.offer(4));
+		Assert.assertTrue(ringBuffer.offer(5));
+		Assert.assertEquals(3, ringBuffer.poll(batch));
+		Assert.assertArrayEquals(new Integer[] { 3, 4, 5 }, batch);
+		Assert.assertEquals(0, ringBuffer.poll(batch));
+	}
+
+	@Test
+	public void testMultipleProducers() throws Exception {
+		final int numProducers = 4;
+		final int numElementsPerProducer = 100000;
+		final RingBuffer<Long> ringBuffer = new RingBuffer<Long>(64, new YieldingWaitStrategy());
+		final CountDownLatch startSignal = new CountDownLatch(1);
+
+		final Thread[] producers = new Thread[numProducers];
+		for (int p = 0; p < numProducers; p++) {
+			final long producerId = p;
+			producers[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						startSignal.await();
+						for (long i = 0; i < numElementsPerProducer; i++) {
+							ringBuffer.put((producerId << 32) | i);
+						}
+					} catch (final InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			producers[p].start();
+		}
+		startSignal.countDown();
+
+		// each producer's elements must arrive completely and in order
+		final long[] expectedNext = new long[numProducers];
+		final Long[] batch = new Long[16];
+		int received = 0;
+		while (received < (numProducers * numElementsPerProducer)) {
+			final int count = ringBuffer.take(batch);
+			for (int i = 0; i < count; i++) {
+				final int producerId = (int) (batch[i] >>> 32);
+				Assert.assertEquals(expectedNext[producerId]++, batch[i] & 0xFFFFFFFFL);
+			}
+			received += count;
+		}
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		Assert.assertEquals(0, ringBuffer.poll(batch));
+	}
+}
@@ -17,6 +17,9 @@
 package kieker.monitoring.writer;
 
 import java.lang.Thread.State;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -79,6 +82,27 @@ public class MonitoringWriterThreadTest {
 		Assert.assertThat(thread.getState(), CoreMatchers.is(State.TERMINATED));
 	}
 
+	@Test
+	public void testBatches() throws Exception {
+		final Configuration configuration = new Configuration();
+		final BatchRecordingWriter writer = new BatchRecordingWriter(configuration);
+		final BlockingQueue<IMonitoringRecord> writerQueue = new LinkedBlockingQueue<IMonitoringRecord>();
+
+		for (int i = 0; i < 10; i++) {
+			writerQueue.add(new EmptyRecord());
+		}
+
+		final MonitoringWriterThread thread = new MonitoringWriterThread(writer, writerQueue, 4);
+		thread.terminate();
+		thread.start();
+		thread.join(THREAD_STATE_CHANGE_TIMEOUT_IN_MS);
+
+		Assert.assertThat(thread.getState(), CoreMatchers.is(State.TERMINATED));
+		// the queue is drained up to the batch size, the last batch is cut at the end-of-monitoring record
+		Assert.assertEquals(Arrays.asList(4, 4, 2), writer.batchSizes);
+		Assert.assertEquals(10, writer.numRecords);
+	}
+
 	@Test
 	public void testBlocking() throws Exception {
 		final Configuration configuration = new Configuration();
@@ -95,4 +119,40 @@ public class MonitoringWriterThreadTest {
 
 		Assert.assertThat(thread.getState(), CoreMatchers.is(State.TERMINATED));
 	}
+
+	/**
+	 * Records the size of each batch, relying on the default implementation of {@link #writeMonitoringRecords(IMonitoringRecord[], int)}.
+	 */
+	private static class BatchRecordingWriter extends AbstractMonitoringWriter {
+
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		int numRecords;
+		private int numRecordsInBatch;
+
+		public BatchRecordingWriter(final Configuration configuration) {
+			super(configuration);
+		}
+
+		@Override
+		public void onStarting() {
+			// nothing to do
+		}
+
+		@Override
+		public void writeMonitoringRecord(final IMonitoringRecord record) {
+			this.numRecords++;
+			this.numRecordsInBatch++;
+		}
+
+		@Override
+		public void onEndOfBatch() {
+			this.batchSizes.add(this.numRecordsInBatch);
+			this.numRecordsInBatch = 0;
+		}
+
+		@Override
+		public void onTerminating() {
+			// nothing to do
+		}
+	}
 }
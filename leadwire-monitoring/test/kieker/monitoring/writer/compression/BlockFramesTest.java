@@ -0,0 +1,93 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.configuration.Configuration;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class BlockFramesTest {
+
+	private final IBlockCodec codec = new DeflateBlockCodec(new Configuration());
+
+	public BlockFramesTest() {
+		super();
+	}
+
+	@Test
+	public void testCompressesRepetitiveBlocks() throws IOException {
+		final StringBuilder records = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			records.append("$1;1520000000000;public void com.example.Service.call();SESSION;").append(i).append('\n');
+		}
+		final byte[] first = records.toString().getBytes(StandardCharsets.UTF_8);
+		final byte[] second = "$1;short".getBytes(StandardCharsets.UTF_8);
+
+		final byte[] frames = new byte[BlockFrames.maxFrameLength(first.length) + BlockFrames.maxFrameLength(second.length)];
+		final int firstLength = BlockFrames.encode(first, 0, first.length, this.codec, frames);
+		Assert.assertTrue("frame length " + firstLength, firstLength < (first.length / 4));
+		Assert.assertEquals(DeflateBlockCodec.ID, frames[4]);
+		final byte[] block = new byte[second.length];
+		System.arraycopy(second, 0, block, 0, second.length);
+		final int secondLength = encodeAt(block, frames, firstLength);
+
+		final ByteBuffer buffer = ByteBuffer.wrap(frames, 0, firstLength + secondLength);
+		Assert.assertArrayEquals(first, BlockFrames.decode(buffer, this.codec));
+		Assert.assertArrayEquals(second, BlockFrames.decode(buffer, this.codec));
+		Assert.assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testStoresIncompressibleBlocks() throws IOException {
+		final byte[] random = new byte[1000];
+		new Random(42).nextBytes(random);
+
+		final byte[] frame = new byte[BlockFrames.maxFrameLength(random.length)];
+		final int frameLength = BlockFrames.encode(random, 0, random.length, this.codec, frame);
+		Assert.assertEquals(BlockFrames.HEADER_SIZE + random.length, frameLength);
+		Assert.assertEquals(BlockFrames.STORED, frame[4]);
+		Assert.assertArrayEquals(random, BlockFrames.decode(ByteBuffer.wrap(frame, 0, frameLength), this.codec));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDetectsCorruptBlocks() throws IOException {
+		final byte[] block = "some data, some data, some data".getBytes(StandardCharsets.UTF_8);
+		final byte[] frame = new byte[BlockFrames.maxFrameLength(block.length)];
+		final int frameLength = BlockFrames.encode(block, 0, block.length, this.codec, frame);
+		frame[(BlockFrames.HEADER_SIZE + frameLength) / 2] ^= 0x55;
+
+		BlockFrames.decode(ByteBuffer.wrap(frame, 0, frameLength), this.codec);
+	}
+
+	private int encodeAt(final byte[] block, final byte[] frames, final int offset) {
+		final byte[] frame = new byte[BlockFrames.maxFrameLength(block.length)];
+		final int frameLength = BlockFrames.encode(block, 0, block.length, this.codec, frame);
+		System.arraycopy(frame, 0, frames, offset, frameLength);
+		return frameLength;
+	}
+}
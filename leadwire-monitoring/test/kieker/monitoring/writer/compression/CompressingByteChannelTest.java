@@ -0,0 +1,117 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.configuration.Configuration;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class CompressingByteChannelTest {
+
+	public CompressingByteChannelTest() {
+		super();
+	}
+
+	@Test
+	public void testWritesOneFramePerWrite() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final CompressingByteChannel channel = new CompressingByteChannel(Channels.newChannel(out),
+				new DeflateBlockCodec(new Configuration()), 2);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		final StringBuilder expected = new StringBuilder();
+		for (int chunk = 0; chunk < 10; chunk++) {
+			final byte[] bytes = chunk(chunk);
+			buffer.clear();
+			buffer.put(bytes);
+			buffer.flip();
+			Assert.assertEquals(bytes.length, channel.write(buffer));
+			Assert.assertFalse(buffer.hasRemaining());
+			expected.append(new String(bytes, StandardCharsets.UTF_8));
+		}
+		channel.close();
+
+		Assert.assertFalse(channel.isOpen());
+		Assert.assertEquals(expected.toString(), decode(out.toByteArray(), 10));
+	}
+
+	@Test
+	public void testWritesGatheredBuffersInOneFrame() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final CompressingByteChannel channel = new CompressingByteChannel(Channels.newChannel(out),
+				new DeflateBlockCodec(new Configuration()), 2);
+
+		final ByteBuffer[] buffers = { ByteBuffer.wrap(chunk(0)), ByteBuffer.wrap(chunk(1)) };
+		final long expectedLength = buffers[0].remaining() + buffers[1].remaining();
+		Assert.assertEquals(expectedLength, channel.write(buffers));
+		channel.close();
+
+		Assert.assertEquals(new String(chunk(0), StandardCharsets.UTF_8) + new String(chunk(1), StandardCharsets.UTF_8),
+				decode(out.toByteArray(), 1));
+	}
+
+	@Test(timeout = 10000)
+	public void testRejectsWritesWhenTheCompressorDied() throws InterruptedException {
+		final CompressingByteChannel channel = new CompressingByteChannel(Channels.newChannel(new ByteArrayOutputStream()),
+				new CompressingRawDataWriterTest.FailingCodec(new Configuration()), 2);
+
+		IOException failure = null;
+		for (int chunk = 0; (chunk < 1000) && (failure == null); chunk++) {
+			try {
+				channel.write(ByteBuffer.wrap(chunk(chunk)));
+			} catch (final IOException e) {
+				failure = e;
+			}
+			Thread.sleep(1);
+		}
+		Assert.assertNotNull(failure);
+		Assert.assertTrue(failure.getCause() instanceof OutOfMemoryError);
+	}
+
+	private static byte[] chunk(final int chunk) {
+		final StringBuilder records = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			records.append("$1;1520000000000;op();SESS-ID;").append(chunk).append(';').append(i).append('\n');
+		}
+		return records.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String decode(final byte[] data, final int expectedNumberOfFrames) throws IOException {
+		final ByteBuffer frames = ByteBuffer.wrap(data);
+		final IBlockCodec codec = new DeflateBlockCodec(new Configuration());
+		final StringBuilder content = new StringBuilder();
+		int numberOfFrames = 0;
+		while (frames.hasRemaining()) {
+			content.append(new String(BlockFrames.decode(frames, codec), StandardCharsets.UTF_8));
+			numberOfFrames++;
+		}
+		Assert.assertEquals(expectedNumberOfFrames, numberOfFrames);
+		return content.toString();
+	}
+}
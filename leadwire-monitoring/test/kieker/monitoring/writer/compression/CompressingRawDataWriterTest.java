@@ -0,0 +1,155 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.common.configuration.Configuration;
+import kieker.monitoring.writer.raw.ByteBufferPool;
+import kieker.test.monitoring.junit.writer.collector.TestRawDataStorage;
+import kieker.test.monitoring.junit.writer.collector.TestRawDataWriter;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class CompressingRawDataWriterTest {
+
+	public CompressingRawDataWriterTest() {
+		super();
+	}
+
+	@Test
+	public void testWritesOneFramePerChunk() throws IOException {
+		final String testId = "testWritesOneFramePerChunk";
+		final CompressingRawDataWriter writer = createWriter(testId);
+
+		// the writer must copy the data, since the buffer is reused like by the collector
+		final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		final StringBuilder expected = new StringBuilder();
+		writer.onInitialization();
+		for (int chunk = 0; chunk < 10; chunk++) {
+			final byte[] bytes = chunk(chunk);
+			buffer.clear();
+			buffer.put(bytes);
+			writer.writeData(buffer, 0, bytes.length);
+			expected.append(new String(bytes, StandardCharsets.UTF_8));
+		}
+		writer.onTermination();
+
+		final byte[] frames = TestRawDataStorage.getInstance().getData(testId);
+		Assert.assertEquals(expected.toString(), decode(frames, 10));
+		Assert.assertTrue("compressed: " + frames.length, frames.length < (expected.length() / 2));
+	}
+
+	@Test
+	public void testReleasesPooledBuffers() throws IOException, InterruptedException {
+		final String testId = "testReleasesPooledBuffers";
+		final CompressingRawDataWriter writer = createWriter(testId);
+
+		// fewer buffers than chunks, so the buffers must be released for the chunks to be written
+		final ByteBufferPool pool = new ByteBufferPool(2, 4096);
+		final StringBuilder expected = new StringBuilder();
+		writer.onInitialization();
+		for (int chunk = 0; chunk < 10; chunk++) {
+			final byte[] bytes = chunk(chunk);
+			final ByteBuffer buffer = pool.acquire();
+			// a slice which does not start at the beginning of the buffer
+			buffer.position(3);
+			buffer.put(bytes);
+			writer.writeData(buffer, 3, bytes.length, pool);
+			expected.append(new String(bytes, StandardCharsets.UTF_8));
+		}
+		writer.onTermination();
+
+		Assert.assertEquals(0, pool.getNumberOfBuffersInUse());
+		Assert.assertEquals(expected.toString(), decode(TestRawDataStorage.getInstance().getData(testId), 10));
+	}
+
+	@Test(timeout = 10000)
+	public void testDoesNotBlockWhenTheCompressorDies() throws InterruptedException {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(CompressingRawDataWriter.CONFIG_CODEC_CLASSNAME, FailingCodec.class.getName());
+		final CompressingRawDataWriter writer = createWriter("testDoesNotBlockWhenTheCompressorDies", configuration);
+
+		// more pooled chunks than fit into the queue, so that the writer would block on a dead compressor
+		final ByteBufferPool pool = new ByteBufferPool(20, 4096);
+		writer.onInitialization();
+		for (int chunk = 0; chunk < 10; chunk++) {
+			final byte[] bytes = chunk(chunk);
+			final ByteBuffer buffer = pool.acquire();
+			buffer.put(bytes);
+			writer.writeData(buffer, 0, bytes.length, pool);
+		}
+		writer.onTermination();
+
+		Assert.assertEquals(0, pool.getNumberOfBuffersInUse());
+	}
+
+	private static CompressingRawDataWriter createWriter(final String testId) {
+		return createWriter(testId, new Configuration());
+	}
+
+	private static CompressingRawDataWriter createWriter(final String testId, final Configuration configuration) {
+		configuration.setProperty(CompressingRawDataWriter.CONFIG_WRITER_CLASSNAME, TestRawDataWriter.class.getName());
+		configuration.setProperty(CompressingRawDataWriter.CONFIG_QUEUE_SIZE, "2");
+		configuration.setProperty(TestRawDataWriter.CONFIG_TEST_ID, testId);
+		return new CompressingRawDataWriter(configuration);
+	}
+
+	private static byte[] chunk(final int chunk) {
+		final StringBuilder records = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			records.append("$1;1520000000000;op();SESS-ID;").append(chunk).append(';').append(i).append('\n');
+		}
+		return records.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String decode(final byte[] data, final int expectedNumberOfFrames) throws IOException {
+		final ByteBuffer frames = ByteBuffer.wrap(data);
+		final IBlockCodec codec = new DeflateBlockCodec(new Configuration());
+		final StringBuilder content = new StringBuilder();
+		int numberOfFrames = 0;
+		while (frames.hasRemaining()) {
+			content.append(new String(BlockFrames.decode(frames, codec), StandardCharsets.UTF_8));
+			numberOfFrames++;
+		}
+		Assert.assertEquals(expectedNumberOfFrames, numberOfFrames);
+		return content.toString();
+	}
+
+	/**
+	 * A codec which kills the compressor thread.
+	 */
+	public static class FailingCodec extends DeflateBlockCodec {
+
+		public FailingCodec(final Configuration configuration) {
+			super(configuration);
+		}
+
+		@Override
+		public int compress(final byte[] src, final int srcOffset, final int length, final byte[] dst, final int dstOffset, final int maxLength) {
+			throw new OutOfMemoryError("simulated");
+		}
+	}
+}
@@ -17,11 +17,17 @@
 package kieker.monitoring.writer.filesystem;
 
 import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -32,6 +38,8 @@ import kieker.common.record.misc.EmptyRecord;
 import kieker.common.util.filesystem.FSUtil;
 import kieker.common.util.filesystem.FileExtensionFilter;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
+import kieker.monitoring.writer.compression.BlockFrames;
+import kieker.monitoring.writer.compression.DeflateBlockCodec;
 
 /**
  * @author Christian Wulf
@@ -208,6 +216,124 @@ public class BinaryFileWriterTest {
 		}
 	}
 
+	@Test
+	public void testMappedSegmentsMaxLogFiles() {
+		final int[] maxLogFilesValues = { -1, 0, 1, 2 };
+		final int[] numRecordsToWriteValues = { 0, 1, 2, 3, 10 };
+		final int[][] expectedNumRecordFilesValues = { { 0, 1, 1, 2, 5, }, { 0, 1, 1, 2, 5 }, { 0, 1, 1, 1, 1 }, { 0, 1, 1, 2, 2 } };
+
+		for (int i = 0; i < maxLogFilesValues.length; i++) {
+			for (int j = 0; j < numRecordsToWriteValues.length; j++) {
+				// test preparation
+				this.configuration.setProperty(BinaryFileWriter.CONFIG_MAPPED_SEGMENTS, "true");
+				this.configuration.setProperty(BinaryFileWriter.CONFIG_SEGMENT_SIZE, "1");
+				this.configuration.setProperty(BinaryFileWriter.CONFIG_MAXENTRIESINFILE, "2");
+				this.configuration.setProperty(BinaryFileWriter.CONFIG_MAXLOGFILES, String.valueOf(maxLogFilesValues[i]));
+				final BinaryFileWriter writer = new BinaryFileWriter(this.configuration);
+
+				// test execution
+				final File storePath = FilesystemTestUtil.executeFileWriterTest(numRecordsToWriteValues[j], writer);
+
+				// test assertion
+				final String reasonMessage = "Passed arguments: maxLogFiles=" + maxLogFilesValues[i] + ", numRecordsToWrite=" + numRecordsToWriteValues[j];
+				final File[] recordFiles = storePath.listFiles(writer.getFileNameFilter());
+				Assert.assertNotNull(recordFiles);
+				Assert.assertThat(reasonMessage, recordFiles.length, CoreMatchers.is(expectedNumRecordFilesValues[i][j]));
+			}
+		}
+	}
+
+	@Test
+	public void testMappedSegmentsRotateBySize() {
+		final int recordSizeInBytes = 4 + 8 + EmptyRecord.SIZE; // 12
+		final int recordsPerSegment = (1024 * 1024) / recordSizeInBytes;
+
+		// test preparation
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_MAPPED_SEGMENTS, "true");
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_SEGMENT_SIZE, "1");
+		final BinaryFileWriter writer = new BinaryFileWriter(this.configuration);
+
+		// test execution
+		final File storePath = FilesystemTestUtil.executeFileWriterTest((2 * recordsPerSegment) + 1, writer);
+
+		// test assertion: the finished segments are truncated to the records
+		final File[] recordFiles = storePath.listFiles(writer.getFileNameFilter());
+		Assert.assertNotNull(recordFiles);
+		Assert.assertThat(recordFiles.length, CoreMatchers.is(3));
+		long totalSize = 0;
+		for (final File recordFile : recordFiles) {
+			totalSize += recordFile.length();
+		}
+		Assert.assertThat(totalSize, CoreMatchers.is(((2L * recordsPerSegment) + 1) * recordSizeInBytes));
+	}
+
+	@Test
+	public void testMappedSegmentsAreUnmapped() throws IOException {
+		// the mappings of the process are only visible on Linux
+		final Path maps = Paths.get("/proc/self/maps");
+		Assume.assumeTrue(Files.isReadable(maps) && MappedBuffers.isSupported());
+
+		// test preparation: rotates and deletes segments
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_MAPPED_SEGMENTS, "true");
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_SEGMENT_SIZE, "1");
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_MAXENTRIESINFILE, "2");
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_MAXLOGFILES, "1");
+		final BinaryFileWriter writer = new BinaryFileWriter(this.configuration);
+
+		// test execution
+		final File storePath = FilesystemTestUtil.executeFileWriterTest(10, writer);
+
+		// test assertion: neither the kept nor the deleted segments are still mapped
+		Assert.assertThat(storePath.listFiles(writer.getFileNameFilter()).length, CoreMatchers.is(1));
+		final String mappings = new String(Files.readAllBytes(maps), StandardCharsets.UTF_8);
+		Assert.assertFalse(mappings, mappings.contains(this.tmpFolder.getRoot().getAbsolutePath()));
+	}
+
+	@Test
+	public void testMappedSegmentsWriteTheSameBytes() throws IOException {
+		// test preparation
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_PATH, this.tmpFolder.newFolder().getAbsolutePath());
+		final BinaryFileWriter streamWriter = new BinaryFileWriter(this.configuration);
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_PATH, this.tmpFolder.newFolder().getAbsolutePath());
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_MAPPED_SEGMENTS, "true");
+		final BinaryFileWriter mappedWriter = new BinaryFileWriter(this.configuration);
+
+		// test execution
+		final File[] streamFiles = FilesystemTestUtil.executeFileWriterTest(1000, streamWriter).listFiles(FileExtensionFilter.BIN);
+		final File[] mappedFiles = FilesystemTestUtil.executeFileWriterTest(1000, mappedWriter).listFiles(FileExtensionFilter.BIN);
+
+		// test assertion
+		Assert.assertThat(mappedFiles.length, CoreMatchers.is(1));
+		Assert.assertArrayEquals(Files.readAllBytes(streamFiles[0].toPath()), Files.readAllBytes(mappedFiles[0].toPath()));
+	}
+
+	@Test
+	public void testFramedRecordFilesHoldTheSameBytes() throws IOException {
+		// test preparation
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_PATH, this.tmpFolder.newFolder().getAbsolutePath());
+		final BinaryFileWriter streamWriter = new BinaryFileWriter(this.configuration);
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_PATH, this.tmpFolder.newFolder().getAbsolutePath());
+		this.configuration.setProperty(BinaryFileWriter.CONFIG_CODEC, DeflateBlockCodec.class.getName());
+		final BinaryFileWriter framingWriter = new BinaryFileWriter(this.configuration);
+
+		// test execution
+		final File[] streamFiles = FilesystemTestUtil.executeFileWriterTest(1000, streamWriter).listFiles(FileExtensionFilter.BIN);
+		final File[] framedFiles = FilesystemTestUtil.executeFileWriterTest(1000, framingWriter)
+				.listFiles(new FileExtensionFilter(BlockFrames.FILE_EXTENSION));
+
+		// test assertion
+		Assert.assertThat(framedFiles.length, CoreMatchers.is(1));
+		final ByteBuffer frames = ByteBuffer.wrap(Files.readAllBytes(framedFiles[0].toPath()));
+		final DeflateBlockCodec codec = new DeflateBlockCodec(this.configuration);
+		final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		while (frames.hasRemaining()) {
+			blocks.write(BlockFrames.decode(frames, codec));
+		}
+		final byte[] streamBytes = Files.readAllBytes(streamFiles[0].toPath());
+		Assert.assertArrayEquals(streamBytes, blocks.toByteArray());
+		Assert.assertTrue("compressed: " + frames.capacity(), frames.capacity() < streamBytes.length);
+	}
+
 	@Test
 	public void testValidLogFolder() {
 		final String passedConfigPathName = this.tmpFolder.getRoot().getAbsolutePath();
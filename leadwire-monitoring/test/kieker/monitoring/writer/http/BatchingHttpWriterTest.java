@@ -0,0 +1,171 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.monitoring.writer.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import kieker.common.configuration.Configuration;
+import kieker.common.record.misc.EmptyRecord;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class BatchingHttpWriterTest {
+
+	private HttpServer server;
+	private final List<String> receivedBodies = new CopyOnWriteArrayList<String>();
+	private final AtomicInteger failuresToSimulate = new AtomicInteger();
+
+	@Before
+	public void before() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/apm", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				InputStream in = exchange.getRequestBody();
+				if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+					in = new GZIPInputStream(in);
+				}
+				final String body = BatchingHttpWriterTest.readFully(in);
+				final int status;
+				if (BatchingHttpWriterTest.this.failuresToSimulate.getAndDecrement() > 0) {
+					status = 503;
+				} else {
+					BatchingHttpWriterTest.this.receivedBodies.add(body);
+					status = 200;
+				}
+				exchange.sendResponseHeaders(status, -1);
+				exchange.close();
+			}
+		});
+		this.server.start();
+	}
+
+	@After
+	public void after() {
+		this.server.stop(0);
+	}
+
+	private Configuration createConfiguration() {
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(BatchingHttpWriter.CONFIG_URL, "http://127.0.0.1:" + this.server.getAddress().getPort() + "/apm");
+		configuration.setProperty(BatchingHttpWriter.CONFIG_BATCH_MAX_RECORDS, "10");
+		configuration.setProperty(BatchingHttpWriter.CONFIG_LINGER_MS, "60000");
+		configuration.setProperty(BatchingHttpWriter.CONFIG_RETRY_BACKOFF_MS, "1");
+		return configuration;
+	}
+
+	@Test
+	public void testRecordsAreSentInBatches() {
+		final BatchingHttpWriter writer = new BatchingHttpWriter(this.createConfiguration());
+		writer.onStarting();
+		for (int i = 0; i < 25; i++) {
+			writer.writeMonitoringRecord(new EmptyRecord());
+		}
+		writer.onTerminating();
+
+		// two full batches and the remainder flushed on termination
+		Assert.assertThat(this.receivedBodies.size(), CoreMatchers.is(3));
+		Assert.assertThat(writer.getSentRecords(), CoreMatchers.is(25L));
+		Assert.assertThat(writer.getSentBatches(), CoreMatchers.is(3L));
+		int lines = 0;
+		for (final String body : this.receivedBodies) {
+			lines += body.split("\n").length;
+		}
+		Assert.assertThat(lines, CoreMatchers.is(25));
+	}
+
+	@Test
+	public void testGzipPayload() {
+		final Configuration configuration = this.createConfiguration();
+		configuration.setProperty(BatchingHttpWriter.CONFIG_GZIP, "true");
+		final BatchingHttpWriter writer = new BatchingHttpWriter(configuration);
+		writer.onStarting();
+		writer.writeMonitoringRecord(new EmptyRecord());
+		writer.onTerminating();
+
+		Assert.assertThat(this.receivedBodies.size(), CoreMatchers.is(1));
+		Assert.assertThat(this.receivedBodies.get(0), CoreMatchers.is(new EmptyRecord().toJson() + "\n"));
+	}
+
+	@Test
+	public void testLingerFlushesIncompleteBatch() throws InterruptedException {
+		final Configuration configuration = this.createConfiguration();
+		configuration.setProperty(BatchingHttpWriter.CONFIG_LINGER_MS, "20");
+		final BatchingHttpWriter writer = new BatchingHttpWriter(configuration);
+		writer.onStarting();
+		writer.writeMonitoringRecord(new EmptyRecord());
+
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (this.receivedBodies.isEmpty() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(5);
+		}
+		Assert.assertThat(this.receivedBodies.size(), CoreMatchers.is(1));
+		writer.onTerminating();
+	}
+
+	@Test
+	public void testRetryAndDrop() {
+		this.failuresToSimulate.set(2);
+		final Configuration configuration = this.createConfiguration();
+		configuration.setProperty(BatchingHttpWriter.CONFIG_MAX_RETRIES, "2");
+		final BatchingHttpWriter writer = new BatchingHttpWriter(configuration);
+		writer.onStarting();
+		writer.writeMonitoringRecord(new EmptyRecord());
+		writer.onTerminating();
+
+		Assert.assertThat(writer.getRetries(), CoreMatchers.is(2L));
+		Assert.assertThat(writer.getSentRecords(), CoreMatchers.is(1L));
+
+		this.failuresToSimulate.set(10);
+		final BatchingHttpWriter failingWriter = new BatchingHttpWriter(configuration);
+		failingWriter.onStarting();
+		failingWriter.writeMonitoringRecord(new EmptyRecord());
+		failingWriter.onTerminating();
+
+		Assert.assertThat(failingWriter.getFailedBatches(), CoreMatchers.is(1L));
+		Assert.assertThat(failingWriter.getDroppedRecords(), CoreMatchers.is(1L));
+	}
+
+	private static String readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+}
@@ -0,0 +1,94 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.raw;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class ByteBufferPoolTest {
+
+	public ByteBufferPoolTest() {
+		super();
+	}
+
+	@Test
+	public void testReusesReleasedBuffer() throws InterruptedException {
+		final ByteBufferPool pool = new ByteBufferPool(4, 128);
+
+		final ByteBuffer first = pool.acquire();
+		Assert.assertEquals(128, first.capacity());
+		first.putLong(42L);
+		pool.release(first);
+
+		// a synchronous caller gets the same, cleared buffer again
+		final ByteBuffer second = pool.acquire();
+		Assert.assertSame(first, second);
+		Assert.assertEquals(0, second.position());
+		Assert.assertEquals(128, second.limit());
+
+		final ByteBuffer third = pool.acquire();
+		Assert.assertNotSame(second, third);
+		Assert.assertEquals(2, pool.getNumberOfBuffersInUse());
+		pool.release(third);
+		pool.release(second);
+		Assert.assertEquals(0, pool.getNumberOfBuffersInUse());
+	}
+
+	@Test
+	public void testWaitsForReleasedBuffer() throws InterruptedException {
+		final ByteBufferPool pool = new ByteBufferPool(1, 16);
+		final ByteBuffer buffer = pool.acquire();
+
+		final CountDownLatch acquired = new CountDownLatch(1);
+		final AtomicReference<ByteBuffer> result = new AtomicReference<ByteBuffer>();
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(pool.acquire());
+					acquired.countDown();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		thread.start();
+
+		Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+		pool.release(buffer);
+		Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		Assert.assertSame(buffer, result.get());
+		thread.join();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRejectsSurplusRelease() {
+		final ByteBufferPool pool = new ByteBufferPool(1, 16);
+		pool.release(ByteBuffer.allocate(16));
+		pool.release(ByteBuffer.allocate(16));
+	}
+}
@@ -0,0 +1,308 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.tcp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class ReconnectingSocketChannelTest {
+
+	private static final String HANDSHAKE = "registry;";
+
+	private int port;
+	private ReconnectingSocketChannel channel;
+	private Receiver receiver;
+
+	public ReconnectingSocketChannelTest() {
+		super();
+	}
+
+	@Before
+	public void before() throws IOException {
+		// a free port nobody listens on yet
+		final ServerSocket serverSocket = new ServerSocket(0);
+		this.port = serverSocket.getLocalPort();
+		serverSocket.close();
+
+		this.channel = new ReconnectingSocketChannel(new InetSocketAddress("127.0.0.1", this.port), 1000, 0, 0, 5000,
+				new SpillBuffer(1024, 0, null), new IConnectionListener() {
+					@Override
+					public void onConnected(final WritableByteChannel connection) throws IOException {
+						final ByteBuffer handshake = chunk(HANDSHAKE);
+						while (handshake.hasRemaining()) {
+							connection.write(handshake);
+						}
+					}
+				});
+	}
+
+	@After
+	public void after() throws IOException {
+		this.channel.close();
+		if (this.receiver != null) {
+			this.receiver.stop();
+		}
+	}
+
+	@Test
+	public void testReplaysChunksWrittenBeforeConnecting() throws Exception { // NOCS (Exception)
+		final ByteBuffer first = chunk("first;");
+		Assert.assertEquals(first.remaining(), this.channel.write(first));
+		Assert.assertFalse(first.hasRemaining());
+		this.channel.write(chunk("second;"));
+		Assert.assertFalse(this.channel.isConnected());
+		Assert.assertEquals(4 + 6 + 4 + 7, this.channel.getUnsentBytes());
+
+		this.receiver = new Receiver(this.port);
+		final String third = this.writeUntilConnected("third;");
+		this.channel.close();
+
+		Assert.assertEquals(HANDSHAKE + "first;second;" + third, this.receiver.awaitContent());
+	}
+
+	@Test
+	public void testReconnectsAfterTheReceiverRestarted() throws Exception { // NOCS (Exception)
+		this.receiver = new Receiver(this.port);
+		final String first = this.writeUntilConnected("first;");
+		this.receiver.awaitBytes((HANDSHAKE + first).length());
+		this.receiver.stop();
+		Assert.assertEquals(HANDSHAKE + first, this.receiver.awaitContent());
+
+		// the lost connection is noticed by one of the next writes
+		for (int i = 0; (i < 1000) && this.channel.isConnected(); i++) {
+			this.channel.write(chunk("lost;"));
+			Thread.sleep(1);
+		}
+		Assert.assertFalse(this.channel.isConnected());
+		this.channel.write(chunk("spilled;"));
+
+		this.receiver = new Receiver(this.port);
+		this.channel.write(chunk("last;"));
+		this.channel.close();
+
+		final String content = this.receiver.awaitContent();
+		Assert.assertThat(content, CoreMatchers.startsWith(HANDSHAKE));
+		Assert.assertThat(content, CoreMatchers.endsWith("spilled;last;"));
+	}
+
+	@Test
+	public void testWritesGatheredBuffersAsOneChunk() throws Exception { // NOCS (Exception)
+		final ByteBuffer[] spilled = { chunk("registry1;"), chunk("records1;") };
+		Assert.assertEquals(19, this.channel.write(spilled));
+		Assert.assertEquals(4 + 19, this.channel.getUnsentBytes());
+
+		this.receiver = new Receiver(this.port);
+		final String second = this.writeUntilConnected("registry2;", "records2;");
+		Assert.assertEquals(0, this.channel.getUnsentBytes());
+		this.channel.close();
+
+		Assert.assertEquals(HANDSHAKE + "registry1;records1;" + second, this.receiver.awaitContent());
+	}
+
+	@Test
+	public void testReconnectsAfterDroppingAChunk() throws Exception { // NOCS (Exception)
+		// a receiver which accepts the connection, but never reads, so that the spill buffer fills up
+		final ServerSocket stalled = new ServerSocket();
+		stalled.setReuseAddress(true);
+		stalled.setReceiveBufferSize(4096);
+		stalled.bind(new InetSocketAddress("127.0.0.1", this.port));
+		final char[] padding = new char[300];
+		Arrays.fill(padding, 'x');
+		final String records = new String(padding) + ";";
+		try {
+			this.writeUntilConnected("first;");
+			// each chunk carries new registry entries, and the dropped one must not get lost for the receiver
+			for (int i = 0; (i < 100000) && this.channel.isConnected(); i++) {
+				this.channel.write(new ByteBuffer[] { chunk("registry" + i + ";"), chunk(records) });
+			}
+			Assert.assertFalse(this.channel.isConnected());
+		} finally {
+			stalled.close();
+		}
+
+		this.receiver = new Receiver(this.port);
+		final String last = this.writeUntilConnected("last;");
+		this.channel.close();
+
+		final String content = this.receiver.awaitContent();
+		Assert.assertThat(content, CoreMatchers.startsWith(HANDSHAKE));
+		Assert.assertThat(content, CoreMatchers.endsWith(last));
+	}
+
+	@Test
+	public void testDoesNotBlockWhileConnecting() throws IOException {
+		// a receiver which does not answer, since its accept queue is full, so that a blocking connect would take the
+		// whole timeout
+		final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		final List<Socket> queued = new ArrayList<Socket>();
+		final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+		final int connectTimeout = 500;
+		final ReconnectingSocketChannel unreachable = new ReconnectingSocketChannel(address, connectTimeout, 0, 0, 0,
+				new SpillBuffer(1024, 0, null), null);
+		try {
+			Assume.assumeTrue(fillAcceptQueue(address, queued));
+
+			final long start = System.nanoTime();
+			for (int i = 0; i < 20; i++) {
+				unreachable.write(chunk("chunk;"));
+			}
+			final long elapsedMs = (System.nanoTime() - start) / 1000000L;
+
+			Assert.assertTrue("writes took " + elapsedMs + " ms", elapsedMs < connectTimeout);
+			Assert.assertFalse(unreachable.isConnected());
+			Assert.assertEquals(20 * (4 + 6), unreachable.getUnsentBytes());
+		} finally {
+			unreachable.close();
+			for (final Socket socket : queued) {
+				socket.close();
+			}
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * @return whether the accept queue is full, i.e., a connect has timed out
+	 */
+	private static boolean fillAcceptQueue(final InetSocketAddress address, final List<Socket> sockets) throws IOException {
+		for (int i = 0; i < 16; i++) {
+			final Socket socket = new Socket();
+			sockets.add(socket);
+			try {
+				socket.connect(address, 200);
+			} catch (final SocketTimeoutException e) { // NOPMD (the expected outcome)
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsWritesWhenClosed() throws IOException {
+		this.channel.close();
+		this.channel.write(chunk("first;"));
+	}
+
+	/**
+	 * Writes the given chunk until a write has completed the connect.
+	 *
+	 * @return the content of all written chunks
+	 */
+	private String writeUntilConnected(final String... contents) throws IOException, InterruptedException {
+		final StringBuilder written = new StringBuilder();
+		for (int i = 0; (i < 1000) && !this.channel.isConnected(); i++) {
+			final ByteBuffer[] buffers = new ByteBuffer[contents.length];
+			for (int j = 0; j < contents.length; j++) {
+				buffers[j] = chunk(contents[j]);
+				written.append(contents[j]);
+			}
+			this.channel.write(buffers);
+			Thread.sleep(1);
+		}
+		Assert.assertTrue(this.channel.isConnected());
+		return written.toString();
+	}
+
+	private static ByteBuffer chunk(final String content) {
+		return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Receives the content of a single connection.
+	 */
+	private static class Receiver implements Runnable {
+		private final ServerSocket serverSocket;
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		private final Thread thread;
+		private volatile Socket socket;
+
+		Receiver(final int port) throws IOException {
+			this.serverSocket = new ServerSocket();
+			this.serverSocket.setReuseAddress(true);
+			this.serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+			this.thread = new Thread(this);
+			this.thread.start();
+		}
+
+		@Override
+		public void run() {
+			try {
+				this.socket = this.serverSocket.accept();
+				final InputStream in = this.socket.getInputStream();
+				final byte[] bytes = new byte[1024];
+				int read = in.read(bytes);
+				while (read >= 0) {
+					synchronized (this.content) {
+						this.content.write(bytes, 0, read);
+					}
+					read = in.read(bytes);
+				}
+			} catch (final IOException e) { // NOPMD (stopped)
+				// stopped
+			}
+		}
+
+		void awaitBytes(final int count) throws InterruptedException {
+			for (int i = 0; i < 1000; i++) {
+				synchronized (this.content) {
+					if (this.content.size() >= count) {
+						return;
+					}
+				}
+				Thread.sleep(10);
+			}
+		}
+
+		String awaitContent() throws InterruptedException {
+			this.thread.join(10000);
+			synchronized (this.content) {
+				return new String(this.content.toByteArray(), StandardCharsets.UTF_8);
+			}
+		}
+
+		void stop() throws IOException {
+			this.serverSocket.close();
+			final Socket currentSocket = this.socket;
+			if (currentSocket != null) {
+				currentSocket.close();
+			}
+		}
+	}
+}
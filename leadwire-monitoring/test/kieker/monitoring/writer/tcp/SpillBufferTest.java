@@ -0,0 +1,179 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+
+package kieker.monitoring.writer.tcp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class SpillBufferTest {
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder(); // NOCS recommends that this is private. JUnit test wants this public.
+
+	public SpillBufferTest() {
+		super();
+	}
+
+	@Test
+	public void testKeepsChunksInOrderFromMemoryToFile() throws IOException {
+		final File directory = this.tmpFolder.getRoot();
+		// room for two chunks of ten bytes in memory
+		final SpillBuffer spill = new SpillBuffer(30, 1024, directory);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(spill.append(chunk("chunk-" + i + "..."), 0));
+		}
+		Assert.assertEquals(5 * (4 + 10), spill.size());
+		Assert.assertEquals(1, directory.list().length);
+
+		// memory has room again, but the chunk must follow those in the file
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final WritableByteChannel channel = Channels.newChannel(out);
+		Assert.assertFalse(spill.drainTo(new ThrottledChannel(channel, 20)));
+		Assert.assertTrue(spill.append(chunk("chunk-5..."), 0));
+
+		Assert.assertTrue(spill.drainTo(channel));
+		Assert.assertTrue(spill.isEmpty());
+		Assert.assertEquals("chunk-0...chunk-1...chunk-2...chunk-3...chunk-4...chunk-5...", string(out));
+
+		spill.close();
+		Assert.assertEquals(0, directory.list().length);
+	}
+
+	@Test
+	public void testDropsChunksWhenFull() throws IOException {
+		final SpillBuffer spill = new SpillBuffer(30, 0, null);
+		Assert.assertTrue(spill.append(chunk("chunk-0..."), 0));
+		Assert.assertTrue(spill.append(chunk("chunk-1..."), 0));
+		final ByteBuffer dropped = chunk("chunk-2...");
+		Assert.assertFalse(spill.append(dropped, 0));
+		Assert.assertFalse(dropped.hasRemaining());
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertTrue(spill.drainTo(Channels.newChannel(out)));
+		Assert.assertEquals("chunk-0...chunk-1...", string(out));
+	}
+
+	@Test
+	public void testReusesMemoryAfterDraining() throws IOException {
+		// room for three chunks of ten bytes
+		final SpillBuffer spill = new SpillBuffer(42, 0, null);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final WritableByteChannel channel = Channels.newChannel(out);
+		Assert.assertTrue(spill.append(chunk("chunk-00.."), 0));
+		for (int i = 1; i < 10; i++) {
+			// moves the chunks towards the end of the memory, then back to its start
+			Assert.assertTrue(spill.append(chunk("chunk-0" + i + ".."), 0));
+			Assert.assertFalse(spill.drainTo(new ThrottledChannel(channel, 10)));
+		}
+		Assert.assertTrue(spill.drainTo(channel));
+
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			expected.append("chunk-0" + i + "..");
+		}
+		Assert.assertEquals(expected.toString(), string(out));
+	}
+
+	@Test
+	public void testResumesAndRewindsPartiallyWrittenChunk() throws IOException {
+		final SpillBuffer spill = new SpillBuffer(30, 0, null);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertTrue(spill.append(chunk("chunk-0..."), 6));
+		Assert.assertFalse(spill.drainTo(new ThrottledChannel(Channels.newChannel(out), 2)));
+		Assert.assertEquals("0.", string(out));
+		Assert.assertTrue(spill.drainTo(Channels.newChannel(out)));
+		Assert.assertEquals("0...", string(out));
+
+		// the connection has been lost, so the chunk is sent completely over the next one
+		out = new ByteArrayOutputStream();
+		Assert.assertTrue(spill.append(chunk("chunk-1..."), 6));
+		spill.rewind();
+		Assert.assertTrue(spill.drainTo(Channels.newChannel(out)));
+		Assert.assertEquals("chunk-1...", string(out));
+	}
+
+	@Test
+	public void testAppendsGatheredBuffersAsOneChunk() throws IOException {
+		final SpillBuffer spill = new SpillBuffer(30, 0, null);
+		final ByteBuffer[] buffers = { chunk("ignored"), chunk("regis"), chunk("try;"), chunk("recs;") };
+		Assert.assertTrue(spill.append(buffers, 1, 3, 2));
+		Assert.assertFalse(buffers[3].hasRemaining());
+		Assert.assertTrue(buffers[0].hasRemaining());
+		Assert.assertEquals(4 + 14, spill.size());
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertTrue(spill.drainTo(Channels.newChannel(out)));
+		Assert.assertEquals("gistry;recs;", string(out));
+	}
+
+	private static ByteBuffer chunk(final String content) {
+		return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String string(final ByteArrayOutputStream out) {
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A channel which accepts a limited number of bytes in total, like a socket whose send buffer is full.
+	 */
+	private static class ThrottledChannel implements WritableByteChannel {
+		private final WritableByteChannel channel;
+		private int capacity;
+
+		ThrottledChannel(final WritableByteChannel channel, final int capacity) {
+			this.channel = channel;
+			this.capacity = capacity;
+		}
+
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final int length = Math.min(src.remaining(), this.capacity);
+			final ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + length);
+			final int written = this.channel.write(slice);
+			src.position(slice.position());
+			this.capacity -= written;
+			return written;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+	}
+}
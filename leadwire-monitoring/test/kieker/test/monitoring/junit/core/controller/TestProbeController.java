@@ -49,6 +49,7 @@ import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.core.signaturePattern.InvalidPatternException;
 import kieker.monitoring.core.signaturePattern.SignatureFactory;
+import kieker.monitoring.probe.aspectj.ProbeHandle;
 import kieker.monitoring.writer.dump.DumpWriter;
 
 import kieker.test.common.junit.AbstractKiekerTest;
@@ -371,6 +372,67 @@ public class TestProbeController extends AbstractKiekerTest {
 		ctrl.terminateMonitoring();
 	}
 
+	/**
+	 * Test that a {@link ProbeHandle} follows pattern changes via the pattern generation.
+	 */
+	@Test
+	public void testProbeHandleFollowsPatternChanges() {
+		final Configuration configuration = ConfigurationFactory.createSingletonConfiguration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, DumpWriter.class.getName());
+		configuration.setProperty(ConfigurationFactory.ADAPTIVE_MONITORING_ENABLED, "true");
+		final IMonitoringController ctrl = MonitoringController.createInstance(configuration);
+		final ProbeHandle handle = new ProbeHandle("void test.Test()", ctrl);
+		Assert.assertEquals("void test.Test()", handle.getSignature());
+		Assert.assertEquals(handle.getSignatureId(), ctrl.getSignatureId("void test.Test()"));
+		Assert.assertTrue(handle.isActivated(ctrl));
+
+		final int generation = ctrl.getProbePatternGeneration();
+		ctrl.deactivateProbe("* test.*()");
+		Assert.assertTrue(ctrl.getProbePatternGeneration() != generation);
+		Assert.assertFalse(handle.isActivated(ctrl));
+		ctrl.activateProbe("void test.Test()");
+		Assert.assertTrue(handle.isActivated(ctrl));
+		Assert.assertTrue(new ProbeHandle("void test.Test()", ctrl).isActivated(ctrl));
+		Assert.assertFalse(new ProbeHandle("void test.Other()", ctrl).isActivated(ctrl));
+		ctrl.terminateMonitoring();
+	}
+
+	/**
+	 * Test that re-applying an unchanged pattern list keeps the generation, and thus all cached decisions.
+	 */
+	@Test
+	public void testUnchangedPatternListKeepsGeneration() throws IOException {
+		final Configuration configuration = ConfigurationFactory.createSingletonConfiguration();
+		configuration.setProperty(ConfigurationFactory.WRITER_CLASSNAME, DumpWriter.class.getName());
+		configuration.setProperty(ConfigurationFactory.ADAPTIVE_MONITORING_ENABLED, "true");
+		configuration.setProperty(ConfigurationFactory.ADAPTIVE_MONITORING_CONFIG_FILE, this.configFile.getAbsolutePath());
+		configuration.setProperty(ConfigurationFactory.ADAPTIVE_MONITORING_CONFIG_FILE_UPDATE, "true");
+		final IMonitoringController ctrl = MonitoringController.createInstance(configuration);
+
+		final List<String> patterns = new ArrayList<String>();
+		patterns.add("- public * test.Test.get*()");
+		patterns.add("+ void test.Test()");
+		ctrl.setProbePatternList(patterns);
+		final ProbeHandle handle = new ProbeHandle("public int test.Test.getValue()", ctrl);
+		Assert.assertFalse(handle.isActivated(ctrl));
+		final int generation = ctrl.getProbePatternGeneration();
+		final List<String> written = this.readFromConfigFile();
+
+		// the same list, freshly parsed, and the list as written back
+		ctrl.setProbePatternList(new ArrayList<String>(patterns));
+		Assert.assertEquals(generation, ctrl.getProbePatternGeneration());
+		ctrl.setProbePatternList(ctrl.getProbePatternList());
+		Assert.assertEquals(generation, ctrl.getProbePatternGeneration());
+		Assert.assertEquals(written, this.readFromConfigFile());
+		Assert.assertFalse(handle.isActivated(ctrl));
+
+		// a changed activation is a change
+		patterns.set(1, "- void test.Test()");
+		ctrl.setProbePatternList(patterns);
+		Assert.assertTrue(ctrl.getProbePatternGeneration() != generation);
+		ctrl.terminateMonitoring();
+	}
+
 	/**
 	 * Replaces the old content of the config file with the given pattern and a few additional information.
 	 */
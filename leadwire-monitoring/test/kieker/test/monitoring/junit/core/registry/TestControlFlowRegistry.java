@@ -0,0 +1,109 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.test.monitoring.junit.core.registry;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.monitoring.core.registry.ControlFlowRegistry;
+import kieker.monitoring.core.registry.TraceContext;
+
+import kieker.test.common.junit.AbstractKiekerTest;
+
+/**
+ * Checks that the {@link TraceContext} and the thread-local methods of the {@link ControlFlowRegistry} share the same state.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class TestControlFlowRegistry extends AbstractKiekerTest {
+
+	private static final ControlFlowRegistry CFREGISTRY = ControlFlowRegistry.INSTANCE;
+
+	/**
+	 * Default constructor.
+	 */
+	public TestControlFlowRegistry() {
+		// empty default constructor
+	}
+
+	@After
+	public void cleanup() {
+		CFREGISTRY.getThreadLocalTraceContext().reset();
+	}
+
+	@Test
+	public void testNoTraceByDefault() {
+		final TraceContext context = CFREGISTRY.getThreadLocalTraceContext();
+		Assert.assertFalse(context.isTraceActive());
+		Assert.assertEquals(-1L, CFREGISTRY.recallThreadLocalTraceId());
+		Assert.assertEquals(-1, CFREGISTRY.recallThreadLocalEOI());
+		Assert.assertEquals(-1, CFREGISTRY.recallThreadLocalESS());
+		Assert.assertEquals(-1, context.incrementAndGetEoi());
+		Assert.assertEquals(-1, context.getAndIncrementEss());
+	}
+
+	@Test
+	public void testContextAndLegacyMethodsShareState() {
+		final TraceContext context = CFREGISTRY.getThreadLocalTraceContext();
+		final long traceId = CFREGISTRY.getUniqueTraceId();
+		context.beginTrace(traceId);
+
+		Assert.assertEquals(traceId, CFREGISTRY.recallThreadLocalTraceId());
+		Assert.assertEquals(0, CFREGISTRY.recallThreadLocalEOI());
+		Assert.assertEquals(1, CFREGISTRY.recallThreadLocalESS());
+
+		// a nested execution
+		Assert.assertEquals(1, CFREGISTRY.incrementAndRecallThreadLocalEOI());
+		Assert.assertEquals(1, context.getAndIncrementEss());
+		Assert.assertEquals(2, CFREGISTRY.recallThreadLocalESS());
+		CFREGISTRY.storeThreadLocalESS(1);
+		Assert.assertEquals(1, context.getEss());
+		Assert.assertEquals(2, context.incrementAndGetEoi());
+
+		CFREGISTRY.unsetThreadLocalTraceId();
+		CFREGISTRY.unsetThreadLocalEOI();
+		CFREGISTRY.unsetThreadLocalESS();
+		Assert.assertFalse(context.isTraceActive());
+		Assert.assertEquals(-1, context.getEoi());
+		Assert.assertEquals(-1, context.getEss());
+	}
+
+	@Test
+	public void testContextIsPerThread() throws InterruptedException {
+		final TraceContext context = CFREGISTRY.getThreadLocalTraceContext();
+		context.beginTrace(42L);
+		Assert.assertSame(context, CFREGISTRY.getThreadLocalTraceContext());
+
+		final AtomicReference<TraceContext> otherContext = new AtomicReference<TraceContext>();
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				otherContext.set(CFREGISTRY.getThreadLocalTraceContext());
+			}
+		});
+		thread.start();
+		thread.join();
+
+		Assert.assertNotSame(context, otherContext.get());
+		Assert.assertFalse(otherContext.get().isTraceActive());
+		Assert.assertEquals(42L, CFREGISTRY.recallThreadLocalTraceId());
+	}
+}
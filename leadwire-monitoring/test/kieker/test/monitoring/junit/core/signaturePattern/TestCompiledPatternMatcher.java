@@ -0,0 +1,124 @@
+/***************************************************************************
+ * Copyright 2017 Lead Wire (https://leadwire-apm.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************/
+package kieker.test.monitoring.junit.core.signaturePattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import kieker.monitoring.core.signaturePattern.CompiledPatternMatcher;
+import kieker.monitoring.core.signaturePattern.InvalidPatternException;
+import kieker.monitoring.core.signaturePattern.PatternEntry;
+import kieker.monitoring.core.signaturePattern.PatternParser;
+
+import kieker.test.common.junit.AbstractKiekerTest;
+
+/**
+ * Compares the {@link CompiledPatternMatcher} with a linear scan over the pattern list.
+ *
+ * @author Lead Wire
+ *
+ * @since 1.14
+ */
+public class TestCompiledPatternMatcher extends AbstractKiekerTest {
+
+	private static final String[] SIGNATURES = {
+		"public void a.b.C.m()",
+		"public void a.b.C.m(int)",
+		"private static java.lang.String a.b.C.get(java.lang.String, int)",
+		"public void a.b.D.m()",
+		"public void a.x.C.m()",
+		"protected int a.b.c.d.E.run(long)",
+		"public void b.C.m()",
+		"public void C.m()",
+		"void a.b.C.noModifier()",
+		"%CPU::host",
+		"no parenthesis at all",
+	};
+
+	private static final String[] PATTERNS = {
+		"-public void a.b.C.m()",
+		"+* a.b.C.*(..)",
+		"-* a..*.*(..)",
+		"+* a.b..*.*(..)",
+		"-*",
+		"+%CPU.*",
+		"-private * a.b.C.get(java.lang.String, int)",
+		"+* *.C.m(..)",
+		"-* ..C.*()",
+		"+public void C.m()",
+		"-* a.x.C.m()",
+	};
+
+	public TestCompiledPatternMatcher() {
+		// empty default constructor
+	}
+
+	@Test
+	public void testLiteralNamePrefix() {
+		Assert.assertArrayEquals(new String[] { "a", "b", "C", "m" }, PatternParser.parseLiteralNamePrefix("public void a.b.C.m()"));
+		Assert.assertArrayEquals(new String[] { "a", "b", "C" }, PatternParser.parseLiteralNamePrefix("* a.b.C.*(..)"));
+		Assert.assertArrayEquals(new String[] { "a" }, PatternParser.parseLiteralNamePrefix("* a..*.*(..)"));
+		Assert.assertArrayEquals(new String[0], PatternParser.parseLiteralNamePrefix("* ..C.*()"));
+		Assert.assertArrayEquals(new String[0], PatternParser.parseLiteralNamePrefix("*"));
+		Assert.assertArrayEquals(new String[0], PatternParser.parseLiteralNamePrefix("%a.b.C.m(.*)"));
+	}
+
+	@Test
+	public void testEquivalentToLinearScanForAllPrefixesOfPatternList() throws InvalidPatternException {
+		final List<PatternEntry> patternList = new ArrayList<PatternEntry>();
+		this.assertEquivalent(patternList);
+		for (final String pattern : PATTERNS) {
+			patternList.add(new PatternEntry(pattern.substring(1), pattern.charAt(0) == '+'));
+			this.assertEquivalent(patternList);
+		}
+		// and in reverse order
+		final List<PatternEntry> reversed = new ArrayList<PatternEntry>(patternList);
+		java.util.Collections.reverse(reversed);
+		this.assertEquivalent(reversed);
+	}
+
+	@Test
+	public void testDecisionCacheById() throws InvalidPatternException {
+		final CompiledPatternMatcher matcher = new CompiledPatternMatcher(Arrays.asList(new PatternEntry("* a.b.C.*(..)", false)), 7);
+		Assert.assertEquals(7, matcher.getGeneration());
+		Assert.assertFalse(matcher.isActivated(1000, "public void a.b.C.m()"));
+		Assert.assertTrue(matcher.isActivated(3, "public void a.b.D.m()"));
+		// cached by id, the signature is not evaluated again
+		Assert.assertFalse(matcher.isActivated(1000, "public void a.b.D.m()"));
+		Assert.assertTrue(matcher.isActivated(3, "public void a.b.C.m()"));
+	}
+
+	private void assertEquivalent(final List<PatternEntry> patternList) {
+		final CompiledPatternMatcher matcher = new CompiledPatternMatcher(patternList, 1);
+		for (final String signature : SIGNATURES) {
+			Assert.assertEquals(patternList + " / " + signature, TestCompiledPatternMatcher.linearScan(patternList, signature),
+					matcher.matches(signature));
+		}
+	}
+
+	private static boolean linearScan(final List<PatternEntry> patternList, final String signature) {
+		for (int i = patternList.size() - 1; i >= 0; i--) {
+			if (patternList.get(i).getPattern().matcher(signature).matches()) {
+				return patternList.get(i).isActivated();
+			}
+		}
+		return true;
+	}
+}
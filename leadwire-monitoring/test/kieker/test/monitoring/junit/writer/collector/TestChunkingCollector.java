@@ -20,9 +20,11 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -33,6 +35,9 @@ import kieker.monitoring.core.configuration.ConfigurationFactory;
 import kieker.monitoring.core.controller.IMonitoringController;
 import kieker.monitoring.core.controller.MonitoringController;
 import kieker.monitoring.writer.collector.ChunkingCollector;
+import kieker.monitoring.writer.compression.BlockFrames;
+import kieker.monitoring.writer.compression.CompressingRawDataWriter;
+import kieker.monitoring.writer.compression.DeflateBlockCodec;
 import kieker.monitoring.writer.serializer.StringSerializer;
 
 /**
@@ -88,6 +93,44 @@ public final class TestChunkingCollector {
 		Assert.assertEquals(recordCount + 1, numberOfLines);
 	}
 
+	/**
+	 * Tests that an asynchronous writer gets the pooled output buffers and releases them, so that more chunks than
+	 * buffers can be written.
+	 *
+	 * @throws IOException
+	 *             Not expected
+	 */
+	@Test
+	public void testAsynchronousWriter() throws IOException {
+		final String testId = "testAsynchronousWriter";
+		final int recordCount = 25;
+
+		final Configuration configuration = new Configuration();
+		configuration.setProperty(ChunkingCollector.CONFIG_QUEUE_TYPE, ArrayBlockingQueue.class.getName());
+		configuration.setProperty(ChunkingCollector.CONFIG_SERIALIZER_CLASSNAME, StringSerializer.class.getName());
+		configuration.setProperty(ChunkingCollector.CONFIG_WRITER_CLASSNAME, CompressingRawDataWriter.class.getName());
+		configuration.setProperty(ChunkingCollector.CONFIG_CHUNK_SIZE, 5);
+		configuration.setProperty(ChunkingCollector.CONFIG_OUTPUT_BUFFER_COUNT, 2);
+		configuration.setProperty(CompressingRawDataWriter.CONFIG_WRITER_CLASSNAME, TestRawDataWriter.class.getName());
+		configuration.setProperty(TestRawDataWriter.CONFIG_TEST_ID, testId);
+		final ChunkingCollector collector = new ChunkingCollector(configuration);
+
+		collector.onStarting();
+		for (int recordIndex = 0; recordIndex < recordCount; recordIndex++) {
+			collector.writeMonitoringRecord(new OperationExecutionRecord("op()", "SESS-ID", 0, recordIndex,
+					recordIndex, "host", recordIndex, 1));
+		}
+		collector.onTerminating();
+
+		final ByteBuffer frames = ByteBuffer.wrap(TestRawDataStorage.getInstance().getData(testId));
+		final DeflateBlockCodec codec = new DeflateBlockCodec(new Configuration());
+		final List<String> lines = new ArrayList<>();
+		while (frames.hasRemaining()) {
+			lines.addAll(TestChunkingCollector.linesFromData(BlockFrames.decode(frames, codec)));
+		}
+		Assert.assertEquals(recordCount, lines.size());
+	}
+
 	private static List<String> linesFromData(final byte[] data) throws IOException {
 		final List<String> lines = new ArrayList<>();
 
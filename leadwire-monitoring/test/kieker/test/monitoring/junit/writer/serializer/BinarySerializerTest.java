@@ -18,11 +18,15 @@ package kieker.test.monitoring.junit.writer.serializer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import kieker.common.configuration.Configuration;
+import kieker.common.record.IMonitoringRecord;
 import kieker.common.record.controlflow.OperationExecutionRecord;
 import kieker.common.util.dataformat.VariableLengthEncoding;
 import kieker.monitoring.core.configuration.ConfigurationFactory;
@@ -119,6 +123,32 @@ public class BinarySerializerTest {
 		Assert.assertEquals(9, numberOfStrings);
 	}
 
+	@Test
+	public void testConsecutiveChunks() {
+		final List<IMonitoringRecord> firstChunk = Collections.<IMonitoringRecord> singletonList(
+				new OperationExecutionRecord("first()", "SESS-1", 1, 1, 2, "host-1", 0, 1));
+		final List<IMonitoringRecord> secondChunk = Collections.<IMonitoringRecord> singletonList(
+				new OperationExecutionRecord("second()", "SESS-2", 2, 3, 4, "host-2", 0, 1));
+
+		// the second chunk must not depend on the strings of the first one, even if written to the same buffer
+		final BinarySerializer serializer = new BinarySerializer(new Configuration());
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		serializer.serializeRecords(firstChunk, buffer);
+		final byte[] second = serialize(serializer, secondChunk, buffer);
+
+		final byte[] expected = serialize(new BinarySerializer(new Configuration()), secondChunk, ByteBuffer.allocate(1024));
+		Assert.assertArrayEquals(expected, second);
+
+		// and when written to another buffer
+		Assert.assertArrayEquals(expected, serialize(serializer, secondChunk, ByteBuffer.allocate(1024)));
+	}
+
+	private static byte[] serialize(final BinarySerializer serializer, final List<IMonitoringRecord> chunk, final ByteBuffer buffer) {
+		buffer.clear();
+		final int length = serializer.serializeRecords(chunk, buffer);
+		return Arrays.copyOf(buffer.array(), length);
+	}
+
 	private IMonitoringController createController(final String testId, final int taskRunInterval, final int deferredWriteDelay) {
 		final Configuration configuration = ConfigurationFactory.createDefaultConfiguration();
 